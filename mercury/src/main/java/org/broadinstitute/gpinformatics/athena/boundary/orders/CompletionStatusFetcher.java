@@ -24,8 +24,9 @@ public class CompletionStatusFetcher {
 
     /**
      * Create a status object containing the sample status counts for a set of PDOs. This is designed to hold results
-     * from a call to {@link ProductOrderDao#getProgress(Collection)} in order to provide some extra convenience methods
-     * for accessing the data.
+     * from a call to {@link ProductOrderProgressCache#getProgress(Collection)} or
+     * {@link ProductOrderDao#getProgress(Collection)} in order to provide some extra convenience methods for accessing
+     * the data.
      *
      * @param progressByBusinessKey
      */
@@ -0,0 +1,242 @@
+package org.broadinstitute.gpinformatics.athena.boundary.orders;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.athena.control.dao.orders.ProductOrderDao;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderCompletionStatus;
+import org.broadinstitute.gpinformatics.infrastructure.common.RequestContextUtility;
+import org.broadinstitute.gpinformatics.infrastructure.common.SessionContextUtility;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheInvalidator;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide summary of the completion status (completed / abandoned / total samples) of each product order,
+ * keyed by product order ID, so list pages read it with a map lookup per order, rather than running the counting
+ * subqueries in {@link ProductOrderDao#getProgress(Collection)} on every render.
+ * <p/>
+ * {@link ProductOrderProgressListener} calls {@link #invalidate(Long)} when a ledger entry, a product order sample
+ * (including its delivery status), or a product order changes.  The order's summary is removed immediately, and again
+ * when the transaction completes, so a summary read by another request before the commit doesn't survive it.  The
+ * next read of the order recounts it with one keyed query.  {@link #reconcile()} compares every summary with the
+ * counting SQL, and replaces those that differ.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(BEAN)
+public class ProductOrderProgressCache extends AbstractCacheControl implements ProductOrderProgressCacheMXBean {
+
+    private static final Log log = LogFactory.getLog(ProductOrderProgressCache.class);
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 100000;
+
+    @Inject
+    private ProductOrderDao productOrderDao;
+
+    @Inject
+    private RequestContextUtility requestContextUtility;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    /** Maps product order ID to business key and status. */
+    private final Map<Long, Pair<String, ProductOrderCompletionStatus>> progressById = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final CacheInvalidator cacheInvalidator = new CacheInvalidator(() -> transactionSynchronizationRegistry);
+
+    private final CacheInvalidator.Removal<Long> orderRemoval = this::remove;
+
+    public ProductOrderProgressCache() {
+    }
+
+    /**
+     * For database free tests.
+     */
+    ProductOrderProgressCache(ProductOrderDao productOrderDao) {
+        this.productOrderDao = productOrderDao;
+    }
+
+    /**
+     * Returns the completion status of product orders, counting those that aren't in the summary.
+     *
+     * @return The mapping of business keys to the completion status object for each order, as
+     * {@link ProductOrderDao#getProgress(Collection)}
+     */
+    public Map<String, ProductOrderCompletionStatus> getProgress(Collection<Long> productOrderIds) {
+        Map<String, ProductOrderCompletionStatus> progressByBusinessKey = new HashMap<>(productOrderIds.size());
+        List<Long> missingIds = new ArrayList<>();
+        Set<Long> uniqueIds = new HashSet<>(productOrderIds);
+        for (Long productOrderId : uniqueIds) {
+            Pair<String, ProductOrderCompletionStatus> businessKeyAndStatus = progressById.get(productOrderId);
+            if (businessKeyAndStatus == null) {
+                missingIds.add(productOrderId);
+            } else {
+                progressByBusinessKey.put(businessKeyAndStatus.getLeft(), businessKeyAndStatus.getRight());
+            }
+        }
+        hitCount.addAndGet(uniqueIds.size() - missingIds.size());
+        if (!missingIds.isEmpty()) {
+            missCount.addAndGet(missingIds.size());
+            // If any order changes while counting, the counts may predate the change, so they're not kept.
+            long changeCountBefore = cacheInvalidator.getChangeCount();
+            Map<Long, Pair<String, ProductOrderCompletionStatus>> counted = productOrderDao.getProgressById(missingIds);
+            boolean keep = cacheInvalidator.isUnchangedSince(changeCountBefore);
+            for (Map.Entry<Long, Pair<String, ProductOrderCompletionStatus>> entry : counted.entrySet()) {
+                progressByBusinessKey.put(entry.getValue().getLeft(), entry.getValue().getRight());
+                if (keep && progressById.size() < maximumCacheSize) {
+                    progressById.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return progressByBusinessKey;
+    }
+
+    /**
+     * Removes the summary of an order that has changed, now and when the current transaction (if any) completes.
+     */
+    public void invalidate(Long productOrderId) {
+        cacheInvalidator.invalidate(productOrderId, orderRemoval);
+    }
+
+    private void remove(Long productOrderId) {
+        if (progressById.remove(productOrderId) != null) {
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts all orders with the SQL in {@link ProductOrderDao#getAllProgress()}, and replaces summaries that differ.
+     *
+     * @return a description of the differences
+     */
+    @Override
+    public String reconcile() {
+        final String[] result = new String[1];
+        // Called through JMX, so there is no request for the DAO.
+        requestContextUtility.executeInContext(new SessionContextUtility.Function() {
+            @Override
+            public void apply() {
+                result[0] = reconcile(productOrderDao.getProgressById(null));
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Compares the summaries with freshly counted statuses, and replaces those that differ.
+     */
+    String reconcile(Map<Long, Pair<String, ProductOrderCompletionStatus>> countedById) {
+        int checked = 0;
+        List<String> differences = new ArrayList<>();
+        for (Map.Entry<Long, Pair<String, ProductOrderCompletionStatus>> entry : countedById.entrySet()) {
+            Pair<String, ProductOrderCompletionStatus> cached = progressById.get(entry.getKey());
+            if (cached == null) {
+                continue;
+            }
+            checked++;
+            if (!isSame(cached, entry.getValue())) {
+                differences.add(entry.getValue().getLeft() + " was " + describe(cached) + ", counted " +
+                                describe(entry.getValue()));
+                progressById.put(entry.getKey(), entry.getValue());
+            }
+        }
+        // Orders that have been deleted.
+        int removed = 0;
+        for (Long productOrderId : new ArrayList<>(progressById.keySet())) {
+            if (!countedById.containsKey(productOrderId)) {
+                progressById.remove(productOrderId);
+                removed++;
+            }
+        }
+        String summary = "Reconciled " + checked + " product order progress summaries: " + differences.size() +
+                         " differed, " + removed + " removed";
+        if (differences.isEmpty() && removed == 0) {
+            log.info(summary);
+        } else {
+            log.warn(summary + " " + differences);
+        }
+        return summary + (differences.isEmpty() ? "" : " " + differences);
+    }
+
+    private static boolean isSame(Pair<String, ProductOrderCompletionStatus> pair1,
+            Pair<String, ProductOrderCompletionStatus> pair2) {
+        ProductOrderCompletionStatus status1 = pair1.getRight();
+        ProductOrderCompletionStatus status2 = pair2.getRight();
+        return Objects.equals(pair1.getLeft(), pair2.getLeft()) &&
+               status1.getNumberCompleted() == status2.getNumberCompleted() &&
+               status1.getNumberAbandoned() == status2.getNumberAbandoned() &&
+               status1.getTotal() == status2.getTotal();
+    }
+
+    private static String describe(Pair<String, ProductOrderCompletionStatus> businessKeyAndStatus) {
+        ProductOrderCompletionStatus status = businessKeyAndStatus.getRight();
+        return businessKeyAndStatus.getLeft() + " " + status.getNumberCompleted() + "/" +
+               status.getNumberAbandoned() + "/" + status.getTotal();
+    }
+
+    @Override
+    public void invalidateCache() {
+        cacheInvalidator.changed();
+        invalidationCount.addAndGet(progressById.size());
+        progressById.clear();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Orders beyond the maximum are counted on every read, rather than being added to the summary.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        invalidateCache();
+    }
+
+    @Override
+    public long getSize() {
+        return progressById.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+}
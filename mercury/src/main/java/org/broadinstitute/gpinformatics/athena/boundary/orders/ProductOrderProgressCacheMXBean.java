@@ -0,0 +1,20 @@
+package org.broadinstitute.gpinformatics.athena.boundary.orders;
+
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheControlMXBean;
+
+/**
+ * Adds the {@link ProductOrderProgressCache} counters, and reconciliation, to the basic cache controls shown in
+ * JConsole.
+ */
+public interface ProductOrderProgressCacheMXBean extends CacheControlMXBean {
+
+    public long getSize();
+
+    public long getHitCount();
+
+    public long getMissCount();
+
+    public long getInvalidationCount();
+
+    public String reconcile();
+}
@@ -0,0 +1,61 @@
+package org.broadinstitute.gpinformatics.athena.boundary.orders;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.athena.entity.billing.LedgerEntry;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
+import org.broadinstitute.gpinformatics.infrastructure.common.ServiceAccessUtility;
+import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Tells {@link ProductOrderProgressCache} about changes to the entities that determine the completion status of a
+ * product order.  Entities must be annotated with @EntityListeners(ProductOrderProgressListener.class).
+ */
+public class ProductOrderProgressListener {
+
+    private static final Log log = LogFactory.getLog(ProductOrderProgressListener.class);
+
+    /** The cache is an application wide singleton, so its reference is looked up once. */
+    private static volatile ProductOrderProgressCache productOrderProgressCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object object) {
+        ProductOrder productOrder = null;
+        if (OrmUtil.proxySafeIsInstance(object, LedgerEntry.class)) {
+            ProductOrderSample productOrderSample =
+                    OrmUtil.proxySafeCast(object, LedgerEntry.class).getProductOrderSample();
+            if (productOrderSample != null) {
+                productOrder = productOrderSample.getProductOrder();
+            }
+        } else if (OrmUtil.proxySafeIsInstance(object, ProductOrderSample.class)) {
+            productOrder = OrmUtil.proxySafeCast(object, ProductOrderSample.class).getProductOrder();
+        } else if (OrmUtil.proxySafeIsInstance(object, ProductOrder.class)) {
+            productOrder = OrmUtil.proxySafeCast(object, ProductOrder.class);
+        }
+        if (productOrder != null && productOrder.getProductOrderId() != null) {
+            ProductOrderProgressCache cache = getCache();
+            if (cache != null) {
+                cache.invalidate(productOrder.getProductOrderId());
+            }
+        }
+    }
+
+    private static ProductOrderProgressCache getCache() {
+        if (productOrderProgressCache == null) {
+            try {
+                productOrderProgressCache = ServiceAccessUtility.getBean(ProductOrderProgressCache.class);
+            } catch (RuntimeException e) {
+                // Not in a container, e.g. a JPA test, so there is no cache to maintain.
+                log.debug("No product order progress cache", e);
+            }
+        }
+        return productOrderProgressCache;
+    }
+}
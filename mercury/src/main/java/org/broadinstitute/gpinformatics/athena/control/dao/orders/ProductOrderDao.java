@@ -1,5 +1,7 @@
 package org.broadinstitute.gpinformatics.athena.control.dao.orders;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.broadinstitute.gpinformatics.athena.boundary.billing.AutomatedBiller;
 import org.broadinstitute.gpinformatics.athena.entity.billing.LedgerEntry;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
@@ -302,6 +304,18 @@ public class ProductOrderDao extends GenericDao {
      * @return The mapping of business keys to the completion status object for each order
      */
     public Map<String, ProductOrderCompletionStatus> getProgress(Collection<Long> productOrderIds) {
+        Map<Long, Pair<String, ProductOrderCompletionStatus>> progressById = getProgressById(productOrderIds);
+        Map<String, ProductOrderCompletionStatus> progressCounterMap = new HashMap<>(progressById.size());
+        for (Pair<String, ProductOrderCompletionStatus> businessKeyAndStatus : progressById.values()) {
+            progressCounterMap.put(businessKeyAndStatus.getLeft(), businessKeyAndStatus.getRight());
+        }
+        return progressCounterMap;
+    }
+
+    /**
+     * As {@link #getProgress(Collection)}, but keyed by product order ID, with the business key of each order.
+     */
+    public Map<Long, Pair<String, ProductOrderCompletionStatus>> getProgressById(Collection<Long> productOrderIds) {
         if (productOrderIds != null && productOrderIds.isEmpty()) {
             return Collections.emptyMap();
         }
@@ -357,17 +371,16 @@ public class ProductOrderDao extends GenericDao {
             results = (List<Object>) query.getResultList();
         }
 
-        Map<String, ProductOrderCompletionStatus> progressCounterMap =
-                new HashMap<>(results.size());
+        Map<Long, Pair<String, ProductOrderCompletionStatus>> progressById = new HashMap<>(results.size());
         for (Object resultObject : results) {
             Object[] result = (Object[]) resultObject;
             String businessKey = ProductOrder.createBusinessKey((Long) result[1], (String) result[0]);
-            progressCounterMap.put(businessKey,
+            progressById.put((Long) result[1], ImmutablePair.of(businessKey,
                                    new ProductOrderCompletionStatus((Integer) result[3], (Integer) result[2],
-                                                                    (Integer) result[4]));
+                                                                    (Integer) result[4])));
         }
 
-        return progressCounterMap;
+        return progressById;
     }
 
     /**
@@ -2,6 +2,7 @@ package org.broadinstitute.gpinformatics.athena.entity.billing;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.broadinstitute.gpinformatics.athena.boundary.orders.ProductOrderProgressListener;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
 import org.broadinstitute.gpinformatics.athena.entity.orders.SapOrderDetail;
 import org.broadinstitute.gpinformatics.athena.entity.products.PriceItem;
@@ -12,6 +13,7 @@ import org.hibernate.envers.Audited;
 import javax.annotation.Nonnull;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
@@ -36,6 +38,7 @@ import java.util.stream.Collectors;
  */
 @Entity
 @Audited
+@EntityListeners(ProductOrderProgressListener.class)
 @Table(name= "BILLING_LEDGER", schema = "athena")
 public class LedgerEntry implements Serializable {
     /**
@@ -4,6 +4,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.athena.boundary.orders.ProductOrderProgressListener;
 import org.broadinstitute.gpinformatics.athena.entity.billing.BillingSession;
 import org.broadinstitute.gpinformatics.athena.entity.billing.LedgerEntry;
 import org.broadinstitute.gpinformatics.athena.entity.billing.ProductLedgerIndex;
@@ -30,6 +31,7 @@ import javax.annotation.Nonnull;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
@@ -67,6 +69,7 @@ import java.util.stream.Collectors;
  */
 @Entity
 @Audited
+@EntityListeners(ProductOrderProgressListener.class)
 @Table(name = "PRODUCT_ORDER_SAMPLE", schema = "athena")
 public class ProductOrderSample extends AbstractSample implements BusinessObject, Serializable {
     private static final long serialVersionUID = 8645451167948826402L;
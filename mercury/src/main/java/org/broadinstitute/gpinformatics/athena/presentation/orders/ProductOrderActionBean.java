@@ -41,6 +41,7 @@ import org.broadinstitute.bsp.client.workrequest.SampleKitWorkRequest;
 import org.broadinstitute.bsp.client.workrequest.kit.KitTypeAllowanceSpecification;
 import org.broadinstitute.gpinformatics.athena.boundary.orders.CompletionStatusFetcher;
 import org.broadinstitute.gpinformatics.athena.boundary.orders.ProductOrderEjb;
+import org.broadinstitute.gpinformatics.athena.boundary.orders.ProductOrderProgressCache;
 import org.broadinstitute.gpinformatics.athena.boundary.products.InvalidProductException;
 import org.broadinstitute.gpinformatics.athena.boundary.products.ProductEjb;
 import org.broadinstitute.gpinformatics.athena.control.dao.billing.BillingSessionDao;
@@ -239,6 +240,9 @@ public class ProductOrderActionBean extends CoreActionBean {
 
     private ProductOrderDao productOrderDao;
 
+    @Inject
+    private ProductOrderProgressCache productOrderProgressCache;
+
     @Inject
     private ProductDao productDao;
 
@@ -535,7 +539,7 @@ public class ProductOrderActionBean extends CoreActionBean {
             editOrder = productOrderDao.findByBusinessKey(productOrder);
             if (editOrder != null) {
                 progressFetcher = new CompletionStatusFetcher(
-                        productOrderDao.getProgress(Collections.singleton(editOrder.getProductOrderId())));
+                        productOrderProgressCache.getProgress(Collections.singleton(editOrder.getProductOrderId())));
             }
         } else {
             // If this was a create with research project specified, find that.
@@ -583,7 +587,7 @@ public class ProductOrderActionBean extends CoreActionBean {
                         productOrderIds.add(childOrder.getProductOrderId());
                     }
                 }
-                progressFetcher = new CompletionStatusFetcher(productOrderDao.getProgress(productOrderIds));
+                progressFetcher = new CompletionStatusFetcher(productOrderProgressCache.getProgress(productOrderIds));
             }
         }
     }
@@ -1370,7 +1374,7 @@ public class ProductOrderActionBean extends CoreActionBean {
                         productFamilyId, productTokenInput.getBusinessKeyList(), selectedStatuses, getDateRange(),
                         owner.getOwnerIds(), selectedLedgerStatuses);
 
-        progressFetcher = new CompletionStatusFetcher(productOrderDao
+        progressFetcher = new CompletionStatusFetcher(productOrderProgressCache
                 .getProgress(ProductOrderListEntry.getProductOrderIDs(displayedProductOrderListEntries)));
 
         // Get the sorted family list.
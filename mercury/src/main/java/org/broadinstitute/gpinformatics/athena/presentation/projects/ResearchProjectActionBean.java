@@ -25,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.validator.routines.EmailValidator;
 import org.broadinstitute.gpinformatics.athena.boundary.orders.CompletionStatusFetcher;
+import org.broadinstitute.gpinformatics.athena.boundary.orders.ProductOrderProgressCache;
 import org.broadinstitute.gpinformatics.athena.boundary.projects.CollaborationService;
 import org.broadinstitute.gpinformatics.athena.boundary.projects.RegulatoryInfoEjb;
 import org.broadinstitute.gpinformatics.athena.boundary.projects.ResearchProjectEjb;
@@ -250,6 +251,9 @@ public class ResearchProjectActionBean extends CoreActionBean implements Validat
 
     private ProductOrderDao productOrderDao;
 
+    @Inject
+    private ProductOrderProgressCache productOrderProgressCache;
+
     private ResearchProjectEjb researchProjectEjb;
 
     private CollaborationService collaborationService;
@@ -334,7 +338,7 @@ public class ResearchProjectActionBean extends CoreActionBean implements Validat
             productOrderIds.add(order.getProductOrderId());
         }
 
-        progressFetcher = new CompletionStatusFetcher(productOrderDao.getProgress(productOrderIds));
+        progressFetcher = new CompletionStatusFetcher(productOrderProgressCache.getProgress(productOrderIds));
     }
 
     @After(stages = LifecycleStage.BindingAndValidation,
@@ -27,6 +27,12 @@ public class BSPConfig extends AbstractConfig implements LoginAndPassword, Seria
 
     private int port;
 
+    /** Maximum number of samples in one runSampleSearch request. */
+    private int sampleSearchChunkSize = 2000;
+
+    /** Maximum number of runSampleSearch requests in flight for one search. */
+    private int sampleSearchConcurrency = 4;
+
     public BSPConfig(){}
 
     @Inject
@@ -68,6 +74,22 @@ public class BSPConfig extends AbstractConfig implements LoginAndPassword, Seria
         this.port = port;
     }
 
+    public int getSampleSearchChunkSize() {
+        return sampleSearchChunkSize;
+    }
+
+    public void setSampleSearchChunkSize(int sampleSearchChunkSize) {
+        this.sampleSearchChunkSize = sampleSearchChunkSize;
+    }
+
+    public int getSampleSearchConcurrency() {
+        return sampleSearchConcurrency;
+    }
+
+    public void setSampleSearchConcurrency(int sampleSearchConcurrency) {
+        this.sampleSearchConcurrency = sampleSearchConcurrency;
+    }
+
     public String getUrl(String suffix) {
         return String.format("%s%s:%d/BSP/%s", getHttpScheme(),getHost(), getPort(), suffix);
     }
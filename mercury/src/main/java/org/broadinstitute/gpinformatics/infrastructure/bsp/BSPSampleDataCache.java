@@ -0,0 +1,308 @@
+package org.broadinstitute.gpinformatics.infrastructure.bsp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.broadinstitute.gpinformatics.infrastructure.common.BaseSplitter;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+import org.broadinstitute.gpinformatics.mercury.boundary.zims.BSPLookupException;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide cache of the results of {@link BSPSampleSearchService#runSampleSearch}, keyed by sample id and
+ * the set of columns searched for.  Bucket pages, searches, the pipeline API and ETL often ask for the same samples
+ * within minutes of each other, and each search is an HTTP round trip to BSP.
+ * <p/>
+ * Samples that aren't cached are searched for together, in as few searches as possible.  If another thread is
+ * already searching for a sample, the caller waits for that search rather than making its own.  BSP doesn't say
+ * when its samples change, so entries expire a few minutes after they are fetched.  Samples that BSP doesn't return
+ * aren't cached.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(BEAN)
+public class BSPSampleDataCache extends AbstractCacheControl implements BSPSampleDataCacheMXBean {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 50000;
+
+    private static final int DEFAULT_EXPIRE_AFTER_WRITE_MINUTES = 5;
+
+    /** Maximum number of samples in one search. */
+    static final int MAXIMUM_SEARCH_SIZE = 5000;
+
+    /** How long a caller waits for the searches of other threads, in total. */
+    private static final long WAIT_TIMEOUT_MINUTES = 10;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    private int expireAfterWriteMinutes = DEFAULT_EXPIRE_AFTER_WRITE_MINUTES;
+
+    private volatile Cache<Key, Map<BSPSampleSearchColumn, String>> cache =
+            buildCache(DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_WRITE_MINUTES);
+
+    /** The searches in progress, by the samples they are for.  A null result means BSP didn't return the sample. */
+    private final Map<Key, CompletableFuture<Map<BSPSampleSearchColumn, String>>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /** Number of samples that were waited for, rather than searched for again. */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /** Number of searches made. */
+    private final AtomicLong searchCount = new AtomicLong();
+
+    /**
+     * The cache key.
+     */
+    private static class Key {
+        private final String sampleId;
+        private final Set<BSPSampleSearchColumn> columns;
+
+        private Key(String sampleId, Set<BSPSampleSearchColumn> columns) {
+            this.sampleId = sampleId;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return sampleId.equals(key.sampleId) && columns.equals(key.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sampleId.hashCode() + columns.hashCode();
+        }
+    }
+
+    private static Cache<Key, Map<BSPSampleSearchColumn, String>> buildCache(int maximumSize,
+            int expireAfterWriteMinutes) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the same results as the service's runSampleSearch, using cached results where possible.  The results
+     * are in the order of the sample ids, and each call gets its own copies of them.  A search without the SAMPLE_ID
+     * column is passed straight to the service, since its results can't be matched to the samples.
+     *
+     * @param service the search service, which is not necessarily the production service
+     */
+    public List<Map<BSPSampleSearchColumn, String>> runSampleSearch(BSPSampleSearchService service,
+            Collection<String> sampleIds, BSPSampleSearchColumn... columns) {
+        if (sampleIds == null || sampleIds.isEmpty() || columns == null || columns.length == 0 ||
+            !Arrays.asList(columns).contains(BSPSampleSearchColumn.SAMPLE_ID)) {
+            return service.runSampleSearch(sampleIds, columns);
+        }
+        Set<BSPSampleSearchColumn> columnSet = Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(columns)));
+        Set<String> uniqueSampleIds = new LinkedHashSet<>(sampleIds);
+
+        Map<String, Map<BSPSampleSearchColumn, String>> rowBySampleId = new HashMap<>();
+        Map<String, CompletableFuture<Map<BSPSampleSearchColumn, String>>> toSearch = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Map<BSPSampleSearchColumn, String>>> toAwait = new HashMap<>();
+        for (String sampleId : uniqueSampleIds) {
+            Key key = new Key(sampleId, columnSet);
+            Map<BSPSampleSearchColumn, String> row = cache.getIfPresent(key);
+            if (row != null) {
+                rowBySampleId.put(sampleId, row);
+                continue;
+            }
+            CompletableFuture<Map<BSPSampleSearchColumn, String>> future = new CompletableFuture<>();
+            CompletableFuture<Map<BSPSampleSearchColumn, String>> otherFuture = inFlight.putIfAbsent(key, future);
+            if (otherFuture == null) {
+                toSearch.put(sampleId, future);
+            } else {
+                toAwait.put(sampleId, otherFuture);
+                coalescedCount.incrementAndGet();
+            }
+        }
+
+        List<Map<BSPSampleSearchColumn, String>> unmatchedRows = new ArrayList<>();
+        if (!toSearch.isEmpty()) {
+            search(service, toSearch, columnSet, columns, unmatchedRows);
+        }
+        // The search completed all of its own futures, so only the other threads' searches are waited for.
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(WAIT_TIMEOUT_MINUTES);
+        for (Map.Entry<String, CompletableFuture<Map<BSPSampleSearchColumn, String>>> entry :
+                toSearch.entrySet()) {
+            rowBySampleId.put(entry.getKey(), await(entry.getKey(), entry.getValue(), deadline));
+        }
+        for (Map.Entry<String, CompletableFuture<Map<BSPSampleSearchColumn, String>>> entry : toAwait.entrySet()) {
+            rowBySampleId.put(entry.getKey(), await(entry.getKey(), entry.getValue(), deadline));
+        }
+
+        List<Map<BSPSampleSearchColumn, String>> results = new ArrayList<>();
+        for (String sampleId : uniqueSampleIds) {
+            Map<BSPSampleSearchColumn, String> row = rowBySampleId.get(sampleId);
+            if (row != null) {
+                results.add(new HashMap<>(row));
+            }
+        }
+        for (Map<BSPSampleSearchColumn, String> row : unmatchedRows) {
+            results.add(new HashMap<>(row));
+        }
+        return results;
+    }
+
+    /**
+     * Searches for the samples that no other thread is searching for, in as few searches as possible, caching and
+     * publishing the results.
+     *
+     * @param unmatchedRows filled with the rows whose sample id doesn't match a requested sample
+     */
+    private void search(BSPSampleSearchService service,
+            Map<String, CompletableFuture<Map<BSPSampleSearchColumn, String>>> toSearch,
+            Set<BSPSampleSearchColumn> columnSet, BSPSampleSearchColumn[] columns,
+            List<Map<BSPSampleSearchColumn, String>> unmatchedRows) {
+        try {
+            for (Collection<String> chunk : BaseSplitter.split(toSearch.keySet(), MAXIMUM_SEARCH_SIZE)) {
+                searchCount.incrementAndGet();
+                List<Map<BSPSampleSearchColumn, String>> rows = service.runSampleSearch(chunk, columns);
+                Map<String, Map<BSPSampleSearchColumn, String>> rowByBspId = new HashMap<>();
+                for (Map<BSPSampleSearchColumn, String> row : rows) {
+                    rowByBspId.put(row.get(BSPSampleSearchColumn.SAMPLE_ID), Collections.unmodifiableMap(
+                            new HashMap<>(row)));
+                }
+                Set<String> matchedBspIds = new HashSet<>();
+                for (String sampleId : chunk) {
+                    // Bare ids are returned with the prefix.
+                    String bspId = rowByBspId.containsKey(sampleId) ? sampleId : "SM-" + sampleId;
+                    Map<BSPSampleSearchColumn, String> row = rowByBspId.get(bspId);
+                    if (row != null) {
+                        matchedBspIds.add(bspId);
+                        cache.put(new Key(sampleId, columnSet), row);
+                    }
+                    toSearch.get(sampleId).complete(row);
+                }
+                for (Map.Entry<String, Map<BSPSampleSearchColumn, String>> entry : rowByBspId.entrySet()) {
+                    if (!matchedBspIds.contains(entry.getKey())) {
+                        unmatchedRows.add(entry.getValue());
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            // Threads waiting for these samples get the same exception, whatever it is; the futures already
+            // completed are left alone.
+            for (CompletableFuture<Map<BSPSampleSearchColumn, String>> future : toSearch.values()) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<String, CompletableFuture<Map<BSPSampleSearchColumn, String>>> entry :
+                    toSearch.entrySet()) {
+                inFlight.remove(new Key(entry.getKey(), columnSet), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the result of a search for a sample, waiting until the deadline at most.
+     *
+     * @param deadline in {@link System#nanoTime()} terms
+     */
+    private static Map<BSPSampleSearchColumn, String> await(String sampleId,
+            Future<Map<BSPSampleSearchColumn, String>> future, long deadline) {
+        try {
+            return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BSPLookupException("Error searching BSP", e.getCause());
+        } catch (TimeoutException e) {
+            throw new BSPLookupException("Timed out waiting for another search of BSP for " + sampleId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BSPLookupException("Interrupted waiting for another search of BSP for " + sampleId, e);
+        }
+    }
+
+    @Override
+    public void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Replaces the cache with an empty one of the new size.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        cache = buildCache(max, expireAfterWriteMinutes);
+    }
+
+    @Override
+    public int getExpireAfterWriteMinutes() {
+        return expireAfterWriteMinutes;
+    }
+
+    /**
+     * Replaces the cache with an empty one with the new expiry.
+     */
+    @Override
+    public void setExpireAfterWriteMinutes(int minutes) {
+        expireAfterWriteMinutes = minutes;
+        cache = buildCache(maximumCacheSize, minutes);
+    }
+
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    @Override
+    public long getSearchCount() {
+        return searchCount.get();
+    }
+}
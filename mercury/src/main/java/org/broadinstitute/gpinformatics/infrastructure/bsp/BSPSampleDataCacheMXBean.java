@@ -0,0 +1,23 @@
+package org.broadinstitute.gpinformatics.infrastructure.bsp;
+
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheControlMXBean;
+
+/**
+ * Adds the {@link BSPSampleDataCache} counters to the basic cache controls shown in JConsole.
+ */
+public interface BSPSampleDataCacheMXBean extends CacheControlMXBean {
+
+    public long getSize();
+
+    public long getHitCount();
+
+    public long getMissCount();
+
+    public long getCoalescedCount();
+
+    public long getSearchCount();
+
+    public int getExpireAfterWriteMinutes();
+
+    public void setExpireAfterWriteMinutes(int minutes);
+}
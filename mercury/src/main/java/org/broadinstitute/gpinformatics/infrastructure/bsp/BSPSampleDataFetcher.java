@@ -36,6 +36,10 @@ public abstract class BSPSampleDataFetcher extends BSPJaxRsClient implements Ser
     @Inject
     BSPSampleSearchService service;
 
+    /** Null when the fetcher is constructed outside the container, in which case every search goes to BSP. */
+    @Inject
+    private BSPSampleDataCache bspSampleDataCache;
+
     static final String WS_FFPE_DERIVED = "sample/ffpeDerived";
     // Used for mapping Matrix barcodes to Sample short barcodes, forces xml output format.
     static final String WS_SAMPLE_DETAILS = "sample/getsampledetails?format=xml";
@@ -113,7 +117,7 @@ public abstract class BSPSampleDataFetcher extends BSPJaxRsClient implements Ser
         Set<BSPSampleSearchColumn> searchColumns = new HashSet<>(Arrays.asList(bspSampleSearchColumns));
         searchColumns.add(BSPSampleSearchColumn.SAMPLE_ID);
         Map<String, BspSampleData> nameToSampleData = new HashMap<>();
-        List<Map<BSPSampleSearchColumn, String>> results = service.runSampleSearch(filteredSampleNames,
+        List<Map<BSPSampleSearchColumn, String>> results = runSampleSearch(filteredSampleNames,
                 searchColumns.toArray(new BSPSampleSearchColumn[searchColumns.size()]));
         for (Map<BSPSampleSearchColumn, String> result : results) {
             BspSampleData bspSampleData = new BspSampleData(result);
@@ -123,6 +127,17 @@ public abstract class BSPSampleDataFetcher extends BSPJaxRsClient implements Ser
         return nameToSampleData;
     }
 
+    /**
+     * Searches BSP through the shared cache, if there is one.
+     */
+    private List<Map<BSPSampleSearchColumn, String>> runSampleSearch(Collection<String> sampleIds,
+            BSPSampleSearchColumn... columns) {
+        if (bspSampleDataCache == null) {
+            return service.runSampleSearch(sampleIds, columns);
+        }
+        return bspSampleDataCache.runSampleSearch(service, sampleIds, columns);
+    }
+
     /**
      * Fetch the data from bsp for multiple samples.
      *
@@ -191,7 +206,7 @@ public abstract class BSPSampleDataFetcher extends BSPJaxRsClient implements Ser
     public Map<String, String> getStockIdByAliquotId(Collection<String> aliquotIds) {
         Map<String, String> stockIdByAliquotId = new HashMap<>();
         if (!aliquotIds.isEmpty()) {
-            List<Map<BSPSampleSearchColumn, String>> results = service.runSampleSearch(aliquotIds,
+            List<Map<BSPSampleSearchColumn, String>> results = runSampleSearch(aliquotIds,
                     BSPSampleSearchColumn.SAMPLE_ID, BSPSampleSearchColumn.STOCK_SAMPLE);
             for (Map<BSPSampleSearchColumn, String> result : results) {
                 stockIdByAliquotId.put(result.get(BSPSampleSearchColumn.SAMPLE_ID),
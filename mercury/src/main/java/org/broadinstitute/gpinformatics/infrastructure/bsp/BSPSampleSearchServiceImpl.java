@@ -1,33 +1,63 @@
 package org.broadinstitute.gpinformatics.infrastructure.bsp;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.broadinstitute.gpinformatics.infrastructure.deployment.AbstractConfig;
 import org.broadinstitute.gpinformatics.mercury.boundary.zims.BSPLookupException;
 import org.broadinstitute.gpinformatics.mercury.control.AbstractJaxRsClientService;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManageableThread;
 import javax.enterprise.context.Dependent;
 import javax.enterprise.inject.Default;
 import javax.inject.Inject;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Searches BSP for sample data.  Large searches are split into chunks of samples, which are searched for
+ * concurrently, up to a limit, and retried if they fail.  A search made from a managed thread, e.g. by a parallel ETL
+ * partition, searches its chunks itself, rather than waiting for tasks queued behind it on the same pool.
+ */
 @Dependent
 @Default
 public class BSPSampleSearchServiceImpl extends AbstractJaxRsClientService implements BSPSampleSearchService {
     private static final long serialVersionUID = 3432255750259397293L;
 
+    private static final Log log = LogFactory.getLog(BSPSampleSearchServiceImpl.class);
+
     public static final String SEARCH_RUN_SAMPLE_SEARCH = "search/runSampleSearch";
 
+    /** Number of times a chunk is searched for before giving up. */
+    static final int MAX_ATTEMPTS = 3;
+
+    /** Delay before the first retry of a chunk, doubled for each later retry. */
+    static final long RETRY_DELAY_MILLIS = 500L;
+
     private BSPConfig bspConfig;
 
+    /**
+     * Null outside the container, in which case chunks are searched for one at a time, as they are when searching
+     * from one of this executor's own threads.
+     */
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private transient ExecutorService executorService;
+
     /**
      * Container free constructor, need to initialize all dependencies explicitly.
      *
@@ -38,6 +68,14 @@ public class BSPSampleSearchServiceImpl extends AbstractJaxRsClientService imple
         this.bspConfig = bspConfig;
     }
 
+    /**
+     * Container free constructor, with an executor for concurrent searches.
+     */
+    public BSPSampleSearchServiceImpl(BSPConfig bspConfig, ExecutorService executorService) {
+        this(bspConfig);
+        this.executorService = executorService;
+    }
+
     @Override
     protected void customizeClient(Client client) {
         specifyHttpAuthCredentials(client, bspConfig);
@@ -66,38 +104,124 @@ public class BSPSampleSearchServiceImpl extends AbstractJaxRsClientService imple
             return Collections.emptyList();
         }
 
+        final String urlString = bspConfig.getWSUrl(SEARCH_RUN_SAMPLE_SEARCH);
+        List<List<String>> chunks = chopped(new ArrayList<>(sampleIDs),
+                Math.max(1, bspConfig.getSampleSearchChunkSize()));
+        int concurrency = Math.max(1, bspConfig.getSampleSearchConcurrency());
+
         final List<Map<BSPSampleSearchColumn, String>> ret = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        if (chunks.size() == 1 || concurrency == 1 || executorService == null ||
+                Thread.currentThread() instanceof ManageableThread) {
+            for (List<String> chunk : chunks) {
+                ret.addAll(searchChunk(urlString, chunk, queryColumns));
+            }
+        } else {
+            // Keeps at most "concurrency" chunks in flight, and adds their results in the order of the chunks.
+            List<Future<List<Map<BSPSampleSearchColumn, String>>>> futures = new ArrayList<>();
+            try {
+                for (int i = 0; i < chunks.size(); i++) {
+                    while (futures.size() < chunks.size() && futures.size() < i + concurrency) {
+                        final List<String> chunk = chunks.get(futures.size());
+                        futures.add(executorService.submit(new Callable<List<Map<BSPSampleSearchColumn, String>>>() {
+                            @Override
+                            public List<Map<BSPSampleSearchColumn, String>> call() {
+                                return searchChunk(urlString, chunk, queryColumns);
+                            }
+                        }));
+                    }
+                    ret.addAll(futures.get(i).get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BSPLookupException("Interrupted while searching BSP", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new BSPLookupException("Error searching BSP", e.getCause());
+            } finally {
+                for (Future<List<Map<BSPSampleSearchColumn, String>>> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        if (chunks.size() > 1) {
+            log.info("Searched BSP for " + sampleIDs.size() + " samples in " + chunks.size() + " chunks in " +
+                     (System.currentTimeMillis() - start) + " ms");
+        }
 
-        String urlString = bspConfig.getWSUrl(SEARCH_RUN_SAMPLE_SEARCH);
+        return ret;
+    }
 
+    /**
+     * Searches for one chunk of samples, retrying if the request fails.  The rows of a failed attempt are discarded,
+     * so a retry doesn't duplicate them.  A request that BSP rejects (a 4xx response) is not retried.
+     *
+     * @throws BSPLookupException if the chunk couldn't be searched, so callers don't get partial sample data
+     */
+    List<Map<BSPSampleSearchColumn, String>> searchChunk(String urlString, List<String> sampleIds,
+            final BSPSampleSearchColumn... queryColumns) {
         MultivaluedMap<String, String> parameters = new MultivaluedHashMap<>();
-
-        try {
-            for (BSPSampleSearchColumn column : queryColumns) {
-                parameters.add("columns", column.columnName());
+        for (BSPSampleSearchColumn column : queryColumns) {
+            parameters.add("columns", column.columnName());
+        }
+        parameters.add("sample_ids", StringUtils.join(sampleIds, ","));
+
+        RuntimeException exception = null;
+        int status = RESPONSE_NOT_READ;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS << (attempt - 2));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BSPLookupException("Interrupted while searching BSP", e);
+                }
             }
-
-            parameters.add("sample_ids", StringUtils.join(sampleIDs, ","));
-
-            post(urlString, parameters, ExtraTab.TRUE, new PostCallback() {
-                @Override
-                public void callback(String[] bspData) {
-                    Map<BSPSampleSearchColumn, String> newMap = new HashMap<>();
-
-                    // It turns out that BSP truncates the rest of the columns, if there are no more values, which
-                    // values "", once i >= the length of the bspData
-                    int i = 0;
-                    for (BSPSampleSearchColumn column : queryColumns) {
-                        newMap.put(column, (i < bspData.length) ? bspData[i++] : "");
+            final List<Map<BSPSampleSearchColumn, String>> rows = new ArrayList<>();
+            long start = System.currentTimeMillis();
+            try {
+                status = postForStatus(urlString, parameters, ExtraTab.TRUE, new PostCallback() {
+                    @Override
+                    public void callback(String[] bspData) {
+                        Map<BSPSampleSearchColumn, String> newMap = new HashMap<>();
+
+                        // It turns out that BSP truncates the rest of the columns, if there are no more values, which
+                        // values "", once i >= the length of the bspData
+                        int i = 0;
+                        for (BSPSampleSearchColumn column : queryColumns) {
+                            newMap.put(column, (i < bspData.length) ? bspData[i++] : "");
+                        }
+
+                        rows.add(newMap);
                     }
-
-                    ret.add(newMap);
+                });
+                Response.Status.Family family = Response.Status.Family.familyOf(status);
+                if (family == Response.Status.Family.SUCCESSFUL) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Searched BSP for " + sampleIds.size() + " samples in " +
+                                  (System.currentTimeMillis() - start) + " ms, attempt " + attempt);
+                    }
+                    return rows;
+                }
+                if (family == Response.Status.Family.CLIENT_ERROR) {
+                    throw new BSPLookupException("BSP rejected the search for " + sampleIds.size() +
+                                                 " samples with response code " + status);
                 }
-            });
-        } catch (WebApplicationException clientException) {
-            throw new BSPLookupException("Error connecting to BSP", clientException);
+                exception = null;
+            } catch (WebApplicationException | ProcessingException e) {
+                exception = e;
+            }
+            log.warn("BSP search for " + sampleIds.size() + " samples failed after " +
+                     (System.currentTimeMillis() - start) + " ms, attempt " + attempt + " of " + MAX_ATTEMPTS,
+                    exception);
         }
-
-        return ret;
+        if (exception != null) {
+            throw new BSPLookupException("Error connecting to BSP", exception);
+        }
+        // The response, which has already been logged, was an error or couldn't be read every time.
+        throw new BSPLookupException("BSP search for " + sampleIds.size() + " samples failed after " + MAX_ATTEMPTS +
+                                     " attempts, last response code " + status);
     }
 }
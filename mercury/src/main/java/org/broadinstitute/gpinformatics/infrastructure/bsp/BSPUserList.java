@@ -17,6 +17,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,22 +38,162 @@ public class BSPUserList extends AbstractCache implements Serializable {
 
     private BSPManagerFactory bspManagerFactory;
 
-    private Map<Long, BspUser> users;
+    /** Replaced, never modified, so readers don't need to lock. */
+    private volatile UserIndex userIndex;
 
-    private boolean serverValid;
+    private volatile boolean serverValid;
+
+    /** Query items shorter than this can't use the n-gram index, so find() checks every user for them. */
+    private static final int NGRAM_LENGTH = 3;
+
+    /**
+     * An immutable snapshot of the user list, with indexes for the lookups that are done for every lab event.
+     */
+    private static class UserIndex implements Serializable {
+        private static final long serialVersionUID = 20190801L;
+
+        private final Map<Long, BspUser> users;
+
+        /** Users in sort order, so find() results keep that order. */
+        private final BspUser[] sortedUsers;
+
+        /** For each user, the lower case first name, last name, username and email that find() searches. */
+        private final String[][] lowerFields;
+
+        private final Map<String, BspUser> mapUsernameToUser = new HashMap<>();
+
+        private final Map<String, BspUser> mapBadgeIdToUser = new HashMap<>();
+
+        private final Map<String, BspUser> mapEmailToUser = new HashMap<>();
+
+        /** Maps each n-gram in the lower case fields to the ascending indexes of the users that contain it. */
+        private final Map<String, int[]> mapNgramToUserIndexes = new HashMap<>();
+
+        private UserIndex(Map<Long, BspUser> users) {
+            this.users = users;
+            sortedUsers = users.values().toArray(new BspUser[users.size()]);
+            lowerFields = new String[sortedUsers.length][];
+            Map<String, List<Integer>> mapNgramToIndexList = new HashMap<>();
+            for (int i = 0; i < sortedUsers.length; i++) {
+                BspUser user = sortedUsers[i];
+                // The first match wins, as it did when the lookups iterated the sorted users.
+                if (user.getUsername() != null) {
+                    putIfAbsent(mapUsernameToUser, user.getUsername().toLowerCase(), user);
+                }
+                if (user.getBadgeNumber() != null) {
+                    putIfAbsent(mapBadgeIdToUser, user.getBadgeNumber().toLowerCase(), user);
+                }
+                if (user.getEmail() != null) {
+                    // Prefer the first active user, otherwise the last inactive user.
+                    String email = user.getEmail().toLowerCase();
+                    BspUser existingUser = mapEmailToUser.get(email);
+                    if (existingUser == null || !isActive(existingUser)) {
+                        mapEmailToUser.put(email, user);
+                    }
+                }
+
+                lowerFields[i] = new String[]{safeToLowerCase(user.getFirstName()),
+                        safeToLowerCase(user.getLastName()), safeToLowerCase(user.getUsername()),
+                        safeToLowerCase(user.getEmail())};
+                for (String field : lowerFields[i]) {
+                    for (int start = 0; start + NGRAM_LENGTH <= field.length(); start++) {
+                        List<Integer> indexList = mapNgramToIndexList.get(field.substring(start, start + NGRAM_LENGTH));
+                        if (indexList == null) {
+                            indexList = new ArrayList<>();
+                            mapNgramToIndexList.put(field.substring(start, start + NGRAM_LENGTH), indexList);
+                        }
+                        // Users are added in index order, so a duplicate can only be the last entry.
+                        if (indexList.isEmpty() || indexList.get(indexList.size() - 1) != i) {
+                            indexList.add(i);
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<String, List<Integer>> entry : mapNgramToIndexList.entrySet()) {
+                int[] indexes = new int[entry.getValue().size()];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = entry.getValue().get(i);
+                }
+                mapNgramToUserIndexes.put(entry.getKey(), indexes);
+            }
+        }
+
+        private static void putIfAbsent(Map<String, BspUser> map, String key, BspUser user) {
+            if (!map.containsKey(key)) {
+                map.put(key, user);
+            }
+        }
+
+        /**
+         * Returns the users that contain every query item in at least one field.  Only the users that contain an
+         * n-gram of the query are checked, using the n-gram with the fewest users.
+         */
+        private List<BspUser> find(String[] lowerQueryItems) {
+            int[] candidates = null;
+            for (String lowerQuery : lowerQueryItems) {
+                for (int start = 0; start + NGRAM_LENGTH <= lowerQuery.length(); start++) {
+                    int[] indexes = mapNgramToUserIndexes.get(lowerQuery.substring(start, start + NGRAM_LENGTH));
+                    if (indexes == null) {
+                        return Collections.emptyList();
+                    }
+                    if (candidates == null || indexes.length < candidates.length) {
+                        candidates = indexes;
+                    }
+                }
+            }
+
+            List<BspUser> results = new ArrayList<>();
+            int candidateCount = candidates == null ? sortedUsers.length : candidates.length;
+            for (int i = 0; i < candidateCount; i++) {
+                int index = candidates == null ? i : candidates[i];
+                if (allItemsMatch(lowerQueryItems, lowerFields[index])) {
+                    results.add(sortedUsers[index]);
+                }
+            }
+            return results;
+        }
+
+        private static boolean allItemsMatch(String[] lowerQueryItems, String[] userLowerFields) {
+            for (String lowerQuery : lowerQueryItems) {
+                // If none of the fields match this item, then all items are not matched
+                boolean anyFieldMatches = false;
+                for (String field : userLowerFields) {
+                    if (field.contains(lowerQuery)) {
+                        anyFieldMatches = true;
+                        break;
+                    }
+                }
+                if (!anyFieldMatches) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 
     public boolean isServerValid() {
         return serverValid;
     }
 
+    private UserIndex getUserIndex() {
+        UserIndex currentIndex = userIndex;
+        if (currentIndex == null) {
+            synchronized (this) {
+                if (userIndex == null) {
+                    refreshCache();
+                }
+                currentIndex = userIndex;
+            }
+        }
+        return currentIndex;
+    }
+
     /**
      * @return list of bsp users, sorted by lastname, firstname, username, email.
      */
-    public synchronized Map<Long, BspUser> getUsers() {
-        if (users == null) {
-            refreshCache();
-        }
-        return users;
+    public Map<Long, BspUser> getUsers() {
+        UserIndex currentIndex = getUserIndex();
+        return currentIndex == null ? Collections.<Long, BspUser>emptyMap() : currentIndex.users;
     }
 
     /**
@@ -71,12 +212,11 @@ public class BSPUserList extends AbstractCache implements Serializable {
      * @return the BSP user or null
      */
     public BspUser getByUsername(String username) {
-        for (BspUser user : getUsers().values()) {
-            if (user.getUsername().equalsIgnoreCase(username)) {
-                return user;
-            }
+        UserIndex currentIndex = getUserIndex();
+        if (username == null || currentIndex == null) {
+            return null;
         }
-        return null;
+        return currentIndex.mapUsernameToUser.get(username.toLowerCase());
     }
 
     /**
@@ -86,12 +226,11 @@ public class BSPUserList extends AbstractCache implements Serializable {
      * @return the BSP user or null
      */
     public BspUser getByBadgeId(@Nonnull String badgeId) {
-        for (BspUser user : getUsers().values()) {
-            if (badgeId.equalsIgnoreCase(user.getBadgeNumber())) {
-                return user;
-            }
+        UserIndex currentIndex = getUserIndex();
+        if (currentIndex == null) {
+            return null;
         }
-        return null;
+        return currentIndex.mapBadgeIdToUser.get(badgeId.toLowerCase());
     }
 
     /**
@@ -103,38 +242,16 @@ public class BSPUserList extends AbstractCache implements Serializable {
      */
     @Nonnull
     public List<BspUser> find(String query) {
-        if (StringUtils.isBlank(query)) {
+        UserIndex currentIndex = getUserIndex();
+        if (StringUtils.isBlank(query) || currentIndex == null) {
             // no query string supplied
             return Collections.emptyList();
         }
 
-        String[] lowerQueryItems = query.toLowerCase().split("\\s");
-        List<BspUser> results = new ArrayList<>();
-        for (BspUser user : getUsers().values()) {
-            boolean eachItemMatchesSomething = true;
-            for (String lowerQuery : lowerQueryItems) {
-                // If none of the fields match this item, then all items are not matched
-                if (!anyFieldMatches(lowerQuery, user)) {
-                    eachItemMatchesSomething = false;
-                }
-            }
-
-            if (eachItemMatchesSomething) {
-                results.add(user);
-            }
-        }
-
-        return results;
+        return currentIndex.find(query.toLowerCase().split("\\s"));
     }
 
-    private boolean anyFieldMatches(String lowerQuery, BspUser user) {
-        return safeToLowerCase(user.getFirstName()).contains(lowerQuery) ||
-               safeToLowerCase(user.getLastName()).contains(lowerQuery) ||
-               safeToLowerCase(user.getUsername()).contains(lowerQuery) ||
-               safeToLowerCase(user.getEmail()).contains(lowerQuery);
-    }
-
-    private String safeToLowerCase(String s) {
+    private static String safeToLowerCase(String s) {
         if (s == null) {
             return "";
         } else {
@@ -161,7 +278,7 @@ public class BSPUserList extends AbstractCache implements Serializable {
 
             if (!serverValid) {
                 // BSP is down
-                if (users != null) {
+                if (userIndex != null) {
                     return;
                 } else {
                     rawUsers = new ArrayList<>();
@@ -172,7 +289,7 @@ public class BSPUserList extends AbstractCache implements Serializable {
                 addQADudeUsers(rawUsers);
             }
 
-            users = rebuildUsers(rawUsers);
+            userIndex = new UserIndex(rebuildUsers(rawUsers));
 
         } catch (Exception ex) {
             logger.error("Could not refresh the user list", ex);
@@ -222,17 +339,11 @@ public class BSPUserList extends AbstractCache implements Serializable {
      * @return The matching user, null if not found
      */
     public BspUser getByEmail(String email) {
-        BspUser inactiveUser = null;
-        for (BspUser user : getUsers().values()) {
-            if (user.getEmail().equalsIgnoreCase(email)) {
-                if (isActiveUser(user)) {
-                    return user;
-                }
-                inactiveUser = user;
-            }
+        UserIndex currentIndex = getUserIndex();
+        if (email == null || currentIndex == null) {
+            return null;
         }
-
-        return inactiveUser;
+        return currentIndex.mapEmailToUser.get(email.toLowerCase());
     }
 
     /**
@@ -243,6 +354,10 @@ public class BSPUserList extends AbstractCache implements Serializable {
      * @return true if the user is active
      */
     public boolean isActiveUser(BspUser user) {
+        return isActive(user);
+    }
+
+    private static boolean isActive(BspUser user) {
         return !user.getUsername().startsWith(PERSONNEL_PREFIX);
     }
 
@@ -252,9 +367,9 @@ public class BSPUserList extends AbstractCache implements Serializable {
      * @param bspUser the user to add
      */
     public synchronized void addUser(BspUser bspUser) {
-        List<BspUser> userList = new ArrayList<>(users.values());
+        List<BspUser> userList = new ArrayList<>(getUsers().values());
         userList.add(bspUser);
-        users = rebuildUsers(userList);
+        userIndex = new UserIndex(rebuildUsers(userList));
     }
 
     public static class QADudeUser extends BspUser {
@@ -12,6 +12,7 @@ import org.broadinstitute.gpinformatics.infrastructure.spreadsheet.SpreadsheetCr
 import org.owasp.encoder.Encode;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,6 +58,17 @@ public class ConfigurableList {
         void reset();
     }
 
+    /**
+     * Receives rows from {@link #flushRows(RowWriter)}.
+     */
+    public interface RowWriter {
+        /**
+         * @param headers         the header of each value, which determines its column
+         * @param formattedValues the values, in the order they were added to the row
+         */
+        void writeRow(List<Header> headers, List<String> formattedValues) throws IOException;
+    }
+
     /**
      * Allow multiple named AddRowsListener instances for a single search
      */
@@ -528,6 +540,44 @@ public class ConfigurableList {
         pageStartingRow = rows.size();
     }
 
+    /**
+     * Passes the rows added so far to a writer, in the order they were added, then discards them.  This allows a
+     * download of many pages to hold only one page of rows in memory.  Rows are not sorted, and nested tables are not
+     * written, see {@link #hasNestedTables()}.
+     *
+     * @param rowWriter receives each row
+     */
+    public void flushRows(RowWriter rowWriter) throws IOException {
+        for (Row row : rows) {
+            List<Header> headers = new ArrayList<>(row.getCells().size());
+            List<String> formattedValues = new ArrayList<>(row.getCells().size());
+            for (Cell cell : row.getCells()) {
+                headers.add(cell.getHeader());
+                formattedValues.add(cell.getFormattedValue());
+            }
+            rowWriter.writeRow(headers, formattedValues);
+        }
+        rows.clear();
+        pageStartingRow = 0;
+    }
+
+    /**
+     * @return true if any column is a nested table, which {@link #flushRows(RowWriter)} can't write
+     */
+    public boolean hasNestedTables() {
+        for (ColumnTabulation columnTabulation : nonPluginTabulations.values()) {
+            if (columnTabulation.isNestedParent()) {
+                return true;
+            }
+        }
+        for (ColumnTabulation columnTabulation : pluginTabulations.values()) {
+            if (columnTabulation.isNestedParent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @SuppressWarnings("unchecked")
     private void recurseColumns(SearchContext context, Object entity, Row row, ColumnTabulation columnTabulation,
             String headerGroupName) {
@@ -18,6 +18,7 @@ import org.broadinstitute.gpinformatics.infrastructure.search.SearchContext;
 import org.broadinstitute.gpinformatics.infrastructure.search.SearchDefinitionFactory;
 import org.broadinstitute.gpinformatics.infrastructure.search.SearchInstance;
 import org.broadinstitute.gpinformatics.infrastructure.search.SearchTerm;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceCache;
 import org.broadinstitute.gpinformatics.mercury.presentation.UserBean;
 import org.hibernate.Criteria;
 
@@ -28,6 +29,8 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -70,6 +73,9 @@ public class ConfigurableListFactory {
     @Inject
     private ConstrainedValueDao constrainedValueDao;
 
+    @Inject
+    private SampleInstanceCache sampleInstanceCache;
+
     /**
      * Create a ConfigurableList instance.
      * TODO jms 07/2015 not used, replace with ConfigurableList constructor as in other ConfigurableListActionBean methods
@@ -452,7 +458,53 @@ public class ConfigurableListFactory {
 
     public ConfigurableList.ResultList fetchAllPages(PaginationUtil.Pagination pagination,
             SearchInstance searchInstance, String downloadColumnSetName, String entityName) {
-        // Determine which columns the user wants to download
+        ConfigurableList configurableList = createDownloadList(searchInstance, downloadColumnSetName, entityName);
+
+        // Get each page and add it to the configurable list
+        SearchContext context = buildDownloadContext(pagination, searchInstance, entityName);
+        for (int i = 0; i < pagination.getNumberPages(); i++) {
+            List<?> resultsPage = PaginationUtil.getPage(threadEntityManager.getEntityManager(), pagination, i);
+            configurableList.addRows(resultsPage, context);
+            threadEntityManager.getEntityManager().clear();
+        }
+        return configurableList.getResultList(false);
+    }
+
+    /**
+     * Downloads all pages of search results, writing each page as soon as it has been fetched, then discarding it
+     * and clearing the persistence context, so memory use doesn't depend on the number of results.  Lists with
+     * nested tables can't be streamed, so they are built in memory, as in {@link #fetchAllPages}.
+     *
+     * @param out stream to write to, which the caller must close
+     */
+    public void streamAllPages(PaginationUtil.Pagination pagination, SearchInstance searchInstance,
+            String downloadColumnSetName, String entityName, StreamingResultWriter.Format format, OutputStream out)
+            throws IOException {
+        ConfigurableList configurableList = createDownloadList(searchInstance, downloadColumnSetName, entityName);
+        if (configurableList.hasNestedTables()) {
+            StreamingResultWriter.write(
+                    fetchAllPages(pagination, searchInstance, downloadColumnSetName, entityName).getAsArray(),
+                    format, out);
+            return;
+        }
+
+        SearchContext context = buildDownloadContext(pagination, searchInstance, entityName);
+        try (StreamingResultWriter writer = new StreamingResultWriter(format)) {
+            for (int i = 0; i < pagination.getNumberPages(); i++) {
+                List<?> resultsPage = PaginationUtil.getPage(threadEntityManager.getEntityManager(), pagination, i);
+                configurableList.addRows(resultsPage, context);
+                configurableList.flushRows(writer);
+                threadEntityManager.getEntityManager().clear();
+            }
+            writer.finish(configurableList, out);
+        }
+    }
+
+    /**
+     * Creates an empty list with the columns the user wants to download.
+     */
+    private ConfigurableList createDownloadList(SearchInstance searchInstance, String downloadColumnSetName,
+            String entityName) {
         List<ColumnTabulation> columnTabulations;
         if (downloadColumnSetName.equals("Viewed Columns")) {
             columnTabulations = searchInstance.buildViewedColumnTabulations(entityName);
@@ -465,17 +517,15 @@ public class ConfigurableListFactory {
 
         // Add any row listeners
         configurableList.addAddRowsListeners(SearchDefinitionFactory.getForEntity(entityName));
+        return configurableList;
+    }
 
-        // Get each page and add it to the configurable list
+    private SearchContext buildDownloadContext(PaginationUtil.Pagination pagination, SearchInstance searchInstance,
+            String entityName) {
         SearchContext context = buildSearchContext(searchInstance, entityName);
         context.setPagination(pagination);
         context.setResultCellTargetPlatform(SearchContext.ResultCellTargetPlatform.TEXT);
-        for (int i = 0; i < pagination.getNumberPages(); i++) {
-            List<?> resultsPage = PaginationUtil.getPage(threadEntityManager.getEntityManager(), pagination, i);
-            configurableList.addRows(resultsPage, context);
-            threadEntityManager.getEntityManager().clear();
-        }
-        return configurableList.getResultList(false);
+        return context;
     }
 
     /**
@@ -493,6 +543,7 @@ public class ConfigurableListFactory {
         evalContext.setQuoteLink(quoteLink);
         evalContext.setSapQuoteLink(sapQuoteLink);
         evalContext.setOptionValueDao(constrainedValueDao);
+        evalContext.setSampleInstanceCache(sampleInstanceCache);
         return evalContext;
     }
 }
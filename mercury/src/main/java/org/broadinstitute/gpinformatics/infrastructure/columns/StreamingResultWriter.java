@@ -0,0 +1,282 @@
+package org.broadinstitute.gpinformatics.infrastructure.columns;
+
+import com.opencsv.CSVWriter;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.broadinstitute.gpinformatics.infrastructure.spreadsheet.SpreadsheetCreator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the rows of a {@link ConfigurableList} to an XLSX or CSV file, a page at a time, so memory use doesn't grow
+ * with the number of rows.
+ * <p/>
+ * The headers of a list aren't known until the last page has been added (e.g. a trait column gets a header for each
+ * distinct value), and their column order can change when a header is added, so rows are spooled to a temporary file,
+ * with a reference to the header of each cell.  {@link #finish} then writes the headers, followed by the spooled rows,
+ * to a streaming workbook or CSV writer.
+ * <pre>
+ * try (StreamingResultWriter writer = new StreamingResultWriter(format)) {
+ *     for each page {
+ *         configurableList.addRows(page, context);
+ *         configurableList.flushRows(writer);
+ *     }
+ *     writer.finish(configurableList, out);
+ * }
+ * </pre>
+ */
+public class StreamingResultWriter implements ConfigurableList.RowWriter, Closeable {
+
+    public enum Format {
+        XLSX("List.xlsx", "application/vnd.ms-excel"),
+        CSV("List.csv", "text/csv");
+
+        private final String fileName;
+        private final String mimeType;
+
+        Format(String fileName, String mimeType) {
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    /** Number of XLSX rows kept in memory before they are flushed to the workbook's temporary file. */
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    private static final int NULL_VALUE = -1;
+
+    private final Format format;
+
+    private final File spoolFile;
+
+    private final DataOutputStream spool;
+
+    /** Identifies each Header in the spool by the order in which it was first seen. */
+    private final Map<ConfigurableList.Header, Integer> mapHeaderToId = new IdentityHashMap<>();
+
+    private final List<ConfigurableList.Header> headersById = new ArrayList<>();
+
+    private int rowCount;
+
+    public StreamingResultWriter(Format format) throws IOException {
+        this.format = format;
+        spoolFile = File.createTempFile("ConfigurableList", ".spool");
+        spool = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spoolFile)));
+    }
+
+    @Override
+    public void writeRow(List<ConfigurableList.Header> headers, List<String> formattedValues) throws IOException {
+        spool.writeInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            ConfigurableList.Header header = headers.get(i);
+            Integer headerId = mapHeaderToId.get(header);
+            if (headerId == null) {
+                headerId = headersById.size();
+                mapHeaderToId.put(header, headerId);
+                headersById.add(header);
+            }
+            spool.writeInt(headerId);
+            writeString(formattedValues.get(i));
+        }
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes the headers and all rows.
+     *
+     * @param configurableList the list that supplied the rows, after the last page has been added to it
+     * @param out              stream to write to, which the caller must close
+     */
+    public void finish(ConfigurableList configurableList, OutputStream out) throws IOException {
+        spool.close();
+        List<ConfigurableList.Header> headers = configurableList.getHeaders();
+        boolean headerRow2Present = false;
+        for (ConfigurableList.Header header : headers) {
+            if (header.getDownloadHeader2() != null && !header.getDownloadHeader2().isEmpty()) {
+                headerRow2Present = true;
+                break;
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spoolFile)))) {
+            if (format == Format.XLSX) {
+                writeXlsx(headers, headerRow2Present, in, out);
+            } else {
+                writeCsv(headers, headerRow2Present, in, out);
+            }
+        }
+    }
+
+    /**
+     * Writes rows that have already been built in memory, e.g. by {@link ConfigurableList.ResultList#getAsArray()}.
+     */
+    public static void write(Object[][] rows, Format format, OutputStream out) throws IOException {
+        if (format == Format.XLSX) {
+            SpreadsheetCreator.createSpreadsheet("Sample Info", rows, out, SpreadsheetCreator.Type.XLSX);
+        } else {
+            CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (Object[] row : rows) {
+                String[] values = new String[row.length];
+                for (int i = 0; i < row.length; i++) {
+                    values[i] = row[i] == null ? null : row[i].toString();
+                }
+                csvWriter.writeNext(values);
+            }
+            csvWriter.flush();
+        }
+    }
+
+    private void writeXlsx(List<ConfigurableList.Header> headers, boolean headerRow2Present, DataInputStream in,
+                           OutputStream out) throws IOException {
+        int headerRowCount = headerRow2Present ? 2 : 1;
+        if (rowCount + headerRowCount > SpreadsheetVersion.EXCEL2007.getMaxRows()) {
+            throw new RuntimeException(String.format("Cannot create a spreadsheet with more then %d rows.",
+                    SpreadsheetVersion.EXCEL2007.getMaxRows()));
+        }
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("Sample Info");
+            DataFormat dataFormat = workbook.createDataFormat();
+            Font font = workbook.createFont();
+            font.setFontHeightInPoints((short) 10);
+            font.setColor(Font.COLOR_NORMAL);
+            Font headerFont = workbook.createFont();
+            headerFont.setFontHeightInPoints((short) 10);
+            headerFont.setColor(Font.COLOR_NORMAL);
+            headerFont.setBold(true);
+            CellStyle textStyle = SpreadsheetCreator.POIBuiltinFormats.Text.createStyle(workbook, font, dataFormat);
+            CellStyle headerStyle = SpreadsheetCreator.POIBuiltinFormats.Header.createHeaderStyle(workbook,
+                    headerFont, dataFormat);
+
+            Row headerRow1 = sheet.createRow(0);
+            Row headerRow2 = headerRow2Present ? sheet.createRow(1) : null;
+            for (int i = 0; i < headers.size(); i++) {
+                ConfigurableList.Header header = headers.get(i);
+                Cell cell = headerRow1.createCell(i);
+                cell.setCellStyle(headerStyle);
+                cell.setCellValue(header.getDownloadHeader1());
+                if (headerRow2 != null && header.getDownloadHeader2() != null &&
+                    !header.getDownloadHeader2().isEmpty()) {
+                    cell = headerRow2.createCell(i);
+                    cell.setCellStyle(headerStyle);
+                    cell.setCellValue(header.getDownloadHeader2());
+                }
+            }
+
+            for (int rowNum = 0; rowNum < rowCount; rowNum++) {
+                String[] values = readRow(in, headers.size());
+                Row row = sheet.createRow(rowNum + headerRowCount);
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        Cell cell = row.createCell(i);
+                        cell.setCellStyle(textStyle);
+                        cell.setCellValue(values[i]);
+                    }
+                }
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private void writeCsv(List<ConfigurableList.Header> headers, boolean headerRow2Present, DataInputStream in,
+                          OutputStream out) throws IOException {
+        CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        String[] headerRow1 = new String[headers.size()];
+        String[] headerRow2 = new String[headers.size()];
+        for (int i = 0; i < headers.size(); i++) {
+            headerRow1[i] = headers.get(i).getDownloadHeader1();
+            headerRow2[i] = headers.get(i).getDownloadHeader2();
+        }
+        csvWriter.writeNext(headerRow1);
+        if (headerRow2Present) {
+            csvWriter.writeNext(headerRow2);
+        }
+        for (int rowNum = 0; rowNum < rowCount; rowNum++) {
+            csvWriter.writeNext(readRow(in, headers.size()));
+        }
+        // Flushes, but doesn't close, the caller's stream.
+        csvWriter.flush();
+    }
+
+    /**
+     * Reads a spooled row, placing each value in the column of its header.  As in
+     * {@link ConfigurableList#getResultList(boolean)}, if a row has two cells for a header, the last one wins.
+     */
+    private String[] readRow(DataInputStream in, int columnCount) throws IOException {
+        String[] values = new String[columnCount];
+        int cellCount = in.readInt();
+        for (int i = 0; i < cellCount; i++) {
+            int headerId = in.readInt();
+            String value = readString(in);
+            values[headersById.get(headerId).getOrder()] = value;
+        }
+        return values;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            spool.writeInt(NULL_VALUE);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            spool.writeInt(bytes.length);
+            spool.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the spool file.
+     */
+    @Override
+    public void close() throws IOException {
+        spool.close();
+        if (!spoolFile.delete()) {
+            spoolFile.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.broadinstitute.gpinformatics.infrastructure.common;
+
+import org.jboss.weld.context.bound.BoundRequestContext;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Use this class if you need to execute some code inside a Request Context on a thread that has none, e.g. a task
+ * submitted to a ManagedExecutorService.  Request scoped beans, such as the DAOs and their
+ * {@link org.broadinstitute.gpinformatics.infrastructure.jpa.ThreadEntityManager}, are created fresh for the
+ * context and destroyed when it ends, so each call gets its own persistence context.
+ */
+@Dependent
+public class RequestContextUtility implements Serializable {
+    private static final long serialVersionUID = 20190801L;
+    private final BoundRequestContext requestContext;
+
+    @Inject
+    public RequestContextUtility(BoundRequestContext requestContext) {
+        this.requestContext = requestContext;
+    }
+
+    /**
+     * Execute a function in a new request context.
+     * @param function the function to execute.
+     */
+    public void executeInContext(SessionContextUtility.Function function) {
+        try {
+            requestContext.associate(new HashMap<String, Object>());
+            requestContext.activate();
+
+            function.apply();
+
+        } finally {
+            // Destroys the request scoped beans, which closes the extended persistence context.
+            requestContext.invalidate();
+            requestContext.deactivate();
+        }
+    }
+}
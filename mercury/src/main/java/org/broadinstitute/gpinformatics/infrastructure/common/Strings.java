@@ -86,6 +86,14 @@ public class Strings {
      * Process one file
      */
     public static List<String> process(InputStream inStream) {
+        return process(inStream, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Process the start of one file, stopping after maxStrings strings have been found, so the rest of the stream is
+     * not read (or decompressed).
+     */
+    public static List<String> process(InputStream inStream, int maxStrings) {
         List<String> output = new ArrayList<>();
         try {
             int i;
@@ -96,7 +104,7 @@ public class Strings {
             StringBuilder sb = new StringBuilder();
 
             // Read a byte, cast it to char, check if part of printable string.
-            while ((i = is.read()) != -1) {
+            while (output.size() < maxStrings && (i = is.read()) != -1) {
                 ch = (char) i;
                 if (isStringChar(ch) || (sb.length() > 0 && ch == ' '))
                 // If so, build up string.
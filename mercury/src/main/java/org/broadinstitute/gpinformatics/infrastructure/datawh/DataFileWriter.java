@@ -0,0 +1,369 @@
+package org.broadinstitute.gpinformatics.infrastructure.datawh;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes numbered sqlLoader records to an ETL data file, encoding fields directly into a reusable buffer over a
+ * FileChannel, rather than building a String per field and per record.  Fields are formatted the same way as the
+ * GenericEntityEtl.format methods.
+ * <p/>
+ * A record is either written whole, with {@link #writeRecord(String)}, or field by field:
+ * <pre>
+ *     writer.startRecord(etlDateStr, false).field(eventId).field(eventDate).field(barcode).endRecord();
+ * </pre>
+ * Records are appended to an existing file, continuing its line numbering; its lines are counted with one pass over
+ * its bytes.
+ * <p/>
+ * Not thread safe; each thread writing a file must have its own writer.
+ */
+public class DataFileWriter implements Closeable {
+    private static final Log logger = LogFactory.getLog(DataFileWriter.class);
+
+    /** Size of the character and byte buffers. */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Characters left in the buffer below which a completed record is encoded and written. */
+    private static final int FLUSH_THRESHOLD = 4 * 1024;
+
+    /** Maximum number of idle buffers kept for reuse. */
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final char DELIMITER = ExtractTransform.DELIMITER.charAt(0);
+
+    private static final char QUOTE = '"';
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Idle buffers, reused by the next writer, since ETL opens many data files per run. */
+    private static final Queue<Buffers> bufferPool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The character and byte buffers, and the encoder between them.
+     */
+    private static class Buffers {
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        // Replaces unmappable characters, as FileWriter does.
+        private final CharsetEncoder encoder = CHARSET.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final char[] digits = new char[20];
+    }
+
+    private final Path path;
+    private long lineCount;
+    private FileChannel channel;
+    private Buffers buffers;
+    private Calendar calendar;
+
+    /**
+     * @param filename the data file, which is appended to if it exists
+     */
+    public DataFileWriter(String filename) {
+        path = Paths.get(filename);
+        try {
+            lineCount = countLines(path);
+        } catch (IOException e) {
+            logger.error("Cannot count the lines in " + filename, e);
+        }
+    }
+
+    /**
+     * Returns the number of lines in the file, including lines written before this writer was created.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public String getFilename() {
+        return path.toString();
+    }
+
+    /**
+     * Writes a record, prefixed by its line number.
+     */
+    public void writeRecord(String record) throws IOException {
+        startLine();
+        put(record);
+        endRecord();
+    }
+
+    /**
+     * Starts a record: line number, etl date, and whether the entity was deleted.
+     */
+    public DataFileWriter startRecord(String etlDateStr, boolean isDelete) throws IOException {
+        startLine();
+        put(etlDateStr);
+        putDelimiter();
+        putChar(isDelete ? 'T' : 'F');
+        return this;
+    }
+
+    /**
+     * Adds a string field; null is empty, newlines become spaces, and a value containing the delimiter is quoted.
+     */
+    public DataFileWriter field(String string) throws IOException {
+        putDelimiter();
+        if (string == null) {
+            return this;
+        }
+        boolean quoted = string.indexOf(DELIMITER) >= 0;
+        if (quoted) {
+            putChar(QUOTE);
+        }
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '\n') {
+                putChar(' ');
+            } else {
+                if (quoted && c == QUOTE) {
+                    putChar(QUOTE);
+                }
+                putChar(c);
+            }
+        }
+        if (quoted) {
+            putChar(QUOTE);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a numeric field; null is empty.
+     */
+    public DataFileWriter field(Number number) throws IOException {
+        putDelimiter();
+        if (number instanceof Long || number instanceof Integer) {
+            putLong(number.longValue());
+        } else if (number != null) {
+            put(number.toString());
+        }
+        return this;
+    }
+
+    public DataFileWriter field(long number) throws IOException {
+        putDelimiter();
+        putLong(number);
+        return this;
+    }
+
+    /**
+     * Adds T or F.
+     */
+    public DataFileWriter field(boolean bool) throws IOException {
+        putDelimiter();
+        putChar(bool ? 'T' : 'F');
+        return this;
+    }
+
+    /**
+     * Adds a timestamp in the format of {@link ExtractTransform#formatTimestamp(Date)}; null is empty.
+     */
+    public DataFileWriter field(Date date) throws IOException {
+        putDelimiter();
+        if (date != null) {
+            if (calendar == null) {
+                calendar = Calendar.getInstance();
+            }
+            calendar.setTime(date);
+            ensureRoom(14);
+            putDigits(calendar.get(Calendar.YEAR), 4);
+            putDigits(calendar.get(Calendar.MONTH) + 1, 2);
+            putDigits(calendar.get(Calendar.DAY_OF_MONTH), 2);
+            putDigits(calendar.get(Calendar.HOUR_OF_DAY), 2);
+            putDigits(calendar.get(Calendar.MINUTE), 2);
+            putDigits(calendar.get(Calendar.SECOND), 2);
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current record.
+     */
+    public void endRecord() throws IOException {
+        put(LINE_SEPARATOR);
+        if (buffers.chars.remaining() < FLUSH_THRESHOLD) {
+            writeChars(false);
+        }
+    }
+
+    /**
+     * Writes any buffered records and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeChars(true);
+        } finally {
+            channel.close();
+            channel = null;
+            if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+                bufferPool.add(buffers);
+            }
+            buffers = null;
+        }
+    }
+
+    /**
+     * Opens the file on the first record, and starts a line with its number.
+     */
+    private void startLine() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            buffers = bufferPool.poll();
+            if (buffers == null) {
+                buffers = new Buffers();
+            }
+            buffers.chars.clear();
+            buffers.bytes.clear();
+            buffers.encoder.reset();
+        }
+        lineCount++;
+        putLong(lineCount);
+        putChar(DELIMITER);
+    }
+
+    private void putDelimiter() throws IOException {
+        putChar(DELIMITER);
+    }
+
+    private void putChar(char c) throws IOException {
+        if (!buffers.chars.hasRemaining()) {
+            writeChars(false);
+        }
+        buffers.chars.put(c);
+    }
+
+    private void put(String string) throws IOException {
+        int start = 0;
+        while (start < string.length()) {
+            if (!buffers.chars.hasRemaining()) {
+                writeChars(false);
+            }
+            int end = Math.min(string.length(), start + buffers.chars.remaining());
+            buffers.chars.put(string, start, end);
+            start = end;
+        }
+    }
+
+    private void putLong(long number) throws IOException {
+        if (number == Long.MIN_VALUE) {
+            put(Long.toString(number));
+            return;
+        }
+        char[] digits = buffers.digits;
+        long remainder = Math.abs(number);
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + remainder % 10);
+            remainder /= 10;
+        } while (remainder > 0);
+        if (number < 0) {
+            digits[--start] = '-';
+        }
+        ensureRoom(digits.length - start);
+        buffers.chars.put(digits, start, digits.length - start);
+    }
+
+    /** Puts a non-negative number, zero padded to the given width; the caller ensures there is room. */
+    private void putDigits(int number, int width) {
+        char[] digits = buffers.digits;
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        buffers.chars.put(digits, 0, width);
+    }
+
+    private void ensureRoom(int length) throws IOException {
+        if (buffers.chars.remaining() < length) {
+            writeChars(false);
+        }
+    }
+
+    /**
+     * Encodes the buffered characters and writes the bytes to the file.
+     *
+     * @param endOfInput true when closing, to flush the encoder
+     */
+    private void writeChars(boolean endOfInput) throws IOException {
+        CharBuffer chars = buffers.chars;
+        ByteBuffer bytes = buffers.bytes;
+        CharsetEncoder encoder = buffers.encoder;
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                writeBytes();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+        }
+        writeBytes();
+        chars.compact();
+    }
+
+    private void writeBytes() throws IOException {
+        ByteBuffer bytes = buffers.bytes;
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Returns the number of line feeds in the file, or zero if it doesn't exist.
+     */
+    private static long countLines(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        long lines = 0L;
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (fileChannel.read(bytes) > 0) {
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    if (bytes.get() == '\n') {
+                        lines++;
+                    }
+                }
+                bytes.clear();
+            }
+        }
+        return lines;
+    }
+}
@@ -17,6 +17,9 @@ import java.io.Serializable;
 public class EtlConfig extends AbstractConfig implements Serializable {
     private String datawhEtlDirRoot;
 
+    /** Number of etl partitions that incremental etl runs concurrently.  0 or 1 runs all etl classes serially. */
+    private int parallelEtlThreads;
+
     public EtlConfig(){}
 
     @Inject
@@ -32,4 +35,13 @@ public class EtlConfig extends AbstractConfig implements Serializable {
     public void setDatawhEtlDirRoot(String datawhEtlDirRoot) {
         this.datawhEtlDirRoot = datawhEtlDirRoot;
     }
+
+    public int getParallelEtlThreads() {
+        return parallelEtlThreads;
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setParallelEtlThreads(int parallelEtlThreads) {
+        this.parallelEtlThreads = parallelEtlThreads;
+    }
 }
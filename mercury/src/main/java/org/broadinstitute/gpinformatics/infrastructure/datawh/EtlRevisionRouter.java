@@ -0,0 +1,143 @@
+package org.broadinstitute.gpinformatics.infrastructure.datawh;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes the audit revisions of an incremental etl run to the etl classes whose entities they changed, using the
+ * entity names that Envers records for each revision.  An etl class only queries the audit tables for its own
+ * revisions, and skips the query when there are none.
+ * <p/>
+ * Revisions are routed to an etl class if they changed its entity class, a subclass or a superclass of it.  Entity
+ * names that aren't classes are routed to every etl class, as are revisions whose entity names are unknown.
+ * Also records the routed revision count and audit query time of each etl instance, for the run stats.
+ */
+public class EtlRevisionRouter {
+    private static final Log log = LogFactory.getLog(EtlRevisionRouter.class);
+
+    /** All revisions of the run. */
+    private final Set<Long> revIds;
+
+    /** The entity names of each revision, or null if not known. */
+    private final Map<Long, ? extends Collection<String>> entityNamesByRevId;
+
+    private final Map<Class<?>, Set<Long>> revIdsByEntityClass = new ConcurrentHashMap<>();
+
+    private final Map<Object, AuditQueryStats> auditQueryStats = new ConcurrentHashMap<>();
+
+    /**
+     * The revisions routed to one etl instance, and the time spent querying their audits.
+     */
+    public static class AuditQueryStats {
+        private final int routedRevCount;
+        private final long queryMsec;
+
+        AuditQueryStats(int routedRevCount, long queryMsec) {
+            this.routedRevCount = routedRevCount;
+            this.queryMsec = queryMsec;
+        }
+
+        public int getRoutedRevCount() {
+            return routedRevCount;
+        }
+
+        public long getQueryMsec() {
+            return queryMsec;
+        }
+    }
+
+    /**
+     * Routes all the revisions to every etl class.
+     */
+    public EtlRevisionRouter(Set<Long> revIds) {
+        this.revIds = Collections.unmodifiableSet(revIds);
+        entityNamesByRevId = null;
+    }
+
+    /**
+     * Routes each revision to the etl classes of the entities it changed.
+     *
+     * @param entityNamesByRevId the revision ids of the run, and the names of the entity classes each one changed
+     */
+    public EtlRevisionRouter(Map<Long, ? extends Collection<String>> entityNamesByRevId) {
+        revIds = Collections.unmodifiableSet(new TreeSet<>(entityNamesByRevId.keySet()));
+        this.entityNamesByRevId = entityNamesByRevId;
+    }
+
+    /**
+     * Returns all the revisions of the run.
+     */
+    public Set<Long> getRevIds() {
+        return revIds;
+    }
+
+    /**
+     * Returns the revisions that changed entities of the class, or all revisions if the class is null.
+     */
+    public Set<Long> getRevIds(Class<?> entityClass) {
+        if (entityClass == null || entityNamesByRevId == null) {
+            return revIds;
+        }
+        Set<Long> routedRevIds = revIdsByEntityClass.get(entityClass);
+        if (routedRevIds == null) {
+            routedRevIds = Collections.unmodifiableSet(routeRevIds(entityClass));
+            revIdsByEntityClass.put(entityClass, routedRevIds);
+        }
+        return routedRevIds;
+    }
+
+    private Set<Long> routeRevIds(Class<?> entityClass) {
+        Set<Long> routedRevIds = new TreeSet<>();
+        Map<String, Boolean> isRoutedByName = new HashMap<>();
+        for (Map.Entry<Long, ? extends Collection<String>> entry : entityNamesByRevId.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                routedRevIds.add(entry.getKey());
+                continue;
+            }
+            for (String entityName : entry.getValue()) {
+                Boolean isRouted = isRoutedByName.get(entityName);
+                if (isRouted == null) {
+                    isRouted = isRouted(entityClass, entityName);
+                    isRoutedByName.put(entityName, isRouted);
+                }
+                if (isRouted) {
+                    routedRevIds.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return routedRevIds;
+    }
+
+    private static boolean isRouted(Class<?> entityClass, String entityName) {
+        try {
+            Class<?> changedClass = Class.forName(entityName, false, entityClass.getClassLoader());
+            return entityClass.isAssignableFrom(changedClass) || changedClass.isAssignableFrom(entityClass);
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.debug("Routing revisions of unknown entity " + entityName + " to " + entityClass.getSimpleName());
+            return true;
+        }
+    }
+
+    /**
+     * Records the audit query of an etl instance.
+     */
+    void recordAuditQuery(Object etlInstance, int routedRevCount, long queryMsec) {
+        auditQueryStats.put(etlInstance, new AuditQueryStats(routedRevCount, queryMsec));
+    }
+
+    /**
+     * Returns the audit query stats of an etl instance, or null if it didn't record any.
+     */
+    public AuditQueryStats getAuditQueryStats(Object etlInstance) {
+        return auditQueryStats.get(etlInstance);
+    }
+}
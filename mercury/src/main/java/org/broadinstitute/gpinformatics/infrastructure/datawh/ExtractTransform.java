@@ -9,14 +9,17 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.common.RequestContextUtility;
 import org.broadinstitute.gpinformatics.infrastructure.common.SessionContextUtility;
 import org.broadinstitute.gpinformatics.infrastructure.datawh.LabEventEtl.EventFactDto;
 import org.broadinstitute.gpinformatics.infrastructure.datawh.SequencingSampleFactEtl.SequencingRunDto;
 import org.broadinstitute.gpinformatics.infrastructure.deployment.Deployment;
 import org.broadinstitute.gpinformatics.infrastructure.deployment.MercuryConfiguration;
 import org.broadinstitute.gpinformatics.mercury.control.dao.envers.AuditReaderDao;
+import org.broadinstitute.gpinformatics.mercury.control.dao.envers.AuditedRevDto;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Resource;
 import javax.ejb.TransactionManagement;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -35,11 +38,21 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 
 import static javax.ejb.TransactionManagementType.BEAN;
@@ -62,6 +75,11 @@ import static javax.ejb.TransactionManagementType.BEAN;
  * Concurrency management is handled through a semaphore, and this is why this is not defined as a @Singleton
  * and using @ConcurrencyManagement(ConcurrencyManagementType.BEAN).  CDI does not have concurrency management
  * and that is why it's handled manually.
+ * <p/>
+ * When parallelEtlThreads is configured, incremental etl groups the etl classes into partitions that share no
+ * data files, and runs the partitions concurrently on the managed executor.  Each partition thread has its own
+ * request context, and so its own persistence context.  The ready file and last etl run file are still only
+ * written after all partitions succeed.
  */
 
 @RequestScoped
@@ -138,6 +156,8 @@ public class ExtractTransform implements Serializable {
     private static long incrementalRunStartTime = System.currentTimeMillis();  // only useful for logging
     private static boolean loggedConfigError = false;
     private static EtlConfig etlConfig = null;
+    private static int parallelEtlThreads = 0;
+    private static volatile List<EtlInstanceStats> lastRunStats = Collections.emptyList();
     private final Collection<GenericEntityEtl> etlInstances = new HashSet<>();
 
     @Inject
@@ -149,6 +169,13 @@ public class ExtractTransform implements Serializable {
     @Inject
     private SessionContextUtility sessionContextUtility;
 
+    @Inject
+    private RequestContextUtility requestContextUtility;
+
+    /** Runs the etl partitions when parallelEtlThreads is configured. */
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ExecutorService executorService;
+
     // A separate instance from one used by incremental etl.
     @Inject
     private LabEventEtl labEventEtlAnalysis;
@@ -234,6 +261,17 @@ public class ExtractTransform implements Serializable {
         this.etlInstances.addAll(etlInstances);
     }
 
+    /**
+     * Constructor for testing parallel etl.
+     */
+    public ExtractTransform(AuditReaderDao auditReaderDao, SessionContextUtility sessionContextUtility,
+                            RequestContextUtility requestContextUtility, ExecutorService executorService,
+                            Collection<GenericEntityEtl> etlInstances) {
+        this(auditReaderDao, sessionContextUtility, etlInstances);
+        this.requestContextUtility = requestContextUtility;
+        this.executorService = executorService;
+    }
+
     /**
      * "0" is used as a sentinel value for start/end times,
      *
@@ -373,8 +411,19 @@ public class ExtractTransform implements Serializable {
                 @Override
                 public void apply() {
                     try {
-                        // Gets the audit revisions for the given interval.
-                        SortedMap<Long, Date> revs = auditReaderDao.fetchAuditIds(startTimeSec, endTimeSec);
+                        // Gets the audit revisions for the given interval, and the entities each one changed.
+                        SortedMap<Long, Date> revs = new TreeMap<>();
+                        Map<Long, Set<String>> entityNamesByRevId = new HashMap<>();
+                        for (AuditedRevDto auditedRevDto : auditReaderDao.fetchAuditIds(startTimeSec, endTimeSec,
+                                AuditReaderDao.IS_ANY_USER, null)) {
+                            revs.put(auditedRevDto.getRevId(), auditedRevDto.getRevDate());
+                            Set<String> entityNames = entityNamesByRevId.get(auditedRevDto.getRevId());
+                            if (entityNames == null) {
+                                entityNames = new HashSet<>();
+                                entityNamesByRevId.put(auditedRevDto.getRevId(), entityNames);
+                            }
+                            entityNames.addAll(auditedRevDto.getEntityTypeNames());
+                        }
 
                         // Limits batch size and sets end date accordingly.
                         ImmutablePair<SortedMap<Long, Date>, Long> revsAndDate = limitBatchSize(revs, endTimeSec);
@@ -389,10 +438,9 @@ public class ExtractTransform implements Serializable {
 
                         int recordCount = 0;
                         if (!revsAndDate.left.isEmpty()) {
-                            // The order of ETL is not significant since import tables have no referential integrity.
-                            for (GenericEntityEtl<?, ?> etlInstance : etlInstances) {
-                                recordCount += etlInstance.doIncrementalEtl(revsAndDate.left.keySet(), actualEtlDateStr);
-                            }
+                            entityNamesByRevId.keySet().retainAll(revsAndDate.left.keySet());
+                            recordCount = runIncrementalEtl(new EtlRevisionRouter(entityNamesByRevId),
+                                    actualEtlDateStr);
                         }
                         countDateException.setLeft(recordCount);
                         countDateException.setMiddle(actualEtlDateStr);
@@ -413,6 +461,215 @@ public class ExtractTransform implements Serializable {
         return countDateException;
     }
 
+    /**
+     * Runs incremental etl on each of the etl instances and returns the total record count.
+     * The order of ETL is not significant since import tables have no referential integrity.
+     * Each etl instance only queries the audits of the revisions that the router gives it.
+     */
+    private int runIncrementalEtl(EtlRevisionRouter revisionRouter, String etlDateStr) throws Exception {
+        Queue<EtlInstanceStats> stats = new ConcurrentLinkedQueue<>();
+        try {
+            if (parallelEtlThreads > 1 && executorService != null) {
+                runPartitions(partitionByDataFile(etlInstances), revisionRouter, etlDateStr, stats);
+            } else {
+                for (GenericEntityEtl<?, ?> etlInstance : etlInstances) {
+                    stats.add(runEtlInstance(etlInstance, revisionRouter, etlDateStr));
+                }
+            }
+        } finally {
+            logRunStats(stats);
+        }
+
+        int recordCount = 0;
+        for (EtlInstanceStats stat : stats) {
+            recordCount += stat.getRecordCount();
+        }
+        return recordCount;
+    }
+
+    /**
+     * Runs the partitions on at most parallelEtlThreads threads of the executor.  Each thread takes partitions from
+     * a shared queue until none are left, and runs the etl instances of a partition serially.  Waits for all threads
+     * to finish, then re-throws the first exception from any partition.
+     */
+    private void runPartitions(List<List<GenericEntityEtl<?, ?>>> partitions,
+                               final EtlRevisionRouter revisionRouter,
+                               final String etlDateStr, final Queue<EtlInstanceStats> stats) throws Exception {
+        final Queue<List<GenericEntityEtl<?, ?>>> pendingPartitions = new ConcurrentLinkedQueue<>(partitions);
+        final Queue<Exception> exceptions = new ConcurrentLinkedQueue<>();
+        int threadCount = Math.min(parallelEtlThreads, partitions.size());
+        log.debug("Incremental ETL running " + partitions.size() + " partitions on " + threadCount + " threads");
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threadCount; ++i) {
+            futures.add(executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    sessionContextUtility.executeInContext(new SessionContextUtility.Function() {
+                        @Override
+                        public void apply() {
+                            requestContextUtility.executeInContext(new SessionContextUtility.Function() {
+                                @Override
+                                public void apply() {
+                                    runPendingPartitions(pendingPartitions, revisionRouter, etlDateStr, stats,
+                                            exceptions);
+                                }
+                            });
+                        }
+                    });
+                }
+            }));
+        }
+
+        // Waits for every thread, even after a failure, so that no etl is still writing data files when this returns.
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                exceptions.add(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+        if (!exceptions.isEmpty()) {
+            throw exceptions.peek();
+        }
+    }
+
+    private void runPendingPartitions(Queue<List<GenericEntityEtl<?, ?>>> pendingPartitions,
+                                      EtlRevisionRouter revisionRouter, String etlDateStr, Queue<EtlInstanceStats> stats, Queue<Exception> exceptions) {
+        try {
+            List<GenericEntityEtl<?, ?>> partition;
+            // Stops taking partitions after any failure, since the whole etl interval gets redone on the next run.
+            while (exceptions.isEmpty() && (partition = pendingPartitions.poll()) != null) {
+                for (GenericEntityEtl<?, ?> etlInstance : partition) {
+                    stats.add(runEtlInstance(etlInstance, revisionRouter, etlDateStr));
+                }
+            }
+        } catch (Exception e) {
+            exceptions.add(e);
+        } finally {
+            // Reset state of all Hibernate entities in this thread's persistence context.
+            auditReaderDao.clear();
+        }
+    }
+
+    private static EtlInstanceStats runEtlInstance(GenericEntityEtl<?, ?> etlInstance,
+                                                   EtlRevisionRouter revisionRouter, String etlDateStr)
+            throws Exception {
+        long startMsec = System.currentTimeMillis();
+        int recordCount = etlInstance.doIncrementalEtl(revisionRouter, etlDateStr);
+        long elapsedMsec = System.currentTimeMillis() - startMsec;
+        EtlRevisionRouter.AuditQueryStats auditQueryStats = revisionRouter.getAuditQueryStats(etlInstance);
+        if (auditQueryStats == null) {
+            // The etl instance doesn't query audits.
+            return new EtlInstanceStats(etlName(etlInstance), recordCount, elapsedMsec, 0, 0L);
+        }
+        return new EtlInstanceStats(etlName(etlInstance), recordCount, elapsedMsec,
+                auditQueryStats.getRoutedRevCount(), auditQueryStats.getQueryMsec());
+    }
+
+    /**
+     * Groups the etl instances so that all instances writing to a common data file are in the same partition.
+     * DataFile numbers its lines from the existing file length, so two etl classes must never append to the
+     * same file at the same time.
+     */
+    static List<List<GenericEntityEtl<?, ?>>> partitionByDataFile(Collection<GenericEntityEtl> etlInstances) {
+        List<List<GenericEntityEtl<?, ?>>> partitions = new ArrayList<>();
+        List<Set<String>> partitionFilenames = new ArrayList<>();
+        for (GenericEntityEtl<?, ?> etlInstance : etlInstances) {
+            List<GenericEntityEtl<?, ?>> partition = new ArrayList<>();
+            partition.add(etlInstance);
+            Set<String> filenames = new HashSet<>(etlInstance.getDataFileBaseNames());
+            // Merges in any existing partitions that share a data file with this etl instance.
+            for (int i = partitions.size() - 1; i >= 0; --i) {
+                if (!Collections.disjoint(partitionFilenames.get(i), filenames)) {
+                    partition.addAll(partitions.remove(i));
+                    filenames.addAll(partitionFilenames.remove(i));
+                }
+            }
+            partitions.add(partition);
+            partitionFilenames.add(filenames);
+        }
+        return partitions;
+    }
+
+    /**
+     * Saves the etl instance stats of the run, slowest first, and logs those that did any work.
+     */
+    private void logRunStats(Collection<EtlInstanceStats> stats) {
+        List<EtlInstanceStats> sortedStats = new ArrayList<>(stats);
+        Collections.sort(sortedStats, new Comparator<EtlInstanceStats>() {
+            @Override
+            public int compare(EtlInstanceStats o1, EtlInstanceStats o2) {
+                return Long.compare(o2.getElapsedMsec(), o1.getElapsedMsec());
+            }
+        });
+        lastRunStats = Collections.unmodifiableList(sortedStats);
+
+        StringBuilder sb = new StringBuilder();
+        for (EtlInstanceStats stat : sortedStats) {
+            if (stat.getRecordCount() > 0 || stat.getElapsedMsec() >= MSEC_IN_SEC) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(stat);
+            }
+        }
+        if (sb.length() > 0) {
+            log.info("Incremental ETL timings: " + sb);
+        }
+    }
+
+    /**
+     * Returns the etl class name without any proxy suffix.
+     */
+    private static String etlName(GenericEntityEtl<?, ?> etlInstance) {
+        return StringUtils.substringBefore(etlInstance.getClass().getSimpleName(), "$");
+    }
+
+    /**
+     * Timing and record count of one etl class in an incremental etl run, and the number of audit revisions routed
+     * to it and the time spent querying their audits.
+     */
+    public static class EtlInstanceStats {
+        private final String etlName;
+        private final int recordCount;
+        private final long elapsedMsec;
+        private final int routedRevCount;
+        private final long auditQueryMsec;
+
+        EtlInstanceStats(String etlName, int recordCount, long elapsedMsec, int routedRevCount,
+                         long auditQueryMsec) {
+            this.etlName = etlName;
+            this.recordCount = recordCount;
+            this.elapsedMsec = elapsedMsec;
+            this.routedRevCount = routedRevCount;
+            this.auditQueryMsec = auditQueryMsec;
+        }
+
+        public String getEtlName() {
+            return etlName;
+        }
+
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        public long getElapsedMsec() {
+            return elapsedMsec;
+        }
+
+        public int getRoutedRevCount() {
+            return routedRevCount;
+        }
+
+        public long getAuditQueryMsec() {
+            return auditQueryMsec;
+        }
+
+        @Override
+        public String toString() {
+            return etlName + " " + recordCount + " records in " + elapsedMsec + " mSec (" + routedRevCount +
+                   " revs queried in " + auditQueryMsec + " mSec)";
+        }
+    }
+
     // Limits batch size and adjusts end time accordingly.
     static ImmutablePair<SortedMap<Long, Date>, Long> limitBatchSize(SortedMap<Long, Date> revs, long endTimeSec) {
         long batchEndSec = endTimeSec;
@@ -710,6 +967,17 @@ public class ExtractTransform implements Serializable {
         return incrementalRunStartTime;
     }
 
+    /**
+     * Returns the per etl class timings and record counts of the most recent incremental etl run, slowest first.
+     */
+    public static List<EtlInstanceStats> getLastRunStats() {
+        return lastRunStats;
+    }
+
+    static void setParallelEtlThreads(int threads) {
+        parallelEtlThreads = threads;
+    }
+
     /**
      * Supports REST call to analyze a single event
      * @param labEventId The event ID to process
@@ -732,6 +1000,7 @@ public class ExtractTransform implements Serializable {
     void initConfig() {
         if (etlConfig == null) {
             etlConfig = (EtlConfig) MercuryConfiguration.getInstance().getConfig(EtlConfig.class, deployment);
+            parallelEtlThreads = etlConfig.getParallelEtlThreads();
         }
 
         if (datafileDir == null) {
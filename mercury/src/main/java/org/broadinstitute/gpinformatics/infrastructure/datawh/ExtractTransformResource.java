@@ -89,6 +89,29 @@ public class ExtractTransformResource {
         }
     }
 
+    /**
+     * Returns the per etl class timings and record counts of the most recent incremental etl run, with the number
+     * of audit revisions routed to each etl class and the time it spent querying their audits.
+     *
+     * @return html table of etl classes, slowest first.
+     */
+    @Path("stats/incremental")
+    @Produces("text/html")
+    @GET
+    public String incrementalEtlStats() {
+        StringBuilder sb = new StringBuilder()
+                .append("<html><head/><body>")
+                .append("<table cellpadding=\"3\">");
+        sb.append(formatHeaderRow("etlClass", "records", "mSec", "routedRevs", "auditQueryMSec"));
+        for (ExtractTransform.EtlInstanceStats stats : ExtractTransform.getLastRunStats()) {
+            sb.append(formatRow(stats.getEtlName(), String.valueOf(stats.getRecordCount()),
+                    String.valueOf(stats.getElapsedMsec()), String.valueOf(stats.getRoutedRevCount()),
+                    String.valueOf(stats.getAuditQueryMsec())));
+        }
+        sb.append("</table></body></html>");
+        return sb.toString();
+    }
+
     /**
      * Returns an etl-type breakdown of a sequencing run.
      *
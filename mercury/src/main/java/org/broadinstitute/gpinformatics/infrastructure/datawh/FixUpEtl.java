@@ -31,6 +31,7 @@ import javax.inject.Inject;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -68,6 +69,11 @@ public class FixUpEtl extends GenericEntityEtl<FixupCommentary, FixupCommentary>
     @Inject
     ArrayProcessFlowEtl arrayProcessFlowEtl;
 
+    @Override
+    public Collection<String> getDataFileBaseNames() {
+        return Arrays.asList(baseFilename, ancestorFileName, seqSampleFactFileName, arrayProcessFileName);
+    }
+
     @Override
     Long entityId(FixupCommentary entity) {
         return entity.getFixupCommentaryId();
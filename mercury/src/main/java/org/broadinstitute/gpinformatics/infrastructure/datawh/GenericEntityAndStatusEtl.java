@@ -1,12 +1,14 @@
 package org.broadinstitute.gpinformatics.infrastructure.datawh;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.broadinstitute.gpinformatics.infrastructure.common.BaseSplitter;
 import org.broadinstitute.gpinformatics.infrastructure.jpa.GenericDao;
 import org.broadinstitute.gpinformatics.mercury.entity.envers.RevInfo;
 
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 
@@ -35,6 +37,11 @@ public abstract class GenericEntityAndStatusEtl<AUDITED_ENTITY_CLASS, ETL_DATA_S
         this.baseStatusFilename = baseStatusFilename;
     }
 
+    @Override
+    public Collection<String> getDataFileBaseNames() {
+        return Arrays.asList(baseFilename, baseStatusFilename);
+    }
+
     /**
      * Makes a sqlloader record from entity status fields, revision date, and etl date.
      *
@@ -84,13 +91,20 @@ public abstract class GenericEntityAndStatusEtl<AUDITED_ENTITY_CLASS, ETL_DATA_S
             nonDeletedIds.addAll(modifiedEntityIds);
             nonDeletedIds.addAll(addedEntityIds);
 
-            for (Long entityId : nonDeletedIds) {
-                Collection<String> records = dataRecords(etlDateStr, false, entityId);
-                if (CollectionUtils.isEmpty(records)) {
-                    deletedEntityIds.add(entityId);
+            for (Collection<Long> chunk : BaseSplitter.split(nonDeletedIds)) {
+                boolean isPrefetched = prefetchDataSourceEntities(chunk);
+                for (Long entityId : chunk) {
+                    Collection<String> records = dataRecords(etlDateStr, false, entityId);
+                    if (CollectionUtils.isEmpty(records)) {
+                        deletedEntityIds.add(entityId);
+                    }
+                    for (String record : records) {
+                        dataFile.write(record);
+                    }
                 }
-                for (String record : records) {
-                    dataFile.write(record);
+                if (isPrefetched) {
+                    // Detaches the chunk so that memory use is bounded by the chunk size.
+                    dao.clear();
                 }
             }
             // Removes ids of no longer existent entities.
@@ -22,14 +22,8 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import javax.transaction.UserTransaction;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -99,6 +93,15 @@ public abstract class GenericEntityEtl<AUDITED_ENTITY_CLASS, ETL_DATA_SOURCE_CLA
         this.dao = dao;
     }
 
+    /**
+     * Returns the base names of all the data files this etl class writes.  Etl classes that write to a common
+     * data file must not run concurrently, since the line numbering in DataFile is not shared.
+     * Override when the subclass writes more than the one baseFilename file.
+     */
+    public Collection<String> getDataFileBaseNames() {
+        return baseFilename == null ? Collections.<String>emptyList() : Collections.singletonList(baseFilename);
+    }
+
     /**
      * Returns the entityId for the audited entity.
      *
@@ -144,6 +147,21 @@ public abstract class GenericEntityEtl<AUDITED_ENTITY_CLASS, ETL_DATA_SOURCE_CLA
      */
     abstract String dataRecord(String etlDateStr, boolean isDelete, ETL_DATA_SOURCE_CLASS entity);
 
+    /**
+     * Loads the ETL_DATA_SOURCE_CLASS entities for a chunk of entity ids into the persistence context in one query,
+     * join fetching the associations used by dataRecord(), so that the per-id lookups in
+     * dataRecords(etlDateStr, isDelete, entityId) are found in the persistence context instead of each making
+     * their own queries.  The persistence context is cleared after each chunk is written.
+     * <p/>
+     * Default does no prefetch; override for entities having a large number of changes per etl run.
+     *
+     * @param entityIds at most BaseSplitter.DEFAULT_SPLIT_SIZE data source entity ids
+     * @return true if the entities were prefetched
+     */
+    protected boolean prefetchDataSourceEntities(Collection<Long> entityIds) {
+        return false;
+    }
+
     /**
      * Converts the generic AUDITED_ENTITY_CLASS entity ids to ETL_DATA_SOURCE_CLASS entity ids.
      * Default is pass-through; override for cross-etl behavior,
@@ -185,12 +203,33 @@ public abstract class GenericEntityEtl<AUDITED_ENTITY_CLASS, ETL_DATA_SOURCE_CLA
      */
     @TransactionAttribute(TransactionAttributeType.NEVER)
     public int doIncrementalEtl(Set<Long> revIds, String etlDateStr) throws Exception {
+        return doIncrementalEtl(new EtlRevisionRouter(revIds), etlDateStr);
+    }
+
+    /**
+     * Iterates on the Mercury entities having changes, generates and writes sqlLoader records.  Only the audit
+     * revisions that the router routes to this etl's entity class are queried.
+     *
+     * @param revisionRouter the audit revisions of the etl run
+     * @param etlDateStr     etlDate formatted as YYYYMMDDHHMMSS
+     *
+     * @return the number of records created in the data file (deletes, modifies, and adds).
+     */
+    @TransactionAttribute(TransactionAttributeType.NEVER)
+    public int doIncrementalEtl(EtlRevisionRouter revisionRouter, String etlDateStr) throws Exception {
         try {
 
-            // Retrieves the Envers-formatted list of entity changes in the given revision range.
-            // Subclass may add additional entity ids based on custom rev query.
-            List<EnversAudit> auditEntities = auditReaderDao.fetchEnversAudits(revIds, entityClass);
-            AuditLists<AUDITED_ENTITY_CLASS> auditLists = fetchAuditIds(auditEntities, fetchAdditionalModifies(revIds));
+            // Retrieves the Envers-formatted list of entity changes in the given revision range, unless none
+            // of the revisions changed this entity class.
+            Set<Long> routedRevIds = revisionRouter.getRevIds(entityClass);
+            long startMsec = System.currentTimeMillis();
+            List<EnversAudit> auditEntities = routedRevIds.isEmpty() ? Collections.<EnversAudit>emptyList() :
+                    auditReaderDao.fetchEnversAudits(routedRevIds, entityClass);
+            revisionRouter.recordAuditQuery(this, routedRevIds.size(), System.currentTimeMillis() - startMsec);
+
+            // Subclass may add additional entity ids based on custom rev query, which may look at any revision.
+            AuditLists<AUDITED_ENTITY_CLASS> auditLists = fetchAuditIds(auditEntities,
+                    fetchAdditionalModifies(revisionRouter.getRevIds()));
 
             // The convert calls optionally convert entity types for cross-entity etl classes.
             Collection<Long> deletedEntityIds = convertAuditedEntityIdToDataSourceEntityId(auditLists.deletedEntityIds);
@@ -400,33 +439,39 @@ public abstract class GenericEntityEtl<AUDITED_ENTITY_CLASS, ETL_DATA_SOURCE_CLA
         try {
             // Deletion records only contain the entityId field.
             for (Long entityId : deletedEntityIds) {
-                String record = genericRecord(etlDateStr, true, entityId);
-                dataFile.write(record);
+                dataFile.getWriter().startRecord(etlDateStr, true).field(entityId).endRecord();
             }
 
             Collection<Long> nonDeletedIds = new ArrayList<>();
             nonDeletedIds.addAll(modifiedEntityIds);
             nonDeletedIds.addAll(addedEntityIds);
 
-            for (Long entityId : nonDeletedIds) {
-                try {
-                    Collection<String> records = dataRecords(etlDateStr, false, entityId);
-                    for (String record : records) {
-                        dataFile.write(record);
-                    }
-                } catch (Exception e) {
-                    // For data-specific Mercury exceptions on one entity, log it and continue, since
-                    // these are permanent. For systemic exceptions such as when BSP is down, re-throw
-                    // the exception in order to stop this run of ETL and allow a retry in a few minutes.
-                    if (isSystemException(e)) {
-                        throw e;
-                    } else {
-                        if (errorException == null) {
-                            errorException = e;
+            for (Collection<Long> chunk : BaseSplitter.split(nonDeletedIds)) {
+                boolean isPrefetched = prefetchDataSourceEntities(chunk);
+                for (Long entityId : chunk) {
+                    try {
+                        Collection<String> records = dataRecords(etlDateStr, false, entityId);
+                        for (String record : records) {
+                            dataFile.write(record);
+                        }
+                    } catch (Exception e) {
+                        // For data-specific Mercury exceptions on one entity, log it and continue, since
+                        // these are permanent. For systemic exceptions such as when BSP is down, re-throw
+                        // the exception in order to stop this run of ETL and allow a retry in a few minutes.
+                        if (isSystemException(e)) {
+                            throw e;
+                        } else {
+                            if (errorException == null) {
+                                errorException = e;
+                            }
+                            errorIds.add(entityId);
                         }
-                        errorIds.add(entityId);
                     }
                 }
+                if (isPrefetched) {
+                    // Detaches the chunk so that memory use is bounded by the chunk size.
+                    dao.clear();
+                }
             }
 
         } catch (IOException e) {
@@ -457,8 +502,7 @@ public abstract class GenericEntityEtl<AUDITED_ENTITY_CLASS, ETL_DATA_SOURCE_CLA
         try {
             // Deletion records only contain the entityId field.
             for (Long entityId : deletedEntityIds) {
-                String record = genericRecord(etlDateStr, true, entityId);
-                dataFile.write(record);
+                dataFile.getWriter().startRecord(etlDateStr, true).field(entityId).endRecord();
             }
             // Writes the records.
             for (ETL_DATA_SOURCE_CLASS entity : entities) {
@@ -599,51 +643,34 @@ public abstract class GenericEntityEtl<AUDITED_ENTITY_CLASS, ETL_DATA_SOURCE_CLA
      * Class to wrap/manage writing to the data file.
      */
     protected static class DataFile {
-        private final String filename;
-        private BufferedWriter writer;
-        private int lineCount = 0;
+        private final DataFileWriter writer;
 
         DataFile(String filename) {
-            this.filename = filename;
-
-            // There are cases (fixup tests) where records are appended to existing files
-            // Adjust line counter as required
-            java.nio.file.Path path = FileSystems.getDefault().getPath(filename);
-            if(Files.exists(path) ) {
-                BufferedReader lineCounter = null;
-                try {
-                    lineCounter = Files.newBufferedReader(path, Charset.defaultCharset());
-                    while( lineCounter.readLine() != null ) {
-                        lineCount++;
-                    }
-                    // Roll counter back to accommodate empty last line
-                    lineCount--;
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } finally {
-                    IOUtils.closeQuietly(lineCounter);
-                }
-            }
+            // There are cases (fixup tests) where records are appended to existing files, so the writer continues
+            // the file's line numbering.
+            writer = new DataFileWriter(filename);
         }
 
         int getRecordCount() {
-            return lineCount;
+            return (int) writer.getLineCount();
         }
 
         String getFilename() {
-            return filename;
+            return writer.getFilename();
         }
 
         void write(String record) throws IOException {
             if (record == null) {
                 return;
             }
-            lineCount++;
-            if (writer == null) {
-                writer = new BufferedWriter(new FileWriter(filename, true));
-            }
-            writer.write(lineCount + ExtractTransform.DELIMITER + record);
-            writer.newLine();
+            writer.writeRecord(record);
+        }
+
+        /**
+         * Returns the writer, to write a record field by field without building a String for it.
+         */
+        DataFileWriter getWriter() {
+            return writer;
         }
 
         void close() {
@@ -23,6 +23,7 @@ import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -58,6 +59,11 @@ public class LabEventEtl extends GenericEntityEtl<LabEvent, LabEvent> {
         this.bspUserList = bspUserList;
     }
 
+    @Override
+    public Collection<String> getDataFileBaseNames() {
+        return Arrays.asList(baseFilename, ancestorFileName);
+    }
+
     @Override
     Long entityId(LabEvent entity) {
         return entity.getLabEventId();
@@ -86,41 +92,11 @@ public class LabEventEtl extends GenericEntityEtl<LabEvent, LabEvent> {
             for (EventFactDto fact : makeEventFacts(entity)) {
 
                 if (fact.canEtl()) {
-                    eventFactRecords.add(
-                        genericRecord(etlDateStr, isDelete,
-                            format( fact.getEventId() ),
-                            format( fact.getWfId() ),
-                            format( fact.getWfProcessId() ),
-                            format( fact.getEventType().getName() ),
-                            format( fact.getPdoId() ),
-                            format( fact.getPdoSampleId() ),
-                            format( fact.getLcsetSampleId() ),
-                            format( fact.getBatchName() ),
-                            format( fact.getEventLocation() ),
-                            format( fact.getVesselId() ),
-                            format( fact.getVesselPosition() ),
-                            ExtractTransform.formatTimestamp(fact.getEventDate()),
-                            format(fact.getEventProgram()),
-                            format(fact.getMolecularIndex()),
-                            format(fact.isEtlLibrary()?fact.getLibraryName():""),
-                                format(fact.getOperator()),
-                            "E"
-                        )
-                    );
+                    eventFactRecords.add(eventFactRecord(etlDateStr, isDelete, fact));
 
                     if( fact.getAncestryDtos() != null ) {
                         for (EventAncestryEtlUtil.AncestryFactDto ancestryDto : fact.getAncestryDtos()) {
-                            eventFactRecords.add(genericRecord(etlDateStr, isDelete,
-                                    format( ancestryDto.getAncestorEventId()),
-                                    format( ancestryDto.getAncestorVesselId()),
-                                    format( ancestryDto.getAncestorLibraryTypeName()),
-                                    ExtractTransform.formatTimestamp(ancestryDto.getAncestorCreated()),
-                                    format( ancestryDto.getChildEventId()),
-                                    format( ancestryDto.getChildVesselId()),
-                                    format( ancestryDto.getChildLibraryTypeName()),
-                                    ExtractTransform.formatTimestamp(ancestryDto.getChildCreated()),
-                                    "A"
-                            ));
+                            eventFactRecords.add(ancestryFactRecord(etlDateStr, isDelete, ancestryDto));
                         }
                     }
 
@@ -134,12 +110,120 @@ public class LabEventEtl extends GenericEntityEtl<LabEvent, LabEvent> {
         return eventFactRecords;
     }
 
+    static String eventFactRecord(String etlDateStr, boolean isDelete, EventFactDto fact) {
+        return genericRecord(etlDateStr, isDelete,
+                format( fact.getEventId() ),
+                format( fact.getWfId() ),
+                format( fact.getWfProcessId() ),
+                format( fact.getEventType().getName() ),
+                format( fact.getPdoId() ),
+                format( fact.getPdoSampleId() ),
+                format( fact.getLcsetSampleId() ),
+                format( fact.getBatchName() ),
+                format( fact.getEventLocation() ),
+                format( fact.getVesselId() ),
+                format( fact.getVesselPosition() ),
+                ExtractTransform.formatTimestamp(fact.getEventDate()),
+                format(fact.getEventProgram()),
+                format(fact.getMolecularIndex()),
+                format(fact.isEtlLibrary()?fact.getLibraryName():""),
+                format(fact.getOperator()),
+                "E"
+        );
+    }
+
+    static String ancestryFactRecord(String etlDateStr, boolean isDelete,
+            EventAncestryEtlUtil.AncestryFactDto ancestryDto) {
+        return genericRecord(etlDateStr, isDelete,
+                format( ancestryDto.getAncestorEventId()),
+                format( ancestryDto.getAncestorVesselId()),
+                format( ancestryDto.getAncestorLibraryTypeName()),
+                ExtractTransform.formatTimestamp(ancestryDto.getAncestorCreated()),
+                format( ancestryDto.getChildEventId()),
+                format( ancestryDto.getChildVesselId()),
+                format( ancestryDto.getChildLibraryTypeName()),
+                ExtractTransform.formatTimestamp(ancestryDto.getChildCreated()),
+                "A"
+        );
+    }
+
+    /**
+     * Writes the same record as {@link #eventFactRecord}, field by field.
+     */
+    static void writeEventFact(DataFileWriter writer, String etlDateStr, boolean isDelete, EventFactDto fact)
+            throws IOException {
+        // Done before the record is started, so a failure doesn't leave a partial record.
+        String eventTypeName = fact.getEventType().getName();
+        writer.startRecord(etlDateStr, isDelete)
+                .field(fact.getEventId())
+                .field(fact.getWfId())
+                .field(fact.getWfProcessId())
+                .field(eventTypeName)
+                .field(fact.getPdoId())
+                .field(fact.getPdoSampleId())
+                .field(fact.getLcsetSampleId())
+                .field(fact.getBatchName())
+                .field(fact.getEventLocation())
+                .field(fact.getVesselId())
+                .field(fact.getVesselPosition())
+                .field(fact.getEventDate())
+                // The program name is formatted when the fact is made.
+                .field(format(fact.getEventProgram()))
+                .field(fact.getMolecularIndex())
+                .field(fact.isEtlLibrary() ? fact.getLibraryName() : "")
+                .field(fact.getOperator())
+                .field("E")
+                .endRecord();
+    }
+
+    /**
+     * Writes the same record as {@link #ancestryFactRecord}, field by field.
+     */
+    static void writeAncestryFact(DataFileWriter writer, String etlDateStr, boolean isDelete,
+            EventAncestryEtlUtil.AncestryFactDto ancestryDto) throws IOException {
+        writer.startRecord(etlDateStr, isDelete)
+                .field(ancestryDto.getAncestorEventId())
+                .field(ancestryDto.getAncestorVesselId())
+                .field(ancestryDto.getAncestorLibraryTypeName())
+                .field(ancestryDto.getAncestorCreated())
+                .field(ancestryDto.getChildEventId())
+                .field(ancestryDto.getChildVesselId())
+                .field(ancestryDto.getChildLibraryTypeName())
+                .field(ancestryDto.getChildCreated())
+                .field("A")
+                .endRecord();
+    }
+
+    /**
+     * Writes the event and ancestry facts for an event, without building a String for each record.
+     */
+    private void writeFacts(DataFile eventDataFile, DataFile ancestryDataFile, String etlDateStr, LabEvent entity)
+            throws IOException {
+        Collection<EventFactDto> facts;
+        try {
+            facts = makeEventFacts(entity);
+        } catch (Exception e) {
+            // Uncaught RuntimeExceptions kill the injected LabEventEtl in ExtractTransform.
+            logger.error("Error doing lab event etl", e);
+            return;
+        }
+        for (EventFactDto fact : facts) {
+            if (fact.canEtl()) {
+                writeEventFact(eventDataFile.getWriter(), etlDateStr, false, fact);
+                if (fact.getAncestryDtos() != null) {
+                    for (EventAncestryEtlUtil.AncestryFactDto ancestryDto : fact.getAncestryDtos()) {
+                        writeAncestryFact(ancestryDataFile.getWriter(), etlDateStr, false, ancestryDto);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Functionality in GenericEntityEtl is enhanced to write records to two different files.  <br/>
      * All delete records go in event fact table.  <br/>
-     * Last character of line for update/insert records determines which file the record is written to: <br/>
-     * "E" is an event fact record <br/>
-     * "A" is an ancestry fact record <br/>
+     * Event fact records (ending in "E") go in the event fact file, and ancestry fact records (ending in "A") in the
+     * ancestry file. <br/>
      * Scope relaxed from protected to public to allow a backfill service hook
      */
     @DaoFree
@@ -156,21 +240,13 @@ public class LabEventEtl extends GenericEntityEtl<LabEvent, LabEvent> {
         try {
             // Deletion records only contain the entityId field.
             for (Long entityId : deletedEntityIds) {
-                String record = genericRecord(etlDateStr, true, entityId);
-                eventDataFile.write(record);
+                eventDataFile.getWriter().startRecord(etlDateStr, true).field(entityId).endRecord();
             }
             // Writes the records.
             for (LabEvent entity : entities) {
                 if (!deletedEntityIds.contains(dataSourceEntityId(entity))) {
                     try {
-                        for (String record : dataRecords(etlDateStr, false, entity)) {
-                            // Split file writes between events and ancestry ...
-                            if( record.endsWith("E") ) {
-                                eventDataFile.write(record);
-                            } else if ( record.endsWith("A") ) {
-                                ancestryDataFile.write(record);
-                            }
-                        }
+                        writeFacts(eventDataFile, ancestryDataFile, etlDateStr, entity);
                     } catch (Exception e) {
                         // Continues ETL and logs data-specific Mercury exceptions.  Re-throws systemic exceptions
                         // such as when BSP is down in order to stop this run of ETL.
@@ -53,6 +53,15 @@ public class LabVesselEtl extends GenericEntityEtl<LabVessel, LabVessel> {
         return dataRecords(etlDateStr, isDelete, dao.findById(LabVessel.class, entityId));
     }
 
+    /**
+     * Fetches the vessels.  The vessel record only uses columns of the vessel itself.
+     */
+    @Override
+    protected boolean prefetchDataSourceEntities(Collection<Long> entityIds) {
+        dao.findListByList(LabVessel.class, LabVessel_.labVesselId, entityIds);
+        return true;
+    }
+
     @Override
     String dataRecord(String etlDateStr, boolean isDelete, LabVessel entity) {
 
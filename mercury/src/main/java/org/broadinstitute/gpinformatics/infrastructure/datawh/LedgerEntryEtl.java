@@ -7,11 +7,14 @@ import org.broadinstitute.gpinformatics.athena.entity.billing.LedgerEntry_;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
 import org.broadinstitute.gpinformatics.athena.entity.products.PriceItem;
 import org.broadinstitute.gpinformatics.athena.entity.products.Product;
+import org.broadinstitute.gpinformatics.infrastructure.jpa.GenericDao;
 
 import javax.ejb.Stateful;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 import javax.inject.Inject;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import java.util.Collection;
@@ -44,6 +47,24 @@ public class LedgerEntryEtl extends GenericEntityEtl<LedgerEntry, LedgerEntry> {
         return dataRecords(etlDateStr, isDelete, dao.findById(LedgerEntry.class, entityId));
     }
 
+    /**
+     * Fetches the ledger entries along with the to-one associations that are otherwise loaded by a query per entry.
+     */
+    @Override
+    protected boolean prefetchDataSourceEntities(Collection<Long> entityIds) {
+        dao.findListByList(LedgerEntry.class, LedgerEntry_.ledgerId, entityIds,
+                new GenericDao.GenericDaoCallback<LedgerEntry>() {
+                    @Override
+                    public void callback(CriteriaQuery<LedgerEntry> criteriaQuery, Root<LedgerEntry> root) {
+                        root.fetch(LedgerEntry_.productOrderSample, JoinType.LEFT);
+                        root.fetch(LedgerEntry_.priceItem, JoinType.LEFT);
+                        root.fetch(LedgerEntry_.billingSession, JoinType.LEFT);
+                        root.fetch(LedgerEntry_.product, JoinType.LEFT);
+                    }
+                });
+        return true;
+    }
+
     @Override
     String dataRecord(String etlDateStr, boolean isDelete, LedgerEntry entity) {
         ProductOrderSample pdoSample = entity.getProductOrderSample();
@@ -3,13 +3,17 @@ package org.broadinstitute.gpinformatics.infrastructure.datawh;
 import org.broadinstitute.gpinformatics.athena.control.dao.orders.ProductOrderSampleDao;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample_;
+import org.broadinstitute.gpinformatics.infrastructure.jpa.GenericDao;
 import org.broadinstitute.gpinformatics.mercury.entity.Metadata;
 import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample_;
 
 import javax.ejb.Stateful;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 import javax.inject.Inject;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import java.util.Collection;
@@ -21,8 +25,6 @@ import java.util.Set;
 public class ProductOrderSampleEtl extends GenericEntityAndStatusEtl<ProductOrderSample, ProductOrderSample> {
     private String samplePositionJoinTable;
 
-    private int counter = 0;
-
     public ProductOrderSampleEtl() {
     }
 
@@ -45,13 +47,29 @@ public class ProductOrderSampleEtl extends GenericEntityAndStatusEtl<ProductOrde
 
     @Override
     Collection<String> dataRecords(String etlDateStr, boolean isDelete, Long entityId) {
-        if( ++counter > JPA_CLEAR_THRESHOLD ) {
-            counter = 0;
-            dao.clear();
-        }
         return dataRecords(etlDateStr, isDelete, dao.findById(ProductOrderSample.class, entityId));
     }
 
+    /**
+     * Fetches the pdo samples along with their product order and mercury sample metadata.
+     */
+    @Override
+    protected boolean prefetchDataSourceEntities(Collection<Long> entityIds) {
+        dao.findListByList(ProductOrderSample.class, ProductOrderSample_.productOrderSampleId, entityIds,
+                new GenericDao.GenericDaoCallback<ProductOrderSample>() {
+                    @Override
+                    public void callback(CriteriaQuery<ProductOrderSample> criteriaQuery,
+                                         Root<ProductOrderSample> root) {
+                        // Metadata is one to many so set it to be distinct.
+                        criteriaQuery.distinct(true);
+                        root.fetch(ProductOrderSample_.productOrder, JoinType.LEFT);
+                        root.fetch(ProductOrderSample_.mercurySample, JoinType.LEFT)
+                                .fetch(MercurySample_.metadata, JoinType.LEFT);
+                    }
+                });
+        return true;
+    }
+
     @Override
     String statusRecord(String etlDateStr, boolean isDelete, ProductOrderSample entity, Date revDate) {
         if (entity != null && entity.getDeliveryStatus() != null) {
@@ -11,6 +11,7 @@ import javax.inject.Inject;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -37,6 +38,11 @@ public class WorkflowConfigEtl extends GenericEntityEtl<WorkflowConfig, Object>
         this.workflowConfigLookup = workflowConfigLookup;
     }
 
+    @Override
+    public Collection<String> getDataFileBaseNames() {
+        return Arrays.asList(WORKFLOW_BASE_FILENAME, PROCESS_BASE_FILENAME);
+    }
+
     @Override
     Long entityId(WorkflowConfig entity) {
         throw new RuntimeException("This method cannot apply to this etl class.");
@@ -62,9 +68,9 @@ public class WorkflowConfigEtl extends GenericEntityEtl<WorkflowConfig, Object>
         throw new RuntimeException("This method cannot apply to this etl class.");
     }
 
-    // Ignores revIds param and does an etl of workflow config if the current version has changed since last etl.
+    // Ignores the revisions and does an etl of workflow config if the current version has changed since last etl.
     @Override
-    public int doIncrementalEtl(Set<Long> revIds, String etlDateStr) {
+    public int doIncrementalEtl(EtlRevisionRouter revisionRouter, String etlDateStr) {
         // Does nothing if no change in WorkflowConfig, indicated by the hash.
         HashMatchResult res = hashesMatch();
         if (res.isMatch) {
@@ -18,6 +18,12 @@ public class DeckMessagesConfig extends AbstractConfig implements Serializable {
 
     private String messageStoreDirRoot;
 
+    /** Number of threads that process stored messages in the background.  0 processes each message on its request. */
+    private int asyncWorkerThreads;
+
+    /** Number of accepted but unfinished messages above which new messages are refused.  0 uses the default. */
+    private int asyncQueueCapacity;
+
     public DeckMessagesConfig(){}
 
     @Inject
@@ -34,4 +40,22 @@ public class DeckMessagesConfig extends AbstractConfig implements Serializable {
         this.messageStoreDirRoot = messageStoreDirRoot;
     }
 
+    public int getAsyncWorkerThreads() {
+        return asyncWorkerThreads;
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setAsyncWorkerThreads(int asyncWorkerThreads) {
+        this.asyncWorkerThreads = asyncWorkerThreads;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
 }
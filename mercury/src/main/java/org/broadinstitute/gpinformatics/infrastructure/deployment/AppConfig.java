@@ -41,6 +41,18 @@ public class AppConfig extends AbstractConfig implements Serializable {
 
     private Set<String> gpBillingManagers;
 
+    /** Where queued emails are kept until they are sent; blank for the server's data directory. */
+    private String emailOutboxDirectory;
+
+    /** How long an email waits in the outbox for others with the same subject and recipients to merge with. */
+    private long emailCoalesceWindowMillis = 60000L;
+
+    /** How many times the outbox tries to send an email before giving up on it. */
+    private int emailMaxAttempts = 5;
+
+    /** Wait before the first retry of an email, doubled for each further retry. */
+    private long emailRetryBackoffMillis = 30000L;
+
     public String getUrl() {
         return "https://" + host + ":" + port + "/Mercury/";
     }
@@ -94,6 +106,38 @@ public class AppConfig extends AbstractConfig implements Serializable {
         return gpBillingManagers;
     }
 
+    public String getEmailOutboxDirectory() {
+        return emailOutboxDirectory;
+    }
+
+    public void setEmailOutboxDirectory(String emailOutboxDirectory) {
+        this.emailOutboxDirectory = emailOutboxDirectory;
+    }
+
+    public long getEmailCoalesceWindowMillis() {
+        return emailCoalesceWindowMillis;
+    }
+
+    public void setEmailCoalesceWindowMillis(long emailCoalesceWindowMillis) {
+        this.emailCoalesceWindowMillis = emailCoalesceWindowMillis;
+    }
+
+    public int getEmailMaxAttempts() {
+        return emailMaxAttempts;
+    }
+
+    public void setEmailMaxAttempts(int emailMaxAttempts) {
+        this.emailMaxAttempts = emailMaxAttempts;
+    }
+
+    public long getEmailRetryBackoffMillis() {
+        return emailRetryBackoffMillis;
+    }
+
+    public void setEmailRetryBackoffMillis(long emailRetryBackoffMillis) {
+        this.emailRetryBackoffMillis = emailRetryBackoffMillis;
+    }
+
     public static AppConfig produce(Deployment deployment) {
         return produce(AppConfig.class, deployment);
     }
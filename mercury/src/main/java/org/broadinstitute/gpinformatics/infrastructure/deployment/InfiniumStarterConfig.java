@@ -24,6 +24,8 @@ public class InfiniumStarterConfig extends AbstractConfig implements LoginAndPas
     private String decodeDataPath;
     private String archivePath;
     private int numChipsPerArchivePeriod;
+    /** Number of chips to zip concurrently; 0 for the default. */
+    private int numArchiveThreads;
     private String jmsHost;
     private int jmsPort;
     private String jmsQueue;
@@ -78,6 +80,14 @@ public class InfiniumStarterConfig extends AbstractConfig implements LoginAndPas
         this.numChipsPerArchivePeriod = numChipsPerArchivePeriod;
     }
 
+    public int getNumArchiveThreads() {
+        return numArchiveThreads;
+    }
+
+    public void setNumArchiveThreads(int numArchiveThreads) {
+        this.numArchiveThreads = numArchiveThreads;
+    }
+
     public String getJmsHost() {
         return jmsHost;
     }
@@ -0,0 +1,192 @@
+package org.broadinstitute.gpinformatics.infrastructure.jira;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.jira.customfields.CustomFieldDefinition;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCache;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application wide cache of JIRA field definitions: all the fields (the /field request), and the fields of each
+ * project and issue type (the createmeta request).  Creating LCSETs, PDO tickets and transitions asks for the same
+ * definitions many times, and they rarely change.
+ * <p/>
+ * Definitions that are older than the time to live are returned while they are fetched again in the background.  The
+ * {@link org.broadinstitute.gpinformatics.infrastructure.jmx.ExternalDataCacheControl} refreshes all of them
+ * regularly, and can be asked to from JConsole.  If a fetch fails, the definitions already fetched are kept.
+ */
+@ApplicationScoped
+public class JiraFieldDefinitionCache extends AbstractCache {
+
+    private static final Log log = LogFactory.getLog(JiraFieldDefinitionCache.class);
+
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final String CUSTOM_FIELDS_KEY = "field";
+
+    private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    /** Null outside the container, in which case expired definitions are fetched by the caller. */
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ExecutorService executorService;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Serializes the first fetch of each key. */
+    private final Map<String, Object> fetchLocks = new ConcurrentHashMap<>();
+
+    /** The keys being fetched again in the background. */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong fetchCount = new AtomicLong();
+
+    private final AtomicLong failedRefreshCount = new AtomicLong();
+
+    /**
+     * Fetches field definitions from JIRA.
+     */
+    public interface Fetcher {
+        Map<String, CustomFieldDefinition> fetch() throws IOException;
+    }
+
+    /**
+     * Field definitions, when they were fetched, and how to fetch them again.
+     */
+    private static class Entry {
+        private final Map<String, CustomFieldDefinition> fieldDefinitions;
+        private final long fetchedMillis;
+        private final Fetcher fetcher;
+
+        private Entry(Map<String, CustomFieldDefinition> fieldDefinitions, long fetchedMillis, Fetcher fetcher) {
+            this.fieldDefinitions = Collections.unmodifiableMap(new HashMap<>(fieldDefinitions));
+            this.fetchedMillis = fetchedMillis;
+            this.fetcher = fetcher;
+        }
+    }
+
+    public JiraFieldDefinitionCache() {
+    }
+
+    /**
+     * Container free constructor.
+     *
+     * @param executorService fetches expired definitions in the background, or null to fetch them in the caller
+     */
+    public JiraFieldDefinitionCache(long timeToLiveMillis, ExecutorService executorService) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns the definitions of all the fields, by field name.  The map must not be changed.
+     */
+    public Map<String, CustomFieldDefinition> getCustomFields(Fetcher fetcher) throws IOException {
+        return get(CUSTOM_FIELDS_KEY, fetcher);
+    }
+
+    /**
+     * Returns the definitions of the fields of a project and issue type, by field name.  The map must not be changed.
+     */
+    public Map<String, CustomFieldDefinition> getRequiredFields(String projectKey, String issueTypeName,
+            Fetcher fetcher) throws IOException {
+        return get("createmeta/" + projectKey + "/" + issueTypeName, fetcher);
+    }
+
+    private Map<String, CustomFieldDefinition> get(String key, Fetcher fetcher) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Object fetchLock = fetchLocks.computeIfAbsent(key, k -> new Object());
+            synchronized (fetchLock) {
+                entry = entries.get(key);
+                if (entry == null) {
+                    entry = fetch(key, fetcher);
+                }
+            }
+        } else if (System.currentTimeMillis() - entry.fetchedMillis > timeToLiveMillis) {
+            refreshInBackground(key, fetcher);
+        }
+        return entry.fieldDefinitions;
+    }
+
+    private Entry fetch(String key, Fetcher fetcher) throws IOException {
+        fetchCount.incrementAndGet();
+        Entry entry = new Entry(fetcher.fetch(), System.currentTimeMillis(), fetcher);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Fetches the definitions again, unless that is already in progress.  The caller continues with the expired
+     * definitions.
+     */
+    private void refreshInBackground(final String key, final Fetcher fetcher) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh(key, fetcher);
+                } finally {
+                    refreshing.remove(key);
+                }
+            }
+        };
+        if (executorService == null) {
+            refresh.run();
+        } else {
+            try {
+                executorService.execute(refresh);
+            } catch (RejectedExecutionException e) {
+                refreshing.remove(key);
+                log.warn("Could not schedule refresh of JIRA field definitions " + key, e);
+            }
+        }
+    }
+
+    /**
+     * Fetches the definitions again, keeping the ones already fetched if that fails.
+     */
+    private void refresh(String key, Fetcher fetcher) {
+        try {
+            fetch(key, fetcher);
+        } catch (IOException | RuntimeException e) {
+            failedRefreshCount.incrementAndGet();
+            log.warn("Could not refresh JIRA field definitions " + key + ", keeping the ones already fetched", e);
+        }
+    }
+
+    @Override
+    public void refreshCache() {
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            refresh(mapEntry.getKey(), mapEntry.getValue().fetcher);
+        }
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("%d field sets, %d fetches, %d failed refreshes", entries.size(), getFetchCount(),
+                getFailedRefreshCount());
+    }
+
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    public long getFailedRefreshCount() {
+        return failedRefreshCount.get();
+    }
+}
@@ -62,6 +62,10 @@ public class JiraServiceImpl extends AbstractJsonJaxRsClientService implements J
     @Inject
     private JiraConfig jiraConfig;
 
+    /** Null when constructed outside the container, in which case field definitions are always fetched. */
+    @Inject
+    private JiraFieldDefinitionCache fieldDefinitionCache;
+
     private final static Log log = LogFactory.getLog(JiraServiceImpl.class);
 
     private String baseUrl;
@@ -79,6 +83,14 @@ public class JiraServiceImpl extends AbstractJsonJaxRsClientService implements J
         this.jiraConfig = jiraConfig;
     }
 
+    /**
+     * Non-CDI constructor, with a cache of field definitions
+     */
+    public JiraServiceImpl(JiraConfig jiraConfig, JiraFieldDefinitionCache fieldDefinitionCache) {
+        this(jiraConfig);
+        this.fieldDefinitionCache = fieldDefinitionCache;
+    }
+
     @Override
     protected void customizeClient(Client client) {
         specifyHttpAuthCredentials(client, jiraConfig);
@@ -439,8 +451,23 @@ public class JiraServiceImpl extends AbstractJsonJaxRsClientService implements J
 
     @Override
     public Map<String, CustomFieldDefinition> getRequiredFields(
-            @Nonnull CreateFields.Project project,
-            @Nonnull CreateFields.IssueType issueType) throws IOException {
+            @Nonnull final CreateFields.Project project,
+            @Nonnull final CreateFields.IssueType issueType) throws IOException {
+        JiraFieldDefinitionCache.Fetcher fetcher = new JiraFieldDefinitionCache.Fetcher() {
+            @Override
+            public Map<String, CustomFieldDefinition> fetch() throws IOException {
+                return fetchRequiredFields(project, issueType);
+            }
+        };
+        if (fieldDefinitionCache == null) {
+            return fetcher.fetch();
+        }
+        return new HashMap<>(fieldDefinitionCache.getRequiredFields(project.getProjectType().getKeyPrefix(),
+                issueType.getJiraName(), fetcher));
+    }
+
+    private Map<String, CustomFieldDefinition> fetchRequiredFields(CreateFields.Project project,
+            CreateFields.IssueType issueType) throws IOException {
 
         String urlString = getBaseUrl() + "/issue/createmeta";
 
@@ -452,8 +479,7 @@ public class JiraServiceImpl extends AbstractJsonJaxRsClientService implements J
         return CustomFieldJsonParser.parseRequiredFields(jsonResponse);
     }
 
-    @Override
-    public Map<String, CustomFieldDefinition> getCustomFields(String... fieldNames) throws IOException {
+    private Map<String, CustomFieldDefinition> fetchCustomFields() throws IOException {
         String urlString = getBaseUrl() + "/field";
 
         Response response = getJaxRsClient().target(urlString).request().get();
@@ -463,8 +489,23 @@ public class JiraServiceImpl extends AbstractJsonJaxRsClientService implements J
             ClientInvocation.handleErrorStatus(response);
         }
 
-        Map<String, CustomFieldDefinition> customFieldDefinitionMap = CustomFieldJsonParser
-                .parseCustomFields(jsonResponse);
+        return CustomFieldJsonParser.parseCustomFields(jsonResponse);
+    }
+
+    @Override
+    public Map<String, CustomFieldDefinition> getCustomFields(String... fieldNames) throws IOException {
+        Map<String, CustomFieldDefinition> customFieldDefinitionMap;
+        if (fieldDefinitionCache == null) {
+            customFieldDefinitionMap = fetchCustomFields();
+        } else {
+            customFieldDefinitionMap = new HashMap<>(fieldDefinitionCache.getCustomFields(
+                    new JiraFieldDefinitionCache.Fetcher() {
+                        @Override
+                        public Map<String, CustomFieldDefinition> fetch() throws IOException {
+                            return fetchCustomFields();
+                        }
+                    }));
+        }
 
         if (fieldNames.length == 0) {
             return customFieldDefinitionMap;
@@ -14,6 +14,15 @@ public abstract class AbstractCache {
      */
     public abstract void refreshCache();
 
+    /**
+     * Describes the cached data, e.g. its size and when it was last refreshed, for JConsole.
+     *
+     * @return the description, or null if the cache doesn't provide one
+     */
+    public String getStatistics() {
+        return null;
+    }
+
     @Inject
     private ExternalDataCacheControl externalDataCacheControl;
 
@@ -0,0 +1,118 @@
+package org.broadinstitute.gpinformatics.infrastructure.jmx;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Removes the entries of an application wide cache that a transaction changes: immediately, and again when the
+ * transaction completes, so an entry that another request calculates from the data as it was before the commit
+ * doesn't survive it.  It also counts changes, so the cache can refuse to keep an entry that was calculated while
+ * anything changed.
+ */
+public class CacheInvalidator {
+
+    /**
+     * Removes the entries for a key from the cache.  The same instance should be passed for the same kind of key, so
+     * the keys changed in a transaction are removed once each when it completes.
+     */
+    public interface Removal<K> {
+        void remove(K key);
+    }
+
+    /** Null outside the container, in which case entries are only removed immediately. */
+    private final Supplier<TransactionSynchronizationRegistry> transactionSynchronizationRegistry;
+
+    /** Incremented whenever an entry is removed for a change. */
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * @param transactionSynchronizationRegistry supplies the cache's injected registry, which may be null
+     */
+    public CacheInvalidator(Supplier<TransactionSynchronizationRegistry> transactionSynchronizationRegistry) {
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+
+    /**
+     * Removes the entries for a key that has changed, now and when the current transaction (if any) completes.
+     */
+    public <K> void invalidate(K key, Removal<K> removal) {
+        if (key == null) {
+            return;
+        }
+        remove(key, removal);
+        Map<Removal<?>, Set<Object>> changedKeys = getChangedKeys();
+        if (changedKeys != null) {
+            changedKeys.computeIfAbsent(removal, r -> new HashSet<>()).add(key);
+        }
+    }
+
+    private <K> void remove(K key, Removal<K> removal) {
+        changeCount.incrementAndGet();
+        removal.remove(key);
+    }
+
+    /**
+     * Returns the number of changes so far; a cache reads this before calculating entries, and keeps them only if
+     * {@link #isUnchangedSince} is true afterwards.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    public boolean isUnchangedSince(long changeCountBefore) {
+        return changeCount.get() == changeCountBefore;
+    }
+
+    /**
+     * Counts a change that removes the whole cache.
+     */
+    public void changed() {
+        changeCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the keys changed in the current transaction, by removal, registering a synchronization to remove them
+     * when the transaction completes, or null if there is no active transaction, or it is already completing (e.g.
+     * when Envers writes audit rows), and it's too late to register one.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Removal<?>, Set<Object>> getChangedKeys() {
+        TransactionSynchronizationRegistry registry = transactionSynchronizationRegistry.get();
+        if (registry == null || registry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return null;
+        }
+        Map<Removal<?>, Set<Object>> changedKeys = (Map<Removal<?>, Set<Object>>) registry.getResource(this);
+        if (changedKeys == null) {
+            final Map<Removal<?>, Set<Object>> newChangedKeys = new LinkedHashMap<>();
+            try {
+                registry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        for (Map.Entry<Removal<?>, Set<Object>> entry : newChangedKeys.entrySet()) {
+                            Removal<Object> removal = (Removal<Object>) entry.getKey();
+                            for (Object key : entry.getValue()) {
+                                remove(key, removal);
+                            }
+                        }
+                    }
+                });
+            } catch (IllegalStateException e) {
+                return null;
+            }
+            changedKeys = newChangedKeys;
+            registry.putResource(this, newChangedKeys);
+        }
+        return changedKeys;
+    }
+}
@@ -5,17 +5,21 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.annotation.Nonnull;
+import javax.ejb.LocalBean;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Registry of scheduled items for the application.  To use this class, subclass AbstractCache
  * and override refreshCache().
  */
 @Singleton
+@LocalBean
 @Startup
-public class ExternalDataCacheControl extends AbstractCacheControl {
+public class ExternalDataCacheControl extends AbstractCacheControl implements ExternalDataCacheControlMXBean {
 
     private static final Log logger = LogFactory.getLog(ExternalDataCacheControl.class);
 
@@ -61,6 +65,18 @@ public class ExternalDataCacheControl extends AbstractCacheControl {
         }
     }
 
+    @Override
+    public List<String> getCacheStatistics() {
+        List<String> statistics = new ArrayList<>();
+        for (AbstractCache cache : caches) {
+            String cacheStatistics = cache.getStatistics();
+            if (cacheStatistics != null) {
+                statistics.add(cache.getClass().getSimpleName() + ": " + cacheStatistics);
+            }
+        }
+        return statistics;
+    }
+
     @Override
     public int getMaximumCacheSize() {
         return maxCacheSize;
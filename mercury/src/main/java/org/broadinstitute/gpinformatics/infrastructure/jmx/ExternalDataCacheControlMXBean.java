@@ -0,0 +1,11 @@
+package org.broadinstitute.gpinformatics.infrastructure.jmx;
+
+import java.util.List;
+
+/**
+ * Adds the statistics of the registered {@link AbstractCache}s to the basic cache controls shown in JConsole.
+ */
+public interface ExternalDataCacheControlMXBean extends CacheControlMXBean {
+
+    public List<String> getCacheStatistics();
+}
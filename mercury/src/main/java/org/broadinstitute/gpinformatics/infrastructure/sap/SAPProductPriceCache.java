@@ -21,22 +21,85 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
-import static com.google.common.collect.MoreCollectors.toOptional;
-
+/**
+ * Application-wide cache of the materials (products and their prices) defined in SAP, for each sales organization.
+ * The materials are held in an immutable index, keyed by upper case part number and then sales organization, which
+ * is built from a complete fetch from SAP and then swapped in, so lookups never wait for a refresh, and never see a
+ * partly built index.
+ */
 @ApplicationScoped
 public class SAPProductPriceCache extends AbstractCache implements Serializable {
 
-    private Set<SAPMaterial> sapMaterials = new HashSet<>();
+    private transient volatile MaterialIndex materialIndex = MaterialIndex.EMPTY;
+
+    /** Serializes fetches from SAP; lookups don't take it unless the cache has never been loaded. */
+    private final Object refreshLock = new Object[0];
 
     private SapIntegrationService sapService;
 
     private static final Log logger = LogFactory.getLog(SAPProductPriceCache.class);
 
+    /**
+     * Immutable snapshot of the SAP materials, with the time it was fetched.
+     */
+    private static class MaterialIndex {
+        private static final MaterialIndex EMPTY = new MaterialIndex(Collections.emptySet(), 0L);
+
+        /** Maps upper case part number to a map from sales organization to material. */
+        private final Map<String, Map<String, SAPMaterial>> mapPartNumberToMaterials;
+        private final int size;
+        private final long refreshedMillis;
+
+        private MaterialIndex(Collection<SAPMaterial> sapMaterials, long refreshedMillis) {
+            Map<String, Map<String, SAPMaterial>> map = new HashMap<>();
+            for (SAPMaterial sapMaterial : sapMaterials) {
+                String key = normalize(sapMaterial.getMaterialIdentifier());
+                if (key == null) {
+                    continue;
+                }
+                SAPMaterial previous = map.computeIfAbsent(key, k -> new HashMap<>())
+                        .putIfAbsent(sapMaterial.getSalesOrg(), sapMaterial);
+                if (previous != null) {
+                    logger.warn("Ignoring duplicate SAP material " + sapMaterial.getMaterialIdentifier() +
+                                " for sales organization " + sapMaterial.getSalesOrg());
+                }
+            }
+            for (Map.Entry<String, Map<String, SAPMaterial>> entry : map.entrySet()) {
+                entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+            }
+            this.mapPartNumberToMaterials = Collections.unmodifiableMap(map);
+            this.size = sapMaterials.size();
+            this.refreshedMillis = refreshedMillis;
+        }
+
+        private boolean isEmpty() {
+            return mapPartNumberToMaterials.isEmpty();
+        }
+
+        private SAPMaterial find(String partNumber, String salesOrg) {
+            String key = normalize(partNumber);
+            Map<String, SAPMaterial> mapSalesOrgToMaterial = key == null ? null : mapPartNumberToMaterials.get(key);
+            return mapSalesOrgToMaterial == null ? null : mapSalesOrgToMaterial.get(salesOrg);
+        }
+
+        private boolean contains(String partNumber) {
+            String key = normalize(partNumber);
+            return key != null && mapPartNumberToMaterials.containsKey(key);
+        }
+
+        private static String normalize(String partNumber) {
+            return partNumber == null ? null : partNumber.toUpperCase(Locale.ROOT);
+        }
+    }
+
     public SAPProductPriceCache() {
     }
 
@@ -49,46 +112,52 @@ public class SAPProductPriceCache extends AbstractCache implements Serializable
         setMaterials(sapMaterials);
     }
 
-
+    /**
+     * Fetches all materials from SAP, and replaces the index.  Concurrent lookups continue to use the previous index
+     * until the new one is complete.  The index is kept if SAP can't be reached, or returns nothing.
+     */
     @Override
-    public synchronized void refreshCache() {
-        try {
-            Set<SAPMaterial> tempSet = sapService.findProductsInSap();
-
-            if(!CollectionUtils.isEmpty(tempSet)) {
-                setMaterials(tempSet);
+    public void refreshCache() {
+        synchronized (refreshLock) {
+            try {
+                long begin = System.currentTimeMillis();
+                Set<SAPMaterial> tempSet = sapService.findProductsInSap();
+
+                if(!CollectionUtils.isEmpty(tempSet)) {
+                    setMaterials(tempSet);
+                    logger.debug(String.format("Refreshed %d SAP materials in %d ms", tempSet.size(),
+                            System.currentTimeMillis() - begin));
+                }
+            } catch (SAPIntegrationException e) {
+                logger.error("Could not refresh the SAP Product Price Cache", e);
             }
-        } catch (SAPIntegrationException e) {
-            logger.error("Could not refresh the SAP Product Price Cache", e);
         }
     }
 
     private void setMaterials(Set<SAPMaterial> tempSet) {
-        sapMaterials = tempSet;
+        materialIndex = new MaterialIndex(tempSet, System.currentTimeMillis());
     }
 
-
-    private Collection<SAPMaterial> getSapMaterials()
-    {
-        if(CollectionUtils.isEmpty(sapMaterials)) {
-            refreshCache();
+    /**
+     * Returns the current index, loading it if the cache has never been loaded.
+     */
+    private MaterialIndex getMaterialIndex() {
+        MaterialIndex index = materialIndex;
+        if (index == null || index.isEmpty()) {
+            synchronized (refreshLock) {
+                index = materialIndex;
+                if (index == null || index.isEmpty()) {
+                    refreshCache();
+                    index = materialIndex;
+                }
+            }
         }
-        return sapMaterials;
+        return index == null ? MaterialIndex.EMPTY : index;
     }
 
     public SAPMaterial findByPartNumber(String partNumber,
                                         String salesOrg) {
-        SAPMaterial foundMaterial = null;
-
-        final Optional<SAPMaterial> optionalMaterial = getSapMaterials().stream()
-                .filter(material -> StringUtils.equalsIgnoreCase(partNumber, material.getMaterialIdentifier()) &&
-                                    StringUtils.equals(material.getSalesOrg(),salesOrg)).collect(toOptional());
-
-        if(optionalMaterial.isPresent()) {
-            foundMaterial = optionalMaterial.get();
-        }
-
-        return foundMaterial;
+        return getMaterialIndex().find(partNumber, salesOrg);
     }
 
     public SAPMaterial findByProduct(Product product, String salesOrganization) {
@@ -96,14 +165,45 @@ public class SAPProductPriceCache extends AbstractCache implements Serializable
         return findByPartNumber(product.getPartNumber(), salesOrganization);
     }
 
+    /**
+     * Finds the materials for many part numbers, all from the same snapshot of SAP.
+     *
+     * @return map from part number, as given, to material; part numbers not in SAP for the sales organization are
+     * not in the map
+     */
+    public Map<String, SAPMaterial> findByPartNumbers(Collection<String> partNumbers, String salesOrg) {
+        MaterialIndex index = getMaterialIndex();
+        Map<String, SAPMaterial> mapPartNumberToMaterial = new HashMap<>(partNumbers.size());
+        for (String partNumber : partNumbers) {
+            SAPMaterial sapMaterial = index.find(partNumber, salesOrg);
+            if (sapMaterial != null) {
+                mapPartNumberToMaterial.put(partNumber, sapMaterial);
+            }
+        }
+        return mapPartNumberToMaterial;
+    }
+
+    /**
+     * Finds the materials for many products, all from the same snapshot of SAP.
+     *
+     * @return map from product part number to material; products not in SAP for the sales organization are not in
+     * the map
+     */
+    public Map<String, SAPMaterial> findByProducts(Collection<Product> products, String salesOrganization) {
+        List<String> partNumbers = new ArrayList<>(products.size());
+        for (Product product : products) {
+            partNumbers.add(product.getPartNumber());
+        }
+        return findByPartNumbers(partNumbers, salesOrganization);
+    }
 
     public void determineIfProductsExist(Collection<Product> products, String salesOrganization)
             throws InvalidProductException {
         List<String> missingProducts = new ArrayList<>();
 
+        Map<String, SAPMaterial> foundMaterials = findByProducts(products, salesOrganization);
         for( Product product:products) {
-            SAPMaterial foundMaterial = findByProduct(product, salesOrganization);
-            if(foundMaterial == null) {
+            if(!foundMaterials.containsKey(product.getPartNumber())) {
                 missingProducts.add(product.getPartNumber());
             }
         }
@@ -158,13 +258,28 @@ public class SAPProductPriceCache extends AbstractCache implements Serializable
     }
 
     public boolean productExists(String partNumber) {
-        boolean result = false;
-        for (SAPMaterial sapMaterial : getSapMaterials()) {
-            if (StringUtils.equalsIgnoreCase(sapMaterial.getMaterialIdentifier(), partNumber)) {
-                result = true;
-                break;
-            }
-        }
-        return result;
+        return getMaterialIndex().contains(partNumber);
+    }
+
+    /**
+     * @return the number of materials fetched from SAP in the last refresh
+     */
+    public int getSize() {
+        return materialIndex == null ? 0 : materialIndex.size;
+    }
+
+    /**
+     * @return the time of the last successful refresh, or null if the cache has not been loaded
+     */
+    public Date getRefreshedDate() {
+        return materialIndex == null || materialIndex.refreshedMillis == 0L ? null :
+                new Date(materialIndex.refreshedMillis);
+    }
+
+    @Override
+    public String getStatistics() {
+        Date refreshedDate = getRefreshedDate();
+        return String.format("%d materials, refreshed %s", getSize(), refreshedDate == null ? "never" :
+                ((System.currentTimeMillis() - refreshedDate.getTime()) / 1000L) + " seconds ago");
     }
 }
@@ -22,6 +22,8 @@ import org.broadinstitute.gpinformatics.infrastructure.columns.VesselLayoutPlugi
 import org.broadinstitute.gpinformatics.infrastructure.columns.VesselMetricDetailsPlugin;
 import org.broadinstitute.gpinformatics.infrastructure.columns.VolumeHistoryAddRowsListener;
 import org.broadinstitute.gpinformatics.infrastructure.common.ServiceAccessUtility;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceCache;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceSnapshot;
 import org.broadinstitute.gpinformatics.mercury.entity.Metadata;
 import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
 import org.broadinstitute.gpinformatics.mercury.entity.bucket.Bucket;
@@ -1389,10 +1391,17 @@ public class LabVesselSearchDefinition {
                 Map<LabEvent, Set<LabVessel>> mapEventToVessels = labVessel.findVesselsForLabEventType(
                         LabEventType.EMERGE_VOLUME_TRANSFER, true,
                         EnumSet.of(TransferTraverserCriteria.TraversalDirection.Descendants));
+                SampleInstanceCache sampleInstanceCache = context.getSampleInstanceCache();
                 for (Map.Entry<LabEvent, Set<LabVessel>> labEventSetEntry : mapEventToVessels.entrySet()) {
                     for (LabVessel vessel : labEventSetEntry.getValue()) {
-                        for (SampleInstanceV2 sampleInstanceV2 : vessel.getSampleInstancesV2()) {
-                            results.add(sampleInstanceV2.getNearestMercurySampleName());
+                        if (sampleInstanceCache == null) {
+                            for (SampleInstanceV2 sampleInstanceV2 : vessel.getSampleInstancesV2()) {
+                                results.add(sampleInstanceV2.getNearestMercurySampleName());
+                            }
+                        } else {
+                            for (SampleInstanceSnapshot snapshot : sampleInstanceCache.getSampleInstances(vessel)) {
+                                results.add(snapshot.getNearestSampleName());
+                            }
                         }
                     }
                 }
@@ -1658,7 +1667,10 @@ public class LabVesselSearchDefinition {
             @Override
             public Integer evaluate(Object entity, SearchContext context) {
                 LabVessel labVessel = (LabVessel) entity;
-                return labVessel.getSampleInstancesV2().size();
+                if (context.getSampleInstanceCache() == null) {
+                    return labVessel.getSampleInstancesV2().size();
+                }
+                return context.getSampleInstanceCache().getSampleInstances(labVessel).size();
             }
         });
         searchTerms.add(searchTerm);
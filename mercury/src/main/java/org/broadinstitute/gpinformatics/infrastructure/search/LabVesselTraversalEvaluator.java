@@ -5,13 +5,12 @@ import org.broadinstitute.gpinformatics.mercury.entity.vessel.TransferTraverserC
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 /**
  * Traverses all ancestor and descendant vessels of a set of starting vessels. <br />
- * Results include starting vessels
+ * Results include starting vessels.  Each vessel is tagged with the last starting vessel that leads to it.
  */
 public class LabVesselTraversalEvaluator extends TraversalEvaluator {
 
@@ -21,36 +20,19 @@ public class LabVesselTraversalEvaluator extends TraversalEvaluator {
         List<LabVessel> startingVessels = (List<LabVessel>) rootEntities;
         resultLabVessels.addAll(startingVessels);
 
-        Collection<LabVessel> traverserVessels = Collections.EMPTY_SET;
+        // One walk for all the starting vessels, so vessels they share are only traversed once
+        List<Collection<LabVessel>> traversedVessels =
+                new MultiSourceTraversalCriteria().traverse(startingVessels, getTraversalDirection());
 
-        for (LabVessel startingLabVessel : startingVessels) {
-            if( getTraversalDirection() == TransferTraverserCriteria.TraversalDirection.Ancestors ) {
-                if( startingLabVessel.getContainerRole() != null ) {
-                    TransferTraverserCriteria.LabVesselAncestorCriteria containerCriteria = new TransferTraverserCriteria.LabVesselAncestorCriteria();
-                    startingLabVessel.getContainerRole().applyCriteriaToAllPositions(containerCriteria, TransferTraverserCriteria.TraversalDirection.Ancestors );
-                    traverserVessels = containerCriteria.getLabVesselAncestors();
-                } else {
-                    traverserVessels = startingLabVessel.getAncestorVessels();
-                }
-            } else {
-                if( startingLabVessel.getContainerRole() != null ) {
-                    TransferTraverserCriteria.LabVesselDescendantCriteria containerCriteria = new TransferTraverserCriteria.LabVesselDescendantCriteria();
-                    startingLabVessel.getContainerRole().applyCriteriaToAllPositions(containerCriteria, TransferTraverserCriteria.TraversalDirection.Descendants );
-                    traverserVessels = containerCriteria.getLabVesselDescendants();
-                } else {
-                    traverserVessels = startingLabVessel.getDescendantVessels();
-                }
-            }
-
-            for (LabVessel labVessel : traverserVessels) {
+        for (int i = 0; i < startingVessels.size(); i++) {
+            LabVessel startingLabVessel = startingVessels.get(i);
+            for (LabVessel labVessel : traversedVessels.get(i)) {
                 searchInstance.getEvalContext().getPagination().addExtraIdInfo(labVessel.getLabel(),
                         startingLabVessel.getLabel());
                 resultLabVessels.add(labVessel);
             }
         }
 
-
-
         return resultLabVessels;
     }
 
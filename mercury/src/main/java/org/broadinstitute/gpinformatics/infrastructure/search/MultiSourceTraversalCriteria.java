@@ -0,0 +1,226 @@
+package org.broadinstitute.gpinformatics.infrastructure.search;
+
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.TransferTraverserCriteria;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselAndPosition;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselContainer;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselPosition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Traverses the transfers of a set of starting vessels in one walk, sharing the visited vessels and container
+ * positions between them, so the plates and flowcells that the starting vessels have in common are only walked once.
+ * <br />
+ * The walk records the contexts visited from each vessel and container position.  The vessels found for each starting
+ * vessel are then replayed from the recording, with a visited set of its own, so they are the same, and in the same
+ * hop count order, as those found by a separate traversal with {@link LabVesselAncestorCriteria} or
+ * {@link LabVesselDescendantCriteria}.
+ */
+class MultiSourceTraversalCriteria extends TransferTraverserCriteria {
+
+    /** Visited vessels and container positions, keyed by LabVessel or VesselAndPosition. */
+    private final Map<Object, Node> nodes = new HashMap<>();
+
+    /** The contexts currently being evaluated, innermost first. */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    /** The starting vessel currently being traversed. */
+    private Node source;
+
+    /** A starting container position, which is entered before its starting context is evaluated. */
+    private Node pendingRoot;
+
+    /**
+     * A vessel or container position in the transfer graph, or a starting vessel, with the contexts visited from it.
+     */
+    private static class Node {
+        private final List<Step> steps = new ArrayList<>();
+    }
+
+    /**
+     * A context visited from a node: the vessel it found, its hop count relative to the context that entered the node,
+     * and the node that it went on to.
+     */
+    private static class Step {
+        private final LabVessel vessel;
+        private final int hopDelta;
+        /** True for a starting container position, which is skipped if it has already been visited. */
+        private final boolean root;
+        private Node enters;
+
+        private Step(LabVessel vessel, int hopDelta, boolean root, Node enters) {
+            this.vessel = vessel;
+            this.hopDelta = hopDelta;
+            this.root = root;
+            this.enters = enters;
+        }
+    }
+
+    /**
+     * A context being evaluated, and the node whose contexts it is the parent of, if it entered an unvisited one.
+     */
+    private static class Frame {
+        private final Step step;
+        private final int hopCount;
+        private Node entered;
+
+        private Frame(Step step, int hopCount, Node entered) {
+            this.step = step;
+            this.hopCount = hopCount;
+            this.entered = entered;
+        }
+    }
+
+    /**
+     * Traverses from each of the starting vessels.
+     *
+     * @return for each starting vessel, the vessels it leads to (including itself), in hop count order
+     */
+    public List<Collection<LabVessel>> traverse(List<LabVessel> startingVessels, TraversalDirection direction) {
+        List<Node> sources = new ArrayList<>();
+        for (LabVessel startingVessel : startingVessels) {
+            source = new Node();
+            pendingRoot = null;
+            frames.clear();
+            if (startingVessel.getContainerRole() != null) {
+                startingVessel.getContainerRole().applyCriteriaToAllPositions(this, direction);
+            } else {
+                startingVessel.evaluateCriteria(this, direction);
+            }
+            sources.add(source);
+        }
+
+        List<Collection<LabVessel>> traversedVessels = new ArrayList<>();
+        for (Node sourceNode : sources) {
+            Map<Integer, List<LabVessel>> labVesselAtHopCount = new TreeMap<>();
+            replay(sourceNode, 0, new HashSet<Node>(), labVesselAtHopCount);
+            Set<LabVessel> vessels = new LinkedHashSet<>();
+            for (List<LabVessel> vesselList : labVesselAtHopCount.values()) {
+                vessels.addAll(vesselList);
+            }
+            traversedVessels.add(vessels);
+        }
+        return traversedVessels;
+    }
+
+    /**
+     * Visits the contexts recorded for a node, as a traversal that had already visited the given nodes would.
+     */
+    private static void replay(Node node, int hopCount, Set<Node> visited,
+            Map<Integer, List<LabVessel>> labVesselAtHopCount) {
+        for (Step step : node.steps) {
+            int stepHopCount = hopCount + step.hopDelta;
+            boolean enter = step.enters != null && !visited.contains(step.enters);
+            if (step.root && !enter) {
+                continue;
+            }
+            if (step.vessel != null) {
+                List<LabVessel> vesselList = labVesselAtHopCount.get(stepHopCount);
+                if (vesselList == null) {
+                    vesselList = new ArrayList<>();
+                    labVesselAtHopCount.put(stepHopCount, vesselList);
+                }
+                vesselList.add(step.vessel);
+            }
+            if (enter) {
+                visited.add(step.enters);
+                replay(step.enters, stepHopCount, visited, labVesselAtHopCount);
+            }
+        }
+    }
+
+    @Override
+    public TraversalControl evaluateVesselPreOrder(Context context) {
+        Frame parent = frames.peek();
+        if (parent == null && pendingRoot != null) {
+            // Starting context of a container position, which was recorded when the position was entered
+            frames.push(new Frame(null, 0, pendingRoot));
+            pendingRoot = null;
+            return TraversalControl.ContinueTraversing;
+        }
+
+        Node owner = parent == null ? source : parent.entered;
+        int parentHopCount = parent == null ? 0 : parent.hopCount;
+        Step step = new Step(getVessel(context), context.getHopCount() - parentHopCount, false, null);
+        if (owner != null) {
+            owner.steps.add(step);
+        }
+        frames.push(new Frame(step, context.getHopCount(), null));
+        return TraversalControl.ContinueTraversing;
+    }
+
+    @Override
+    public void evaluateVesselPostOrder(Context context) {
+        frames.pop();
+    }
+
+    @Override
+    protected boolean hasVesselBeenTraversed(LabVessel vessel) {
+        boolean traversed = super.hasVesselBeenTraversed(vessel);
+        enter(vessel, traversed, null);
+        return traversed;
+    }
+
+    @Override
+    protected boolean hasVesselPositionBeenTraversed(VesselContainer vessel, VesselPosition position) {
+        boolean traversed = super.hasVesselPositionBeenTraversed(vessel, position);
+        if (vessel == null || position == null) {
+            enter(null, true, null);
+        } else {
+            LabVessel vesselAtPosition = vessel.getVesselAtPosition(position);
+            enter(new VesselAndPosition(vessel.getEmbedder(), position), traversed,
+                    vesselAtPosition == null ? vessel.getEmbedder() : vesselAtPosition);
+        }
+        return traversed;
+    }
+
+    /**
+     * Records the vessel or container position that the current context goes on to.
+     *
+     * @param rootVessel the vessel found by the starting context of a container position
+     */
+    private void enter(Object key, boolean traversed, LabVessel rootVessel) {
+        Node node = null;
+        if (key != null) {
+            node = nodes.get(key);
+            if (node == null) {
+                node = new Node();
+                nodes.put(key, node);
+            }
+        }
+
+        Frame parent = frames.peek();
+        if (parent == null) {
+            // A starting container position
+            source.steps.add(new Step(rootVessel, 0, true, node));
+            pendingRoot = traversed ? null : node;
+        } else {
+            if (parent.step != null) {
+                parent.step.enters = node;
+            }
+            if (!traversed) {
+                parent.entered = node;
+            }
+        }
+    }
+
+    private static LabVessel getVessel(Context context) {
+        if (context.getContextVessel() != null) {
+            return context.getContextVessel();
+        } else if (context.getContextVesselContainer() != null) {
+            return context.getContextVesselContainer().getEmbedder();
+        }
+        return null;
+    }
+}
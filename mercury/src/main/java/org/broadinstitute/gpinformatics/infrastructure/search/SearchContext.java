@@ -9,6 +9,7 @@ import org.broadinstitute.gpinformatics.infrastructure.columns.ColumnEntity;
 import org.broadinstitute.gpinformatics.infrastructure.columns.ConfigurableList;
 import org.broadinstitute.gpinformatics.infrastructure.jira.JiraConfig;
 import org.broadinstitute.gpinformatics.infrastructure.quote.PriceListCache;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceCache;
 import org.broadinstitute.gpinformatics.mercury.presentation.UserBean;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -51,6 +52,7 @@ public class SearchContext {
     private SapQuoteLink sapQuoteLink;
     private ProductOrder.QuoteSourceType quoteSourceType;
     private UserBean userBean;
+    private SampleInstanceCache sampleInstanceCache;
 
     private ResultParamValues rowTraverserParams;
 
@@ -273,6 +275,18 @@ public class SearchContext {
         this.priceListCache = priceListCache;
     }
 
+    /**
+     * Application wide sample instances, so vessel columns don't walk the transfer ancestry of every row.  Null when
+     * not in a container, in which case columns compute sample instances from the entity.
+     */
+    public SampleInstanceCache getSampleInstanceCache() {
+        return sampleInstanceCache;
+    }
+
+    public void setSampleInstanceCache(SampleInstanceCache sampleInstanceCache) {
+        this.sampleInstanceCache = sampleInstanceCache;
+    }
+
     public QuoteLink getQuoteLink() {
         return quoteLink;
     }
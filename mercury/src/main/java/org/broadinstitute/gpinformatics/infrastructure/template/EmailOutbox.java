@@ -0,0 +1,553 @@
+package org.broadinstitute.gpinformatics.infrastructure.template;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.deployment.AppConfig;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide outbox of emails that are sent in the background, so callers such as the BettaLIMS message resource
+ * don't wait on the mail server.  Queued emails are written to a local directory until they are sent, so they survive a
+ * restart.
+ * <p/>
+ * An email waits in the outbox for the coalesce window; emails with the same subject and recipients that are queued in
+ * the meantime are merged into it, and sent with it as one digest.  An email that can't be sent is retried, waiting
+ * twice as long each time, up to a maximum number of attempts, after which its file is renamed with a .failed
+ * extension.
+ * <p/>
+ * Emails are sent by a worker on a thread of its own, which is replaced if it stops while the outbox is running.
+ */
+@Startup
+@Singleton
+@LocalBean
+@ConcurrencyManagement(BEAN)
+public class EmailOutbox extends AbstractCacheControl implements EmailOutboxMXBean {
+
+    private static final Log log = LogFactory.getLog(EmailOutbox.class);
+
+    private static final String MESSAGE_SUFFIX = ".msg";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final String FAILED_SUFFIX = ".failed";
+
+    private static final int DEFAULT_MAXIMUM_DIGEST_SIZE = 50;
+
+    /** Limits the doubling of the wait between retries. */
+    private static final int MAXIMUM_BACKOFF_DOUBLINGS = 10;
+
+    @Inject
+    private AppConfig appConfig;
+
+    @Resource(mappedName = "java:jboss/mail/Default")
+    private Session mailSession;
+
+    /**
+     * Creates the worker's own thread, rather than tying up a thread of the shared managed executor for the life of
+     * the application; null outside the container, in which case emails are sent by {@link #invalidateCache()}.
+     */
+    @Resource(lookup = "java:comp/DefaultManagedThreadFactory")
+    private ThreadFactory threadFactory;
+
+    /** Null if the directory can't be created, in which case emails are only kept in memory. */
+    private File directory;
+
+    private int maximumDigestSize = DEFAULT_MAXIMUM_DIGEST_SIZE;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    /** Emails waiting to be sent, not including the one being sent.  Guarded by lock. */
+    private final List<OutboxMessage> pending = new ArrayList<>();
+
+    /** Whether the worker should keep running.  Guarded by lock. */
+    private boolean running;
+
+    /** The thread sending emails, if there is a thread factory.  Guarded by lock. */
+    private Thread worker;
+
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * An email in the outbox, with the bodies of the emails merged into it.
+     */
+    private static class OutboxMessage implements Serializable {
+        private static final long serialVersionUID = 4170231949215364781L;
+
+        private final String id = UUID.randomUUID().toString();
+        private final String to;
+        private final List<String> ccAddresses;
+        private final String subject;
+        private final List<String> bodies = new ArrayList<>();
+        private final long firstQueuedMillis;
+        private long lastQueuedMillis;
+        /** Number of emails merged, including those whose bodies weren't kept. */
+        private int count = 1;
+        private int attempts;
+        private long nextAttemptMillis;
+
+        private OutboxMessage(String to, List<String> ccAddresses, String subject, String body, long queuedMillis,
+                long nextAttemptMillis) {
+            this.to = to;
+            this.ccAddresses = ccAddresses;
+            this.subject = subject;
+            bodies.add(body);
+            firstQueuedMillis = queuedMillis;
+            lastQueuedMillis = queuedMillis;
+            this.nextAttemptMillis = nextAttemptMillis;
+        }
+
+        private boolean matches(String to, List<String> ccAddresses, String subject) {
+            return Objects.equals(this.to, to) && Objects.equals(this.subject, subject) &&
+                   new HashSet<>(this.ccAddresses).equals(new HashSet<>(ccAddresses));
+        }
+
+        private void merge(String body, long queuedMillis, int maximumDigestSize) {
+            if (bodies.size() < maximumDigestSize) {
+                bodies.add(body);
+            }
+            count++;
+            lastQueuedMillis = queuedMillis;
+        }
+
+        private String getDigestSubject() {
+            return count == 1 ? subject : StringUtils.defaultString(subject) + " (" + count + " messages)";
+        }
+
+        private String getDigestBody() {
+            if (count == 1) {
+                return bodies.get(0);
+            }
+            StringBuilder digest = new StringBuilder();
+            digest.append("<p>").append(count).append(" messages between ").append(new Date(firstQueuedMillis))
+                    .append(" and ").append(new Date(lastQueuedMillis)).append("</p>");
+            for (String body : bodies) {
+                digest.append("<hr/>").append(StringUtils.defaultString(body));
+            }
+            if (count > bodies.size()) {
+                digest.append("<hr/><p>").append(count - bodies.size()).append(" more messages not shown</p>");
+            }
+            return digest.toString();
+        }
+    }
+
+    public EmailOutbox() {
+    }
+
+    /**
+     * Container free constructor, need to initialize all dependencies explicitly, and call {@link #start()}.
+     *
+     * @param threadFactory creates the worker thread, or null to send emails only when {@link #invalidateCache()} is
+     *                      called
+     */
+    public EmailOutbox(AppConfig appConfig, Session mailSession, ThreadFactory threadFactory) {
+        this.appConfig = appConfig;
+        this.mailSession = mailSession;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Loads the emails left in the outbox directory by a previous run, and starts the worker.
+     */
+    @PostConstruct
+    public void start() {
+        String directoryName = appConfig.getEmailOutboxDirectory();
+        if (StringUtils.isBlank(directoryName)) {
+            directoryName = System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir")) +
+                            File.separator + "email-outbox";
+        }
+        directory = new File(directoryName);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.error("Could not create email outbox " + directory + ", queued emails will be lost on restart");
+            directory = null;
+        }
+
+        lock.lock();
+        try {
+            if (directory != null) {
+                load();
+            }
+            running = true;
+            startWorker();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a worker thread, unless there is one already or there is no thread factory.  Called with lock held.
+     */
+    private void startWorker() {
+        if (threadFactory == null || !running || (worker != null && worker.isAlive())) {
+            return;
+        }
+        try {
+            worker = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            });
+            worker.setName("EmailOutbox worker");
+            worker.setDaemon(true);
+            worker.start();
+        } catch (RuntimeException e) {
+            worker = null;
+            log.error("Could not start the email outbox worker, emails will be sent when the next one is queued", e);
+        }
+    }
+
+    /**
+     * Stops the worker after the email it is sending, if any.  Emails that haven't been sent stay in the outbox
+     * directory.
+     */
+    @PreDestroy
+    public void stopWorker() {
+        lock.lock();
+        try {
+            running = false;
+            worker = null;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues an HTML email, merging it with a queued email that has the same subject and recipients if that was
+     * queued within the coalesce window.
+     */
+    public void queue(String to, Collection<String> ccAddresses, String subject, String body) {
+        List<String> ccList = ccAddresses == null ? new ArrayList<String>() : new ArrayList<>(ccAddresses);
+        long now = System.currentTimeMillis();
+        queuedCount.incrementAndGet();
+        lock.lock();
+        try {
+            for (OutboxMessage message : pending) {
+                if (message.matches(to, ccList, subject) &&
+                    now - message.firstQueuedMillis < appConfig.getEmailCoalesceWindowMillis()) {
+                    message.merge(body, now, getMaximumCacheSize());
+                    coalescedCount.incrementAndGet();
+                    write(message);
+                    return;
+                }
+            }
+            OutboxMessage message = new OutboxMessage(to, ccList, subject, body, now,
+                    now + appConfig.getEmailCoalesceWindowMillis());
+            pending.add(message);
+            write(message);
+            // Replaces a worker that has stopped.
+            startWorker();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends emails as they become due, until the outbox is stopped.  If the worker stops for any other reason, e.g.
+     * it is interrupted or sending throws an Error, it is replaced, so queued emails aren't left unsent until the
+     * next deployment.
+     */
+    private void runWorker() {
+        OutboxMessage message = null;
+        try {
+            while ((message = takeDueMessage(true)) != null) {
+                send(message);
+                message = null;
+            }
+        } catch (Throwable e) {
+            log.error("Email outbox worker failed", e);
+            if (message != null) {
+                // Counted as an attempt, so an email that always fails this way is eventually given up on.
+                retryOrGiveUp(message, e);
+            }
+        } finally {
+            lock.lock();
+            try {
+                if (running && worker == Thread.currentThread()) {
+                    log.error("Email outbox worker stopped unexpectedly, restarting it");
+                    worker = null;
+                    startWorker();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sends the emails that are due, in the caller.
+     */
+    void sendDueMessages() {
+        OutboxMessage message;
+        while ((message = takeDueMessage(false)) != null) {
+            send(message);
+        }
+    }
+
+    /**
+     * Removes the email that is due first from the pending emails.
+     *
+     * @param wait whether to wait until an email is due, rather than return null if none is due now
+     * @return the email, or null if none is due, or the worker is stopped
+     */
+    private OutboxMessage takeDueMessage(boolean wait) {
+        lock.lock();
+        try {
+            while (!wait || running) {
+                OutboxMessage next = null;
+                for (OutboxMessage message : pending) {
+                    if (next == null || message.nextAttemptMillis < next.nextAttemptMillis) {
+                        next = message;
+                    }
+                }
+                if (next != null && next.nextAttemptMillis <= System.currentTimeMillis()) {
+                    pending.remove(next);
+                    return next;
+                }
+                if (!wait) {
+                    return null;
+                }
+                if (next == null) {
+                    changed.await();
+                } else {
+                    changed.await(next.nextAttemptMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends an email taken from the pending emails, and puts it back to be retried if that fails.
+     */
+    private void send(OutboxMessage message) {
+        try {
+            Transport.send(EmailSender.createMessage(mailSession, message.to, message.ccAddresses,
+                    message.getDigestSubject(), message.getDigestBody()));
+            sentCount.incrementAndGet();
+            delete(message);
+        } catch (Exception e) {
+            retryOrGiveUp(message, e);
+        }
+    }
+
+    /**
+     * Puts an email that couldn't be sent back to be retried after a backoff, or gives up on it after the maximum
+     * number of attempts.
+     */
+    private void retryOrGiveUp(OutboxMessage message, Throwable e) {
+        message.attempts++;
+        if (message.attempts >= appConfig.getEmailMaxAttempts()) {
+            failedCount.incrementAndGet();
+            log.error("Giving up on email \"" + message.subject + "\" to " + message.to + " after " +
+                      message.attempts + " attempts", e);
+            markFailed(message);
+            return;
+        }
+        retryCount.incrementAndGet();
+        log.warn("Failed to send email \"" + message.subject + "\" to " + message.to + ", will retry", e);
+        message.nextAttemptMillis = System.currentTimeMillis() + (appConfig.getEmailRetryBackoffMillis() <<
+                Math.min(message.attempts - 1, MAXIMUM_BACKOFF_DOUBLINGS));
+        requeue(message);
+    }
+
+    /**
+     * Puts an email taken from the pending emails back, to be sent when it is next due.
+     */
+    private void requeue(OutboxMessage message) {
+        lock.lock();
+        try {
+            pending.add(message);
+            write(message);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.getName().endsWith(MESSAGE_SUFFIX)) {
+                continue;
+            }
+            try (ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(file))) {
+                pending.add((OutboxMessage) inputStream.readObject());
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                log.error("Could not read email " + file + " from outbox", e);
+                rename(file, new File(directory,
+                        StringUtils.removeEnd(file.getName(), MESSAGE_SUFFIX) + FAILED_SUFFIX));
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Loaded " + pending.size() + " emails from outbox " + directory);
+        }
+    }
+
+    /**
+     * Writes the email to the outbox directory, replacing the previous version.
+     */
+    private void write(OutboxMessage message) {
+        if (directory == null) {
+            return;
+        }
+        File temporary = new File(directory, message.id + TEMPORARY_SUFFIX);
+        File file = new File(directory, message.id + MESSAGE_SUFFIX);
+        try {
+            try (ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(temporary))) {
+                outputStream.writeObject(message);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Could not write email " + file + " to outbox, it will be lost on restart", e);
+        }
+    }
+
+    private void delete(OutboxMessage message) {
+        if (directory == null) {
+            return;
+        }
+        File file = new File(directory, message.id + MESSAGE_SUFFIX);
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.error("Could not delete sent email " + file + " from outbox, it will be sent again on restart", e);
+        }
+    }
+
+    private void markFailed(OutboxMessage message) {
+        if (directory != null) {
+            rename(new File(directory, message.id + MESSAGE_SUFFIX), new File(directory, message.id + FAILED_SUFFIX));
+        }
+    }
+
+    private static void rename(File from, File to) {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not rename " + from + " to " + to, e);
+        }
+    }
+
+    /**
+     * Sends the queued emails now, rather than waiting for the rest of the coalesce window or for the next retry,
+     * starting a new worker if the last one stopped.
+     */
+    @Override
+    public void invalidateCache() {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (OutboxMessage message : pending) {
+                message.nextAttemptMillis = Math.min(message.nextAttemptMillis, now);
+            }
+            startWorker();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (threadFactory == null) {
+            sendDueMessages();
+        }
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumDigestSize;
+    }
+
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumDigestSize = max;
+    }
+
+    @Override
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    @Override
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
@@ -0,0 +1,23 @@
+package org.broadinstitute.gpinformatics.infrastructure.template;
+
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheControlMXBean;
+
+/**
+ * Adds the {@link EmailOutbox} counters to the basic cache controls shown in JConsole.  The maximum cache size is the
+ * maximum number of emails kept in a digest (the rest are only counted), and invalidating the cache sends the queued
+ * emails now.
+ */
+public interface EmailOutboxMXBean extends CacheControlMXBean {
+
+    public int getPendingCount();
+
+    public long getQueuedCount();
+
+    public long getCoalescedCount();
+
+    public long getSentCount();
+
+    public long getRetryCount();
+
+    public long getFailedCount();
+}
@@ -9,7 +9,9 @@ import org.broadinstitute.gpinformatics.mercury.boundary.InformaticsServiceExcep
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
 import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
@@ -30,16 +32,27 @@ public class EmailSender implements Serializable {
     @Resource(mappedName = "java:jboss/mail/Default")
     private Session mailSession;
 
+    /** Null outside the container, in which case emails are sent by the caller. */
+    @Inject
+    private EmailOutbox emailOutbox;
+
     // for testing
     EmailSender(Session mailSession) {
         this.mailSession = mailSession;
     }
 
+    // for testing
+    EmailSender(Session mailSession, EmailOutbox emailOutbox) {
+        this.mailSession = mailSession;
+        this.emailOutbox = emailOutbox;
+    }
+
     public EmailSender() {
     }
 
     /**
-     * Send an email in HTML format
+     * Send an email in HTML format.  If exceptions are ignored, the email is queued in the {@link EmailOutbox}, which
+     * sends it in the background, so the caller doesn't wait on the mail server.
      * @param appConfig The configuration for the deployed app.  This determines
      *                  whether email will actually be sent.
      * @param to address
@@ -47,23 +60,20 @@ public class EmailSender implements Serializable {
      * @param subject subject line
      * @param body HTML
      * @param overrideForTest
-     * @return null if not configured to send, false if there was a problem sending, or true if send succeeded.
+     * @return null if not configured to send, false if there was a problem sending, or true if send succeeded (or the
+     *         email was queued).
      */
     public Boolean sendHtmlEmail(@Nonnull AppConfig appConfig, String to,
                               Collection<String> ccAddrdesses, String subject, String body, boolean overrideForTest,
                               boolean ignoreExceptions) {
         if (appConfig.shouldSendEmail() || overrideForTest) {
+            if (emailOutbox != null && ignoreExceptions) {
+                emailOutbox.queue(to, ccAddrdesses, subject, body);
+                return true;
+            }
             if (mailSession != null) {
                 try {
-                    Message message = new MimeMessage(mailSession);
-                    message.setFrom(new InternetAddress("gplims@broadinstitute.org"));
-                    message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to, false));
-                    message.setRecipients(Message.RecipientType.CC,
-                            InternetAddress.parse(StringUtils.join(ccAddrdesses, ",")));
-                    message.setSubject(subject);
-                    message.setContent(body, "text/html; charset=utf-8");
-                    message.setSentDate(new Date());
-                    Transport.send(message);
+                    Transport.send(createMessage(mailSession, to, ccAddrdesses, subject, body));
                     return true;
 
                 } catch (Exception e) {
@@ -82,4 +92,16 @@ public class EmailSender implements Serializable {
             return null;
         }
     }
+
+    static Message createMessage(Session mailSession, String to, Collection<String> ccAddrdesses, String subject,
+            String body) throws MessagingException {
+        Message message = new MimeMessage(mailSession);
+        message.setFrom(new InternetAddress("gplims@broadinstitute.org"));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to, false));
+        message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(StringUtils.join(ccAddrdesses, ",")));
+        message.setSubject(subject);
+        message.setContent(body, "text/html; charset=utf-8");
+        message.setSentDate(new Date());
+        return message;
+    }
 }
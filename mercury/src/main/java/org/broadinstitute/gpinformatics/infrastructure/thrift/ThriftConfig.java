@@ -19,6 +19,18 @@ public class ThriftConfig extends AbstractConfig implements Serializable {
 
     private int port;
 
+    /** Maximum number of connections to the thrift service, in use or idle. */
+    private int poolMaxSize = 8;
+
+    /** How long a call waits for a connection when they are all in use. */
+    private int poolBorrowTimeoutMillis = 30000;
+
+    /** How long an idle connection is kept open. */
+    private int poolIdleTimeoutSeconds = 60;
+
+    /** Socket timeout for connecting and for each read of a call. */
+    private int callTimeoutMillis = 300000;
+
     @Inject
     public ThriftConfig(@Nonnull Deployment deployment) {
         super(deployment);
@@ -40,6 +52,38 @@ public class ThriftConfig extends AbstractConfig implements Serializable {
         this.port = port;
     }
 
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    public void setPoolMaxSize(int poolMaxSize) {
+        this.poolMaxSize = poolMaxSize;
+    }
+
+    public int getPoolBorrowTimeoutMillis() {
+        return poolBorrowTimeoutMillis;
+    }
+
+    public void setPoolBorrowTimeoutMillis(int poolBorrowTimeoutMillis) {
+        this.poolBorrowTimeoutMillis = poolBorrowTimeoutMillis;
+    }
+
+    public int getPoolIdleTimeoutSeconds() {
+        return poolIdleTimeoutSeconds;
+    }
+
+    public void setPoolIdleTimeoutSeconds(int poolIdleTimeoutSeconds) {
+        this.poolIdleTimeoutSeconds = poolIdleTimeoutSeconds;
+    }
+
+    public int getCallTimeoutMillis() {
+        return callTimeoutMillis;
+    }
+
+    public void setCallTimeoutMillis(int callTimeoutMillis) {
+        this.callTimeoutMillis = callTimeoutMillis;
+    }
+
     public static ThriftConfig produce(Deployment deployment) {
         return produce(ThriftConfig.class, deployment);
     }
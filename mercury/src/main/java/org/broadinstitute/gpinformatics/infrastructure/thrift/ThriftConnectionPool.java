@@ -0,0 +1,324 @@
+package org.broadinstitute.gpinformatics.infrastructure.thrift;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransportException;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.LocalBean;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide pool of connections to the LIMQueries thrift service, so a burst of calls doesn't pay for a TCP
+ * connect and teardown each time.  The number of connections, in use or idle, is bounded; callers wait for a
+ * connection when they are all in use, up to a timeout.  An idle connection is checked before it is reused, and closed
+ * once it has been idle for a while.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(BEAN)
+public class ThriftConnectionPool extends AbstractCacheControl implements ThriftConnectionPoolMXBean {
+
+    private static final Log log = LogFactory.getLog(ThriftConnectionPool.class);
+
+    @Inject
+    private ThriftConfig thriftConfig;
+
+    private int maximumSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition returned = lock.newCondition();
+
+    /** Idle connections, most recently used first.  Guarded by lock. */
+    private final Deque<PooledSocket> idle = new ArrayDeque<>();
+
+    /** Number of connections borrowed and not yet released.  Guarded by lock. */
+    private int activeCount;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong connectionFailureCount = new AtomicLong();
+
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    /**
+     * An idle connection, and when it was released.
+     */
+    private static class PooledSocket {
+        private final TSocket socket;
+        private final long releasedNanos;
+
+        private PooledSocket(TSocket socket, long releasedNanos) {
+            this.socket = socket;
+            this.releasedNanos = releasedNanos;
+        }
+    }
+
+    public ThriftConnectionPool() {
+    }
+
+    /**
+     * Container free constructor, need to initialize all dependencies explicitly.
+     */
+    public ThriftConnectionPool(ThriftConfig thriftConfig) {
+        this.thriftConfig = thriftConfig;
+    }
+
+    /**
+     * Returns an open connection to the thrift service, waiting for one to be released if they are all in use.  The
+     * connection must be returned with {@link #release}.
+     */
+    public TSocket borrow() {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(thriftConfig.getPoolBorrowTimeoutMillis());
+            while (activeCount >= getMaximumCacheSize()) {
+                if (remainingNanos <= 0L) {
+                    throw new RuntimeException("Timed out waiting for a thrift connection to " +
+                                               thriftConfig.getHost() + ":" + thriftConfig.getPort() + ", " +
+                                               activeCount + " in use");
+                }
+                remainingNanos = returned.awaitNanos(remainingNanos);
+            }
+            activeCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for a thrift connection", e);
+        } finally {
+            lock.unlock();
+        }
+        recordBorrowWait(System.nanoTime() - start);
+
+        // Reuses the most recently used idle connection that is still good
+        while (true) {
+            PooledSocket pooledSocket;
+            lock.lock();
+            try {
+                pooledSocket = idle.pollFirst();
+            } finally {
+                lock.unlock();
+            }
+            if (pooledSocket == null) {
+                break;
+            }
+            if (!isExpired(pooledSocket, System.nanoTime()) && isValid(pooledSocket.socket)) {
+                return pooledSocket.socket;
+            }
+            evict(pooledSocket.socket);
+        }
+
+        TSocket socket = new TSocket(thriftConfig.getHost(), thriftConfig.getPort(),
+                thriftConfig.getCallTimeoutMillis());
+        try {
+            socket.open();
+            createdCount.incrementAndGet();
+            return socket;
+        } catch (TTransportException e) {
+            connectionFailureCount.incrementAndGet();
+            release(socket, false);
+            throw new RuntimeException("Could not open thrift connection at " + thriftConfig.getHost() + ":" +
+                                       thriftConfig.getPort(), e);
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     *
+     * @param reusable false if the connection may be in a bad state, e.g. after a failed call, so it is closed
+     */
+    public void release(TSocket socket, boolean reusable) {
+        boolean keep = false;
+        lock.lock();
+        try {
+            activeCount--;
+            if (reusable && socket.isOpen() && idle.size() + activeCount < getMaximumCacheSize()) {
+                idle.addFirst(new PooledSocket(socket, System.nanoTime()));
+                keep = true;
+            }
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (!keep) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle for longer than the idle timeout.
+     */
+    @Schedule(minute = "*", hour = "*", persistent = false)
+    public void evictIdleConnections() {
+        List<PooledSocket> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            // Least recently used are last
+            while (!idle.isEmpty() && isExpired(idle.peekLast(), now)) {
+                expired.add(idle.pollLast());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledSocket pooledSocket : expired) {
+            evict(pooledSocket.socket);
+        }
+    }
+
+    private boolean isExpired(PooledSocket pooledSocket, long now) {
+        return now - pooledSocket.releasedNanos >
+               TimeUnit.SECONDS.toNanos(thriftConfig.getPoolIdleTimeoutSeconds());
+    }
+
+    private void evict(TSocket socket) {
+        evictedCount.incrementAndGet();
+        socket.close();
+    }
+
+    /**
+     * Checks that the service hasn't closed an idle connection.  Nothing should be waiting to be read between calls,
+     * so a read that times out means the connection is still good.
+     */
+    private static boolean isValid(TSocket transport) {
+        Socket socket = transport.getSocket();
+        if (!transport.isOpen() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        try {
+            int soTimeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            try {
+                socket.getInputStream().read();
+                return false;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } finally {
+                socket.setSoTimeout(soTimeout);
+            }
+        } catch (IOException e) {
+            log.debug("Discarding thrift connection", e);
+            return false;
+        }
+    }
+
+    private void recordBorrowWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        borrowWaitNanos.addAndGet(waitNanos);
+        maxBorrowWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Closes the idle connections.  Connections in use are closed when they are released, if the pool is full.
+     */
+    @Override
+    public void invalidateCache() {
+        List<PooledSocket> closing;
+        lock.lock();
+        try {
+            closing = new ArrayList<>(idle);
+            idle.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledSocket pooledSocket : closing) {
+            evict(pooledSocket.socket);
+        }
+    }
+
+    @PreDestroy
+    public void closeConnections() {
+        invalidateCache();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumSize > 0 ? maximumSize : thriftConfig.getPoolMaxSize();
+    }
+
+    @Override
+    public void setMaximumCacheSize(int max) {
+        lock.lock();
+        try {
+            maximumSize = max;
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return activeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    @Override
+    public long getBorrowWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(borrowWaitNanos.get());
+    }
+
+    @Override
+    public long getMaxBorrowWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxBorrowWaitNanos.get());
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    @Override
+    public long getConnectionFailureCount() {
+        return connectionFailureCount.get();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+}
@@ -0,0 +1,26 @@
+package org.broadinstitute.gpinformatics.infrastructure.thrift;
+
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheControlMXBean;
+
+/**
+ * Adds the {@link ThriftConnectionPool} counters to the basic cache controls shown in JConsole.  The maximum cache
+ * size is the maximum number of connections, and invalidating the cache closes the idle connections.
+ */
+public interface ThriftConnectionPoolMXBean extends CacheControlMXBean {
+
+    public int getActiveCount();
+
+    public int getIdleCount();
+
+    public long getBorrowCount();
+
+    public long getBorrowWaitMillis();
+
+    public long getMaxBorrowWaitMillis();
+
+    public long getCreatedCount();
+
+    public long getConnectionFailureCount();
+
+    public long getEvictedCount();
+}
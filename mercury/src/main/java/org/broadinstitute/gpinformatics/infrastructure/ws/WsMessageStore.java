@@ -2,6 +2,7 @@ package org.broadinstitute.gpinformatics.infrastructure.ws;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.SortedMap;
 
 /**
  * A facility for storing messages received through web services, so they can be resubmitted in case of error.
@@ -14,4 +15,43 @@ public interface WsMessageStore extends Serializable {
     void store(String resourceType, String message, Date receivedDate);
 
     void recordError(String resourceType, String message, Date receivedDate, Exception exception);
+
+    /**
+     * Records that a message has been acknowledged but not yet processed, so it can be processed after a restart.
+     *
+     * @return the ID of the pending message, unique even among messages received in the same millisecond
+     */
+    String recordPending(String resourceType, String message, Date receivedDate);
+
+    /**
+     * Records that a pending message has been processed, successfully or not.
+     */
+    void removePending(String resourceType, String pendingId);
+
+    /**
+     * Returns the messages that were recorded as pending and not removed, by pending ID, which sorts them in the
+     * order they were received.
+     */
+    SortedMap<String, PendingMessage> findPending(String resourceType);
+
+    /**
+     * A message that was recorded as pending.
+     */
+    class PendingMessage implements Serializable {
+        private final String message;
+        private final Date receivedDate;
+
+        public PendingMessage(String message, Date receivedDate) {
+            this.message = message;
+            this.receivedDate = receivedDate;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public Date getReceivedDate() {
+            return receivedDate;
+        }
+    }
 }
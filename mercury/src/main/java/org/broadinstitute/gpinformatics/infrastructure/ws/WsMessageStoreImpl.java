@@ -1,6 +1,9 @@
 package org.broadinstitute.gpinformatics.infrastructure.ws;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.broadinstitute.gpinformatics.infrastructure.deckmsgs.DeckMessagesConfig;
 
 import javax.enterprise.context.Dependent;
@@ -10,9 +13,17 @@ import javax.xml.bind.UnmarshalException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.Format;
+import java.text.ParseException;
 import java.util.Date;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles server-side storage of the text of messages from liquid handling decks.  If the database persistence fails,
@@ -22,6 +33,8 @@ import java.util.Date;
 @Default
 public class WsMessageStoreImpl implements WsMessageStore {
 
+    private static final Log log = LogFactory.getLog(WsMessageStoreImpl.class);
+
     @SuppressWarnings("CdiInjectionPointsInspection")
     @Inject
     private DeckMessagesConfig deckMessagesConfig;
@@ -35,11 +48,22 @@ public class WsMessageStoreImpl implements WsMessageStore {
     /** Name of the ignore error directory, where messages with ignored exceptions are stored */
     public static final String IGNORE_DIR = "ignore";
 
+    /** Name of the pending directory, where acknowledged messages are kept until they have been processed */
+    public static final String PENDING_DIR = "pending";
+
+    private static final String MESSAGE_SUFFIX = ".xml";
+
     /** One inbox directory per day */
     private final Format directoryFormat = FastDateFormat.getInstance("yyyyMMdd");
 
     /** Part of the file name.  Millisecond resolution should be enough to avoid collisions, BettaLIMS has worked like this for years */
-    private final Format fileFormat = FastDateFormat.getInstance("yyyyMMdd_HHmmssSSS");
+    private final FastDateFormat fileFormat = FastDateFormat.getInstance("yyyyMMdd_HHmmssSSS");
+
+    /**
+     * Distinguishes pending messages received in the same millisecond, which the deck sends concurrently.  Instances
+     * are dependent, so the sequence is shared.
+     */
+    private static final AtomicLong pendingSequence = new AtomicLong();
 
     /** For CDI */
     WsMessageStoreImpl() {
@@ -124,4 +148,74 @@ public class WsMessageStoreImpl implements WsMessageStore {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Writes the message to the pending directory, through a temporary file, so a crash never leaves a partial
+     * message there.  The pending ID is the received time followed by a sequence number, so IDs sort in the order
+     * messages were received.
+     */
+    @Override
+    public String recordPending(String resourceType, String message, Date receivedDate) {
+        File pendingDirectory = getPendingDirectory(resourceType);
+        if (!pendingDirectory.exists()) {
+            if (!pendingDirectory.mkdirs()) {
+                // mkdirs can fail if two threads attempt it simultaneously, so try again
+                if (!pendingDirectory.mkdirs()) {
+                    throw new RuntimeException("Failed to create pending directory for " + resourceType);
+                }
+            }
+        }
+        String pendingId = fileFormat.format(receivedDate) + "_" +
+                           String.format("%010d", pendingSequence.incrementAndGet());
+        String fileName = pendingId + MESSAGE_SUFFIX;
+        File tempFile = new File(pendingDirectory, fileName + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), message.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), new File(pendingDirectory, fileName).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to record pending message " + fileName, e);
+        }
+        return pendingId;
+    }
+
+    @Override
+    public void removePending(String resourceType, String pendingId) {
+        String fileName = pendingId + MESSAGE_SUFFIX;
+        File messageFile = new File(getPendingDirectory(resourceType), fileName);
+        if (messageFile.exists() && !messageFile.delete()) {
+            log.error("Failed to remove pending message " + messageFile);
+        }
+    }
+
+    @Override
+    public SortedMap<String, PendingMessage> findPending(String resourceType) {
+        SortedMap<String, PendingMessage> pendingMessages = new TreeMap<>();
+        File[] messageFiles = getPendingDirectory(resourceType).listFiles();
+        if (messageFiles == null) {
+            return pendingMessages;
+        }
+        for (File messageFile : messageFiles) {
+            String fileName = messageFile.getName();
+            if (!fileName.endsWith(MESSAGE_SUFFIX)) {
+                continue;
+            }
+            try {
+                String pendingId = fileName.substring(0, fileName.length() - MESSAGE_SUFFIX.length());
+                // Files recorded before pending IDs had a sequence number are named by the time alone.
+                String fileTime =
+                        pendingId.substring(0, Math.min(pendingId.length(), fileFormat.getPattern().length()));
+                Date receivedDate = fileFormat.parse(fileTime);
+                pendingMessages.put(pendingId, new PendingMessage(
+                        FileUtils.readFileToString(messageFile, StandardCharsets.UTF_8), receivedDate));
+            } catch (ParseException | IOException e) {
+                log.error("Failed to read pending message " + messageFile, e);
+            }
+        }
+        return pendingMessages;
+    }
+
+    private File getPendingDirectory(String resourceType) {
+        return new File(deckMessagesConfig.getMessageStoreDirRoot() + File.separator + resourceType, PENDING_DIR);
+    }
 }
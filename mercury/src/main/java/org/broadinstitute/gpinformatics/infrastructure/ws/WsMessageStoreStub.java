@@ -5,6 +5,8 @@ import org.broadinstitute.gpinformatics.infrastructure.deployment.Stub;
 import javax.enterprise.context.Dependent;
 import javax.enterprise.inject.Alternative;
 import java.util.Date;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Stub implementation for message store
@@ -25,4 +27,20 @@ public class WsMessageStoreStub implements WsMessageStore{
     public void recordError(String resourceType, String message, Date receivedDate, Exception exception) {
         // do nothing
     }
+
+    @Override
+    public String recordPending(String resourceType, String message, Date receivedDate) {
+        // do nothing
+        return null;
+    }
+
+    @Override
+    public void removePending(String resourceType, String pendingId) {
+        // do nothing
+    }
+
+    @Override
+    public SortedMap<String, PendingMessage> findPending(String resourceType) {
+        return new TreeMap<>();
+    }
 }
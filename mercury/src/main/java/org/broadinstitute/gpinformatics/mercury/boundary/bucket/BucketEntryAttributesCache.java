@@ -0,0 +1,306 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.bucket;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheInvalidator;
+import org.broadinstitute.gpinformatics.mercury.control.workflow.WorkflowLoader;
+import org.broadinstitute.gpinformatics.mercury.entity.bucket.BucketEntry;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.MaterialType;
+import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowConfig;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide projection of the bucket page columns that are expensive to calculate for a bucket entry: the
+ * vessel's latest material type (event history, then BSP), the entry's workflows (bucket criteria), and the receipt
+ * dates of the vessel's samples.  Entries are keyed by bucket entry ID, so opening a bucket, and filtering it by
+ * material type, calculates only the entries that have changed since they were last displayed, and fetches BSP
+ * sample data for only those.
+ * <p/>
+ * {@link BucketEntryAttributesListener} removes an entry when the bucket entry or its product order changes, or when an
+ * event is recorded on its vessel; immediately, and again when the transaction completes.  All entries are removed
+ * when the workflow configuration, which holds the bucket criteria, is reloaded.  Entries also expire after a fixed
+ * time, to pick up changes that can't be observed, e.g. in BSP.
+ */
+@Singleton
+@ConcurrencyManagement(BEAN)
+public class BucketEntryAttributesCache extends AbstractCacheControl {
+
+    private static final Log log = LogFactory.getLog(BucketEntryAttributesCache.class);
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 200000;
+
+    private static final int EXPIRE_HOURS = 12;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    private volatile Cache<Long, Attributes> cache = buildCache(DEFAULT_MAXIMUM_SIZE);
+
+    /** Maps lab vessel ID to the IDs of cached bucket entries for that vessel, to remove entries for an event. */
+    private final Map<Long, Set<Long>> entryIdsByVesselId = new ConcurrentHashMap<>();
+
+    /** Maps product order ID to the IDs of cached bucket entries for that order. */
+    private final Map<Long, Set<Long>> entryIdsByProductOrderId = new ConcurrentHashMap<>();
+
+    /** The workflow configuration the cached entries were calculated with. */
+    private volatile WorkflowConfig cachedWorkflowConfig;
+
+    private final CacheInvalidator cacheInvalidator = new CacheInvalidator(() -> transactionSynchronizationRegistry);
+
+    private final CacheInvalidator.Removal<Long> entryRemoval = this::removeEntry;
+
+    private final CacheInvalidator.Removal<Long> vesselRemoval = this::removeVessel;
+
+    private final CacheInvalidator.Removal<Long> productOrderRemoval = this::removeProductOrder;
+
+    /**
+     * The expensive columns of a bucket entry.
+     */
+    public static class Attributes {
+        private final Long labVesselId;
+        private final Long productOrderId;
+        private final MaterialType materialType;
+        private final List<String> workflowNames;
+        private final List<Date> receiptDates;
+
+        Attributes(Long labVesselId, Long productOrderId, MaterialType materialType, List<String> workflowNames,
+                List<Date> receiptDates) {
+            this.labVesselId = labVesselId;
+            this.productOrderId = productOrderId;
+            this.materialType = materialType;
+            this.workflowNames = Collections.unmodifiableList(workflowNames);
+            this.receiptDates = Collections.unmodifiableList(receiptDates);
+        }
+
+        /**
+         * Calculates the attributes of a bucket entry, whose vessel's sample data has been fetched.
+         */
+        static Attributes of(BucketEntry bucketEntry, WorkflowConfig workflowConfig) {
+            LabVessel labVessel = bucketEntry.getLabVessel();
+            List<Date> receiptDates = new ArrayList<>();
+            for (MercurySample mercurySample : labVessel.getMercurySamples()) {
+                receiptDates.add(mercurySample.getReceivedDate());
+            }
+            ProductOrder productOrder = bucketEntry.getProductOrder();
+            return new Attributes(labVessel.getLabVesselId(),
+                    productOrder == null ? null : productOrder.getProductOrderId(), labVessel.getLatestMaterialType(),
+                    new ArrayList<>(new TreeSet<>(bucketEntry.getWorkflows(workflowConfig))), receiptDates);
+        }
+
+        public MaterialType getMaterialType() {
+            return materialType;
+        }
+
+        /** @return the names of the workflows whose bucket criteria the entry meets, sorted */
+        public List<String> getWorkflowNames() {
+            return workflowNames;
+        }
+
+        /** @return the receipt date of each of the vessel's samples, some of which may be null */
+        public List<Date> getReceiptDates() {
+            return receiptDates;
+        }
+    }
+
+    private Cache<Long, Attributes> buildCache(int maximumSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRE_HOURS, TimeUnit.HOURS)
+                .removalListener(new RemovalListener<Long, Attributes>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Long, Attributes> notification) {
+                        if (notification.getCause() != RemovalCause.REPLACED) {
+                            Attributes attributes = notification.getValue();
+                            removeFromIndex(entryIdsByVesselId, attributes.labVesselId, notification.getKey());
+                            removeFromIndex(entryIdsByProductOrderId, attributes.productOrderId,
+                                    notification.getKey());
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the attributes of bucket entries, calculating those that aren't cached.  The BSP sample data of the
+     * vessels of uncached entries is fetched in one call.
+     *
+     * @return map from bucket entry ID to attributes
+     */
+    public Map<Long, Attributes> getAttributes(Collection<BucketEntry> bucketEntries) {
+        // Reloading the workflow configuration may change the bucket criteria, and so the workflows of every entry.
+        WorkflowConfig workflowConfig = getWorkflowConfig();
+        if (workflowConfig != cachedWorkflowConfig) {
+            invalidateCache();
+            cachedWorkflowConfig = workflowConfig;
+        }
+        Map<Long, Attributes> attributesById = new HashMap<>(bucketEntries.size());
+        List<BucketEntry> missingEntries = new ArrayList<>();
+        for (BucketEntry bucketEntry : bucketEntries) {
+            Long bucketEntryId = bucketEntry.getBucketEntryId();
+            Attributes attributes = bucketEntryId == null ? null : cache.getIfPresent(bucketEntryId);
+            if (attributes == null) {
+                missingEntries.add(bucketEntry);
+            } else {
+                attributesById.put(bucketEntryId, attributes);
+            }
+        }
+        if (!missingEntries.isEmpty()) {
+            long begin = System.currentTimeMillis();
+            // If anything changes while calculating, the attributes may predate the change, so they're not kept.
+            long changeCountBefore = cacheInvalidator.getChangeCount();
+            Set<LabVessel> labVessels = new HashSet<>();
+            for (BucketEntry bucketEntry : missingEntries) {
+                labVessels.add(bucketEntry.getLabVessel());
+            }
+            loadSampleData(labVessels);
+            Map<Long, Attributes> calculated = new HashMap<>(missingEntries.size());
+            for (BucketEntry bucketEntry : missingEntries) {
+                calculated.put(bucketEntry.getBucketEntryId(), Attributes.of(bucketEntry, workflowConfig));
+            }
+            attributesById.putAll(calculated);
+            if (cacheInvalidator.isUnchangedSince(changeCountBefore)) {
+                for (Map.Entry<Long, Attributes> entry : calculated.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue().labVesselId != null) {
+                        addToIndex(entryIdsByVesselId, entry.getValue().labVesselId, entry.getKey());
+                        addToIndex(entryIdsByProductOrderId, entry.getValue().productOrderId, entry.getKey());
+                        cache.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            log.info(String.format("Calculated attributes of %d of %d bucket entries in %d ms", missingEntries.size(),
+                    bucketEntries.size(), System.currentTimeMillis() - begin));
+        }
+        return attributesById;
+    }
+
+    /**
+     * Fetches the sample data used by the bucket page, for the vessels of uncached entries.
+     */
+    void loadSampleData(Collection<LabVessel> labVessels) {
+        LabVessel.loadSampleDataForBuckets(labVessels);
+    }
+
+    WorkflowConfig getWorkflowConfig() {
+        return WorkflowLoader.getWorkflowConfig();
+    }
+
+    private static void addToIndex(Map<Long, Set<Long>> index, Long id, Long bucketEntryId) {
+        if (id != null) {
+            index.compute(id, (key, bucketEntryIds) -> {
+                Set<Long> ids = bucketEntryIds == null ? ConcurrentHashMap.newKeySet() : bucketEntryIds;
+                ids.add(bucketEntryId);
+                return ids;
+            });
+        }
+    }
+
+    /**
+     * Removes a bucket entry from an index, and the index key once it has no entries.
+     */
+    private static void removeFromIndex(Map<Long, Set<Long>> index, Long id, Long bucketEntryId) {
+        if (id != null) {
+            index.computeIfPresent(id, (key, bucketEntryIds) -> {
+                bucketEntryIds.remove(bucketEntryId);
+                return bucketEntryIds.isEmpty() ? null : bucketEntryIds;
+            });
+        }
+    }
+
+    /**
+     * Removes the attributes of a bucket entry that has changed, now and when the current transaction completes.
+     */
+    public void invalidateEntry(Long bucketEntryId) {
+        cacheInvalidator.invalidate(bucketEntryId, entryRemoval);
+    }
+
+    /**
+     * Removes the attributes of the bucket entries of a vessel on which an event has been recorded, now and when the
+     * current transaction completes.
+     */
+    public void invalidateVessel(Long labVesselId) {
+        cacheInvalidator.invalidate(labVesselId, vesselRemoval);
+    }
+
+    /**
+     * Removes the attributes of the bucket entries of a product order that has changed, e.g. its products, which
+     * determine the entries' workflows; now and when the current transaction completes.
+     */
+    public void invalidateProductOrder(Long productOrderId) {
+        cacheInvalidator.invalidate(productOrderId, productOrderRemoval);
+    }
+
+    private void removeEntry(Long bucketEntryId) {
+        cache.invalidate(bucketEntryId);
+    }
+
+    private void removeVessel(Long labVesselId) {
+        Set<Long> entryIds = entryIdsByVesselId.remove(labVesselId);
+        if (entryIds != null) {
+            cache.invalidateAll(entryIds);
+        }
+    }
+
+    private void removeProductOrder(Long productOrderId) {
+        Set<Long> entryIds = entryIdsByProductOrderId.remove(productOrderId);
+        if (entryIds != null) {
+            cache.invalidateAll(entryIds);
+        }
+    }
+
+    @Override
+    public void invalidateCache() {
+        cacheInvalidator.changed();
+        cache.invalidateAll();
+        entryIdsByVesselId.clear();
+        entryIdsByProductOrderId.clear();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Replaces the cache with an empty one of the new size.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        cache = buildCache(max);
+        entryIdsByVesselId.clear();
+        entryIdsByProductOrderId.clear();
+    }
+
+    long getSize() {
+        return cache.size();
+    }
+}
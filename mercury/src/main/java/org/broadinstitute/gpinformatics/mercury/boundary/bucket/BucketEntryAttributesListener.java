@@ -0,0 +1,74 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.bucket;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
+import org.broadinstitute.gpinformatics.infrastructure.common.ServiceAccessUtility;
+import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
+import org.broadinstitute.gpinformatics.mercury.entity.bucket.BucketEntry;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells {@link BucketEntryAttributesCache} about changes to bucket entries and product orders, and about events
+ * (in-place or transfer) on lab vessels, which may change the attributes of the vessels' bucket entries.  Entities must
+ * be annotated with @EntityListeners(BucketEntryAttributesListener.class).
+ */
+public class BucketEntryAttributesListener {
+
+    private static final Log log = LogFactory.getLog(BucketEntryAttributesListener.class);
+
+    /** The cache is an application wide singleton, so its reference is looked up once. */
+    private static volatile BucketEntryAttributesCache bucketEntryAttributesCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object object) {
+        BucketEntryAttributesCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        if (OrmUtil.proxySafeIsInstance(object, BucketEntry.class)) {
+            cache.invalidateEntry(OrmUtil.proxySafeCast(object, BucketEntry.class).getBucketEntryId());
+        } else if (OrmUtil.proxySafeIsInstance(object, ProductOrder.class)) {
+            cache.invalidateProductOrder(OrmUtil.proxySafeCast(object, ProductOrder.class).getProductOrderId());
+        } else if (OrmUtil.proxySafeIsInstance(object, LabEvent.class)) {
+            for (Long labVesselId : getEventVesselIds(OrmUtil.proxySafeCast(object, LabEvent.class))) {
+                cache.invalidateVessel(labVesselId);
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of the vessels an event is recorded on, and of the tubes in its racks and plates, since
+     * transfers are recorded against racks, but tubes are bucketed.  This runs during a flush, so it reads only what is
+     * already loaded; the contents of a rack that isn't loaded are left to the expiry.
+     */
+    static Set<Long> getEventVesselIds(LabEvent labEvent) {
+        Set<Long> labVesselIds = new HashSet<>();
+        for (LabVessel labVessel : labEvent.getLoadedLabVessels()) {
+            labVesselIds.add(labVessel.getLabVesselId());
+        }
+        labVesselIds.remove(null);
+        return labVesselIds;
+    }
+
+    private static BucketEntryAttributesCache getCache() {
+        if (bucketEntryAttributesCache == null) {
+            try {
+                bucketEntryAttributesCache = ServiceAccessUtility.getBean(BucketEntryAttributesCache.class);
+            } catch (RuntimeException e) {
+                // Not in a container, e.g. a JPA test, so there is no cache to maintain.
+                log.debug("No bucket entry attributes cache", e);
+            }
+        }
+        return bucketEntryAttributesCache;
+    }
+}
@@ -0,0 +1,384 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.labevent;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.common.RequestContextUtility;
+import org.broadinstitute.gpinformatics.infrastructure.common.SessionContextUtility;
+import org.broadinstitute.gpinformatics.infrastructure.deckmsgs.DeckMessagesConfig;
+import org.broadinstitute.gpinformatics.infrastructure.ws.WsMessageStore;
+import org.broadinstitute.gpinformatics.mercury.bettalims.generated.BettaLIMSMessage;
+import org.xml.sax.SAXException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import javax.xml.bind.JAXBException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Processes BettaLIMS messages in the background, after BettaLimsMessageResource has stored them and acknowledged the
+ * deck.  Enabled by setting deckMsgs.asyncWorkerThreads above 0.
+ * <p/>
+ * Messages are processed in the order they were accepted for any one vessel barcode: a message is not started until
+ * every earlier message that shares a barcode with it has finished.  Messages that touch disjoint vessels are processed
+ * concurrently, on up to asyncWorkerThreads threads of the managed executor.  The number of accepted but unfinished
+ * messages is bounded; when the bound is reached, {@link #offer} refuses the message, and the deck is told to retry.
+ * <p/>
+ * BettaLimsMessageResource records each message as pending in the {@link WsMessageStore} before it acknowledges the
+ * deck, and the queue removes the record when the message has been processed (successfully or not; failures are
+ * recorded as errors).  At startup, the queue processes the messages still pending, e.g. after a crash.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(BEAN)
+public class BettaLimsMessageQueue {
+
+    private static final Log log = LogFactory.getLog(BettaLimsMessageQueue.class);
+
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    @Inject
+    private DeckMessagesConfig deckMessagesConfig;
+
+    @Inject
+    private BettaLimsMessageResource bettaLimsMessageResource;
+
+    @Inject
+    private SessionContextUtility sessionContextUtility;
+
+    @Inject
+    private RequestContextUtility requestContextUtility;
+
+    @Inject
+    private WsMessageStore wsMessageStore;
+
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ExecutorService executorService;
+
+    private Executor executor;
+
+    private MessageProcessor messageProcessor;
+
+    private int workerThreads;
+
+    private int capacity;
+
+    /** Accepted messages that have not started, in the order they were accepted.  Guarded by this. */
+    private final LinkedList<QueuedMessage> pendingMessages = new LinkedList<>();
+
+    /** Barcodes of the messages being processed.  Guarded by this. */
+    private final Set<String> busyBarcodes = new HashSet<>();
+
+    private int runningCount;
+    private int maxQueuedCount;
+    private long acceptedCount;
+    private long rejectedCount;
+    private long completedCount;
+    private long failedCount;
+    private long totalWaitMillis;
+
+    /**
+     * A message that has been stored and unmarshalled.
+     */
+    public static class QueuedMessage {
+        private final String message;
+        private final BettaLIMSMessage bettaLIMSMessage;
+        private final Set<String> barcodes;
+        private final Date receivedDate;
+        private final String pendingId;
+
+        QueuedMessage(String message, BettaLIMSMessage bettaLIMSMessage, Collection<String> barcodes,
+                      Date receivedDate, String pendingId) {
+            this.message = message;
+            this.bettaLIMSMessage = bettaLIMSMessage;
+            this.barcodes = Collections.unmodifiableSet(new HashSet<>(barcodes));
+            this.receivedDate = receivedDate;
+            this.pendingId = pendingId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public BettaLIMSMessage getBettaLIMSMessage() {
+            return bettaLIMSMessage;
+        }
+
+        public Set<String> getBarcodes() {
+            return barcodes;
+        }
+
+        public Date getReceivedDate() {
+            return receivedDate;
+        }
+
+        public String getPendingId() {
+            return pendingId;
+        }
+    }
+
+    /**
+     * Processes one message on a worker thread.
+     */
+    interface MessageProcessor {
+        void process(QueuedMessage queuedMessage) throws Exception;
+    }
+
+    public BettaLimsMessageQueue() {
+    }
+
+    /**
+     * For database free tests.
+     */
+    BettaLimsMessageQueue(Executor executor, int workerThreads, int capacity, WsMessageStore wsMessageStore,
+                          MessageProcessor messageProcessor) {
+        this.executor = executor;
+        this.wsMessageStore = wsMessageStore;
+        this.workerThreads = workerThreads;
+        this.capacity = capacity;
+        this.messageProcessor = messageProcessor;
+    }
+
+    @PostConstruct
+    public void init() {
+        workerThreads = deckMessagesConfig.getAsyncWorkerThreads();
+        capacity = deckMessagesConfig.getAsyncQueueCapacity() > 0 ? deckMessagesConfig.getAsyncQueueCapacity() :
+                DEFAULT_CAPACITY;
+        executor = executorService;
+        // Each message gets its own session (for UserBean) and persistence context.
+        messageProcessor = new MessageProcessor() {
+            @Override
+            public void process(final QueuedMessage queuedMessage) throws Exception {
+                final Exception[] exception = new Exception[1];
+                sessionContextUtility.executeInContext(new SessionContextUtility.Function() {
+                    @Override
+                    public void apply() {
+                        requestContextUtility.executeInContext(new SessionContextUtility.Function() {
+                            @Override
+                            public void apply() {
+                                try {
+                                    bettaLimsMessageResource.processStored(queuedMessage.getMessage(),
+                                            queuedMessage.getBettaLIMSMessage(), queuedMessage.getReceivedDate());
+                                } catch (Exception e) {
+                                    exception[0] = e;
+                                }
+                            }
+                        });
+                    }
+                });
+                if (exception[0] != null) {
+                    throw exception[0];
+                }
+            }
+        };
+        if (isEnabled()) {
+            log.info("BettaLIMS messages are processed asynchronously on " + workerThreads +
+                     " threads, with capacity " + capacity);
+        }
+        replayPending();
+    }
+
+    /**
+     * Queues the messages that were acknowledged but not processed before the last shutdown, in the order they were
+     * received.  They are accepted even beyond the capacity, because the deck will not send them again.
+     */
+    void replayPending() {
+        SortedMap<String, WsMessageStore.PendingMessage> pendingMessages =
+                wsMessageStore.findPending(WsMessageStore.BETTALIMS_RESOURCE_TYPE);
+        if (pendingMessages.isEmpty()) {
+            return;
+        }
+        if (!isEnabled()) {
+            log.error(pendingMessages.size() + " acknowledged BettaLIMS messages were not processed, and asynchronous " +
+                      "processing is disabled; resubmit them from the pending directory of the message store");
+            return;
+        }
+        log.info("Queueing " + pendingMessages.size() + " BettaLIMS messages that were not processed before shutdown");
+        for (Map.Entry<String, WsMessageStore.PendingMessage> entry : pendingMessages.entrySet()) {
+            WsMessageStore.PendingMessage pendingMessage = entry.getValue();
+            BettaLIMSMessage bettaLIMSMessage;
+            try {
+                bettaLIMSMessage = BettaLimsMessageUnmarshaller.unmarshal(pendingMessage.getMessage());
+            } catch (JAXBException | SAXException e) {
+                // It was unmarshalled when it was accepted, so the file is damaged.
+                log.error("Failed to unmarshal pending BettaLIMS message " + entry.getKey(), e);
+                wsMessageStore.recordError(WsMessageStore.BETTALIMS_RESOURCE_TYPE, pendingMessage.getMessage(),
+                        pendingMessage.getReceivedDate(), e);
+                wsMessageStore.removePending(WsMessageStore.BETTALIMS_RESOURCE_TYPE, entry.getKey());
+                continue;
+            }
+            synchronized (this) {
+                add(new QueuedMessage(pendingMessage.getMessage(), bettaLIMSMessage,
+                        BettaLimsMessageResource.getRegisteredBarcodesFromMessage(bettaLIMSMessage),
+                        pendingMessage.getReceivedDate(), entry.getKey()));
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * @return true if messages should be offered to this queue, rather than processed on the request thread
+     */
+    public boolean isEnabled() {
+        return workerThreads > 0;
+    }
+
+    /**
+     * Accepts a stored message for processing.
+     *
+     * @param message          text of the message
+     * @param bettaLIMSMessage the unmarshalled message
+     * @param barcodes         the vessels in the message, which determine its order relative to other messages
+     * @param receivedDate     the date under which the message was stored
+     * @param pendingId        the ID under which the message was recorded as pending
+     *
+     * @return false if the queue is full, in which case the message will not be processed
+     */
+    public synchronized boolean offer(String message, BettaLIMSMessage bettaLIMSMessage, Collection<String> barcodes,
+                                      Date receivedDate, String pendingId) {
+        if (pendingMessages.size() + runningCount >= capacity) {
+            rejectedCount++;
+            return false;
+        }
+        add(new QueuedMessage(message, bettaLIMSMessage, barcodes, receivedDate, pendingId));
+        dispatch();
+        return true;
+    }
+
+    private synchronized void add(QueuedMessage queuedMessage) {
+        pendingMessages.add(queuedMessage);
+        acceptedCount++;
+        maxQueuedCount = Math.max(maxQueuedCount, pendingMessages.size() + runningCount);
+    }
+
+    /**
+     * Starts pending messages while there are idle workers.  A message can start if none of its barcodes are in
+     * a running message, or in a pending message that was accepted before it.
+     */
+    private synchronized void dispatch() {
+        Set<String> blockedBarcodes = new HashSet<>(busyBarcodes);
+        Iterator<QueuedMessage> iterator = pendingMessages.iterator();
+        while (runningCount < workerThreads && iterator.hasNext()) {
+            QueuedMessage queuedMessage = iterator.next();
+            if (Collections.disjoint(blockedBarcodes, queuedMessage.getBarcodes())) {
+                iterator.remove();
+                start(queuedMessage);
+            }
+            blockedBarcodes.addAll(queuedMessage.getBarcodes());
+        }
+    }
+
+    private void start(final QueuedMessage queuedMessage) {
+        busyBarcodes.addAll(queuedMessage.getBarcodes());
+        runningCount++;
+        totalWaitMillis += System.currentTimeMillis() - queuedMessage.getReceivedDate().getTime();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean succeeded = false;
+                    try {
+                        messageProcessor.process(queuedMessage);
+                        succeeded = true;
+                    } catch (Exception e) {
+                        // The resource has already recorded the error and sent email.
+                        log.error("Failed to process queued BettaLIMS message received " +
+                                  queuedMessage.getReceivedDate(), e);
+                    } finally {
+                        try {
+                            wsMessageStore.removePending(WsMessageStore.BETTALIMS_RESOURCE_TYPE,
+                                    queuedMessage.getPendingId());
+                        } finally {
+                            finish(queuedMessage, succeeded);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Still pending in the message store, so it is processed after a restart.
+            log.error("Executor refused BettaLIMS message received " + queuedMessage.getReceivedDate(), e);
+            // Called from within dispatch, so doesn't dispatch again.
+            release(queuedMessage, false);
+        }
+    }
+
+    private synchronized void finish(QueuedMessage queuedMessage, boolean succeeded) {
+        release(queuedMessage, succeeded);
+        dispatch();
+    }
+
+    private synchronized void release(QueuedMessage queuedMessage, boolean succeeded) {
+        busyBarcodes.removeAll(queuedMessage.getBarcodes());
+        runningCount--;
+        if (succeeded) {
+            completedCount++;
+        } else {
+            failedCount++;
+        }
+    }
+
+    /** @return messages accepted but not yet started */
+    public synchronized int getPendingCount() {
+        return pendingMessages.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    /** @return the largest number of unfinished messages seen, to size the capacity */
+    public synchronized int getMaxQueuedCount() {
+        return maxQueuedCount;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /** @return messages refused because the queue was full */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public synchronized long getCompletedCount() {
+        return completedCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    /** @return mean time from a message being received to it starting, for messages that have started */
+    public synchronized long getAverageWaitMillis() {
+        long startedCount = completedCount + failedCount + runningCount;
+        return startedCount == 0 ? 0 : totalWaitMillis / startedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "pending=" + pendingMessages.size() + " running=" + runningCount + " capacity=" + capacity +
+               " maxQueued=" + maxQueuedCount + " accepted=" + acceptedCount + " rejected=" + rejectedCount +
+               " completed=" + completedCount + " failed=" + failedCount + " averageWaitMillis=" +
+               getAverageWaitMillis();
+    }
+}
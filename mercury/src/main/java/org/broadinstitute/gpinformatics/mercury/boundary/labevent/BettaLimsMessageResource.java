@@ -25,12 +25,7 @@ import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
 import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowConfig;
 import org.broadinstitute.gpinformatics.mercury.presentation.UserBean;
-import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLFilterImpl;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import javax.annotation.PostConstruct;
 import javax.ejb.Stateful;
@@ -39,21 +34,13 @@ import javax.ejb.TransactionAttributeType;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.ValidationEvent;
-import javax.xml.bind.ValidationEventHandler;
-import javax.xml.transform.sax.SAXSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import java.io.File;
-import java.io.StringReader;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -73,7 +60,6 @@ public class BettaLimsMessageResource {
 
     private static final String WORKFLOW_MESSAGE = " error(s) processing workflows for ";
     private static final Log log = LogFactory.getLog(BettaLimsMessageResource.class);
-    private static final boolean VALIDATE_SCHEMA = false;
 
     @Inject
     private LabEventFactory labEventFactory;
@@ -96,6 +82,9 @@ public class BettaLimsMessageResource {
     @Inject
     private UserBean userBean;
 
+    @Inject
+    private BettaLimsMessageQueue bettaLimsMessageQueue;
+
     private WorkflowConfig workflowConfig;
 
     public BettaLimsMessageResource() {
@@ -118,6 +107,9 @@ public class BettaLimsMessageResource {
     @POST
     @Consumes({MediaType.APPLICATION_XML})
     public Response processMessage(String message) throws ResourceException {
+        if (bettaLimsMessageQueue.isEnabled()) {
+            return storeAndQueue(message);
+        }
         try {
             storeAndProcess(message);
         } catch (Exception e) {
@@ -131,6 +123,47 @@ public class BettaLimsMessageResource {
         return Response.status(Response.Status.OK).entity("Message persisted").type(MediaType.TEXT_PLAIN_TYPE).build();
     }
 
+    /**
+     * Reports the state of the asynchronous processing queue, e.g. to see whether decks are being refused.
+     */
+    @GET
+    @Path("/queue")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String getQueueStatus() {
+        return bettaLimsMessageQueue.toString();
+    }
+
+    /**
+     * Stores and unmarshals the message, records it as pending, then acknowledges it, leaving the event processing to
+     * {@link BettaLimsMessageQueue}.  A message that can't be unmarshalled, or recorded as pending, is reported to the
+     * deck immediately, so a message is never acknowledged unless it will be processed after a restart.
+     */
+    private Response storeAndQueue(String message) throws ResourceException {
+        Date now = new Date();
+        BettaLIMSMessage bettaLIMSMessage;
+        String pendingId;
+        //noinspection OverlyBroadCatchBlock
+        try {
+            wsMessageStore.store(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message, now);
+            bettaLIMSMessage = unmarshal(message);
+            pendingId = wsMessageStore.recordPending(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message, now);
+        } catch (Exception e) {
+            handleFailure(message, now, e);
+            throw new ResourceException(e.getMessage(), Response.Status.INTERNAL_SERVER_ERROR, e);
+        }
+        if (!bettaLimsMessageQueue.offer(message, bettaLIMSMessage, getRegisteredBarcodesFromMessage(bettaLIMSMessage),
+                now, pendingId)) {
+            // The message is on the file system, but is marked as an error, so a resubmission is not a duplicate.
+            ResourceException e = new ResourceException("BettaLIMS message queue is full, try again later",
+                    Response.Status.SERVICE_UNAVAILABLE);
+            wsMessageStore.removePending(WsMessageStore.BETTALIMS_RESOURCE_TYPE, pendingId);
+            wsMessageStore.recordError(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message, now, e);
+            log.warn(e.getMessage() + ": " + bettaLimsMessageQueue);
+            throw e;
+        }
+        return Response.status(Response.Status.OK).entity("Message queued").type(MediaType.TEXT_PLAIN_TYPE).build();
+    }
+
     /**
      * Shared between JAX-RS and JMS.
      * Transaction is REQUIRED because this method is called by an MDB with transaction NOT_SUPPORTED.
@@ -142,31 +175,55 @@ public class BettaLimsMessageResource {
     @TransactionAttribute(value = TransactionAttributeType.REQUIRED)
     public void storeAndProcess(String message) throws Exception {
         Date now = new Date();
-        boolean logStacktrace = true;
         //noinspection OverlyBroadCatchBlock
         try {
             wsMessageStore.store(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message, now);
 
             BettaLIMSMessage bettaLIMSMessage = unmarshal(message);
-            // This has the side effect of setting the user for the audit trail.
-            LabEventType labEventType = getLabEventType(bettaLIMSMessage);
-            if (labEventType == null) {
-                throw new RuntimeException("Failed to find event type");
-            }
-            processMessage(bettaLIMSMessage);
+            processUnmarshalled(bettaLIMSMessage);
         } catch (Exception e) {
-            wsMessageStore.recordError(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message, now, e);
-            if (logStacktrace) {
-                log.error(e.getMessage(), e);
-            } else {
-                log.error(e.getMessage());
-            }
-            emailSender.sendHtmlEmail(appConfig, appConfig.getWorkflowValidationEmail(),
-                    Collections.<String>emptyList(), "[Mercury] Failed to process message", e.getMessage(), false, true);
+            handleFailure(message, now, e);
             throw e;
         }
     }
 
+    /**
+     * Called by {@link BettaLimsMessageQueue} workers, for messages that were stored and unmarshalled when they were
+     * accepted.
+     *
+     * @param message          text of the message, for the error record
+     * @param bettaLIMSMessage JAXB bean
+     * @param receivedDate     date under which the message was stored
+     *
+     * @throws Exception
+     */
+    @TransactionAttribute(value = TransactionAttributeType.REQUIRED)
+    public void processStored(String message, BettaLIMSMessage bettaLIMSMessage, Date receivedDate) throws Exception {
+        //noinspection OverlyBroadCatchBlock
+        try {
+            processUnmarshalled(bettaLIMSMessage);
+        } catch (Exception e) {
+            handleFailure(message, receivedDate, e);
+            throw e;
+        }
+    }
+
+    private void processUnmarshalled(BettaLIMSMessage bettaLIMSMessage) {
+        // This has the side effect of setting the user for the audit trail.
+        LabEventType labEventType = getLabEventType(bettaLIMSMessage);
+        if (labEventType == null) {
+            throw new RuntimeException("Failed to find event type");
+        }
+        processMessage(bettaLIMSMessage);
+    }
+
+    private void handleFailure(String message, Date receivedDate, Exception e) {
+        wsMessageStore.recordError(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message, receivedDate, e);
+        log.error(e.getMessage(), e);
+        emailSender.sendHtmlEmail(appConfig, appConfig.getWorkflowValidationEmail(),
+                Collections.<String>emptyList(), "[Mercury] Failed to process message", e.getMessage(), false, true);
+    }
+
     /**
      * Convert from String to object
      *
@@ -178,44 +235,7 @@ public class BettaLimsMessageResource {
      * @throws SAXException
      */
     BettaLIMSMessage unmarshal(String message) throws JAXBException, SAXException {
-
-        JAXBContext jc = JAXBContext.newInstance(BettaLIMSMessage.class);
-        Unmarshaller unmarshaller = jc.createUnmarshaller();
-        if (VALIDATE_SCHEMA) {
-            // todo jmt move so done only once
-            SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = sf.newSchema(new File("e:/java/mercury/mercury/src/main/xsd/bettalims.xsd"));
-            unmarshaller.setSchema(schema);
-            unmarshaller.setEventHandler(new ValidationEventHandler() {
-                @Override
-                public boolean handleEvent(ValidationEvent event) {
-                    throw new RuntimeException("XSD Validation failure: " +
-                                               "SEVERITY: " + event.getSeverity() + "MESSAGE: " + event.getMessage() +
-                                               "LINKED EXCEPTION:  " + event.getLinkedException() +
-                                               "LINE NUMBER:  " + event.getLocator().getLineNumber() +
-                                               "COLUMN NUMBER:  " + event.getLocator().getColumnNumber() +
-                                               "OFFSET:  " + event.getLocator().getOffset() +
-                                               "OBJECT:  " + event.getLocator().getObject() +
-                                               "NODE:  " + event.getLocator().getNode() +
-                                               "URL:  " + event.getLocator().getURL());
-                }
-            });
-        }
-
-        //Create an XMLReader to use with our filter
-        XMLReader reader = XMLReaderFactory.createXMLReader();
-
-        //Create the filter (to remove namespace) and set the xmlReader as its parent.
-        NamespaceFilter inFilter = new NamespaceFilter(null, false);
-        inFilter.setParent(reader);
-
-        //Prepare the input
-        InputSource is = new InputSource(new StringReader(message));
-
-        //Create a SAXSource specifying the filter
-        SAXSource source = new SAXSource(inFilter, is);
-
-        return (BettaLIMSMessage) unmarshaller.unmarshal(source);
+        return BettaLimsMessageUnmarshaller.unmarshal(message);
     }
 
     /**
@@ -306,7 +326,7 @@ public class BettaLimsMessageResource {
      * @param bettaLIMSMessage JAXB bean
      * @return list of barcodes
      */
-    private Collection<String> getRegisteredBarcodesFromMessage(BettaLIMSMessage bettaLIMSMessage) {
+    static Collection<String> getRegisteredBarcodesFromMessage(BettaLIMSMessage bettaLIMSMessage) {
 
         Set<String> barcodes = new HashSet<>();
 
@@ -361,61 +381,4 @@ public class BettaLimsMessageResource {
     public void setLabEventFactory(LabEventFactory labEventFactory) {
         this.labEventFactory = labEventFactory;
     }
-
-    /**
-     * Allows documents that don't include a namespace
-     */
-    private static class NamespaceFilter extends XMLFilterImpl {
-
-        private String usedNamespaceUri;
-        private boolean addNamespace;
-
-        private boolean addedNamespace;
-
-        NamespaceFilter(String namespaceUri, boolean addNamespace) {
-            if (addNamespace) {
-                usedNamespaceUri = namespaceUri;
-            } else {
-                usedNamespaceUri = "";
-            }
-            this.addNamespace = addNamespace;
-        }
-
-        @Override
-        public void startDocument() throws SAXException {
-            super.startDocument();
-            if (addNamespace) {
-                startControlledPrefixMapping();
-            }
-        }
-
-        @Override
-        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-            super.startElement(usedNamespaceUri, localName, qName, atts);
-        }
-
-        @Override
-        public void endElement(String uri, String localName, String qName) throws SAXException {
-            super.endElement(usedNamespaceUri, localName, qName);
-        }
-
-        @Override
-        public void startPrefixMapping(String prefix, String uri) throws SAXException {
-            if (addNamespace) {
-                startControlledPrefixMapping();
-            } else {
-                //Remove the namespace, i.e. don't call startPrefixMapping for parent
-            }
-        }
-
-        private void startControlledPrefixMapping() throws SAXException {
-            if (addNamespace && !addedNamespace) {
-                //We should add namespace since it is set and has not yet been done.
-                super.startPrefixMapping("", usedNamespaceUri);
-
-                //Make sure we dont do it twice
-                addedNamespace = true;
-            }
-        }
-    }
 }
@@ -0,0 +1,167 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.labevent;
+
+import org.broadinstitute.gpinformatics.mercury.bettalims.generated.BettaLIMSMessage;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+import java.io.StringReader;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts the text of a BettaLIMS message to a JAXB bean.  Safe for concurrent use.  The JAXBContext is built once, and Unmarshallers and XMLReaders, which are not thread safe, are pooled, so a burst of deck
+ * messages doesn't pay for building them on every message.
+ */
+public class BettaLimsMessageUnmarshaller {
+
+    /** Parsers beyond this number are discarded after use, rather than returned to the pool. */
+    private static final int MAX_POOLED_PARSERS = 32;
+
+    private static final Queue<Parser> parserPool = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger pooledParserCount = new AtomicInteger();
+
+    private BettaLimsMessageUnmarshaller() {
+    }
+
+    /**
+     * Lazily built, so a JAXB problem surfaces when the first message arrives, as it did before pooling.
+     * JAXBContext is thread safe.
+     */
+    private static class Holder {
+        private static final JAXBContext JAXB_CONTEXT;
+        private static final SAXParserFactory SAX_PARSER_FACTORY;
+
+        static {
+            try {
+                JAXB_CONTEXT = JAXBContext.newInstance(BettaLIMSMessage.class);
+            } catch (JAXBException e) {
+                throw new RuntimeException("Failed to initialize BettaLIMS unmarshalling", e);
+            }
+            SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+            SAX_PARSER_FACTORY.setNamespaceAware(true);
+        }
+    }
+
+    /**
+     * An Unmarshaller and the XMLReader it reads from, used by one thread at a time.
+     */
+    private static class Parser {
+        private final Unmarshaller unmarshaller;
+        private final XMLReader xmlReader;
+
+        private Parser() throws JAXBException, SAXException {
+            unmarshaller = Holder.JAXB_CONTEXT.createUnmarshaller();
+            // SAXParserFactory is not guaranteed to be thread safe.
+            synchronized (Holder.SAX_PARSER_FACTORY) {
+                try {
+                    xmlReader = Holder.SAX_PARSER_FACTORY.newSAXParser().getXMLReader();
+                } catch (ParserConfigurationException e) {
+                    throw new SAXException(e);
+                }
+            }
+        }
+
+        private BettaLIMSMessage unmarshal(String message) throws JAXBException {
+            // Create the filter (to remove namespace) and set the xmlReader as its parent.
+            NamespaceFilter inFilter = new NamespaceFilter(null, false);
+            inFilter.setParent(xmlReader);
+            SAXSource source = new SAXSource(inFilter, new InputSource(new StringReader(message)));
+            return (BettaLIMSMessage) unmarshaller.unmarshal(source);
+        }
+    }
+
+    /**
+     * Convert from String to object
+     *
+     * @param message from deck
+     *
+     * @return JAXB bean
+     *
+     * @throws JAXBException
+     * @throws SAXException
+     */
+    public static BettaLIMSMessage unmarshal(String message) throws JAXBException, SAXException {
+        Parser parser = parserPool.poll();
+        if (parser == null) {
+            parser = new Parser();
+        } else {
+            pooledParserCount.decrementAndGet();
+        }
+        BettaLIMSMessage bettaLIMSMessage = parser.unmarshal(message);
+        // A parser that threw is not returned to the pool, in case the failure left it in a bad state.
+        if (pooledParserCount.incrementAndGet() <= MAX_POOLED_PARSERS) {
+            parserPool.add(parser);
+        } else {
+            pooledParserCount.decrementAndGet();
+        }
+        return bettaLIMSMessage;
+    }
+
+    /**
+     * Allows documents that don't include a namespace
+     */
+    private static class NamespaceFilter extends XMLFilterImpl {
+
+        private String usedNamespaceUri;
+        private boolean addNamespace;
+
+        private boolean addedNamespace;
+
+        NamespaceFilter(String namespaceUri, boolean addNamespace) {
+            if (addNamespace) {
+                usedNamespaceUri = namespaceUri;
+            } else {
+                usedNamespaceUri = "";
+            }
+            this.addNamespace = addNamespace;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            super.startDocument();
+            if (addNamespace) {
+                startControlledPrefixMapping();
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            super.startElement(usedNamespaceUri, localName, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            super.endElement(usedNamespaceUri, localName, qName);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            if (addNamespace) {
+                startControlledPrefixMapping();
+            } else {
+                //Remove the namespace, i.e. don't call startPrefixMapping for parent
+            }
+        }
+
+        private void startControlledPrefixMapping() throws SAXException {
+            if (addNamespace && !addedNamespace) {
+                //We should add namespace since it is set and has not yet been done.
+                super.startPrefixMapping("", usedNamespaceUri);
+
+                //Make sure we dont do it twice
+                addedNamespace = true;
+            }
+        }
+    }
+}
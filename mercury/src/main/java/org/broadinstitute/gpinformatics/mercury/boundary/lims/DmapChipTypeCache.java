@@ -0,0 +1,120 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.lims;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.broadinstitute.gpinformatics.infrastructure.common.Strings;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.Singleton;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide cache of the chip type in the header of an Infinium DMAP file.  The chip type is the fifth string
+ * in the file, so only the first few KB are decompressed, rather than the whole file.  Entries are keyed by path, and
+ * are re-read if the file's modification time or length changes, so the Infinium decks can verify the same chips
+ * repeatedly without reading them again.
+ */
+@Singleton
+@ConcurrencyManagement(BEAN)
+public class DmapChipTypeCache extends AbstractCacheControl {
+
+    /** The position of the chip type in the strings of a DMAP file. */
+    static final int CHIP_TYPE_INDEX = 4;
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private static final int GZIP_BUFFER_SIZE = 10240;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    private volatile Cache<String, Entry> cache = buildCache(DEFAULT_MAXIMUM_SIZE);
+
+    /**
+     * The chip type of a file, and the version of the file that it was read from.
+     */
+    private static class Entry {
+        private final long lastModified;
+        private final long length;
+        private final String chipType;
+
+        private Entry(long lastModified, long length, String chipType) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.chipType = chipType;
+        }
+    }
+
+    private static Cache<String, Entry> buildCache(int maximumSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Returns the chip type in the header of a DMAP file, reading the file if it is not cached, or has changed since
+     * it was cached.
+     *
+     * @param dmapFile the file, compressed if its name ends in .gz
+     *
+     * @return the chip type, or null if the file has too few strings to include one
+     */
+    public String getChipType(File dmapFile) throws IOException {
+        String path = dmapFile.getAbsolutePath();
+        long lastModified = dmapFile.lastModified();
+        long length = dmapFile.length();
+        Entry entry = cache.getIfPresent(path);
+        if (entry == null || entry.lastModified != lastModified || entry.length != length) {
+            entry = new Entry(lastModified, length, readChipType(dmapFile));
+            // Don't cache failures, in case the file is still being written.
+            if (entry.chipType == null) {
+                cache.invalidate(path);
+            } else {
+                cache.put(path, entry);
+            }
+        }
+        return entry.chipType;
+    }
+
+    /**
+     * Reads the header of a DMAP file.
+     */
+    static String readChipType(File dmapFile) throws IOException {
+        try (InputStream fileInputStream = new FileInputStream(dmapFile)) {
+            InputStream inputStream = dmapFile.getName().endsWith(".gz") ?
+                    new GZIPInputStream(fileInputStream, GZIP_BUFFER_SIZE) : fileInputStream;
+            List<String> strings = Strings.process(inputStream, CHIP_TYPE_INDEX + 1);
+            return strings.size() > CHIP_TYPE_INDEX ? strings.get(CHIP_TYPE_INDEX) : null;
+        }
+    }
+
+    @Override
+    public void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Replaces the cache with an empty one of the new size.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        cache = buildCache(max);
+    }
+
+    long getSize() {
+        return cache.size();
+    }
+}
@@ -4,17 +4,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
 import org.broadinstitute.gpinformatics.athena.entity.products.Product;
+import org.broadinstitute.gpinformatics.athena.entity.project.ResearchProject;
 import org.broadinstitute.gpinformatics.infrastructure.bsp.BSPSampleDataFetcher;
 import org.broadinstitute.gpinformatics.infrastructure.bsp.GetSampleDetails;
 import org.broadinstitute.gpinformatics.infrastructure.common.MathUtils;
 import org.broadinstitute.gpinformatics.infrastructure.jpa.DaoFree;
+import org.broadinstitute.gpinformatics.mercury.control.dao.sample.MercurySampleDao;
 import org.broadinstitute.gpinformatics.mercury.control.dao.vessel.BarcodedTubeDao;
 import org.broadinstitute.gpinformatics.mercury.control.dao.vessel.LabVesselDao;
 import org.broadinstitute.gpinformatics.mercury.control.dao.vessel.StaticPlateDao;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceCache;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceSnapshot;
 import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
 import org.broadinstitute.gpinformatics.mercury.entity.labevent.SectionTransfer;
-import org.broadinstitute.gpinformatics.mercury.entity.reagent.MolecularIndex;
-import org.broadinstitute.gpinformatics.mercury.entity.reagent.MolecularIndexingScheme;
 import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample;
 import org.broadinstitute.gpinformatics.mercury.entity.sample.SampleInstanceV2;
 import org.broadinstitute.gpinformatics.mercury.entity.vessel.BarcodedTube;
@@ -38,13 +40,13 @@ import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 
 /**
  * Mercury-based implementations of services provided by LimsQueryResource.
@@ -60,14 +62,19 @@ public class LimsQueries {
     private LabVesselDao labVesselDao;
     private BarcodedTubeDao barcodedTubeDao;
     private BSPSampleDataFetcher bspSampleDataFetcher;
+    private SampleInstanceCache sampleInstanceCache;
+    private MercurySampleDao mercurySampleDao;
 
     @Inject
     public LimsQueries(StaticPlateDao staticPlateDao, LabVesselDao labVesselDao,
-            BarcodedTubeDao barcodedTubeDao, BSPSampleDataFetcher bspSampleDataFetcher) {
+            BarcodedTubeDao barcodedTubeDao, BSPSampleDataFetcher bspSampleDataFetcher,
+            SampleInstanceCache sampleInstanceCache, MercurySampleDao mercurySampleDao) {
         this.staticPlateDao = staticPlateDao;
         this.labVesselDao = labVesselDao;
         this.barcodedTubeDao = barcodedTubeDao;
         this.bspSampleDataFetcher = bspSampleDataFetcher;
+        this.sampleInstanceCache = sampleInstanceCache;
+        this.mercurySampleDao = mercurySampleDao;
     }
 
     /**
@@ -105,28 +112,23 @@ public class LimsQueries {
                 libraryDataType.setWasFound(false);
             } else {
                 libraryDataType.setWasFound(true);
-                for (SampleInstanceV2 sampleInstance : stringLabVesselEntry.getValue().getSampleInstancesV2()) {
-                    MercurySample mercurySample = sampleInstance.getRootOrEarliestMercurySample();
+                List<SampleInstanceSnapshot> sampleInstances = fetchSampleInstances(stringLabVesselEntry.getValue());
+                Map<String, Set<String>> mapSampleToDesignations =
+                        fetchRegulatoryDesignations(stringLabVesselEntry.getValue(), sampleInstances);
+                for (SampleInstanceSnapshot sampleInstance : sampleInstances) {
                     SampleInfoType sampleInfoType = new SampleInfoType();
-                    sampleInfoType.setSampleName(mercurySample.getSampleKey());
+                    sampleInfoType.setSampleName(sampleInstance.getRootOrEarliestSampleName());
                     sampleInfoType.setLsid("not implemented yet");
-                    MolecularIndexingScheme molecularIndexingScheme =
-                            sampleInstance.getMolecularIndexingScheme();
-                    if(molecularIndexingScheme != null) {
-                        SortedMap<MolecularIndexingScheme.IndexPosition, MolecularIndex> indexes =
-                                molecularIndexingScheme.getIndexes();
-                        String indexSequence = "";
-                        for (Map.Entry<MolecularIndexingScheme.IndexPosition, MolecularIndex> entry : indexes
-                                .entrySet()) {
-                            indexSequence += entry.getValue().getSequence();
-                        }
-                        sampleInfoType.setIndexSequence(indexSequence);
+                    if (sampleInstance.getIndexSequence() != null) {
+                        sampleInfoType.setIndexSequence(sampleInstance.getIndexSequence());
                     }
                     libraryDataType.getSampleDetails().add(sampleInfoType);
                     Set<String> regulatoryDesignations = new HashSet<>();
-                    for (ProductOrderSample sample : sampleInstance.getAllProductOrderSamples()) {
-                        regulatoryDesignations.add(
-                                sample.getProductOrder().getResearchProject().getRegulatoryDesignation().name());
+                    for (String sampleName : sampleInstance.getMercurySampleNames()) {
+                        Set<String> designations = mapSampleToDesignations.get(sampleName);
+                        if (designations != null) {
+                            regulatoryDesignations.addAll(designations);
+                        }
                     }
                     libraryDataType.getRegulatoryDesignation().addAll(regulatoryDesignations);
                 }
@@ -135,6 +137,53 @@ public class LimsQueries {
         return libraryDataTypes;
     }
 
+    /**
+     * Uses the application wide cache when available, e.g. not in database free tests.
+     */
+    private List<SampleInstanceSnapshot> fetchSampleInstances(LabVessel labVessel) {
+        if (sampleInstanceCache == null) {
+            return SampleInstanceSnapshot.of(labVessel.getSampleInstancesV2());
+        }
+        return sampleInstanceCache.getSampleInstances(labVessel);
+    }
+
+    /**
+     * Maps the samples of cached sample instances to the regulatory designations of their orders' research projects.
+     * Samples are added to orders without any lab event, so this reads the orders from the current persistence context.
+     */
+    private Map<String, Set<String>> fetchRegulatoryDesignations(LabVessel labVessel,
+            List<SampleInstanceSnapshot> sampleInstances) {
+        Collection<MercurySample> mercurySamples;
+        if (mercurySampleDao == null) {
+            mercurySamples = new HashSet<>();
+            for (SampleInstanceV2 sampleInstance : labVessel.getSampleInstancesV2()) {
+                mercurySamples.addAll(sampleInstance.getMercurySamples());
+            }
+        } else {
+            Set<String> sampleNames = new HashSet<>();
+            for (SampleInstanceSnapshot sampleInstance : sampleInstances) {
+                sampleNames.addAll(sampleInstance.getMercurySampleNames());
+            }
+            if (sampleNames.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            mercurySamples = mercurySampleDao.findBySampleKeys(sampleNames);
+        }
+
+        Map<String, Set<String>> mapSampleToDesignations = new HashMap<>();
+        for (MercurySample mercurySample : mercurySamples) {
+            Set<String> designations = new HashSet<>();
+            for (ProductOrderSample productOrderSample : mercurySample.getProductOrderSamples()) {
+                ResearchProject researchProject = productOrderSample.getProductOrder().getResearchProject();
+                if (researchProject != null && researchProject.getRegulatoryDesignation() != null) {
+                    designations.add(researchProject.getRegulatoryDesignation().name());
+                }
+            }
+            mapSampleToDesignations.put(mercurySample.getSampleKey(), designations);
+        }
+        return mapSampleToDesignations;
+    }
+
     /**
      * Determines whether all tube barcodes are in the database
      *
@@ -8,7 +8,6 @@ import org.broadinstitute.gpinformatics.athena.boundary.products.ProductEjb;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
 import org.broadinstitute.gpinformatics.infrastructure.bsp.BSPUserList;
-import org.broadinstitute.gpinformatics.infrastructure.common.Strings;
 import org.broadinstitute.gpinformatics.infrastructure.deployment.InfiniumStarterConfig;
 import org.broadinstitute.gpinformatics.mercury.bettalims.generated.ReagentType;
 import org.broadinstitute.gpinformatics.mercury.boundary.ResourceException;
@@ -49,10 +48,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -63,7 +59,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.zip.GZIPInputStream;
 
 /**
  * REST methods used by lab automation machines.
@@ -103,6 +98,9 @@ public class LimsQueryResource {
     @Inject
     private InfiniumStarterConfig infiniumStarterConfig;
 
+    @Inject
+    private DmapChipTypeCache dmapChipTypeCache;
+
     public LimsQueryResource() {
     }
 
@@ -489,7 +487,6 @@ public class LimsQueryResource {
     @Path("/verifyChipTypes")
     public boolean verifyChipTypes(@QueryParam("plateBarcode") String plateBarcode, @QueryParam("chip") List<String> chips) {
 
-        List<String> fileOutput;
         String fileChipType;
 
         LabVessel labVessel = labVesselDao.findByIdentifier(plateBarcode);
@@ -536,31 +533,18 @@ public class LimsQueryResource {
                 }
             }
 
-            GZIPInputStream DMAP = null;
             try {
-                DMAP = createReader(targetFile, "Cp1252");
-            }
-            catch (IOException e) {
+                fileChipType = dmapChipTypeCache.getChipType(targetFile);
+            } catch (IOException e) {
                 log.error("Failed to unzip file", e);
+                throw new ResourceException("Failed to unzip DMAP File " + targetFile,
+                        Response.Status.INTERNAL_SERVER_ERROR);
             }
-            finally {
-                if (DMAP == null) {
-                    throw new ResourceException("Failed to unzip DMAP File " + targetFile,
-                            Response.Status.INTERNAL_SERVER_ERROR);
-                }
-            }
-
-            fileOutput = Strings.process(DMAP);
-            if (fileOutput == null){
+            if (fileChipType == null) {
                 throw new ResourceException("Failed to parse DMAP File " + targetFile,
                         Response.Status.INTERNAL_SERVER_ERROR);
-            } else if (fileOutput.size() < 4){
-                throw new ResourceException("Unexpected DMAP File output size " + fileOutput.size(),
-                        Response.Status.INTERNAL_SERVER_ERROR);
             }
 
-            fileChipType = fileOutput.get(4);
-
             for (String PDOKeyword:PDOChipTypeList){
                 if (PDOKeyword.length() > 3){
                     if (fileChipType.contains(PDOKeyword)){
@@ -588,20 +572,6 @@ public class LimsQueryResource {
         return chip;
     }
 
-    private static GZIPInputStream createReader(File f, String encoding) throws IOException {
-
-        try {
-            InputStream in = new FileInputStream(f);
-            if (f.getName ().endsWith (".gz")) {
-                return new GZIPInputStream(in, 10240);
-            }
-        }
-        catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Missing encoding "+encoding, e);
-        }
-        return null;
-    }
-
     private List<String> parseChipName(String name){
 
         List<String> phrases;
@@ -86,7 +86,11 @@ import java.util.Set;
  *      <li>barcode - barcode of vessel to highlight</li>
  *      </ul>
  * </li>
+ * <li>truncated - if the traversal exceeded its {@link Budget}, the reason; links to vessels that weren't rendered
+ * are omitted</li>
  * </ul>
+ * Nodes are written as they are rendered, rather than held until the traversal completes, but the page parses the
+ * response as one document, so it renders nothing until the response is complete.
  */
 @Dependent
 public class TransferVisualizerV2 {
@@ -111,6 +115,27 @@ public class TransferVisualizerV2 {
         }
     }
 
+    /**
+     * Limits on a traversal, so a request for a very large graph returns a partial graph, rather than occupying an
+     * application thread for minutes.
+     */
+    public static class Budget {
+        public static final Budget DEFAULT = new Budget(3000, 50, 60000L);
+
+        /** Maximum number of vessels and containers rendered. */
+        private final int maxNodes;
+        /** Maximum number of transfers from a starting vessel. */
+        private final int maxHops;
+        /** Maximum elapsed time of the traversal. */
+        private final long maxMillis;
+
+        public Budget(int maxNodes, int maxHops, long maxMillis) {
+            this.maxNodes = maxNodes;
+            this.maxHops = maxHops;
+            this.maxMillis = maxMillis;
+        }
+    }
+
     @Inject
     private BSPUserList bspUserList;
 
@@ -126,7 +151,7 @@ public class TransferVisualizerV2 {
         /** Appended to JSON if an exception occurs. */
         private String error;
         /** Accumulates JSON for graph edges (nodes are streamed).*/
-        private JSONArray edgesJson = new JSONArray();
+        private final List<JSONObject> edgesJson = new ArrayList<>();
         /** Prevents vessels being rendered more than once. */
         private final Set<String> renderedLabels = new HashSet<>();
         /** Prevents events being rendered more than once. */
@@ -135,6 +160,18 @@ public class TransferVisualizerV2 {
         private final Set<String> renderedEdgeLabels = new HashSet<>();
         /** Ancestor and descendant barcodes to be highlighted. */
         private JSONArray highlightBarcodeJson = new JSONArray();
+        /** Prevents a barcode being highlighted more than once. */
+        private final Set<String> highlightedBarcodes = new HashSet<>();
+        /** Limits on the traversal. */
+        private final Budget budget;
+        /** When the traversal started, for the time limit. */
+        private final long startMillis = System.currentTimeMillis();
+        /** Number of nodes rendered. */
+        private int nodeCount;
+        /** If the traversal was cut short, the reason. */
+        private String truncated;
+        /** Whether the node or time limit has been reached. */
+        private boolean exhausted;
         /** The ID to scroll to when the page is rendered.  If the starting barcode was a tube, this is one of the
          * enclosing racks (the tube may appear in multiple racks, so it can't be used as the start). */
         private String startId;
@@ -146,9 +183,10 @@ public class TransferVisualizerV2 {
         private FontMetrics fontMetrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).getGraphics().
                 getFontMetrics(new Font("SansSerif", Font.PLAIN, 12));
 
-        Traverser(Writer writer, List<AlternativeIds> alternativeIds) throws JSONException {
+        Traverser(Writer writer, List<AlternativeIds> alternativeIds, Budget budget) throws JSONException {
             this.writer = writer;
             this.alternativeIds = alternativeIds;
+            this.budget = budget;
             if (alternativeIds.contains(AlternativeIds.INFERRED_LCSET) ||
                     alternativeIds.contains(AlternativeIds.BUCKET_LCSETS) ||
                     alternativeIds.contains(AlternativeIds.ALL_LCSETS)) {
@@ -160,6 +198,14 @@ public class TransferVisualizerV2 {
 
         @Override
         public TraversalControl evaluateVesselPreOrder(Context context) {
+            if (isExhausted()) {
+                return TraversalControl.StopTraversing;
+            }
+            if (context.getHopCount() > budget.maxHops) {
+                // Only this path is cut short; other paths may still be within the limit.
+                truncate(budget.maxHops + " transfers from the starting vessels");
+                return TraversalControl.StopTraversing;
+            }
             try {
                 if (context.getContextVesselContainer() == null) {
                     renderVessel(context.getContextVessel());
@@ -178,6 +224,36 @@ public class TransferVisualizerV2 {
             }
         }
 
+        /**
+         * Returns whether the node or time limit has been reached, after which nothing more is traversed or rendered.
+         */
+        boolean isExhausted() {
+            if (!exhausted) {
+                if (nodeCount >= budget.maxNodes) {
+                    exhausted = true;
+                    truncate(budget.maxNodes + " vessels");
+                } else if (System.currentTimeMillis() - startMillis > budget.maxMillis) {
+                    exhausted = true;
+                    truncate(budget.maxMillis / 1000L + " seconds");
+                }
+            }
+            return exhausted;
+        }
+
+        private void truncate(String reason) {
+            if (truncated == null) {
+                truncated = "Graph truncated after " + reason;
+                logger.info(truncated);
+            }
+        }
+
+        /**
+         * Counts a rendered node, against the node limit.
+         */
+        private void nodeRendered() {
+            nodeCount++;
+        }
+
         /**
          * Render a transfer event.
          */
@@ -275,7 +351,7 @@ public class TransferVisualizerV2 {
             jsonObject.put("source", sourceId).
                     put("target", targetId).
                     put("label", label);
-            edgesJson.put(jsonObject);
+            edgesJson.add(jsonObject);
         }
 
         /**
@@ -297,13 +373,16 @@ public class TransferVisualizerV2 {
             if (renderedEdgeLabels.add(sourceId + targetId + label)) {
                 jsonObject.put("label", label);
             }
-            edgesJson.put(jsonObject);
+            edgesJson.add(jsonObject);
         }
 
         /**
          * Render a stand-alone tube.
          */
         private void renderVessel(LabVessel labVessel) throws JSONException {
+            if (isExhausted()) {
+                return;
+            }
             if (renderedLabels.add(labVessel.getLabel())) {
                 // todo jmt add alternative IDs
                 jsonWriter.object().key("id").value(labVessel.getLabel()).
@@ -312,6 +391,7 @@ public class TransferVisualizerV2 {
                         key("height").value(ROW_HEIGHT).
                         key("children").
                         array().endArray().endObject();
+                nodeRendered();
             }
             for (VesselContainer<?> vesselContainer : labVessel.getVesselContainers()) {
                 renderContainer(vesselContainer, null, labVessel, true);
@@ -319,6 +399,9 @@ public class TransferVisualizerV2 {
         }
 
         private void highlightBarcode(String barcode) throws JSONException {
+            if (!highlightedBarcodes.add(barcode)) {
+                return;
+            }
             JSONObject jsonObject = new JSONObject();
             jsonObject.put("barcode", barcode);
             highlightBarcodeJson.put(jsonObject);
@@ -404,6 +487,9 @@ public class TransferVisualizerV2 {
         @SuppressWarnings("ImplicitNumericConversion")
         private void renderContainer(VesselContainer<?> vesselContainer, LabVessel ancillaryVessel, LabVessel labVessel,
                 boolean followRearrays) throws JSONException {
+            if (isExhausted()) {
+                return;
+            }
             String containerLabel = vesselContainer.getEmbedder().getLabel();
             String ancillaryLabel = null;
             if (ancillaryVessel == null) {
@@ -455,6 +541,7 @@ public class TransferVisualizerV2 {
                             rowColumn.getRow());
                 }
                 jsonWriter.endArray().endObject();
+                nodeRendered();
                 if (startId == null) {
                     startId = containerLabel;
                 }
@@ -650,14 +737,23 @@ public class TransferVisualizerV2 {
         }
 
         /**
-         * Finish the streamed nodes, then write the edges.
+         * Finish the streamed nodes, then write the edges.  If the graph was truncated, edges to vessels that weren't
+         * rendered are omitted.
          */
         public void completeJson() {
             try {
+                JSONArray linksJson = new JSONArray();
+                for (JSONObject edgeJson : edgesJson) {
+                    if (truncated == null || (renderedLabels.contains(edgeJson.getString("source")) &&
+                            renderedLabels.contains(edgeJson.getString("target")))) {
+                        linksJson.put(edgeJson);
+                    }
+                }
                 jsonWriter.endArray()
                         .key("startId").value(startId)
-                        .key("links").value(edgesJson)
+                        .key("links").value(linksJson)
                         .key("highlights").value(highlightBarcodeJson)
+                        .key("truncated").value(truncated)
                         .key("error").value(error)
                         .endObject();
                 writer.flush();
@@ -668,20 +764,37 @@ public class TransferVisualizerV2 {
     }
 
     /**
-     * For the given vessels and directions, writes JSON for nodes and edges to the given writer.
+     * For the given vessels and directions, writes JSON for nodes and edges to the given writer, within the default
+     * budget.
      */
     public void jsonForVessels(List<LabVessel> labVessels,
             List<TransferTraverserCriteria.TraversalDirection> traversalDirections,
             Writer writer,
             List<AlternativeIds> alternativeIds) {
+        jsonForVessels(labVessels, traversalDirections, writer, alternativeIds, Budget.DEFAULT);
+    }
+
+    /**
+     * For the given vessels and directions, writes JSON for nodes and edges to the given writer.  Each direction is
+     * traversed once for all vessels, so vessels and positions shared by the vessels' graphs are visited once per
+     * direction, rather than once per vessel.
+     */
+    public void jsonForVessels(List<LabVessel> labVessels,
+            List<TransferTraverserCriteria.TraversalDirection> traversalDirections,
+            Writer writer,
+            List<AlternativeIds> alternativeIds,
+            Budget budget) {
         if (traversalDirections.isEmpty()) {
             throw new IllegalArgumentException("Must supply at least one direction");
         }
         Traverser traverser = null;
         try {
-            traverser = new Traverser(writer, alternativeIds);
-            for (LabVessel labVessel : labVessels) {
-                for (TransferTraverserCriteria.TraversalDirection traversalDirection : traversalDirections) {
+            traverser = new Traverser(writer, alternativeIds, budget);
+            for (TransferTraverserCriteria.TraversalDirection traversalDirection : traversalDirections) {
+                for (LabVessel labVessel : labVessels) {
+                    if (traverser.isExhausted()) {
+                        break;
+                    }
                     VesselContainer<?> containerRole = labVessel.getContainerRole();
                     if (containerRole == null) {
                         labVessel.evaluateCriteria(traverser, traversalDirection);
@@ -690,8 +803,8 @@ public class TransferVisualizerV2 {
                             containerRole.evaluateCriteria(vesselPosition, traverser, traversalDirection, 0);
                         }
                     }
-                    traverser.resetAllTraversed();
                 }
+                traverser.resetAllTraversed();
             }
         } catch (Exception e) {
             logger.error("Transfer visualizer error: " + e.getMessage(), e );
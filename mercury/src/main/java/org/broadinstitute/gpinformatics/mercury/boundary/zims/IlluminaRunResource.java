@@ -77,6 +77,9 @@ public class IlluminaRunResource implements Serializable {
     @Inject
     private SystemOfRecord systemOfRecord;
 
+    @Inject
+    private ZimsIlluminaRunCache zimsIlluminaRunCache;
+
     public IlluminaRunResource() {
     }
 
@@ -105,7 +108,7 @@ public class IlluminaRunResource implements Serializable {
                         illuminaSequencingRun.getSampleCartridge().getLabel());
                 switch (systemOfRecordForVessel) {
                 case MERCURY:
-                    runBean = zimsIlluminaRunFactory.makeZimsIlluminaRun(illuminaSequencingRun);
+                    runBean = makeZimsIlluminaRun(illuminaSequencingRun);
                     break;
                 case SQUID:
                     runBean = callThrift(runName);
@@ -145,7 +148,7 @@ public class IlluminaRunResource implements Serializable {
 
             switch (systemOfRecordForVessel) {
             case MERCURY:
-                runBean = zimsIlluminaRunFactory.makeZimsIlluminaRun(runs.iterator().next());
+                runBean = makeZimsIlluminaRun(runs.iterator().next());
                 break;
             case SQUID:
                 runBean = new ZimsIlluminaRun();
@@ -165,6 +168,22 @@ public class IlluminaRunResource implements Serializable {
         return runBean;
     }
 
+    /**
+     * Returns the cached bean for a Mercury run, or builds and caches it.
+     */
+    private ZimsIlluminaRun makeZimsIlluminaRun(IlluminaSequencingRun illuminaSequencingRun) {
+        if (zimsIlluminaRunCache == null) {
+            return zimsIlluminaRunFactory.makeZimsIlluminaRun(illuminaSequencingRun);
+        }
+        ZimsIlluminaRun runBean = zimsIlluminaRunCache.getRun(illuminaSequencingRun.getRunName());
+        if (runBean == null) {
+            long changeCount = zimsIlluminaRunCache.getChangeCount();
+            runBean = zimsIlluminaRunFactory.makeZimsIlluminaRun(illuminaSequencingRun);
+            zimsIlluminaRunCache.putRun(runBean, changeCount);
+        }
+        return runBean;
+    }
+
     private ZimsIlluminaRun callThrift(String runName) {
         ZimsIlluminaRun runBean = new ZimsIlluminaRun();
         try {
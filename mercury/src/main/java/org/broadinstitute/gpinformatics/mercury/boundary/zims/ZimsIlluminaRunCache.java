@@ -0,0 +1,160 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.zims;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheInvalidator;
+import org.broadinstitute.gpinformatics.mercury.entity.zims.ZimsIlluminaRun;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide cache of the pipeline API beans that {@link IlluminaRunResource} builds for Mercury runs, keyed by
+ * run name.  The pipeline asks for the same run many times while analyzing it, and building the bean for a flowcell
+ * with thousands of libraries walks the chain of custody of every library.
+ * <p/>
+ * {@link ZimsIlluminaRunListener} removes a run when an event is recorded on its flowcell, or when the run or its
+ * chambers change; immediately, and again when the transaction completes.  Runs also expire after a fixed time, to
+ * pick up changes that can't be observed, e.g. to product orders and BSP sample data.
+ */
+@Singleton
+@ConcurrencyManagement(BEAN)
+public class ZimsIlluminaRunCache extends AbstractCacheControl {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 100;
+
+    private static final int EXPIRE_MINUTES = 60;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    private volatile Cache<String, ZimsIlluminaRun> cache = buildCache(DEFAULT_MAXIMUM_SIZE);
+
+    /** Maps flowcell label to the names of cached runs of that flowcell, to remove runs for an event. */
+    private final Map<String, Set<String>> runNamesByFlowcell = new ConcurrentHashMap<>();
+
+    private final CacheInvalidator cacheInvalidator = new CacheInvalidator(() -> transactionSynchronizationRegistry);
+
+    private final CacheInvalidator.Removal<String> flowcellRemoval = this::removeFlowcell;
+
+    private final CacheInvalidator.Removal<String> runRemoval = this::removeRun;
+
+    private Cache<String, ZimsIlluminaRun> buildCache(int maximumSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES)
+                .removalListener(new RemovalListener<String, ZimsIlluminaRun>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, ZimsIlluminaRun> notification) {
+                        if (notification.getCause() == RemovalCause.REPLACED ||
+                            notification.getValue().getFlowcellBarcode() == null) {
+                            return;
+                        }
+                        runNamesByFlowcell.computeIfPresent(notification.getValue().getFlowcellBarcode(),
+                                (label, runNames) -> {
+                                    runNames.remove(notification.getKey());
+                                    return runNames.isEmpty() ? null : runNames;
+                                });
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return the cached bean for the run, or null if it isn't cached
+     */
+    public ZimsIlluminaRun getRun(String runName) {
+        return runName == null ? null : cache.getIfPresent(runName);
+    }
+
+    /**
+     * Returns the number of changes seen so far, to pass to {@link #putRun}; call this before building the bean.
+     */
+    public long getChangeCount() {
+        return cacheInvalidator.getChangeCount();
+    }
+
+    /**
+     * Caches a bean built by the factory, unless it has an error, or a flowcell or run changed while it was built.
+     *
+     * @param changeCountBefore the value of {@link #getChangeCount()} before the bean was built
+     */
+    public void putRun(ZimsIlluminaRun zimsIlluminaRun, long changeCountBefore) {
+        if (zimsIlluminaRun.getName() == null || zimsIlluminaRun.getFlowcellBarcode() == null ||
+            zimsIlluminaRun.getError() != null || !cacheInvalidator.isUnchangedSince(changeCountBefore)) {
+            return;
+        }
+        runNamesByFlowcell.compute(zimsIlluminaRun.getFlowcellBarcode(), (label, runNames) -> {
+            Set<String> names = runNames == null ? ConcurrentHashMap.newKeySet() : runNames;
+            names.add(zimsIlluminaRun.getName());
+            return names;
+        });
+        cache.put(zimsIlluminaRun.getName(), zimsIlluminaRun);
+    }
+
+    /**
+     * Removes the runs of a flowcell on which an event has been recorded, now and when the current transaction
+     * completes.
+     */
+    public void invalidateFlowcell(String flowcellLabel) {
+        cacheInvalidator.invalidate(flowcellLabel, flowcellRemoval);
+    }
+
+    /**
+     * Removes a run that has changed, now and when the current transaction completes.
+     */
+    public void invalidateRun(String runName) {
+        cacheInvalidator.invalidate(runName, runRemoval);
+    }
+
+    private void removeRun(String runName) {
+        cache.invalidate(runName);
+    }
+
+    private void removeFlowcell(String flowcellLabel) {
+        Set<String> runNames = runNamesByFlowcell.remove(flowcellLabel);
+        if (runNames != null) {
+            cache.invalidateAll(runNames);
+        }
+    }
+
+    @Override
+    public void invalidateCache() {
+        cacheInvalidator.changed();
+        cache.invalidateAll();
+        runNamesByFlowcell.clear();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Replaces the cache with an empty one of the new size.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        cache = buildCache(max);
+        runNamesByFlowcell.clear();
+    }
+
+    long getSize() {
+        return cache.size();
+    }
+}
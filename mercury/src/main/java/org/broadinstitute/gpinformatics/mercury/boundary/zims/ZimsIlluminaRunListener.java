@@ -0,0 +1,68 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.zims;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.common.ServiceAccessUtility;
+import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.run.IlluminaSequencingRun;
+import org.broadinstitute.gpinformatics.mercury.entity.run.IlluminaSequencingRunChamber;
+import org.broadinstitute.gpinformatics.mercury.entity.run.RunCartridge;
+import org.broadinstitute.gpinformatics.mercury.entity.run.SequencingRun;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.hibernate.Hibernate;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Tells {@link ZimsIlluminaRunCache} about events on flowcells, and about changes to sequencing runs and their
+ * chambers.  Entities must be annotated with @EntityListeners(ZimsIlluminaRunListener.class).
+ */
+public class ZimsIlluminaRunListener {
+
+    private static final Log log = LogFactory.getLog(ZimsIlluminaRunListener.class);
+
+    /** The cache is an application wide singleton, so its reference is looked up once. */
+    private static volatile ZimsIlluminaRunCache zimsIlluminaRunCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object object) {
+        ZimsIlluminaRunCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        if (OrmUtil.proxySafeIsInstance(object, LabEvent.class)) {
+            // This runs during a flush, so it reads only what is already loaded; a flowcell that isn't loaded is left
+            // to the expiry.
+            for (LabVessel labVessel : OrmUtil.proxySafeCast(object, LabEvent.class).getLoadedLabVessels()) {
+                if (Hibernate.isInitialized(labVessel) && OrmUtil.proxySafeIsInstance(labVessel, RunCartridge.class)) {
+                    cache.invalidateFlowcell(labVessel.getLabel());
+                }
+            }
+        } else if (OrmUtil.proxySafeIsInstance(object, SequencingRun.class)) {
+            cache.invalidateRun(OrmUtil.proxySafeCast(object, SequencingRun.class).getRunName());
+        } else if (OrmUtil.proxySafeIsInstance(object, IlluminaSequencingRunChamber.class)) {
+            IlluminaSequencingRun illuminaSequencingRun =
+                    OrmUtil.proxySafeCast(object, IlluminaSequencingRunChamber.class).getIlluminaSequencingRun();
+            if (illuminaSequencingRun != null) {
+                cache.invalidateRun(illuminaSequencingRun.getRunName());
+            }
+        }
+    }
+
+    private static ZimsIlluminaRunCache getCache() {
+        if (zimsIlluminaRunCache == null) {
+            try {
+                zimsIlluminaRunCache = ServiceAccessUtility.getBean(ZimsIlluminaRunCache.class);
+            } catch (RuntimeException e) {
+                // Not in a container, e.g. a JPA test, so there is no cache to maintain.
+                log.debug("No ZIMS run cache", e);
+            }
+        }
+        return zimsIlluminaRunCache;
+    }
+}
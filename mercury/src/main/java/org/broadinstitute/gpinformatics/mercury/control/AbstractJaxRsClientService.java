@@ -123,6 +123,9 @@ public abstract class AbstractJaxRsClientService implements Serializable {
         void callback(String[] bspData);
     }
 
+    /** Returned by {@link #postForStatus} when the response couldn't be read. */
+    public static final int RESPONSE_NOT_READ = -1;
+
     /**
      * Strongly typed extra tab flag
      */
@@ -138,8 +141,23 @@ public abstract class AbstractJaxRsClientService implements Serializable {
      * @param params map from parameter names to values
      * @param extraTab Extra tab flag, strip a trailing tab if this is present.
      * @param callback Callback method to feed data.
+     *
+     * @return true if the response was successful and was read in full; false if it was an error response, or
+     * reading it failed, in which case the callback may have been fed some of the data
+     */
+    public boolean post(@Nonnull String urlString, @Nonnull MultivaluedMap<String, String> params,
+                     @Nonnull ExtraTab extraTab, @Nonnull PostCallback callback) {
+        int status = postForStatus(urlString, params, extraTab, callback);
+        return status == OK.getStatusCode() || status == ACCEPTED.getStatusCode();
+    }
+
+    /**
+     * Post method, returning the response status, so the caller can tell a rejected request from a failed one.
+     *
+     * @return the status code of the response, or {@link #RESPONSE_NOT_READ} if the response couldn't be read in
+     * full, in which case the callback may have been fed some of the data
      */
-    public void post(@Nonnull String urlString, @Nonnull MultivaluedMap<String, String> params,
+    public int postForStatus(@Nonnull String urlString, @Nonnull MultivaluedMap<String, String> params,
                      @Nonnull ExtraTab extraTab, @Nonnull PostCallback callback) {
         logger.debug(String.format("URL string is '%s'", urlString));
         WebTarget webTarget = getJaxRsClient().target(urlString);
@@ -159,7 +177,7 @@ public abstract class AbstractJaxRsClientService implements Serializable {
             // for both in the event that the BSP server's behavior is ever corrected.
             if (!EnumSet.of(ACCEPTED, OK).contains(clientResponseStatus)) {
                 logger.error("response code " + clientResponse.getStatus() + ": " + reader.readLine());
-                return;
+                return clientResponse.getStatus();
             }
 
             // skip header line
@@ -187,8 +205,10 @@ public abstract class AbstractJaxRsClientService implements Serializable {
             }
 
             is.close();
+            return clientResponse.getStatus();
         } catch (IOException e) {
             logger.error(e);
+            return RESPONSE_NOT_READ;
         } finally {
             IOUtils.closeQuietly(reader);
             if (clientResponse != null) {
@@ -204,9 +204,11 @@ public class AuditReaderDao extends GenericDao {
         // Chunks revIds as necessary to limit sql "in" clause to 1000 elements, or 1 element if not chunking.
         final int IN_CLAUSE_LIMIT = doChunks ? 1000 : 1;
         Collection<Long> sublist = new ArrayList<>();
+        int remaining = revIds.size();
         for (Long id : revIds) {
             sublist.add(id);
-            if (sublist.size() == IN_CLAUSE_LIMIT || sublist.size() == revIds.size()) {
+            --remaining;
+            if (sublist.size() == IN_CLAUSE_LIMIT || remaining == 0) {
 
                 // Processes and flushes sublist.
                 AuditQuery query = getAuditReader().createQuery()
@@ -172,6 +172,16 @@ public class AttributeArchetypeDao extends GenericDao {
         return findSingle(WorkflowMetadata.class, WorkflowMetadata_.archetypeName, workflowName);
     }
 
+    /** Returns the workflow metadata for many workflows in one query, mapped by workflow name. */
+    public Map<String, WorkflowMetadata> findWorkflowMetadata(Collection<String> workflowNames) {
+        Map<String, WorkflowMetadata> map = new HashMap<>();
+        for (WorkflowMetadata workflowMetadata : findListByList(WorkflowMetadata.class,
+                WorkflowMetadata_.archetypeName, workflowNames)) {
+            map.put(workflowMetadata.getArchetypeName(), workflowMetadata);
+        }
+        return map;
+    }
+
     public Map<String, AttributeDefinition> findAttributeNamesByTypeAndGroup(
             AttributeDefinition.DefinitionType definitionType, String group) {
         Map<String, AttributeDefinition> map = new HashMap<>();
@@ -0,0 +1,205 @@
+package org.broadinstitute.gpinformatics.mercury.control.run;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zips a directory tree, recording the length and CRC-32 of each file as it is read, so the zip can be verified
+ * against the files, rather than against itself, before the files are deleted.  Files are read through a FileChannel
+ * into a large buffer, so idats are copied in a few large reads.
+ */
+public class ChecksummedZipWriter {
+
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private ChecksummedZipWriter() {
+    }
+
+    /**
+     * The length and CRC-32 of each file in a zip.
+     */
+    public static class Manifest {
+        private final List<ManifestEntry> entries = new ArrayList<>();
+        private long totalBytes;
+
+        void add(ManifestEntry manifestEntry) {
+            entries.add(manifestEntry);
+            totalBytes += manifestEntry.getSize();
+        }
+
+        public List<ManifestEntry> getEntries() {
+            return Collections.unmodifiableList(entries);
+        }
+
+        /** @return the uncompressed length of all files */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * Writes a line of CRC-32 (hex), length and entry name for each file.
+         */
+        public void write(File manifestFile) throws IOException {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8)) {
+                for (ManifestEntry manifestEntry : entries) {
+                    writer.write(String.format("%08x\t%d\t%s%n", manifestEntry.getCrc(), manifestEntry.getSize(),
+                            manifestEntry.getName()));
+                }
+            }
+        }
+    }
+
+    public static class ManifestEntry {
+        private final String name;
+        private final long size;
+        private final long crc;
+
+        ManifestEntry(String name, long size, long crc) {
+            this.name = name;
+            this.size = size;
+            this.crc = crc;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+    }
+
+    /**
+     * Zips all files under a directory.
+     *
+     * @param dir         directory to zip
+     * @param zipFile     zip to create, which must not exist
+     * @param useFullPath true to name entries by the file's full path, false to use the file name
+     *
+     * @return the manifest of the files that were zipped
+     */
+    public static Manifest zipDir(File dir, File zipFile, boolean useFullPath) throws IOException {
+        if (zipFile.exists()) {
+            throw new IOException("Zip File " + zipFile.getAbsolutePath() + " already exists!");
+        }
+        if (!dir.isDirectory()) {
+            throw new IOException("Directory " + dir.getAbsolutePath() + " does not exist, or is not a directory!");
+        }
+        Manifest manifest = new Manifest();
+        boolean isSuccessful = false;
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile),
+                BUFFER_SIZE))) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            addDir(dir.getAbsoluteFile(), zos, useFullPath, buffer, manifest);
+            isSuccessful = true;
+        } finally {
+            if (!isSuccessful && zipFile.exists()) {
+                zipFile.delete();
+            }
+        }
+        return manifest;
+    }
+
+    private static void addDir(File dir, ZipOutputStream zos, boolean useFullPath, ByteBuffer buffer,
+            Manifest manifest) throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            throw new IOException("Failed to list directory " + dir);
+        }
+        // Sorted, so the entry order doesn't depend on the file system.
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = new File(dir, name);
+            if (file.isDirectory()) {
+                addDir(file, zos, useFullPath, buffer, manifest);
+                continue;
+            }
+            String entryName = useFullPath ? file.getPath() : file.getName();
+            zos.putNextEntry(new ZipEntry(entryName));
+            CRC32 crc32 = new CRC32();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    crc32.update(buffer.array(), 0, buffer.limit());
+                    zos.write(buffer.array(), 0, buffer.limit());
+                    size += buffer.limit();
+                    buffer.clear();
+                }
+            }
+            zos.closeEntry();
+            manifest.add(new ManifestEntry(entryName, size, crc32.getValue()));
+        }
+    }
+
+    /**
+     * Reads every entry of a zip, and checks that the entries match the manifest: the same names, and for each,
+     * the same length and CRC-32, as stored in the zip and as calculated from the decompressed data.
+     *
+     * @throws IOException if the zip can't be read, or doesn't match
+     */
+    public static void verify(File zipFile, Manifest manifest) throws IOException {
+        Map<String, ManifestEntry> mapNameToEntry = new HashMap<>();
+        for (ManifestEntry manifestEntry : manifest.getEntries()) {
+            mapNameToEntry.put(manifestEntry.getName(), manifestEntry);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int entryCount = 0;
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                ManifestEntry manifestEntry = mapNameToEntry.get(zipEntry.getName());
+                if (manifestEntry == null) {
+                    throw new IOException(zipFile + " has unexpected entry " + zipEntry.getName());
+                }
+                if (zipEntry.getSize() != manifestEntry.getSize() || zipEntry.getCrc() != manifestEntry.getCrc()) {
+                    throw new IOException(zipFile + " entry " + zipEntry.getName() + " has length " +
+                            zipEntry.getSize() + " and CRC " + zipEntry.getCrc() + ", expected " +
+                            manifestEntry.getSize() + " and " + manifestEntry.getCrc());
+                }
+                CRC32 crc32 = new CRC32();
+                long size = 0;
+                try (InputStream inputStream = zip.getInputStream(zipEntry)) {
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) != -1) {
+                        crc32.update(buffer, 0, bytesRead);
+                        size += bytesRead;
+                    }
+                }
+                if (size != manifestEntry.getSize() || crc32.getValue() != manifestEntry.getCrc()) {
+                    throw new IOException(zipFile + " entry " + zipEntry.getName() + " does not match its data");
+                }
+                entryCount++;
+            }
+        }
+        if (entryCount != mapNameToEntry.size()) {
+            throw new IOException(zipFile + " has " + entryCount + " entries, expected " + mapNameToEntry.size());
+        }
+    }
+}
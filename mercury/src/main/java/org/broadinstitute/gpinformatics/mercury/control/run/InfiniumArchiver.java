@@ -28,8 +28,6 @@ import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.transaction.UserTransaction;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -39,9 +37,15 @@ import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Archives Infinium idats and other files at some interval (e.g. 10 days) after the pipeline starter has been called.
@@ -54,6 +58,9 @@ public class InfiniumArchiver {
     private static final Log log = LogFactory.getLog(InfiniumArchiver.class);
     private static final String DECODE_DATA_NAME = "Decode_Data";
     private static final String ARCHIVED_DIR_NAME = "Archived";
+    private static final String MANIFEST_SUFFIX = ".zip.crc";
+    private static final int DEFAULT_ARCHIVE_THREADS = 4;
+    private static final double MEGABYTE = 1024.0 * 1024.0;
 
     @Inject
     private LabVesselDao labVesselDao;
@@ -76,6 +83,9 @@ public class InfiniumArchiver {
     @Resource
     private EJBContext ejbContext;
 
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ExecutorService executorService;
+
     private static final AtomicBoolean busy = new AtomicBoolean(false);
 
     public void archive() {
@@ -88,39 +98,102 @@ public class InfiniumArchiver {
             gregorianCalendar.add(Calendar.DAY_OF_YEAR, -10);
             List<Pair<String, Boolean>> chipsToArchive = findChipsToArchive(
                     infiniumStarterConfig.getNumChipsPerArchivePeriod(), gregorianCalendar.getTime());
-            for (Pair<String, Boolean> stringBooleanPair : chipsToArchive) {
-                UserTransaction utx = ejbContext.getUserTransaction();
+            int numThreads = infiniumStarterConfig.getNumArchiveThreads() > 0 ?
+                    infiniumStarterConfig.getNumArchiveThreads() : DEFAULT_ARCHIVE_THREADS;
+            long startTime = System.currentTimeMillis();
+            AtomicLong bytesArchived = new AtomicLong();
+            int chipsArchived = 0;
+
+            // Up to numThreads chips are zipped at a time, but events are added in order, on this thread, as each
+            // chip finishes.  After a failure, no more chips are started, but chips that have already started are
+            // allowed to finish, and get their events, because their directories are deleted when they finish.
+            List<Future<Boolean>> futures = new ArrayList<>();
+            Throwable failure = null;
+            for (int i = 0; i < chipsToArchive.size(); i++) {
+                while (failure == null && futures.size() < chipsToArchive.size() && futures.size() < i + numThreads) {
+                    futures.add(submitArchiveChip(chipsToArchive.get(futures.size()), bytesArchived));
+                }
+                if (i >= futures.size()) {
+                    break;
+                }
+                String barcode = chipsToArchive.get(i).getLeft();
                 try {
-                    boolean archived = true;
-                    if (stringBooleanPair.getRight()) {
-                        archived = archiveChip(stringBooleanPair.getLeft(), infiniumStarterConfig);
-                    }
-                    // else assume GAP has archived it
-                    if (archived) {
-                        utx.begin();
-                        LabVessel chip = labVesselDao.findByIdentifier(stringBooleanPair.getLeft());
-                        chip.addInPlaceEvent(new LabEvent(LabEventType.INFINIUM_ARCHIVED, new Date(), LabEvent.UI_EVENT_LOCATION,
-                                1L, bspUserList.getByUsername("seqsystem").getUserId(), LabEvent.UI_PROGRAM_NAME));
-                        // The commit doesn't cause a flush (not clear why), so we must do it explicitly.
-                        labVesselDao.flush();
-                        utx.commit();
+                    if (futures.get(i).get()) {
+                        addArchivedEvent(barcode);
+                        chipsArchived++;
                     }
                 } catch (Throwable e) {
-                    try {
-                        utx.rollback();
-                    } catch (Throwable e1) {
-                        log.error("Error rolling back", e1);
-                    }
-                    log.error("Failed to process chip " + stringBooleanPair.getLeft(), e);
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    log.error("Failed to process chip " + barcode, cause);
                     // todo jmt email?
-                    throw new RuntimeException(e);
+                    if (failure == null) {
+                        failure = cause;
+                    }
                 }
             }
+            logThroughput(chipsArchived, bytesArchived.get(), System.currentTimeMillis() - startTime);
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
         } finally {
             busy.set(false);
         }
     }
 
+    /**
+     * Starts archiving a chip on the managed executor, unless GAP is responsible for archiving it.
+     */
+    private Future<Boolean> submitArchiveChip(final Pair<String, Boolean> barcodeAndArchive,
+            final AtomicLong bytesArchived) {
+        if (!barcodeAndArchive.getRight()) {
+            // assume GAP has archived it
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        FutureTask<Boolean> futureTask = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return archiveChip(barcodeAndArchive.getLeft(), infiniumStarterConfig, bytesArchived);
+            }
+        });
+        try {
+            executorService.execute(futureTask);
+        } catch (RejectedExecutionException e) {
+            log.warn("Executor refused chip " + barcodeAndArchive.getLeft() + ", archiving it on this thread");
+            futureTask.run();
+        }
+        return futureTask;
+    }
+
+    private void addArchivedEvent(String barcode) throws Exception {
+        UserTransaction utx = ejbContext.getUserTransaction();
+        try {
+            utx.begin();
+            LabVessel chip = labVesselDao.findByIdentifier(barcode);
+            chip.addInPlaceEvent(new LabEvent(LabEventType.INFINIUM_ARCHIVED, new Date(), LabEvent.UI_EVENT_LOCATION,
+                    1L, bspUserList.getByUsername("seqsystem").getUserId(), LabEvent.UI_PROGRAM_NAME));
+            // The commit doesn't cause a flush (not clear why), so we must do it explicitly.
+            labVesselDao.flush();
+            utx.commit();
+        } catch (Throwable e) {
+            try {
+                utx.rollback();
+            } catch (Throwable e1) {
+                log.error("Error rolling back", e1);
+            }
+            throw e;
+        }
+    }
+
+    private static void logThroughput(int chipsArchived, long bytesArchived, long elapsedMillis) {
+        if (chipsArchived == 0) {
+            return;
+        }
+        double seconds = Math.max(elapsedMillis, 1L) / 1000.0;
+        log.info(String.format("Archived %d chips, %.1f MB, in %.1f s: %.1f MB/s, %.1f chips/hour", chipsArchived,
+                bytesArchived / MEGABYTE, seconds, bytesArchived / MEGABYTE / seconds,
+                chipsArchived * 3600.0 / seconds));
+    }
+
     /**
      * Finds chips that have INFINIUM_AUTOCALL_SOME_STARTED and INFINIUM_AUTOCALL_ALL_STARTED events that are old
      * enough that the chips are likely to have been analyzed.  We're checking for both events to avoid chips that
@@ -173,9 +246,18 @@ public class InfiniumArchiver {
      * This code is mostly copied from GAP's InfiniumArchiveBean.archiveChip: delete the jpg files; copy the
      * decode_data files (downloaded from Illumina for each chip position) into the idat directory; zip the
      * idats and decode_data into a temp zip file; copy the zip to the archive directory; delete the temp zip;
-     * rename the idats directory (due to locks?), then delete it.
+     * rename the idats directory (due to locks?), then delete it.  The copied zip is checked against the length and
+     * CRC-32 of each file before anything is deleted, and these are written to a manifest next to the zip.
      */
     static boolean archiveChip(String barcode, InfiniumStarterConfig infiniumStarterConfig) {
+        return archiveChip(barcode, infiniumStarterConfig, new AtomicLong());
+    }
+
+    /**
+     * @param bytesArchived incremented by the uncompressed length of the chip's files, if they are archived
+     */
+    static boolean archiveChip(String barcode, InfiniumStarterConfig infiniumStarterConfig,
+            AtomicLong bytesArchived) {
         log.info("Archiving Chip Barcode " + barcode);
         boolean isSuccessful = true;
         File baseDataDir = new File(infiniumStarterConfig.getDataPath());
@@ -235,31 +317,39 @@ public class InfiniumArchiver {
         String tempDir = System.getProperty("java.io.tmpdir");
         String zipFileName = barcode + ".zip";
         File zipFile = new File(tempDir, zipFileName);
+        ChecksummedZipWriter.Manifest manifest = null;
         if (isSuccessful) {
             // If here, the contents of the data directory is complete for archiving
-            isSuccessful = zipDir(dataDir, zipFile, Boolean.TRUE);
+            try {
+                manifest = ChecksummedZipWriter.zipDir(dataDir, zipFile, Boolean.TRUE);
+                if (manifest.getEntries().isEmpty()) {
+                    isSuccessful = false;
+                    log.error("No files to zip in " + dataDir);
+                }
+            } catch (IOException ioe) {
+                isSuccessful = false;
+                log.error("IOException creating zip " + zipFile, ioe);
+            }
         }
 
         // Copy archive
         File newZipFileLocn = new File(infiniumStarterConfig.getArchivePath(), zipFile.getName());
+        File manifestFile = new File(infiniumStarterConfig.getArchivePath(), barcode + MANIFEST_SUFFIX);
         if (isSuccessful) {
             // If here, we have successfully created the zip file in the temp directory....
             // Move the zip file to archive pending..
             if (!newZipFileLocn.exists()) {
                 try {
                     FileUtils.copyFile(zipFile, newZipFileLocn);
+                    ChecksummedZipWriter.verify(newZipFileLocn, manifest);
+                    manifest.write(manifestFile);
+                    bytesArchived.addAndGet(manifest.getTotalBytes());
                 } catch (IOException ioe) {
                     isSuccessful = false;
-                    log.error("Error copying " + zipFile + " to " + newZipFileLocn);
-                }
-                if (zipFile.length() == newZipFileLocn.length()) {
-                    // TODO - MD5 or some sort of check...
-//                isSuccessful = true;
-                } else {
-                    isSuccessful = false;
-                    log.error("Size of '" + newZipFileLocn.getAbsolutePath()
-                            + "' Does not agree with previous - error in transfer? - deleting..");
+                    log.error("Error copying or verifying " + zipFile + " to " + newZipFileLocn
+                            + " - deleting..", ioe);
                     newZipFileLocn.delete();
+                    manifestFile.delete();
                 }
             } else {
                 isSuccessful = false;
@@ -297,96 +387,6 @@ public class InfiniumArchiver {
         return isSuccessful;
     }
 
-    private static boolean zipDir(File dir2Zip, File zipFile, boolean useFullPath) {
-        boolean isSuccessful = false;
-
-        if (zipFile.exists()) {
-            log.error("Zip File " + zipFile.getAbsolutePath() + " already exists!");
-            return false;
-        }
-        if (!dir2Zip.exists()) {
-            log.error("Directory " + dir2Zip.getAbsolutePath() + " Does not exist!");
-            return false;
-        }
-        if (!dir2Zip.isDirectory()) {
-            log.error("Directory " + dir2Zip.getAbsolutePath() + " Is not a directory!");
-            return false;
-        }
-
-        try {
-            // create a ZipOutputStream to zip the data to
-            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile));
-            // assuming that there is a directory named inFolder (If there isn't
-            // create one) in the same directory as the one the code runs from,
-            // call the zipDir method
-            isSuccessful = zipDir(dir2Zip.getAbsolutePath(), zos, useFullPath);
-
-            // close the stream
-            zos.close();
-        } catch (IOException ioe) {
-            log.error("IOException creating zip");
-            isSuccessful = false;
-        } finally {
-            if (!isSuccessful) {
-                if (zipFile.exists()) {
-                    zipFile.delete();
-                }
-            }
-        }
-        return isSuccessful;
-    }
-
-    private static boolean zipDir(String dir2zip, ZipOutputStream zos, boolean useFullPath) {
-        boolean isSuccessful = false;
-
-        try {
-            // create a new File object based on the directory we have to zip
-            File zipDir = new File(dir2zip);
-            // get a listing of the directory content
-            String[] dirList = zipDir.list();
-            byte[] readBuffer = new byte[2156];
-            int bytesIn;
-            // loop through dirList, and zip the files
-            for (String aDirList : dirList) {
-                File f = new File(zipDir, aDirList);
-                if (f.isDirectory()) {
-                    // if the File object is a directory, call this
-                    // function again to add its content recursively
-                    String filePath = f.getPath();
-                    zipDir(filePath, zos, useFullPath);
-                    // loop again
-                    continue;
-                }
-
-                // if we reached here, the File object f was not a directory
-                // create a FileInputStream on top of f
-                FileInputStream fis = new FileInputStream(f);
-
-                // create a new zip entry
-                ZipEntry anEntry;
-
-                if (useFullPath) {
-                    anEntry = new ZipEntry(f.getPath());
-                } else {
-                    anEntry = new ZipEntry(f.getName());
-                }
-                // place the zip entry in the ZipOutputStream object
-                zos.putNextEntry(anEntry);
-
-                // now write the content of the file to the ZipOutputStream
-                while ((bytesIn = fis.read(readBuffer)) != -1) {
-                    zos.write(readBuffer, 0, bytesIn);
-                }
-                // close the Stream
-                fis.close();
-                isSuccessful = true;
-            }
-        } catch (IOException ioe) {
-            log.error("IO Error zip directory '" + dir2zip + "' " + ioe.getMessage());
-        }
-        return isSuccessful;
-    }
-
     private static boolean deleteDirectory(File dir) {
         boolean isSuccessful = true;
         try {
@@ -0,0 +1,285 @@
+package org.broadinstitute.gpinformatics.mercury.control.sample;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheInvalidator;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.SampleInstanceV2;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselContainer;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselPosition;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide, size bounded cache of the sample instances computed for a vessel, or for a position in a
+ * container.  Computing sample instances walks the whole transfer ancestry, and the per-entity caches in LabVessel and
+ * VesselContainer only last for one persistence context.  Entries are immutable {@link SampleInstanceSnapshot}s, keyed
+ * by vessel id and position, which only hold what lab events and the vessels' own samples and reagents change.
+ * Vessels that haven't been persisted have no id, so they aren't cached.
+ * <p/>
+ * Each entry records the ids of the vessels in its ancestry, so {@link #invalidateVessel(Long)} removes the entries
+ * in whose ancestry a changed vessel is without walking the transfer graph.  {@link SampleInstanceListener} calls it
+ * for the targets of each event, and for each vessel whose samples or reagents change.  Entries are removed again
+ * when the transaction completes, so one computed by another request from the data as it was before the commit
+ * doesn't survive it.
+ */
+@Singleton
+@LocalBean
+@Startup
+@ConcurrencyManagement(BEAN)
+public class SampleInstanceCache extends AbstractCacheControl implements SampleInstanceCacheMXBean {
+
+    private static final Log log = LogFactory.getLog(SampleInstanceCache.class);
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 20000;
+
+    private static final int EXPIRE_AFTER_WRITE_MINUTES = 30;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    private volatile Cache<Key, Entry> cache = buildCache(DEFAULT_MAXIMUM_SIZE);
+
+    /** Maps the id of a vessel to the keys of the entries in whose ancestry it is (including itself). */
+    private final Map<Long, Set<Key>> keysByAncestorId = new ConcurrentHashMap<>();
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final CacheInvalidator cacheInvalidator = new CacheInvalidator(() -> transactionSynchronizationRegistry);
+
+    private final CacheInvalidator.Removal<Long> ancestorRemoval = this::removeDescendants;
+
+    /**
+     * The cache key.
+     */
+    private static class Key {
+        private final Long labVesselId;
+        /** Null for the vessel itself, otherwise a position in its container. */
+        private final VesselPosition position;
+
+        private Key(Long labVesselId, VesselPosition position) {
+            this.labVesselId = labVesselId;
+            this.position = position;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return labVesselId.equals(key.labVesselId) && position == key.position;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * labVesselId.hashCode() + Objects.hashCode(position);
+        }
+    }
+
+    /**
+     * The sample instances of a vessel or position, and the ids of the vessels in its ancestry.
+     */
+    private static class Entry {
+        private final List<SampleInstanceSnapshot> snapshots;
+        private final Set<Long> ancestorIds;
+
+        private Entry(List<SampleInstanceSnapshot> snapshots, Set<Long> ancestorIds) {
+            this.snapshots = snapshots;
+            this.ancestorIds = ancestorIds;
+        }
+    }
+
+    private Cache<Key, Entry> buildCache(int maximumSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                .recordStats()
+                .removalListener(new RemovalListener<Key, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, Entry> notification) {
+                        if (notification.getCause() == RemovalCause.REPLACED || notification.getValue() == null) {
+                            return;
+                        }
+                        for (Long ancestorId : notification.getValue().ancestorIds) {
+                            keysByAncestorId.computeIfPresent(ancestorId, (id, keys) -> {
+                                keys.remove(notification.getKey());
+                                return keys.isEmpty() ? null : keys;
+                            });
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the sample instances of a vessel, computing them on a cache miss.
+     */
+    public List<SampleInstanceSnapshot> getSampleInstances(LabVessel labVessel) {
+        Long labVesselId = labVessel.getLabVesselId();
+        if (labVesselId == null) {
+            return SampleInstanceSnapshot.of(labVessel.getSampleInstancesV2());
+        }
+        return getSampleInstances(new Key(labVesselId, null), labVessel::getSampleInstancesV2, () -> {
+            Set<Long> ancestorIds = new HashSet<>();
+            addAncestry(labVessel, ancestorIds);
+            return ancestorIds;
+        });
+    }
+
+    /**
+     * Returns the sample instances at a position in a container, e.g. a plate well or flowcell lane, computing them on
+     * a cache miss.
+     */
+    public List<SampleInstanceSnapshot> getSampleInstances(VesselContainer<?> vesselContainer,
+            VesselPosition position) {
+        LabVessel embedder = vesselContainer.getEmbedder();
+        Long labVesselId = embedder.getLabVesselId();
+        if (labVesselId == null) {
+            return SampleInstanceSnapshot.of(vesselContainer.getSampleInstancesAtPositionV2(position));
+        }
+        return getSampleInstances(new Key(labVesselId, position),
+                () -> vesselContainer.getSampleInstancesAtPositionV2(position), () -> {
+                    Set<Long> ancestorIds = new HashSet<>();
+                    addAncestry(embedder, ancestorIds);
+                    LabVessel labVessel = vesselContainer.getVesselAtPosition(position);
+                    if (labVessel != null) {
+                        addAncestry(labVessel, ancestorIds);
+                    }
+                    return ancestorIds;
+                });
+    }
+
+    private List<SampleInstanceSnapshot> getSampleInstances(Key key,
+            Supplier<? extends Collection<SampleInstanceV2>> sampleInstances, Supplier<Set<Long>> ancestorIds) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            return entry.snapshots;
+        }
+
+        long changeCountBefore = cacheInvalidator.getChangeCount();
+        List<SampleInstanceSnapshot> snapshots = SampleInstanceSnapshot.of(sampleInstances.get());
+        Set<Long> ids = Collections.unmodifiableSet(ancestorIds.get());
+        cache.put(key, new Entry(snapshots, ids));
+        for (Long ancestorId : ids) {
+            keysByAncestorId.compute(ancestorId, (id, keys) -> {
+                Set<Key> descendantKeys = keys == null ? ConcurrentHashMap.<Key>newKeySet() : keys;
+                descendantKeys.add(key);
+                return descendantKeys;
+            });
+        }
+        // An entry computed, or indexed, while a vessel changed may be missing the change.
+        if (!cacheInvalidator.isUnchangedSince(changeCountBefore)) {
+            cache.invalidate(key);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Adds the ids of a vessel and its ancestors.
+     */
+    private static void addAncestry(LabVessel labVessel, Set<Long> ancestorIds) {
+        ancestorIds.add(labVessel.getLabVesselId());
+        for (LabVessel ancestor : labVessel.getAncestorVessels()) {
+            ancestorIds.add(ancestor.getLabVesselId());
+        }
+        ancestorIds.remove(null);
+    }
+
+    /**
+     * Removes the entries that a change to a vessel may have changed: those in whose ancestry the vessel is.  They
+     * are removed now and when the current transaction completes.
+     */
+    public void invalidateVessel(Long labVesselId) {
+        cacheInvalidator.invalidate(labVesselId, ancestorRemoval);
+    }
+
+    private void removeDescendants(Long ancestorId) {
+        Set<Key> keys = keysByAncestorId.get(ancestorId);
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        Set<Key> removed = new HashSet<>(keys);
+        cache.invalidateAll(removed);
+        invalidationCount.addAndGet(removed.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidated " + removed.size() + " sample instance cache entries");
+        }
+    }
+
+    @Override
+    public void invalidateCache() {
+        cacheInvalidator.changed();
+        invalidationCount.addAndGet(cache.size());
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Replaces the cache with an empty one of the new size.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        cache = buildCache(max);
+        keysByAncestorId.clear();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+}
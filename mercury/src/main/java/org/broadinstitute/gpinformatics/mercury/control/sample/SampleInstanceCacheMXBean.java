@@ -0,0 +1,19 @@
+package org.broadinstitute.gpinformatics.mercury.control.sample;
+
+import org.broadinstitute.gpinformatics.infrastructure.jmx.CacheControlMXBean;
+
+/**
+ * Adds the {@link SampleInstanceCache} counters to the basic cache controls shown in JConsole.
+ */
+public interface SampleInstanceCacheMXBean extends CacheControlMXBean {
+
+    public long getSize();
+
+    public long getHitCount();
+
+    public long getMissCount();
+
+    public long getEvictionCount();
+
+    public long getInvalidationCount();
+}
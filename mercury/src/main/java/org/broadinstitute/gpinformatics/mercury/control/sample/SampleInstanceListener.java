@@ -0,0 +1,65 @@
+package org.broadinstitute.gpinformatics.mercury.control.sample;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.common.ServiceAccessUtility;
+import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Tells {@link SampleInstanceCache} about events (in-place or transfer), which change the sample instances of their
+ * target vessels and everything descended from them.  Entities must be annotated with
+ * &#064;EntityListeners(SampleInstanceListener.class).  Changes to the samples and reagents of a vessel are collection
+ * changes, which JPA callbacks don't see, so EnversRevisionListener reports them through
+ * {@link #labVesselChanged(Long)}.
+ */
+public class SampleInstanceListener {
+
+    private static final Log log = LogFactory.getLog(SampleInstanceListener.class);
+
+    /** The cache is an application wide singleton, so its reference is looked up once. */
+    private static volatile SampleInstanceCache sampleInstanceCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void postChange(Object object) {
+        SampleInstanceCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        if (OrmUtil.proxySafeIsInstance(object, LabEvent.class)) {
+            // This runs during a flush, so it reads only what is already loaded.
+            for (LabVessel labVessel : OrmUtil.proxySafeCast(object, LabEvent.class).getLoadedTargetLabVessels()) {
+                cache.invalidateVessel(labVessel.getLabVesselId());
+            }
+        }
+    }
+
+    /**
+     * Called when a vessel, including its samples and reagents, changes.
+     */
+    public static void labVesselChanged(Long labVesselId) {
+        SampleInstanceCache cache = getCache();
+        if (cache != null) {
+            cache.invalidateVessel(labVesselId);
+        }
+    }
+
+    private static SampleInstanceCache getCache() {
+        if (sampleInstanceCache == null) {
+            try {
+                sampleInstanceCache = ServiceAccessUtility.getBean(SampleInstanceCache.class);
+            } catch (RuntimeException e) {
+                // Not in a container, e.g. a JPA test, so there is no cache to maintain.
+                log.debug("No sample instance cache", e);
+            }
+        }
+        return sampleInstanceCache;
+    }
+}
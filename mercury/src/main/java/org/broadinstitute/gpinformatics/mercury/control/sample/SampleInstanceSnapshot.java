@@ -0,0 +1,104 @@
+package org.broadinstitute.gpinformatics.mercury.control.sample;
+
+import org.broadinstitute.gpinformatics.mercury.entity.reagent.MolecularIndex;
+import org.broadinstitute.gpinformatics.mercury.entity.reagent.MolecularIndexingScheme;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.SampleInstanceV2;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the parts of a {@link SampleInstanceV2} that read-only clients use.  Unlike SampleInstanceV2, it
+ * holds no entities, so it can be cached across requests and persistence contexts.  It only holds what lab events, and
+ * changes to the vessels' own samples and reagents, change (samples and reagents in the transfer history); product
+ * orders, research projects and batches change without either, so clients read them through the sample names.
+ */
+public class SampleInstanceSnapshot implements Serializable {
+    private static final long serialVersionUID = 20190902L;
+
+    private final String rootOrEarliestSampleName;
+    private final String molecularIndexingSchemeName;
+    private final String indexSequence;
+    private final List<String> mercurySampleNames;
+    private final boolean reagentOnly;
+
+    public SampleInstanceSnapshot(SampleInstanceV2 sampleInstance) {
+        MercurySample mercurySample = sampleInstance.getRootOrEarliestMercurySample();
+        rootOrEarliestSampleName = mercurySample == null ? null : mercurySample.getSampleKey();
+
+        MolecularIndexingScheme molecularIndexingScheme = sampleInstance.getMolecularIndexingScheme();
+        if (molecularIndexingScheme == null) {
+            molecularIndexingSchemeName = null;
+            indexSequence = null;
+        } else {
+            molecularIndexingSchemeName = molecularIndexingScheme.getName();
+            StringBuilder sequence = new StringBuilder();
+            for (Map.Entry<MolecularIndexingScheme.IndexPosition, MolecularIndex> entry :
+                    molecularIndexingScheme.getIndexes().entrySet()) {
+                sequence.append(entry.getValue().getSequence());
+            }
+            indexSequence = sequence.toString();
+        }
+
+        List<String> sampleNames = new ArrayList<>();
+        for (MercurySample sample : sampleInstance.getMercurySamples()) {
+            sampleNames.add(sample.getSampleKey());
+        }
+        mercurySampleNames = Collections.unmodifiableList(sampleNames);
+        reagentOnly = sampleInstance.isReagentOnly();
+    }
+
+    /**
+     * Copies each sample instance, keeping their order.
+     */
+    public static List<SampleInstanceSnapshot> of(Collection<SampleInstanceV2> sampleInstances) {
+        List<SampleInstanceSnapshot> snapshots = new ArrayList<>(sampleInstances.size());
+        for (SampleInstanceV2 sampleInstance : sampleInstances) {
+            snapshots.add(new SampleInstanceSnapshot(sampleInstance));
+        }
+        return Collections.unmodifiableList(snapshots);
+    }
+
+    @Nullable
+    public String getRootOrEarliestSampleName() {
+        return rootOrEarliestSampleName;
+    }
+
+    @Nullable
+    public String getMolecularIndexingSchemeName() {
+        return molecularIndexingSchemeName;
+    }
+
+    /**
+     * @return the sequences of the molecular indexes concatenated in index position order, or null if not indexed
+     */
+    @Nullable
+    public String getIndexSequence() {
+        return indexSequence;
+    }
+
+    /**
+     * @return the keys of the samples in the transfer history, earliest first
+     */
+    public List<String> getMercurySampleNames() {
+        return mercurySampleNames;
+    }
+
+    /**
+     * @return the key of the latest sample in the transfer history, or null if there are none
+     */
+    @Nullable
+    public String getNearestSampleName() {
+        return mercurySampleNames.isEmpty() ? null : mercurySampleNames.get(mercurySampleNames.size() - 1);
+    }
+
+    public boolean isReagentOnly() {
+        return reagentOnly;
+    }
+}
@@ -17,12 +17,13 @@ import java.io.Serializable;
 
 /**
  * This class holds the most recent copy of WorkflowConfig, loaded from either the database
- * or from a file when doing database-free tests.
+ * or from a file when doing database-free tests.  Each copy is compiled into its indexes before it is published, so
+ * readers never see a partially built configuration, and never build one.
  */
 public class WorkflowLoader extends AbstractCache implements Serializable {
     private static PreferenceDao preferenceDao;
     private static SessionContextUtility sessionContextUtility;
-    private static WorkflowConfig workflowConfig;
+    private static volatile WorkflowConfig workflowConfig;
 
     private WorkflowLoader() {
     }
@@ -37,10 +38,12 @@ public class WorkflowLoader extends AbstractCache implements Serializable {
 
     public static WorkflowConfig getWorkflowConfig() {
         // workflowConfig will be null only when container-free unit tests are run.
-        if (workflowConfig == null) {
-            workflowConfig = loadFromFile();
+        WorkflowConfig localWorkflowConfig = workflowConfig;
+        if (localWorkflowConfig == null) {
+            localWorkflowConfig = loadFromFile();
+            workflowConfig = localWorkflowConfig;
         }
-        return workflowConfig;
+        return localWorkflowConfig;
     }
 
     /**
@@ -63,8 +66,9 @@ public class WorkflowLoader extends AbstractCache implements Serializable {
             throw new RuntimeException("Failed to retrieve WORKFLOW_CONFIGURATION preference");
         }
         try {
-            workflowConfig = (WorkflowConfig) PreferenceType.WORKFLOW_CONFIGURATION.getCreator()
+            WorkflowConfig newWorkflowConfig = (WorkflowConfig) PreferenceType.WORKFLOW_CONFIGURATION.getCreator()
                     .create(workflowConfigPref.getData());
+            workflowConfig = newWorkflowConfig.compile();
         } catch (RuntimeException re) {
             throw re;
         } catch (Exception ex) {
@@ -79,8 +83,9 @@ public class WorkflowLoader extends AbstractCache implements Serializable {
         try {
             JAXBContext jc = JAXBContext.newInstance(WorkflowConfig.class, WorkflowBucketDef.class);
             Unmarshaller unmarshaller = jc.createUnmarshaller();
-            return (WorkflowConfig) unmarshaller.unmarshal(
+            WorkflowConfig fileWorkflowConfig = (WorkflowConfig) unmarshaller.unmarshal(
                     Thread.currentThread().getContextClassLoader().getResourceAsStream("WorkflowConfig.xml"));
+            return fileWorkflowConfig.compile();
         } catch (JAXBException e) {
             throw new RuntimeException(e);
         }
@@ -141,6 +141,8 @@ public class ZimsIlluminaRunFactory {
         List<List<SampleInstanceDto>> perLaneSampleInstanceDtos = new ArrayList<>();
         Set<String> sampleIds = new HashSet<>();
         Set<String> productOrderKeys = new HashSet<>();
+        // The ancestry of all lanes is walked once, rather than for each sample instance.
+        Map<VesselPosition, LabVessel> mapLaneToLibraryVessel = flowcell.getNearestTubeAncestorsForLanes();
         // Makes DTOs for aliquot samples and product orders, per lane.
         Iterator<String> positionNames = flowcell.getVesselGeometry().getPositionNames();
         short laneNum = 0;
@@ -150,10 +152,14 @@ public class ZimsIlluminaRunFactory {
             perLaneSampleInstanceDtos.add(sampleInstanceDtos);
             String positionName = positionNames.next();
             VesselPosition vesselPosition = VesselPosition.getByName(positionName);
+            Set<SampleInstanceV2> laneSampleInstances =
+                    flowcell.getContainerRole().getSampleInstancesAtPositionV2(vesselPosition);
+            LabVessel libraryVessel = mapLaneToLibraryVessel.get(vesselPosition);
+            // Whether all of the library's samples are CRSP is the same for every sample instance in the lane.
+            Boolean allSamplesForCrsp = null;
 
             boolean mixedLaneOk = false;
-            for (SampleInstanceV2 sampleInstance : flowcell.getContainerRole().getSampleInstancesAtPositionV2(
-                    vesselPosition)) {
+            for (SampleInstanceV2 sampleInstance : laneSampleInstances) {
                 BucketEntry singleBucketEntry = sampleInstance.getSingleBucketEntry();
                 if (singleBucketEntry != null) {
                     if (Objects.equals(singleBucketEntry.getProductOrder().getProduct().getPipelineDataTypeString(),
@@ -165,8 +171,7 @@ public class ZimsIlluminaRunFactory {
                 }
             }
 
-            for (SampleInstanceV2 laneSampleInstance :
-                flowcell.getContainerRole().getSampleInstancesAtPositionV2(vesselPosition)) {
+            for (SampleInstanceV2 laneSampleInstance : laneSampleInstances) {
                 BucketEntry singleBucketEntry = laneSampleInstance.getSingleBucketEntry();
                 String productOrderKey = null;
                 if (singleBucketEntry != null) {
@@ -192,7 +197,6 @@ public class ZimsIlluminaRunFactory {
                 }
                 sampleIds.add(sampleId);
 
-                LabVessel libraryVessel = flowcell.getNearestTubeAncestorsForLanes().get(vesselPosition);
                 if (flowcellDesignation == null) {
                     // Gets the flowcell designation from batch starting vessel.
                     flowcellDesignation = laneSampleInstance.getAllBatchVessels(LabBatch.LabBatchType.FCT).stream().
@@ -205,24 +209,40 @@ public class ZimsIlluminaRunFactory {
                     isCrspLane = singleBucketEntry.getProductOrder().getResearchProject().getRegulatoryDesignation().
                             isClinical();
                 } else {
-                    isCrspLane = crspPipelineUtils.areAllSamplesForCrsp(
-                            libraryVessel.getSampleInstancesV2(), mixedLaneOk);
+                    if (allSamplesForCrsp == null) {
+                        allSamplesForCrsp = crspPipelineUtils.areAllSamplesForCrsp(
+                                libraryVessel.getSampleInstancesV2(), mixedLaneOk);
+                    }
+                    isCrspLane = allSamplesForCrsp;
                 }
 
                 String libraryName = libraryVessel.getLabel();
                 String metadataSource = laneSampleInstance.getMetadataSourceForPipelineAPI();
-                    LabVessel contextVessel = getContextVessel(laneSampleInstance);
+                LabVessel contextVessel = getContextVessel(laneSampleInstance);
                 sampleInstanceDtos.add(new SampleInstanceDto(laneNum, contextVessel,
                         laneSampleInstance, sampleId, productOrderKey, libraryName, libraryVessel.getCreatedOn(),
                         pdoSampleName, isCrspLane, metadataSource));
             }
         }
         int numberOfLanes = laneNum;
+        Set<String> workflowNames = new HashSet<>();
+        for (List<SampleInstanceDto> sampleInstanceDtos : perLaneSampleInstanceDtos) {
+            if (!sampleInstanceDtos.isEmpty()) {
+                String workflowName = sampleInstanceDtos.get(0).getSampleInstance().getWorkflowName();
+                if (workflowName != null) {
+                    workflowNames.add(workflowName);
+                }
+            }
+        }
 
         Map<String, SampleData> mapSampleIdToDto = sampleDataFetcher.fetchSampleData(sampleIds);
+        // One query for all orders on the flowcell, rather than one per order.
         Map<String, ProductOrder> mapKeyToProductOrder = new HashMap<>();
-        for (String productOrderKey : productOrderKeys) {
-            mapKeyToProductOrder.put(productOrderKey, productOrderDao.findByBusinessKey(productOrderKey));
+        if (!productOrderKeys.isEmpty()) {
+            for (ProductOrder productOrder : productOrderDao.findListByBusinessKeys(productOrderKeys,
+                    ProductOrderDao.FetchSpec.PRODUCT, ProductOrderDao.FetchSpec.RESEARCH_PROJECT)) {
+                mapKeyToProductOrder.put(productOrder.getBusinessKey(), productOrder);
+            }
         }
 
         List<Control> activeControls = controlDao.findAllActive();
@@ -267,18 +287,13 @@ public class ZimsIlluminaRunFactory {
             log.error("Failed to get sequencingTemplate.", e);
             throw e;
         }
-        Map<String, WorkflowMetadata> mapWorkflowToMetadata = new HashMap<>();
+        Map<String, WorkflowMetadata> mapWorkflowToMetadata = workflowNames.isEmpty() ?
+                new HashMap<>() : attributeArchetypeDao.findWorkflowMetadata(workflowNames);
         for (List<SampleInstanceDto> sampleInstanceDtos : perLaneSampleInstanceDtos) {
             if (sampleInstanceDtos != null && !sampleInstanceDtos.isEmpty()) {
                 ArrayList<LibraryBean> libraryBeans = new ArrayList<>();
                 SampleInstanceDto sampleInstanceDto = sampleInstanceDtos.get(0);
                 short laneNumber = sampleInstanceDto.getLaneNumber();
-                String workflowName = sampleInstanceDto.getSampleInstance().getWorkflowName();
-                if (workflowName != null) {
-                    if (!mapWorkflowToMetadata.containsKey(workflowName)) {
-                        mapWorkflowToMetadata.put(workflowName, attributeArchetypeDao.findWorkflowMetadata(workflowName));
-                    }
-                }
                 libraryBeans.addAll(
                         makeLibraryBeans(sampleInstanceDtos, mapSampleIdToDto, mapKeyToProductOrder, mapNameToControl,
                                 mapWorkflowToMetadata));
@@ -3,13 +3,18 @@ package org.broadinstitute.gpinformatics.mercury.entity.envers;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadinstitute.gpinformatics.infrastructure.common.ServiceAccessUtility;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceListener;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
 import org.broadinstitute.gpinformatics.mercury.presentation.UserBean;
-import org.hibernate.envers.RevisionListener;
+import org.hibernate.envers.EntityTrackingRevisionListener;
+import org.hibernate.envers.RevisionType;
+
+import java.io.Serializable;
 
 /**
- * Called by Envers when it needs to create a new RevInfo entity
+ * Called by Envers when it needs to create a new RevInfo entity, and for each audited entity that changes in it
  */
-public class EnversRevisionListener implements RevisionListener {
+public class EnversRevisionListener implements EntityTrackingRevisionListener {
 
     private static final Log log = LogFactory.getLog(EnversRevisionListener.class);
 
@@ -40,4 +45,16 @@ public class EnversRevisionListener implements RevisionListener {
             log.debug("Could not determine user for revision: " + revInfo.getRevInfoId(), e);
         }
     }
+
+    /**
+     * Tells the sample instance cache about changes to vessels, including to their samples and reagents, which are
+     * collection changes that JPA callbacks don't see.
+     */
+    @Override
+    public void entityChanged(Class entityClass, String entityName, Serializable entityId, RevisionType revisionType,
+            Object revisionEntity) {
+        if (LabVessel.class.isAssignableFrom(entityClass)) {
+            SampleInstanceListener.labVesselChanged((Long) entityId);
+        }
+    }
 }
@@ -5,6 +5,9 @@ import org.apache.commons.lang3.builder.CompareToBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadinstitute.gpinformatics.mercury.bettalims.generated.StationEventType;
+import org.broadinstitute.gpinformatics.mercury.boundary.bucket.BucketEntryAttributesListener;
+import org.broadinstitute.gpinformatics.mercury.boundary.zims.ZimsIlluminaRunListener;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceListener;
 import org.broadinstitute.gpinformatics.mercury.entity.Metadata;
 import org.broadinstitute.gpinformatics.mercury.entity.OrmUtil;
 import org.broadinstitute.gpinformatics.mercury.entity.bucket.BucketEntry;
@@ -23,6 +26,7 @@ import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowConfig;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowProcessDef;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowProcessDefVersion;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowStepDef;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.BatchSize;
 import org.hibernate.envers.Audited;
 
@@ -30,6 +34,7 @@ import javax.annotation.Nullable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
@@ -82,6 +87,7 @@ import java.util.Set;
 // deltas in an aggregation in zamboni
 @Entity
 @Audited
+@EntityListeners({BucketEntryAttributesListener.class, ZimsIlluminaRunListener.class, SampleInstanceListener.class})
 @Table(schema = "mercury",
         uniqueConstraints = @UniqueConstraint(columnNames = {"EVENT_LOCATION", "EVENT_DATE", "DISAMBIGUATOR"}),
         name = "lab_event")
@@ -408,6 +414,74 @@ public class LabEvent {
         return allLabVessels;
     }
 
+    /**
+     * Returns the vessels this event is recorded on, and the vessels in their containers, reading only what is already
+     * loaded.  Entity listeners run during a flush, when loading lazy associations isn't safe; the transfers of a new
+     * event, and the contents of its racks, always are loaded.
+     */
+    public Set<LabVessel> getLoadedLabVessels() {
+        return getLoadedLabVessels(true);
+    }
+
+    /**
+     * Returns the vessels this event changes (its targets and in-place vessel), and the vessels in their containers,
+     * reading only what is already loaded, as {@link #getLoadedLabVessels()} does.
+     */
+    public Set<LabVessel> getLoadedTargetLabVessels() {
+        return getLoadedLabVessels(false);
+    }
+
+    private Set<LabVessel> getLoadedLabVessels(boolean includeSources) {
+        Set<LabVessel> labVessels = new HashSet<>();
+        if (Hibernate.isInitialized(sectionTransfers)) {
+            for (SectionTransfer sectionTransfer : sectionTransfers) {
+                if (includeSources) {
+                    labVessels.add(sectionTransfer.getSourceVessel());
+                }
+                labVessels.add(sectionTransfer.getTargetVessel());
+            }
+        }
+        if (Hibernate.isInitialized(cherryPickTransfers)) {
+            for (CherryPickTransfer cherryPickTransfer : cherryPickTransfers) {
+                if (includeSources) {
+                    labVessels.add(cherryPickTransfer.getSourceVessel());
+                }
+                labVessels.add(cherryPickTransfer.getTargetVessel());
+            }
+        }
+        if (Hibernate.isInitialized(vesselToSectionTransfers)) {
+            for (VesselToSectionTransfer vesselToSectionTransfer : vesselToSectionTransfers) {
+                if (includeSources) {
+                    labVessels.add(vesselToSectionTransfer.getSourceVessel());
+                }
+                labVessels.add(vesselToSectionTransfer.getTargetVessel());
+            }
+        }
+        if (Hibernate.isInitialized(vesselToVesselTransfers)) {
+            for (VesselToVesselTransfer vesselToVesselTransfer : vesselToVesselTransfers) {
+                if (includeSources) {
+                    labVessels.add(vesselToVesselTransfer.getSourceVessel());
+                }
+                labVessels.add(vesselToVesselTransfer.getTargetVessel());
+            }
+        }
+        labVessels.add(inPlaceLabVessel);
+        labVessels.remove(null);
+
+        Set<LabVessel> containedVessels = new HashSet<>();
+        for (LabVessel labVessel : labVessels) {
+            if (Hibernate.isInitialized(labVessel)) {
+                VesselContainer<?> vesselContainer = labVessel.getContainerRole();
+                if (vesselContainer != null && Hibernate.isInitialized(vesselContainer.getMapPositionToVessel())) {
+                    containedVessels.addAll(vesselContainer.getMapPositionToVessel().values());
+                }
+            }
+        }
+        labVessels.addAll(containedVessels);
+        labVessels.remove(null);
+        return labVessels;
+    }
+
     /**
      * @return Machine name?  Name of the bench? GPS coordinates?
      */
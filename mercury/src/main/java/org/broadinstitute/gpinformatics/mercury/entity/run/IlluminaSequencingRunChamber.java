@@ -1,8 +1,10 @@
 package org.broadinstitute.gpinformatics.mercury.entity.run;
 
+import org.broadinstitute.gpinformatics.mercury.boundary.zims.ZimsIlluminaRunListener;
 import org.hibernate.envers.Audited;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 
@@ -11,6 +13,7 @@ import javax.persistence.ManyToOne;
  */
 @Entity
 @Audited
+@EntityListeners(ZimsIlluminaRunListener.class)
 public class IlluminaSequencingRunChamber extends SequencingRunChamber {
 
     @ManyToOne
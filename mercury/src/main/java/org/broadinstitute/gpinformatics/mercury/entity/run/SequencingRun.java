@@ -1,5 +1,6 @@
 package org.broadinstitute.gpinformatics.mercury.entity.run;
 
+import org.broadinstitute.gpinformatics.mercury.boundary.zims.ZimsIlluminaRunListener;
 import org.hibernate.envers.Audited;
 
 import javax.persistence.*;
@@ -7,6 +8,7 @@ import java.util.Date;
 
 @Entity
 @Audited
+@EntityListeners(ZimsIlluminaRunListener.class)
 @Table(schema = "mercury")
 public class SequencingRun {
 
@@ -260,6 +260,13 @@ public class SampleInstanceV2 implements Comparable<SampleInstanceV2> {
         return mercurySamples.isEmpty() ? null : mercurySamples.get(mercurySamples.size() - 1).getSampleKey();
     }
 
+    /**
+     * Returns the Mercury samples in the transfer history, earliest first.
+     */
+    public List<MercurySample> getMercurySamples() {
+        return Collections.unmodifiableList(mercurySamples);
+    }
+
     /**
      * Returns the nearest Mercury sample in the transfer history.  Tolerates unknown root sample.
      */
@@ -2,6 +2,7 @@ package org.broadinstitute.gpinformatics.mercury.entity.vessel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -1878,6 +1879,8 @@ public enum SBSSection {
 
     private final String sectionName;
     private List<VesselPosition> wells = new ArrayList<>();
+    /** Index of each well in the wells list, to avoid List.indexOf when mapping between source and target wells. */
+    private final Map<VesselPosition, Integer> mapWellToIndex = new EnumMap<>(VesselPosition.class);
     private static Map<String, SBSSection> mapNameToSection = new HashMap<>();
     static {
         for (SBSSection sbsSection : SBSSection.values()) {
@@ -1888,6 +1891,12 @@ public enum SBSSection {
     SBSSection(String sectionName, List<VesselPosition> wells) {
         this.sectionName = sectionName;
         this.wells = wells;
+        for (int i = 0; i < wells.size(); i++) {
+            // Keeps the first occurrence, consistent with List.indexOf.
+            if (!mapWellToIndex.containsKey(wells.get(i))) {
+                mapWellToIndex.put(wells.get(i), i);
+            }
+        }
     }
 
     public String getSectionName() {
@@ -1898,6 +1907,20 @@ public enum SBSSection {
         return wells;
     }
 
+    /**
+     * Returns the index of the position in the wells of this section, in constant time.
+     *
+     * @param position the well, may be null
+     * @return the index, or -1 if the position is not in this section
+     */
+    public int getWellIndex(VesselPosition position) {
+        if (position == null) {
+            return -1;
+        }
+        Integer index = mapWellToIndex.get(position);
+        return index == null ? -1 : index;
+    }
+
     public static SBSSection getBySectionName(String sectionName) {
         SBSSection sbsSection = mapNameToSection.get(sectionName);
         if(sbsSection == null) {
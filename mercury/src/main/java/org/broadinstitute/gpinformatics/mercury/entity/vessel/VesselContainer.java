@@ -1,6 +1,8 @@
 package org.broadinstitute.gpinformatics.mercury.entity.vessel;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.ForwardingSet;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import org.apache.commons.lang3.StringUtils;
@@ -90,6 +92,19 @@ public class VesselContainer<T extends LabVessel> {
     @Transient
     private Map<LabVessel, VesselPosition> vesselToMapPosition;
 
+    // Transfers indexed by position on this container, so each traversal hop doesn't scan every transfer.
+    @Transient
+    private PositionIndex<SectionTransfer> sectionTransfersToIndex;
+
+    @Transient
+    private PositionIndex<SectionTransfer> sectionTransfersFromIndex;
+
+    @Transient
+    private PositionIndex<CherryPickTransfer> cherryPickTransfersToIndex;
+
+    @Transient
+    private PositionIndex<CherryPickTransfer> cherryPickTransfersFromIndex;
+
     @OneToMany(mappedBy = "sourceVessel", cascade = CascadeType.PERSIST, orphanRemoval = true)
     @BatchSize(size = 100)
     private Set<SectionTransfer> sectionTransfersFrom = new HashSet<>();
@@ -286,15 +301,10 @@ public class VesselContainer<T extends LabVessel> {
         TransferTraverserCriteria.Context context;
         boolean continueTraversing = true;
 
-        for (SectionTransfer sectionTransfer : sectionTransfersTo) {
+        for (SectionTransfer sectionTransfer : getSectionTransfersToIndex().get(position)) {
             if (sectionTransfer.getTargetVesselContainer().equals(this)) {
                 VesselContainer<?> sourceVesselContainer = sectionTransfer.getSourceVesselContainer();
-                // todo jmt replace indexOf with map lookup
-                int targetWellIndex = sectionTransfer.getTargetSection().getWells().indexOf(position);
-                if (targetWellIndex < 0) {
-                    // the position parameter isn't in the section, so skip the transfer
-                    continue;
-                }
+                int targetWellIndex = sectionTransfer.getTargetSection().getWellIndex(position);
                 VesselPosition sourcePosition = sectionTransfer.getSourceSection().getWells()
                         .get(targetWellIndex);
                 LabVessel.VesselEvent vesselEvent = new LabVessel.VesselEvent(
@@ -312,10 +322,8 @@ public class VesselContainer<T extends LabVessel> {
                 transferTraverserCriteria.evaluateVesselPostOrder(context);
             }
         }
-        for (CherryPickTransfer cherryPickTransfer : cherryPickTransfersTo) {
-            // todo jmt optimize this
-            if (cherryPickTransfer.getTargetPosition() == position && cherryPickTransfer.getTargetVesselContainer()
-                    .equals(this)) {
+        for (CherryPickTransfer cherryPickTransfer : getCherryPickTransfersToIndex().get(position)) {
+            if (cherryPickTransfer.getTargetVesselContainer().equals(this)) {
                 VesselContainer<?> sourceVesselContainer = cherryPickTransfer.getSourceVesselContainer();
                 VesselPosition sourcePosition = cherryPickTransfer.getSourcePosition();
 
@@ -336,7 +344,7 @@ public class VesselContainer<T extends LabVessel> {
         }
         for (VesselToSectionTransfer vesselToSectionTransfer : vesselToSectionTransfersTo) {
             if (vesselToSectionTransfer.getTargetVesselContainer().equals(this)) {
-                int targetWellIndex = vesselToSectionTransfer.getTargetSection().getWells().indexOf(position);
+                int targetWellIndex = vesselToSectionTransfer.getTargetSection().getWellIndex(position);
                 if (targetWellIndex < 0) {
                     // the position parameter isn't in the section, so skip the transfer
                     continue;
@@ -372,15 +380,10 @@ public class VesselContainer<T extends LabVessel> {
         TransferTraverserCriteria.Context context;
         boolean continueTraversing = true;
 
-        for (SectionTransfer sectionTransfer : sectionTransfersFrom) {
+        for (SectionTransfer sectionTransfer : getSectionTransfersFromIndex().get(sourcePosition)) {
             if (sectionTransfer.getSourceVesselContainer().equals(this)) {
                 VesselContainer<?> targetVesselContainer = sectionTransfer.getTargetVesselContainer();
-                // todo jmt replace indexOf with map lookup
-                int sourceWellIndex = sectionTransfer.getSourceSection().getWells().indexOf(sourcePosition);
-                if (sourceWellIndex < 0) {
-                    // the position parameter isn't in the section, so skip the transfer
-                    continue;
-                }
+                int sourceWellIndex = sectionTransfer.getSourceSection().getWellIndex(sourcePosition);
 
                 List<VesselPosition> wells = sectionTransfer.getTargetSection().getWells();
                 if (sourceWellIndex >= wells.size()) {
@@ -404,10 +407,8 @@ public class VesselContainer<T extends LabVessel> {
                 transferTraverserCriteria.evaluateVesselPostOrder(context);
             }
         }
-        for (CherryPickTransfer cherryPickTransfer : cherryPickTransfersFrom) {
-            // todo jmt optimize this
-            if (cherryPickTransfer.getSourcePosition() == sourcePosition
-                    && cherryPickTransfer.getSourceVesselContainer().equals(this)) {
+        for (CherryPickTransfer cherryPickTransfer : getCherryPickTransfersFromIndex().get(sourcePosition)) {
+            if (cherryPickTransfer.getSourceVesselContainer().equals(this)) {
                 VesselContainer<?> targetVesselContainer = cherryPickTransfer.getTargetVesselContainer();
                 VesselPosition targetPosition = cherryPickTransfer.getTargetPosition();
                 LabVessel targetVessel = targetVesselContainer.getVesselAtPosition(targetPosition);
@@ -494,38 +495,195 @@ public class VesselContainer<T extends LabVessel> {
     }
 
     public Set<SectionTransfer> getSectionTransfersFrom() {
-        return sectionTransfersFrom;
+        return new IndexedTransferSet<>(sectionTransfersFrom, () -> sectionTransfersFromIndex = null);
     }
 
     public Set<SectionTransfer> getSectionTransfersTo() {
-        return sectionTransfersTo;
+        return new IndexedTransferSet<>(sectionTransfersTo, () -> sectionTransfersToIndex = null);
     }
 
     public Set<CherryPickTransfer> getCherryPickTransfersFrom() {
-        return cherryPickTransfersFrom;
+        return new IndexedTransferSet<>(cherryPickTransfersFrom, () -> cherryPickTransfersFromIndex = null);
     }
 
     public Set<CherryPickTransfer> getCherryPickTransfersTo() {
-        return cherryPickTransfersTo;
+        return new IndexedTransferSet<>(cherryPickTransfersTo, () -> cherryPickTransfersToIndex = null);
     }
 
     public Set<VesselToSectionTransfer> getVesselToSectionTransfersTo() {
         return vesselToSectionTransfersTo;
     }
 
+    /**
+     * A transfer set, as handed out by the getters, that discards its position index whenever it changes, so the index
+     * is rebuilt on the next traversal.
+     */
+    private static class IndexedTransferSet<TRANSFER> extends ForwardingSet<TRANSFER> {
+        private final Set<TRANSFER> transfers;
+        private final Runnable discardIndex;
+
+        private IndexedTransferSet(Set<TRANSFER> transfers, Runnable discardIndex) {
+            this.transfers = transfers;
+            this.discardIndex = discardIndex;
+        }
+
+        @Override
+        protected Set<TRANSFER> delegate() {
+            return transfers;
+        }
+
+        private boolean changed(boolean changed) {
+            if (changed) {
+                discardIndex.run();
+            }
+            return changed;
+        }
+
+        @Override
+        public boolean add(TRANSFER transfer) {
+            return changed(transfers.add(transfer));
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends TRANSFER> collection) {
+            return changed(transfers.addAll(collection));
+        }
+
+        @Override
+        public boolean remove(Object object) {
+            return changed(transfers.remove(object));
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> collection) {
+            return changed(transfers.removeAll(collection));
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> collection) {
+            return changed(transfers.retainAll(collection));
+        }
+
+        @Override
+        public void clear() {
+            changed(!transfers.isEmpty());
+            transfers.clear();
+        }
+
+        @Override
+        public Iterator<TRANSFER> iterator() {
+            return new ForwardingIterator<TRANSFER>() {
+                private final Iterator<TRANSFER> iterator = transfers.iterator();
+
+                @Override
+                protected Iterator<TRANSFER> delegate() {
+                    return iterator;
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    discardIndex.run();
+                }
+            };
+        }
+    }
+
+    /**
+     * Transfers indexed by a position on this container.  Changes made through the getters discard the index; it also
+     * remembers the transfer set it was built from, and is rebuilt if Hibernate has since replaced the set.
+     */
+    private static class PositionIndex<TRANSFER> {
+        private final Collection<TRANSFER> indexedTransfers;
+        private final Map<VesselPosition, List<TRANSFER>> mapPositionToTransfers = new EnumMap<>(VesselPosition.class);
+
+        private PositionIndex(Collection<TRANSFER> indexedTransfers) {
+            this.indexedTransfers = indexedTransfers;
+        }
+
+        private void add(VesselPosition position, TRANSFER transfer) {
+            if (position == null) {
+                return;
+            }
+            List<TRANSFER> transfers = mapPositionToTransfers.get(position);
+            if (transfers == null) {
+                transfers = new ArrayList<>();
+                mapPositionToTransfers.put(position, transfers);
+            }
+            // A section that lists a well twice still results in one hop, as with List.indexOf.
+            if (transfers.isEmpty() || transfers.get(transfers.size() - 1) != transfer) {
+                transfers.add(transfer);
+            }
+        }
+
+        private List<TRANSFER> get(VesselPosition position) {
+            List<TRANSFER> transfers = position == null ? null : mapPositionToTransfers.get(position);
+            return transfers == null ? Collections.<TRANSFER>emptyList() : transfers;
+        }
+
+        private boolean isStale(Collection<TRANSFER> transfers) {
+            return indexedTransfers != transfers;
+        }
+    }
+
+    private static PositionIndex<SectionTransfer> indexSectionTransfers(Set<SectionTransfer> sectionTransfers,
+            boolean bySource) {
+        PositionIndex<SectionTransfer> positionIndex = new PositionIndex<>(sectionTransfers);
+        for (SectionTransfer sectionTransfer : sectionTransfers) {
+            SBSSection section = bySource ? sectionTransfer.getSourceSection() : sectionTransfer.getTargetSection();
+            for (VesselPosition well : section.getWells()) {
+                positionIndex.add(well, sectionTransfer);
+            }
+        }
+        return positionIndex;
+    }
+
+    private static PositionIndex<CherryPickTransfer> indexCherryPickTransfers(
+            Set<CherryPickTransfer> cherryPickTransfers, boolean bySource) {
+        PositionIndex<CherryPickTransfer> positionIndex = new PositionIndex<>(cherryPickTransfers);
+        for (CherryPickTransfer cherryPickTransfer : cherryPickTransfers) {
+            positionIndex.add(bySource ? cherryPickTransfer.getSourcePosition() :
+                    cherryPickTransfer.getTargetPosition(), cherryPickTransfer);
+        }
+        return positionIndex;
+    }
+
+    private PositionIndex<SectionTransfer> getSectionTransfersToIndex() {
+        if (sectionTransfersToIndex == null || sectionTransfersToIndex.isStale(sectionTransfersTo)) {
+            sectionTransfersToIndex = indexSectionTransfers(sectionTransfersTo, false);
+        }
+        return sectionTransfersToIndex;
+    }
+
+    private PositionIndex<SectionTransfer> getSectionTransfersFromIndex() {
+        if (sectionTransfersFromIndex == null || sectionTransfersFromIndex.isStale(sectionTransfersFrom)) {
+            sectionTransfersFromIndex = indexSectionTransfers(sectionTransfersFrom, true);
+        }
+        return sectionTransfersFromIndex;
+    }
+
+    private PositionIndex<CherryPickTransfer> getCherryPickTransfersToIndex() {
+        if (cherryPickTransfersToIndex == null || cherryPickTransfersToIndex.isStale(cherryPickTransfersTo)) {
+            cherryPickTransfersToIndex = indexCherryPickTransfers(cherryPickTransfersTo, false);
+        }
+        return cherryPickTransfersToIndex;
+    }
+
+    private PositionIndex<CherryPickTransfer> getCherryPickTransfersFromIndex() {
+        if (cherryPickTransfersFromIndex == null || cherryPickTransfersFromIndex.isStale(cherryPickTransfersFrom)) {
+            cherryPickTransfersFromIndex = indexCherryPickTransfers(cherryPickTransfersFrom, true);
+        }
+        return cherryPickTransfersFromIndex;
+    }
+
     @Transient  // needed here to prevent VesselContainer_.class from including this as a persisted field.
     public List<LabVessel.VesselEvent> getAncestors(VesselPosition targetPosition) {
         LabVessel targetVessel = getVesselAtPosition(targetPosition);
 
         List<LabVessel.VesselEvent> vesselEvents = new ArrayList<>();
 
-        for (SectionTransfer sectionTransfer : sectionTransfersTo) {
-            // todo jmt replace indexOf with map lookup
-            int targetWellIndex = sectionTransfer.getTargetSection().getWells().indexOf(targetPosition);
-            if (targetWellIndex < 0) {
-                // the position parameter isn't in the section, so skip the transfer
-                continue;
-            }
+        for (SectionTransfer sectionTransfer : getSectionTransfersToIndex().get(targetPosition)) {
+            int targetWellIndex = sectionTransfer.getTargetSection().getWellIndex(targetPosition);
             VesselPosition sourcePosition = sectionTransfer.getSourceSection().getWells().get(targetWellIndex);
             VesselContainer<?> sourceVesselContainer = sectionTransfer.getSourceVesselContainer();
             LabVessel sourceVessel = sourceVesselContainer.getVesselAtPosition(sourcePosition);
@@ -534,10 +692,8 @@ public class VesselContainer<T extends LabVessel> {
                             sectionTransfer.getLabEvent(), targetVessel, this, targetPosition);
             vesselEvents.add(transferNode);
         }
-        for (CherryPickTransfer cherryPickTransfer : cherryPickTransfersTo) {
-            // todo jmt optimize this
-            if (cherryPickTransfer.getTargetPosition() == targetPosition
-                    && cherryPickTransfer.getTargetVesselContainer().equals(this)) {
+        for (CherryPickTransfer cherryPickTransfer : getCherryPickTransfersToIndex().get(targetPosition)) {
+            if (cherryPickTransfer.getTargetVesselContainer().equals(this)) {
 
                 VesselPosition sourcePosition = cherryPickTransfer.getSourcePosition();
                 VesselContainer<?> sourceVesselContainer = cherryPickTransfer.getSourceVesselContainer();
@@ -549,8 +705,7 @@ public class VesselContainer<T extends LabVessel> {
 
         }
         for (VesselToSectionTransfer vesselToSectionTransfer : vesselToSectionTransfersTo) {
-            // todo jmt replace indexOf with map lookup
-            int targetWellIndex = vesselToSectionTransfer.getTargetSection().getWells().indexOf(targetPosition);
+            int targetWellIndex = vesselToSectionTransfer.getTargetSection().getWellIndex(targetPosition);
             if (targetWellIndex < 0) {
                 // the position parameter isn't in the section, so skip the transfer
                 continue;
@@ -574,23 +729,16 @@ public class VesselContainer<T extends LabVessel> {
         LabVessel sourceVessel = getVesselAtPosition(sourcePosition);
 
         List<LabVessel.VesselEvent> vesselEvents = new ArrayList<>();
-        for (SectionTransfer sectionTransfer : sectionTransfersFrom) {
-            // todo jmt replace indexOf with map lookup
-            int targetWellIndex = sectionTransfer.getSourceSection().getWells().indexOf(sourcePosition);
-            if (targetWellIndex < 0) {
-                // the position parameter isn't in the section, so skip the transfer
-                continue;
-            }
+        for (SectionTransfer sectionTransfer : getSectionTransfersFromIndex().get(sourcePosition)) {
+            int targetWellIndex = sectionTransfer.getSourceSection().getWellIndex(sourcePosition);
             VesselPosition targetPosition = sectionTransfer.getTargetSection().getWells().get(targetWellIndex);
             VesselContainer<?> targetVesselContainer = sectionTransfer.getTargetVesselContainer();
             LabVessel targetVessel = targetVesselContainer.getVesselAtPosition(targetPosition);
             vesselEvents.add( new LabVessel.VesselEvent( sourceVessel, this, sourcePosition,
                             sectionTransfer.getLabEvent(), targetVessel, targetVesselContainer, targetPosition) );
         }
-        for (CherryPickTransfer cherryPickTransfer : cherryPickTransfersFrom) {
-            // todo jmt optimize this
-            if (cherryPickTransfer.getSourcePosition() == sourcePosition && cherryPickTransfer.getSourceVesselContainer()
-                    .equals(this)) {
+        for (CherryPickTransfer cherryPickTransfer : getCherryPickTransfersFromIndex().get(sourcePosition)) {
+            if (cherryPickTransfer.getSourceVesselContainer().equals(this)) {
                 VesselPosition targetPosition = cherryPickTransfer.getTargetPosition();
                 VesselContainer<?> targetVesselContainer = cherryPickTransfer.getTargetVesselContainer();
                 LabVessel targetVessel = targetVesselContainer.getVesselAtPosition(targetPosition);
@@ -1185,6 +1333,10 @@ public class VesselContainer<T extends LabVessel> {
      */
     public void clearCaches() {
         mapPositionToSampleInstances.clear();
+        sectionTransfersToIndex = null;
+        sectionTransfersFromIndex = null;
+        cherryPickTransfersToIndex = null;
+        cherryPickTransfersFromIndex = null;
     }
 
 }
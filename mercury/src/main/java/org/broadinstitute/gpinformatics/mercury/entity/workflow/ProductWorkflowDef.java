@@ -11,7 +11,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * The workflow definition for a product, composed of processes
@@ -28,7 +30,10 @@ public class ProductWorkflowDef implements Serializable {
     private List<ProductWorkflowDefVersion> productWorkflowDefVersions = new ArrayList<>();
 
     /** Transient list of versions, in descending order of effective date */
-    private transient ArrayList<ProductWorkflowDefVersion> workflowVersionsDescEffDate;
+    private transient volatile List<ProductWorkflowDefVersion> workflowVersionsDescEffDate;
+
+    /** Transient map from effective date to version, for finding the version in effect on a date */
+    private transient volatile NavigableMap<Date, ProductWorkflowDefVersion> mapEffectiveDateToVersion;
     private transient Map<String, ProductWorkflowDefVersion> productDefVersionsByVersion =
             new HashMap<>();
 
@@ -55,20 +60,50 @@ public class ProductWorkflowDef implements Serializable {
     public void addProductWorkflowDefVersion(ProductWorkflowDefVersion productWorkflowDefVersion) {
         this.productWorkflowDefVersions.add(productWorkflowDefVersion);
         this.productDefVersionsByVersion.put ( productWorkflowDefVersion.getVersion (), productWorkflowDefVersion );
+        workflowVersionsDescEffDate = null;
+        mapEffectiveDateToVersion = null;
+    }
+
+    /**
+     * Sorts and indexes the versions, and builds the event graph of each, when the configuration is loaded.
+     */
+    void compile() {
+        getWorkflowVersionsDescEffDate();
+        getMapEffectiveDateToVersion();
+        for (ProductWorkflowDefVersion productWorkflowDefVersion : productWorkflowDefVersions) {
+            productWorkflowDefVersion.buildLabEventGraph();
+        }
     }
 
     /** Returns a list of all product defs sorted by decreasing effective date. */
     public List<ProductWorkflowDefVersion> getWorkflowVersionsDescEffDate() {
-        if (workflowVersionsDescEffDate == null) {
-            workflowVersionsDescEffDate = new ArrayList<>(productWorkflowDefVersions);
-            Collections.sort(workflowVersionsDescEffDate, new Comparator<ProductWorkflowDefVersion>() {
+        List<ProductWorkflowDefVersion> versions = workflowVersionsDescEffDate;
+        if (versions == null) {
+            List<ProductWorkflowDefVersion> sortedVersions = new ArrayList<>(productWorkflowDefVersions);
+            Collections.sort(sortedVersions, new Comparator<ProductWorkflowDefVersion>() {
                 @Override
                 public int compare(ProductWorkflowDefVersion o1, ProductWorkflowDefVersion o2) {
                     return o2.getEffectiveDate().compareTo(o1.getEffectiveDate());
                 }
             });
+            versions = Collections.unmodifiableList(sortedVersions);
+            workflowVersionsDescEffDate = versions;
+        }
+        return versions;
+    }
+
+    private NavigableMap<Date, ProductWorkflowDefVersion> getMapEffectiveDateToVersion() {
+        NavigableMap<Date, ProductWorkflowDefVersion> map = mapEffectiveDateToVersion;
+        if (map == null) {
+            map = new TreeMap<>();
+            // If versions share a date, the first in the list is in effect, as in a scan of the sorted list.
+            for (ProductWorkflowDefVersion productWorkflowDefVersion : productWorkflowDefVersions) {
+                map.putIfAbsent(productWorkflowDefVersion.getEffectiveDate(), productWorkflowDefVersion);
+            }
+            map = Collections.unmodifiableNavigableMap(map);
+            mapEffectiveDateToVersion = map;
         }
-        return workflowVersionsDescEffDate;
+        return map;
     }
 
     public ProductWorkflowDefVersion getEffectiveVersion() {
@@ -76,16 +111,10 @@ public class ProductWorkflowDef implements Serializable {
     }
 
     public ProductWorkflowDefVersion getEffectiveVersion(Date eventDate) {
-        ProductWorkflowDefVersion mostRecentEffWorkflowVersion = null;
-        for (ProductWorkflowDefVersion productWorkflowDefVersion : getWorkflowVersionsDescEffDate()) {
-            // Should select workflow when effectiveDate <= eventDate.
-            if (!productWorkflowDefVersion.getEffectiveDate().after(eventDate)) {
-                mostRecentEffWorkflowVersion = productWorkflowDefVersion;
-                break;
-            }
-        }
-        assert mostRecentEffWorkflowVersion != null;
-        return mostRecentEffWorkflowVersion;
+        // Should select workflow when effectiveDate <= eventDate.
+        Map.Entry<Date, ProductWorkflowDefVersion> entry = getMapEffectiveDateToVersion().floorEntry(eventDate);
+        assert entry != null;
+        return entry == null ? null : entry.getValue();
     }
 
     public ProductWorkflowDefVersion getByVersion(String version) {
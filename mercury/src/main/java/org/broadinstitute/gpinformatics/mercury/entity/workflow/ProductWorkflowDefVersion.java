@@ -2,7 +2,9 @@ package org.broadinstitute.gpinformatics.mercury.entity.workflow;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
@@ -48,8 +50,8 @@ public class ProductWorkflowDefVersion implements Serializable {
     private transient Map<String, WorkflowProcessDef> processDefsByName = new HashMap<>();
 
     private final List<String> entryPointsUsed = new ArrayList<>();
-    private transient Multimap<String, LabEventNode> mapNameToLabEvents;
-    private transient LabEventNode rootLabEventNode;
+    private transient volatile ListMultimap<String, LabEventNode> mapNameToLabEvents;
+    private transient volatile LabEventNode rootLabEventNode;
     private transient ProductWorkflowDef productWorkflowDef;
 
     public enum RoutingRule {SQUID, MERCURY, BOTH};
@@ -224,22 +226,30 @@ public class ProductWorkflowDefVersion implements Serializable {
      * a map indexed by an eventType which is affiliated with the step.  The steps are also associated with steps
      * that are considered their successors and predecessors.  This makes it easy to navigate through the workflow
      * when a user has at least one step
+     * <p/>
+     * Called for every version when the configuration is loaded, so lookups by event type don't build the graph.  The
+     * graph is built in local variables, and published when complete.
      */
     public void buildLabEventGraph() {
-        mapNameToLabEvents = ArrayListMultimap.create();
+        ListMultimap<String, LabEventNode> nameToLabEvents = ArrayListMultimap.create();
+        LabEventNode rootNode = null;
         LabEventNode previousNode = null;
         LabEventNode previousTransferNode = null;
         for (WorkflowProcessDef workflowProcessDef : workflowProcessDefs) {
             WorkflowProcessDefVersion effectiveProcessDef = workflowProcessDef.getEffectiveVersion();
+            if (effectiveProcessDef == null) {
+                // Not yet in effect.
+                continue;
+            }
             for (WorkflowStepDef workflowStepDef : effectiveProcessDef.getWorkflowStepDefs()) {
                 workflowStepDef.setProcessDefVersion(effectiveProcessDef);
                 workflowStepDef.setProcessDef(workflowProcessDef);
                 for (LabEventType labEventType : workflowStepDef.getLabEventTypes()) {
                     // todo jmt optional should probably be on the message, not the step
                     LabEventNode labEventNode = new LabEventNode(labEventType, workflowStepDef);
-                    mapNameToLabEvents.put(labEventType.getName(), labEventNode);
-                    if (rootLabEventNode == null) {
-                        rootLabEventNode = labEventNode;
+                    nameToLabEvents.put(labEventType.getName(), labEventNode);
+                    if (rootNode == null) {
+                        rootNode = labEventNode;
                     }
                     if (previousNode != null) {
                         labEventNode.addPredecessor(previousNode);
@@ -256,6 +266,17 @@ public class ProductWorkflowDefVersion implements Serializable {
                 }
             }
         }
+        rootLabEventNode = rootNode;
+        mapNameToLabEvents = Multimaps.unmodifiableListMultimap(nameToLabEvents);
+    }
+
+    private ListMultimap<String, LabEventNode> getMapNameToLabEvents() {
+        ListMultimap<String, LabEventNode> map = mapNameToLabEvents;
+        if (map == null) {
+            buildLabEventGraph();
+            map = mapNameToLabEvents;
+        }
+        return map;
     }
 
     /**
@@ -266,10 +287,7 @@ public class ProductWorkflowDefVersion implements Serializable {
      * @return found node
      */
     public LabEventNode findStepByEventType(String eventTypeName) {
-        if (mapNameToLabEvents == null) {
-            buildLabEventGraph();
-        }
-        Collection<LabEventNode> labEventNodes = mapNameToLabEvents.get(eventTypeName);
+        Collection<LabEventNode> labEventNodes = getMapNameToLabEvents().get(eventTypeName);
         if (labEventNodes.size() > 1) {
             throw new RuntimeException("More than one lab event for " + eventTypeName);
         }
@@ -287,10 +305,7 @@ public class ProductWorkflowDefVersion implements Serializable {
      * @return found nodes
      */
     public Collection<LabEventNode> findStepsByEventType(String eventTypeName) {
-        if (mapNameToLabEvents == null) {
-            buildLabEventGraph();
-        }
-        return mapNameToLabEvents.get(eventTypeName);
+        return getMapNameToLabEvents().get(eventTypeName);
     }
 
     public enum BucketingSource {
@@ -18,6 +18,7 @@ import java.io.Serializable;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -26,6 +27,9 @@ import java.util.Map;
 /**
  * Container for all workflow definition objects
  * Persistable in preferences
+ * <p/>
+ * Lookups by name go through an immutable index, built once by {@link #compile()} when the configuration is loaded,
+ * so a configuration can be shared by all threads without locking.
  */
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -40,20 +44,49 @@ public class WorkflowConfig implements PreferenceDefinitionValue, Serializable {
 
     /** List of product workflows, each composed of process definitions */
     private final List<ProductWorkflowDef> productWorkflowDefs;
-    @XmlTransient
-    private Map<String, ProductWorkflowDef> mapNameToWorkflow;
-
-    public Map<WorkflowStepDef, Collection<ProductWorkflowDef>> getMapProcessDefToWorkflow() {
-        return mapBucketToProductWorkflows;
-    }
-
-    @XmlTransient
-    private Map<WorkflowStepDef, Collection<ProductWorkflowDef>> mapBucketToProductWorkflows;
 
     /** List of sequencing configs,  */
     private final List<SequencingConfigDef> sequencingConfigDefs = new ArrayList<>();
+
     @XmlTransient
-    private Map<String, SequencingConfigDef> mapNameToSequencingConfig;
+    private transient volatile Index index;
+
+    /**
+     * Immutable maps from names to definitions.
+     */
+    private static class Index {
+        private final Map<String, ProductWorkflowDef> mapNameToWorkflow;
+        private final Map<WorkflowStepDef, Collection<ProductWorkflowDef>> mapBucketToProductWorkflows;
+        private final Map<String, SequencingConfigDef> mapNameToSequencingConfig;
+        private final Map<String, List<WorkflowProcessDef>> mapNameToProcesses;
+
+        private Index(WorkflowConfig workflowConfig) {
+            Map<String, ProductWorkflowDef> nameToWorkflow = new HashMap<>();
+            HashMultimap<WorkflowStepDef, ProductWorkflowDef> bucketWorkflowsMap = HashMultimap.create();
+            for (ProductWorkflowDef productWorkflowDef : workflowConfig.productWorkflowDefs) {
+                nameToWorkflow.put(productWorkflowDef.getName(), productWorkflowDef);
+                for (WorkflowBucketDef workflowBucketDef : productWorkflowDef.getEffectiveVersion().getBuckets()) {
+                    bucketWorkflowsMap.put(workflowBucketDef, productWorkflowDef);
+                }
+            }
+            mapNameToWorkflow = Collections.unmodifiableMap(nameToWorkflow);
+            mapBucketToProductWorkflows = Collections.unmodifiableMap(bucketWorkflowsMap.asMap());
+
+            Map<String, SequencingConfigDef> nameToSequencingConfig = new HashMap<>();
+            for (SequencingConfigDef sequencingConfigDef : workflowConfig.sequencingConfigDefs) {
+                nameToSequencingConfig.put(sequencingConfigDef.getName(), sequencingConfigDef);
+            }
+            mapNameToSequencingConfig = Collections.unmodifiableMap(nameToSequencingConfig);
+
+            // Several processes can share a name; they are kept in configuration order.
+            Map<String, List<WorkflowProcessDef>> nameToProcesses = new HashMap<>();
+            for (WorkflowProcessDef workflowProcessDef : workflowConfig.workflowProcessDefs) {
+                nameToProcesses.computeIfAbsent(workflowProcessDef.getName(), name -> new ArrayList<>())
+                        .add(workflowProcessDef);
+            }
+            mapNameToProcesses = Collections.unmodifiableMap(nameToProcesses);
+        }
+    }
 
     public WorkflowConfig() {
         this(new ArrayList<WorkflowProcessDef>(), new ArrayList<ProductWorkflowDef>());
@@ -65,18 +98,47 @@ public class WorkflowConfig implements PreferenceDefinitionValue, Serializable {
         this.productWorkflowDefs = productWorkflowDefs;
     }
 
+    /**
+     * Builds the indexes of this configuration: workflows, processes and sequencing configs by name; the versions of
+     * each workflow and process by effective date; the steps and buckets of each process version by name; and the
+     * steps of each workflow version by event type.  Called once when the configuration is loaded, before it is
+     * published to other threads.  Definitions must not be added after this is called.
+     *
+     * @return this, for chaining
+     */
+    public WorkflowConfig compile() {
+        for (WorkflowProcessDef workflowProcessDef : workflowProcessDefs) {
+            workflowProcessDef.compile();
+        }
+        for (ProductWorkflowDef productWorkflowDef : productWorkflowDefs) {
+            productWorkflowDef.compile();
+        }
+        index = new Index(this);
+        return this;
+    }
+
+    /**
+     * Returns the index, building it if this configuration was created by test code, rather than loaded.
+     */
+    private Index getIndex() {
+        Index localIndex = index;
+        if (localIndex == null) {
+            localIndex = new Index(this);
+            index = localIndex;
+        }
+        return localIndex;
+    }
+
+    public Map<WorkflowStepDef, Collection<ProductWorkflowDef>> getMapProcessDefToWorkflow() {
+        return getIndex().mapBucketToProductWorkflows;
+    }
+
     public List<ProductWorkflowDef> getProductWorkflowDefs() {
         return productWorkflowDefs;
     }
 
     public SequencingConfigDef getSequencingConfigByName(String sequencingConfigName) {
-        if (mapNameToSequencingConfig == null) {
-            mapNameToSequencingConfig = new HashMap<>();
-            for (SequencingConfigDef sequencingConfigDef : sequencingConfigDefs) {
-                mapNameToSequencingConfig.put(sequencingConfigDef.getName(), sequencingConfigDef);
-            }
-        }
-        SequencingConfigDef sequencingConfigDef = mapNameToSequencingConfig.get(sequencingConfigName);
+        SequencingConfigDef sequencingConfigDef = getIndex().mapNameToSequencingConfig.get(sequencingConfigName);
         if (sequencingConfigDef == null) {
             throw new WorkflowException("Failed to find sequencing config " + sequencingConfigName);
         }
@@ -88,19 +150,7 @@ public class WorkflowConfig implements PreferenceDefinitionValue, Serializable {
     }
 
     public ProductWorkflowDef getWorkflowByName(String workflowName) {
-        HashMultimap<WorkflowStepDef, ProductWorkflowDef> bucketWorkflowsMap = HashMultimap.create();
-
-        if (mapNameToWorkflow == null) {
-            mapNameToWorkflow = new HashMap<>();
-            for (ProductWorkflowDef productWorkflowDef : productWorkflowDefs) {
-                mapNameToWorkflow.put(productWorkflowDef.getName(), productWorkflowDef);
-                for (WorkflowBucketDef workflowBucketDef : productWorkflowDef.getEffectiveVersion().getBuckets()) {
-                    bucketWorkflowsMap.put(workflowBucketDef, productWorkflowDef);
-                }
-            }
-            mapBucketToProductWorkflows = bucketWorkflowsMap.asMap();
-        }
-        ProductWorkflowDef productWorkflowDef = mapNameToWorkflow.get(workflowName);
+        ProductWorkflowDef productWorkflowDef = getIndex().mapNameToWorkflow.get(workflowName);
         if (productWorkflowDef == null) {
             throw new WorkflowException("Failed to find workflow " + workflowName);
         }
@@ -189,14 +239,17 @@ public class WorkflowConfig implements PreferenceDefinitionValue, Serializable {
     }
 
     public WorkflowStepDef getStep(String workflowProcessName, String workflowStepName, Date workflowEffectiveDate) {
+        List<WorkflowProcessDef> workflowProcessDefs = getIndex().mapNameToProcesses.get(workflowProcessName);
+        if (workflowProcessDefs == null) {
+            return null;
+        }
+        // If a process has no such step, a later process with the same name may have it.
         for (WorkflowProcessDef workflowProcessDef : workflowProcessDefs) {
-            if (workflowProcessDef.getName().equals(workflowProcessName)) {
-                WorkflowProcessDefVersion effectiveVersion = workflowProcessDef.getEffectiveVersion(
-                        workflowEffectiveDate);
-                for (WorkflowStepDef workflowStepDef : effectiveVersion.getWorkflowStepDefs()) {
-                    if (workflowStepDef.getName().equals(workflowStepName)) {
-                        return workflowStepDef;
-                    }
+            WorkflowProcessDefVersion effectiveVersion = workflowProcessDef.getEffectiveVersion(workflowEffectiveDate);
+            if (effectiveVersion != null) {
+                WorkflowStepDef workflowStepDef = effectiveVersion.getStepByName(workflowStepName);
+                if (workflowStepDef != null) {
+                    return workflowStepDef;
                 }
             }
         }
@@ -11,6 +11,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 /**
  * A lab process, or team, e.g. QTP
@@ -25,7 +27,10 @@ public class WorkflowProcessDef implements Serializable {
     private List<WorkflowProcessDefVersion> workflowProcessDefVersions = new ArrayList<>();
     private transient Map<String, WorkflowProcessDefVersion> processDefVersionsByVersion =
             new HashMap<>();
-    private transient List<WorkflowProcessDefVersion> processVersionsDescEffDate;
+    private transient volatile List<WorkflowProcessDefVersion> processVersionsDescEffDate;
+
+    /** Transient map from effective date to version, for finding the version in effect on a date */
+    private transient volatile NavigableMap<Date, WorkflowProcessDefVersion> mapEffectiveDateToVersion;
 
     private transient ProductWorkflowDefVersion productWorkflowDef;
 
@@ -45,35 +50,59 @@ public class WorkflowProcessDef implements Serializable {
     public void addWorkflowProcessDefVersion(WorkflowProcessDefVersion workflowProcessDefVersion) {
         this.workflowProcessDefVersions.add(workflowProcessDefVersion);
         this.processDefVersionsByVersion.put ( workflowProcessDefVersion.getVersion (), workflowProcessDefVersion );
+        processVersionsDescEffDate = null;
+        mapEffectiveDateToVersion = null;
+    }
+
+    /**
+     * Sorts and indexes the versions, and indexes the steps of each, when the configuration is loaded.
+     */
+    void compile() {
+        getProcessVersionsDescEffDate();
+        getMapEffectiveDateToVersion();
+        for (WorkflowProcessDefVersion workflowProcessDefVersion : workflowProcessDefVersions) {
+            workflowProcessDefVersion.compile();
+        }
     }
 
     /** Returns a list of all process defs sorted by decreasing effective date. */
     public List<WorkflowProcessDefVersion> getProcessVersionsDescEffDate() {
-        if (processVersionsDescEffDate == null) {
-            processVersionsDescEffDate = new ArrayList<>(workflowProcessDefVersions);
-            Collections.sort(processVersionsDescEffDate, new Comparator<WorkflowProcessDefVersion>() {
+        List<WorkflowProcessDefVersion> versions = processVersionsDescEffDate;
+        if (versions == null) {
+            List<WorkflowProcessDefVersion> sortedVersions = new ArrayList<>(workflowProcessDefVersions);
+            Collections.sort(sortedVersions, new Comparator<WorkflowProcessDefVersion>() {
                 @Override
                 public int compare(WorkflowProcessDefVersion o1, WorkflowProcessDefVersion o2) {
                     return o2.getEffectiveDate().compareTo(o1.getEffectiveDate());
                 }
             });
+            versions = Collections.unmodifiableList(sortedVersions);
+            processVersionsDescEffDate = versions;
         }
-        return processVersionsDescEffDate;
+        return versions;
     }
 
-    /** Returns the process def that is in effect for the given date. */
-    public WorkflowProcessDefVersion getEffectiveVersion(Date eventDate) {
-        WorkflowProcessDefVersion effectiveProcessDef = null;
-        for (WorkflowProcessDefVersion workflowProcessDefVersion : getProcessVersionsDescEffDate()) {
-            // Should select workflow when effectiveDate <= eventDate.
-            if (!workflowProcessDefVersion.getEffectiveDate().after(eventDate)) {
-                effectiveProcessDef = workflowProcessDefVersion;
-                break;
+    private NavigableMap<Date, WorkflowProcessDefVersion> getMapEffectiveDateToVersion() {
+        NavigableMap<Date, WorkflowProcessDefVersion> map = mapEffectiveDateToVersion;
+        if (map == null) {
+            map = new TreeMap<>();
+            // If versions share a date, the first in the list is in effect, as in a scan of the sorted list.
+            for (WorkflowProcessDefVersion workflowProcessDefVersion : workflowProcessDefVersions) {
+                map.putIfAbsent(workflowProcessDefVersion.getEffectiveDate(), workflowProcessDefVersion);
             }
+            map = Collections.unmodifiableNavigableMap(map);
+            mapEffectiveDateToVersion = map;
         }
+        return map;
+    }
+
+    /** Returns the process def that is in effect for the given date. */
+    public WorkflowProcessDefVersion getEffectiveVersion(Date eventDate) {
+        // Should select workflow when effectiveDate <= eventDate.
+        Map.Entry<Date, WorkflowProcessDefVersion> entry = getMapEffectiveDateToVersion().floorEntry(eventDate);
         // Breaks DBFree tests using mocks
-        // assert effectiveProcessDef != null;
-        return effectiveProcessDef;
+        // assert entry != null;
+        return entry == null ? null : entry.getValue();
     }
 
     /** Returns the process def for events that happen now. */
@@ -7,6 +7,7 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +32,10 @@ public class WorkflowProcessDefVersion implements Serializable {
     private Map<String, WorkflowStepDef> workflowStepsByName = new HashMap<>();
     private WorkflowProcessDef workflowProcessDef;
 
+    /** Transient maps from name to the first step, and the first bucket, with that name */
+    private transient volatile Map<String, WorkflowStepDef> mapNameToStep;
+    private transient volatile Map<String, WorkflowBucketDef> mapNameToBucket;
+
     /**
      * For JAXB
      */
@@ -46,6 +51,49 @@ public class WorkflowProcessDefVersion implements Serializable {
         workflowStepDefs.add(workflowStepDef);
         workflowStepsByName.put(workflowStepDef.getName(), workflowStepDef);
         workflowStepDef.setProcessDefVersion(this);
+        mapNameToStep = null;
+        mapNameToBucket = null;
+    }
+
+    /**
+     * Indexes the steps and buckets by name, when the configuration is loaded.
+     */
+    void compile() {
+        getMapNameToStep();
+        getMapNameToBucket();
+    }
+
+    private Map<String, WorkflowStepDef> getMapNameToStep() {
+        Map<String, WorkflowStepDef> map = mapNameToStep;
+        if (map == null) {
+            map = new HashMap<>();
+            for (WorkflowStepDef workflowStepDef : workflowStepDefs) {
+                map.putIfAbsent(workflowStepDef.getName(), workflowStepDef);
+            }
+            map = Collections.unmodifiableMap(map);
+            mapNameToStep = map;
+        }
+        return map;
+    }
+
+    private Map<String, WorkflowBucketDef> getMapNameToBucket() {
+        Map<String, WorkflowBucketDef> map = mapNameToBucket;
+        if (map == null) {
+            map = new HashMap<>();
+            for (WorkflowBucketDef bucketDef : getBuckets()) {
+                map.putIfAbsent(bucketDef.getName(), bucketDef);
+            }
+            map = Collections.unmodifiableMap(map);
+            mapNameToBucket = map;
+        }
+        return map;
+    }
+
+    /**
+     * Returns the step with the specified name, or null if no step is found.
+     */
+    public WorkflowStepDef getStepByName(String stepName) {
+        return getMapNameToStep().get(stepName);
     }
 
     public List<WorkflowStepDef> getWorkflowStepDefs() {
@@ -117,12 +165,7 @@ public class WorkflowProcessDefVersion implements Serializable {
      * @return the named bucket
      */
     public WorkflowBucketDef getBucketByName(String bucketName) {
-        for (WorkflowBucketDef bucketDef : getBuckets()) {
-            if (bucketDef.getName().equals(bucketName)) {
-                return bucketDef;
-            }
-        }
-        return null;
+        return getMapNameToBucket().get(bucketName);
     }
 
     /**
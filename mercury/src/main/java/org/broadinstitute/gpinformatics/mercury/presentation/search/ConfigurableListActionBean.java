@@ -15,6 +15,7 @@ import org.broadinstitute.gpinformatics.infrastructure.columns.ColumnEntity;
 import org.broadinstitute.gpinformatics.infrastructure.columns.ColumnTabulation;
 import org.broadinstitute.gpinformatics.infrastructure.columns.ConfigurableList;
 import org.broadinstitute.gpinformatics.infrastructure.columns.ConfigurableListFactory;
+import org.broadinstitute.gpinformatics.infrastructure.columns.StreamingResultWriter;
 import org.broadinstitute.gpinformatics.infrastructure.jira.JiraConfig;
 import org.broadinstitute.gpinformatics.infrastructure.jpa.ThreadEntityManager;
 import org.broadinstitute.gpinformatics.infrastructure.quote.PriceListCache;
@@ -25,11 +26,13 @@ import org.broadinstitute.gpinformatics.infrastructure.search.SearchDefinitionFa
 import org.broadinstitute.gpinformatics.infrastructure.search.SearchInstance;
 import org.broadinstitute.gpinformatics.infrastructure.spreadsheet.SpreadsheetCreator;
 import org.broadinstitute.gpinformatics.infrastructure.spreadsheet.StreamCreatedSpreadsheetUtil;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceCache;
 import org.broadinstitute.gpinformatics.mercury.presentation.CoreActionBean;
 import org.broadinstitute.gpinformatics.mercury.presentation.CoreActionBeanContext;
 
 import javax.inject.Inject;
 import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -52,6 +55,9 @@ public class ConfigurableListActionBean extends CoreActionBean {
 
     private String sessionKey;
 
+    /** Format of the file from downloadAllPages. */
+    private StreamingResultWriter.Format downloadFormat = StreamingResultWriter.Format.XLSX;
+
     @Inject
     private ConfigurableListFactory configurableListFactory;
 
@@ -79,6 +85,9 @@ public class ConfigurableListActionBean extends CoreActionBean {
     @Inject
     private ConstrainedValueDao constrainedValueDao;
 
+    @Inject
+    private SampleInstanceCache sampleInstanceCache;
+
     /**
      * Stream an Excel spreadsheet, from a list of IDs
      *
@@ -130,18 +139,25 @@ public class ConfigurableListActionBean extends CoreActionBean {
 
     /**
      * For a search that returned multiple pages of results, downloads all pages to a
-     * spreadsheet.
+     * spreadsheet or CSV file.
      *
-     * @return streamed Excel spreadsheet
+     * @return streamed Excel spreadsheet or CSV file
      */
     public Resolution downloadAllPages() {
-        PaginationUtil.Pagination pagination = (PaginationUtil.Pagination) getContext().getRequest().getSession()
+        final PaginationUtil.Pagination pagination = (PaginationUtil.Pagination) getContext().getRequest().getSession()
                 .getAttribute(ConfigurableSearchActionBean.PAGINATION_PREFIX + sessionKey);
-        SearchInstance searchInstance = (SearchInstance) getContext().getRequest().getSession()
+        final SearchInstance searchInstance = (SearchInstance) getContext().getRequest().getSession()
                 .getAttribute(ConfigurableSearchActionBean.SEARCH_INSTANCE_PREFIX + sessionKey);
-        ConfigurableList.ResultList resultList = configurableListFactory.fetchAllPages(pagination, searchInstance,
-                downloadColumnSetName, entityName);
-        return streamResultList(resultList);
+        // Writes directly to the response, rather than building the whole file in memory first.
+        StreamingResolution stream = new StreamingResolution(downloadFormat.getMimeType()) {
+            @Override
+            protected void stream(HttpServletResponse response) throws IOException {
+                configurableListFactory.streamAllPages(pagination, searchInstance, downloadColumnSetName, entityName,
+                        downloadFormat, response.getOutputStream());
+            }
+        };
+        stream.setFilename(downloadFormat.getFileName());
+        return stream;
     }
 
     /**
@@ -159,6 +175,7 @@ public class ConfigurableListActionBean extends CoreActionBean {
         evalContext.setQuoteLink(quoteLink);
         evalContext.setSapQuoteLink(sapQuoteLink);
         evalContext.setOptionValueDao(constrainedValueDao);
+        evalContext.setSampleInstanceCache(sampleInstanceCache);
         return evalContext;
     }
 
@@ -238,6 +255,14 @@ public class ConfigurableListActionBean extends CoreActionBean {
         this.entityName = entityName;
     }
 
+    public StreamingResultWriter.Format getDownloadFormat() {
+        return downloadFormat;
+    }
+
+    public void setDownloadFormat(StreamingResultWriter.Format downloadFormat) {
+        this.downloadFormat = downloadFormat;
+    }
+
     public String getSessionKey() {
         return sessionKey;
     }
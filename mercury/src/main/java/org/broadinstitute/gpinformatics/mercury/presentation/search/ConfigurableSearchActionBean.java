@@ -45,6 +45,7 @@ import org.broadinstitute.gpinformatics.mercury.boundary.InformaticsServiceExcep
 import org.broadinstitute.gpinformatics.mercury.boundary.search.SearchRequestBean;
 import org.broadinstitute.gpinformatics.mercury.boundary.search.SearchValueBean;
 import org.broadinstitute.gpinformatics.mercury.boundary.zims.BSPLookupException;
+import org.broadinstitute.gpinformatics.mercury.control.sample.SampleInstanceCache;
 import org.broadinstitute.gpinformatics.mercury.presentation.CoreActionBean;
 
 import javax.inject.Inject;
@@ -245,6 +246,9 @@ public class ConfigurableSearchActionBean extends CoreActionBean {
     @Inject
     private SapQuoteLink sapQuoteLink;
 
+    @Inject
+    private SampleInstanceCache sampleInstanceCache;
+
     /**
      * Called from the search menu selection link.
      * User must select the base entity to begin a search or select an existing USER or GLOBAL saved search.
@@ -548,6 +552,7 @@ public class ConfigurableSearchActionBean extends CoreActionBean {
         searchInstance.getEvalContext().setPriceListCache(priceListCache);
         searchInstance.getEvalContext().setQuoteLink(quoteLink);
         searchInstance.getEvalContext().setSapQuoteLink(sapQuoteLink);
+        searchInstance.getEvalContext().setSampleInstanceCache(sampleInstanceCache);
     }
 
     /**
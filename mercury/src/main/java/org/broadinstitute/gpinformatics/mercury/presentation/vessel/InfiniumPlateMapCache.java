@@ -0,0 +1,90 @@
+package org.broadinstitute.gpinformatics.mercury.presentation.vessel;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.broadinstitute.gpinformatics.infrastructure.jmx.AbstractCacheControl;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.Singleton;
+import java.util.concurrent.TimeUnit;
+
+import static javax.ejb.ConcurrencyManagementType.BEAN;
+
+/**
+ * Application wide cache of the Infinium plate maps built by {@link MetricsViewActionBean}, keyed by plate or chip
+ * barcode.  Each entry records the version of the data that it was built from: the chips that the plate was hybridized
+ * to, the latest modification of its Arrays QC and blacklist rows, the call rate threshold, whether the plate is
+ * clinical, and its abandoned wells.  An entry is rebuilt if the version changes.  The samples and PDOs shown for each
+ * well aren't versioned, so entries also expire a few minutes after they are built.
+ */
+@Singleton
+@ConcurrencyManagement(BEAN)
+public class InfiniumPlateMapCache extends AbstractCacheControl {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 500;
+
+    private static final int EXPIRE_AFTER_WRITE_MINUTES = 10;
+
+    private int maximumCacheSize = DEFAULT_MAXIMUM_SIZE;
+
+    private volatile Cache<String, Entry> cache = buildCache(DEFAULT_MAXIMUM_SIZE);
+
+    /**
+     * A plate map, and the version of the data that it was built from.
+     */
+    private static class Entry {
+        private final String version;
+        private final MetricsViewActionBean.PlateMap plateMap;
+
+        private Entry(String version, MetricsViewActionBean.PlateMap plateMap) {
+            this.version = version;
+            this.plateMap = plateMap;
+        }
+    }
+
+    private static Cache<String, Entry> buildCache(int maximumSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Returns the plate map for a barcode, if it was built from the given version of the data.  Plate maps
+     * are shared between requests, so callers must not change them.
+     */
+    public MetricsViewActionBean.PlateMap get(String barcode, String version) {
+        Entry entry = cache.getIfPresent(barcode);
+        if (entry == null || !entry.version.equals(version)) {
+            return null;
+        }
+        return entry.plateMap;
+    }
+
+    public void put(String barcode, String version, MetricsViewActionBean.PlateMap plateMap) {
+        cache.put(barcode, new Entry(version, plateMap));
+    }
+
+    @Override
+    public void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Replaces the cache with an empty one of the new size.
+     */
+    @Override
+    public void setMaximumCacheSize(int max) {
+        maximumCacheSize = max;
+        cache = buildCache(max);
+    }
+
+    long getSize() {
+        return cache.size();
+    }
+}
@@ -9,6 +9,7 @@ import net.sourceforge.stripes.action.HandlesEvent;
 import net.sourceforge.stripes.action.Resolution;
 import net.sourceforge.stripes.action.UrlBinding;
 import net.sourceforge.stripes.validation.Validate;
+import net.sourceforge.stripes.validation.ValidationError;
 import net.sourceforge.stripes.validation.ValidationMethod;
 import org.apache.commons.collections4.BidiMap;
 import org.apache.commons.collections4.ListValuedMap;
@@ -98,6 +99,9 @@ public class MetricsViewActionBean extends RackScanActionBean {
     @Inject
     private AttributeArchetypeDao attributeArchetypeDao;
 
+    @Inject
+    private InfiniumPlateMapCache infiniumPlateMapCache;
+
     @Validate(required = true, on = {SEARCH_ACTION})
     private String barcodes;
 
@@ -324,13 +328,7 @@ public class MetricsViewActionBean extends RackScanActionBean {
     private void buildMetricsTable() {
         if (isInfinium) {
             try {
-                List<PlateMap> plateMaps = new ArrayList<>();
-                for (StaticPlate staticPlate: staticPlates) {
-                    PlateMap plateMap = buildInfiniumMetricsTable(staticPlate);
-                    if (plateMap != null) {
-                        plateMaps.add(plateMap);
-                    }
-                }
+                List<PlateMap> plateMaps = buildInfiniumMetricsTables(staticPlates);
                 if (getValidationErrors().isEmpty()) {
                     ObjectMapper mapper = new ObjectMapper();
                     metricsTableJson = mapper.writeValueAsString(plateMaps);
@@ -346,15 +344,103 @@ public class MetricsViewActionBean extends RackScanActionBean {
         }
     }
 
+    /**
+     * The chips that a plate was hybridized to, and the chip wells of its positions.
+     */
+    private static class ChipWells {
+        private final StaticPlate staticPlate;
+        private final Set<LabVessel> chips;
+        private final BidiMap<String, String> chipWellToSourcePosition;
+
+        private ChipWells(StaticPlate staticPlate, Set<LabVessel> chips,
+                BidiMap<String, String> chipWellToSourcePosition) {
+            this.staticPlate = staticPlate;
+            this.chips = chips;
+            this.chipWellToSourcePosition = chipWellToSourcePosition;
+        }
+    }
+
     public PlateMap buildInfiniumMetricsTable(StaticPlate staticPlate) throws IOException {
+        List<PlateMap> plateMaps = buildInfiniumMetricsTables(Collections.singletonList(staticPlate));
+        return plateMaps.isEmpty() ? null : plateMaps.get(0);
+    }
+
+    /**
+     * Builds the plate maps for several plates or chips.  The chip wells of all the plates are found first, so the
+     * Arrays QC and blacklist rows for all of them are fetched together, rather than a plate at a time.  A plate map
+     * whose pipeline data, call rate threshold, clinical status and abandoned wells haven't changed since it was built
+     * is taken from the cache.
+     */
+    public List<PlateMap> buildInfiniumMetricsTables(List<StaticPlate> staticPlates) throws IOException {
+        List<ChipWells> chipWellsList = new ArrayList<>();
+        Set<String> allChipWellBarcodes = new HashSet<>();
+        for (StaticPlate staticPlate : staticPlates) {
+            ChipWells chipWells = findChipWells(staticPlate);
+            if (chipWells != null) {
+                chipWellsList.add(chipWells);
+                allChipWellBarcodes.addAll(chipWells.chipWellToSourcePosition.keySet());
+            }
+        }
+        if (chipWellsList.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // ******* Get pipeline array data for chip wells of all plates *********
+        List<ArraysQc> allArraysQc = arraysQcDao.findByBarcodes(new ArrayList<>(allChipWellBarcodes));
+        ListValuedMap<String, ArraysQcBlacklisting> wellBlacklistMap =
+                arraysQcDao.findBlacklistMapByBarcodes(new ArrayList<>(allChipWellBarcodes));
+        // ******* Pipeline array data for chip wells gotten *********
+
+        List<PlateMap> plateMaps = new ArrayList<>();
+        for (ChipWells chipWells : chipWellsList) {
+            String label = chipWells.staticPlate.getLabel();
+            List<ArraysQc> arraysQcList = new ArrayList<>();
+            for (ArraysQc arraysQc : allArraysQc) {
+                if (chipWells.chipWellToSourcePosition.containsKey(arraysQc.getChipWellBarcode())) {
+                    arraysQcList.add(arraysQc);
+                }
+            }
+            if (arraysQcList.isEmpty()) {
+                // No pipeline data at all is fatal
+                addGlobalValidationError("Failed to find any Arrays QC data for vessel " + label);
+                continue;
+            }
+
+            Map<String, String> chipAttributes = findChipAttributes(label);
+            Map<String, AbandonVessel> abandonedWells = findAbandonedWells(chipWells, arraysQcList);
+            String version = pipelineDataVersion(chipWells, arraysQcList, wellBlacklistMap) + "|" +
+                             mercuryDataVersion(label, chipAttributes, abandonedWells);
+            PlateMap cachedPlateMap = infiniumPlateMapCache == null ? null :
+                    infiniumPlateMapCache.get(label, version);
+            if (cachedPlateMap != null) {
+                plateMap = cachedPlateMap;
+                plateMaps.add(plateMap);
+                continue;
+            }
+            int errorCount = countValidationErrors();
+            PlateMap builtPlateMap = buildPlateMap(chipWells, arraysQcList, wellBlacklistMap, chipAttributes,
+                    abandonedWells);
+            if (builtPlateMap != null) {
+                plateMaps.add(builtPlateMap);
+                // A plate map built with errors is not shown, so isn't worth keeping.
+                if (infiniumPlateMapCache != null && countValidationErrors() == errorCount) {
+                    infiniumPlateMapCache.put(label, version, builtPlateMap);
+                }
+            }
+        }
+        return plateMaps;
+    }
+
+    /**
+     * Finds the chip wells for the positions of a plate, by traversing to its hybridization events, or for the wells
+     * of a chip.
+     *
+     * @return the chip wells, or null if there are no chips, in which case a validation error is added
+     */
+    private ChipWells findChipWells(StaticPlate staticPlate) {
         boolean isHybChip = false;
         Set<LabVessel> chips = new HashSet<>();
         BidiMap<String, String > chipWellToSourcePosition;
-        Set<String> chipTypes = barcodeToChipTypes.get(staticPlate.getLabel());
-        Set<ProductOrder> productOrders = barcodeToProductOrders.get(staticPlate.getLabel());
-        GenotypingChip genotypingChip = barcodeToGenotypingChip.get(staticPlate.getLabel());
-        boolean isClinical = barcodeToIsClinical.get(staticPlate.getLabel());
-        Set<String> allPositionNames = Sets.newHashSet(staticPlate.getVesselGeometry().getPositionNames());
         Set<LabEvent> hybEvents = new TreeSet<>(LabEvent.BY_EVENT_DATE);
         if (staticPlate.getVesselGeometry().name().contains("CHIP")) {
             chips.add(staticPlate);
@@ -406,37 +492,153 @@ public class MetricsViewActionBean extends RackScanActionBean {
                 }
             }
         }
+        return new ChipWells(staticPlate, chips, chipWellToSourcePosition);
+    }
+
+    /**
+     * Identifies the pipeline data that a plate map is built from: the plate's chips, and the number and latest
+     * modification of its Arrays QC and blacklist rows.
+     */
+    private static String pipelineDataVersion(ChipWells chipWells, List<ArraysQc> arraysQcList,
+            ListValuedMap<String, ArraysQcBlacklisting> wellBlacklistMap) {
+        Set<String> chipBarcodes = new TreeSet<>();
+        for (LabVessel chip : chipWells.chips) {
+            chipBarcodes.add(chip.getLabel());
+        }
+        long latestModified = 0L;
+        for (ArraysQc arraysQc : arraysQcList) {
+            if (arraysQc.getModifiedAt() != null) {
+                latestModified = Math.max(latestModified, arraysQc.getModifiedAt().getTime());
+            }
+        }
+        int blacklistCount = 0;
+        for (String chipWellBarcode : chipWells.chipWellToSourcePosition.keySet()) {
+            for (ArraysQcBlacklisting blacklisting : wellBlacklistMap.get(chipWellBarcode)) {
+                blacklistCount++;
+                if (blacklisting.getModifiedAt() != null) {
+                    latestModified = Math.max(latestModified, blacklisting.getModifiedAt().getTime());
+                }
+            }
+        }
+        return String.join(",", chipBarcodes) + "|" + chipWells.chipWellToSourcePosition.size() + "|" +
+               arraysQcList.size() + "|" + blacklistCount + "|" + latestModified;
+    }
+
+    private int countValidationErrors() {
+        int count = 0;
+        for (List<ValidationError> errors : getValidationErrors().values()) {
+            count += errors.size();
+        }
+        return count;
+    }
 
-        // ******* Get pipeline array data for chip wells *********
-        List<ArraysQc> arraysQcList = arraysQcDao.findByBarcodes(new ArrayList<>(chipWellToSourcePosition.keySet()));
-        if (arraysQcList.isEmpty()) {
-            // No pipeline data at all is fatal
-            addGlobalValidationError("Failed to find any Arrays QC data for vessel " + staticPlate.getLabel());
+    /**
+     * Returns the attributes of a plate's genotyping chip, with any overrides from the genotyping mapping of its
+     * product order, or null if the plate doesn't have exactly one chip type, in which case the default call rate
+     * thresholds apply.
+     */
+    private Map<String, String> findChipAttributes(String label) {
+        Set<String> chipTypes = barcodeToChipTypes.get(label);
+        GenotypingChip genotypingChip = barcodeToGenotypingChip.get(label);
+        if (chipTypes.size() != 1 || genotypingChip == null) {
             return null;
         }
-        ListValuedMap<String, ArraysQcBlacklisting>  wellBlacklistMap = arraysQcDao.findBlacklistMapByBarcodes(new ArrayList<>(chipWellToSourcePosition.keySet()));
-        // ******* Pipeline array data for chip wells gotten *********
+        // Copied, so the overrides don't change the chip.
+        Map<String, String> chipAttributes = new HashMap<>(genotypingChip.getAttributeMap());
+        Set<ProductOrder> productOrders = barcodeToProductOrders.get(label);
+        if (productOrders.size() == 1) {
+            ProductOrder productOrder = productOrders.iterator().next();
+            GenotypingProductOrderMapping genotypingProductOrderMapping =
+                    attributeArchetypeDao.findGenotypingProductOrderMapping(productOrder.getProductOrderId());
+            if (genotypingProductOrderMapping != null) {
+                for (ArchetypeAttribute archetypeAttribute : genotypingProductOrderMapping.getAttributes()) {
+                    if (chipAttributes.containsKey(archetypeAttribute.getAttributeName()) &&
+                        archetypeAttribute.getAttributeValue() != null) {
+                        chipAttributes.put(
+                                archetypeAttribute.getAttributeName(), archetypeAttribute.getAttributeValue());
+                    }
+                }
+            }
+        }
+        return chipAttributes;
+    }
 
-        // Call Rate threshold depends on the Genotyping Chip
-        int passingCallRateThreshold = 98;
-        List<Options> callRateOptions = null;
-        if (chipTypes.size() == 1 && genotypingChip != null) {
-            Map<String, String> chipAttributes = genotypingChip.getAttributeMap();
-            if (productOrders.size() == 1) {
-                ProductOrder productOrder = productOrders.iterator().next();
-                GenotypingProductOrderMapping genotypingProductOrderMapping =
-                        attributeArchetypeDao.findGenotypingProductOrderMapping(productOrder.getProductOrderId());
-                if (genotypingProductOrderMapping != null) {
-                    for (ArchetypeAttribute archetypeAttribute : genotypingProductOrderMapping.getAttributes()) {
-                        if (chipAttributes.containsKey(archetypeAttribute.getAttributeName()) &&
-                            archetypeAttribute.getAttributeValue() != null) {
-                            chipAttributes.put(
-                                    archetypeAttribute.getAttributeName(), archetypeAttribute.getAttributeValue());
-                        }
+    /**
+     * Finds the abandons of the plate positions that have no Arrays QC data, by working backward from the chip.
+     *
+     * @return the abandon of each such position that was abandoned, sorted by position
+     */
+    private static Map<String, AbandonVessel> findAbandonedWells(ChipWells chipWells, List<ArraysQc> arraysQcList) {
+        Map<String, AbandonVessel> abandonedWells = new TreeMap<>();
+        Set<String> positionsWithData = new HashSet<>();
+        for (ArraysQc arraysQc : arraysQcList) {
+            positionsWithData.add(chipWells.chipWellToSourcePosition.get(arraysQc.getChipWellBarcode()));
+        }
+        for (Map.Entry<String, String> entry : chipWells.chipWellToSourcePosition.entrySet()) {
+            String platePosition = entry.getValue();
+            if (positionsWithData.contains(platePosition)) {
+                continue;
+            }
+            String chipWellBarcode = entry.getKey();
+            int pos = chipWellBarcode.indexOf("_");
+            String chipBarcode = chipWellBarcode.substring(0, pos );
+            VesselPosition chipPosition = VesselPosition.getByName(chipWellBarcode.substring( pos + 1 ));
+            for( LabVessel chip : chipWells.chips ) {
+                if( chip.getLabel().equals(chipBarcode)) {
+                    TransferTraverserCriteria.AbandonedLabVesselCriteria abandonCriteria = new TransferTraverserCriteria.AbandonedLabVesselCriteria();
+                    chip.getContainerRole().evaluateCriteria(chipPosition, abandonCriteria,
+                            TransferTraverserCriteria.TraversalDirection.Ancestors, 0);
+                    if( abandonCriteria.isAncestorAbandoned() ) {
+                        abandonedWells.put(platePosition,
+                                abandonCriteria.getAncestorAbandonVessels().values().iterator().next());
                     }
+                    break;
                 }
             }
+        }
+        return abandonedWells;
+    }
+
+    /**
+     * Identifies the Mercury data that a plate map is built from, other than its samples and PDOs: the genotyping
+     * chip and call rate threshold, whether the plate is clinical, and the abandoned wells.
+     */
+    private String mercuryDataVersion(String label, Map<String, String> chipAttributes,
+            Map<String, AbandonVessel> abandonedWells) {
+        StringBuilder version = new StringBuilder();
+        GenotypingChip genotypingChip = barcodeToGenotypingChip.get(label);
+        if (chipAttributes != null) {
+            version.append(genotypingChip.getChipName()).append('=').append(chipAttributes.get("call_rate_threshold"));
+        }
+        version.append('|').append(barcodeToIsClinical.get(label));
+        for (Map.Entry<String, AbandonVessel> entry : abandonedWells.entrySet()) {
+            AbandonVessel abandon = entry.getValue();
+            version.append('|').append(entry.getKey()).append('=').append(abandon.getReason()).append(',')
+                    .append(abandon.getAbandonedOn() == null ? 0L : abandon.getAbandonedOn().getTime());
+        }
+        return version.toString();
+    }
+
+    /**
+     * Builds the plate map for a plate or chip from the pipeline data for its chip wells.
+     *
+     * @param chipAttributes the genotyping chip's attributes, from {@link #findChipAttributes}
+     * @param abandonedWells the abandons of positions without data, from {@link #findAbandonedWells}
+     * @return the plate map, or null if the genotyping chip has no call rate threshold
+     */
+    private PlateMap buildPlateMap(ChipWells chipWells, List<ArraysQc> arraysQcList,
+            ListValuedMap<String, ArraysQcBlacklisting> wellBlacklistMap, Map<String, String> chipAttributes,
+            Map<String, AbandonVessel> abandonedWells) {
+        StaticPlate staticPlate = chipWells.staticPlate;
+        BidiMap<String, String> chipWellToSourcePosition = chipWells.chipWellToSourcePosition;
+        GenotypingChip genotypingChip = barcodeToGenotypingChip.get(staticPlate.getLabel());
+        boolean isClinical = barcodeToIsClinical.get(staticPlate.getLabel());
+        Set<String> allPositionNames = Sets.newHashSet(staticPlate.getVesselGeometry().getPositionNames());
 
+        // Call Rate threshold depends on the Genotyping Chip
+        int passingCallRateThreshold = 98;
+        List<Options> callRateOptions = null;
+        if (chipAttributes != null) {
             if (chipAttributes.containsKey("call_rate_threshold")) {
                 String call_rate_threshold = chipAttributes.get("call_rate_threshold");
                 passingCallRateThreshold = Integer.parseInt(call_rate_threshold);
@@ -689,33 +891,16 @@ public class MetricsViewActionBean extends RackScanActionBean {
             }
         }
 
-        // Abandoned wells - work backward from chip (only if no array data)
+        // Abandoned wells - found by working backward from chip (only if no array data)
         // TODO: JMS Add some type of distinction to indicate that pipeline has not begun processing (vs. being abandoned)
-        if( chipWellToSourcePosition.size() != plateMap.getWellMetadataMap().size()) {
-            for (String platePosition : allPositionNames) {
-                if (plateMap.getWellMetadataMap().get(platePosition) == null) {
-                    String chipWellBarcode = chipWellToSourcePosition.getKey(platePosition);
-                    int pos = chipWellBarcode.indexOf("_");
-                    String chipBarcode = chipWellBarcode.substring(0, pos );
-                    VesselPosition chipPosition = VesselPosition.getByName(chipWellBarcode.substring( pos + 1 ));
-                    for( LabVessel chip : chips ) {
-                        if( chip.getLabel().equals(chipBarcode)) {
-                            TransferTraverserCriteria.AbandonedLabVesselCriteria abandonCriteria = new TransferTraverserCriteria.AbandonedLabVesselCriteria();
-                            chip.getContainerRole().evaluateCriteria(chipPosition, abandonCriteria,
-                                    TransferTraverserCriteria.TraversalDirection.Ancestors, 0);
-                            if( abandonCriteria.isAncestorAbandoned() ) {
-                                List<Metadata> metadataList = new ArrayList<>();
-                                AbandonVessel abandon = abandonCriteria.getAncestorAbandonVessels().values().iterator().next();
-                                metadataList.add(Metadata.create("Lab Abandon Reason", abandon.getReason().getDisplayName()));
-                                metadataList.add(Metadata.create("Abandoned On", DATE_FORMAT.format( abandon.getAbandonedOn() ) ));
-                                plateMap.getWellMetadataMap().put(platePosition, metadataList);
-                                plateMap.setWellStatus(platePosition, WellStatus.Abandoned);
-                            }
-                            break;
-                        }
-                    }
-                }
-            }
+        for (Map.Entry<String, AbandonVessel> entry : abandonedWells.entrySet()) {
+            String platePosition = entry.getKey();
+            AbandonVessel abandon = entry.getValue();
+            List<Metadata> metadataList = new ArrayList<>();
+            metadataList.add(Metadata.create("Lab Abandon Reason", abandon.getReason().getDisplayName()));
+            metadataList.add(Metadata.create("Abandoned On", DATE_FORMAT.format( abandon.getAbandonedOn() ) ));
+            plateMap.getWellMetadataMap().put(platePosition, metadataList);
+            plateMap.setWellStatus(platePosition, WellStatus.Abandoned);
         }
 
         return plateMap;
@@ -954,6 +1139,10 @@ public class MetricsViewActionBean extends RackScanActionBean {
         this.attributeArchetypeDao = attributeArchetypeDao;
     }
 
+    public void setInfiniumPlateMapCache(InfiniumPlateMapCache infiniumPlateMapCache) {
+        this.infiniumPlateMapCache = infiniumPlateMapCache;
+    }
+
     public Map<String, LabVessel> getMapBarcodeToVessel() {
         return mapBarcodeToVessel;
     }
@@ -983,7 +1172,7 @@ public class MetricsViewActionBean extends RackScanActionBean {
     /**
      * JSON object that feeds into PlateMap.js
      */
-    public class PlateMap {
+    public static class PlateMap {
         private List<WellDataset> datasets;
         private String label;
         private List<Metadata> plateMetadata;
@@ -1049,7 +1238,7 @@ public class MetricsViewActionBean extends RackScanActionBean {
         }
     }
 
-    public class WellDataset {
+    public static class WellDataset {
         DisplayMetrics displayMetrics;
         List<WellData> wellData;
         List<Options> options;
@@ -1079,7 +1268,7 @@ public class MetricsViewActionBean extends RackScanActionBean {
         }
     }
 
-    public class WellData {
+    public static class WellData {
         private String well;
         private String value;
 
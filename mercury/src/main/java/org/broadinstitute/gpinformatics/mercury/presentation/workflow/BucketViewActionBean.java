@@ -31,6 +31,7 @@ import org.broadinstitute.gpinformatics.athena.presentation.tokenimporters.Mater
 import org.broadinstitute.gpinformatics.infrastructure.ValidationException;
 import org.broadinstitute.gpinformatics.infrastructure.jira.issue.CreateFields;
 import org.broadinstitute.gpinformatics.mercury.boundary.bucket.BucketEjb;
+import org.broadinstitute.gpinformatics.mercury.boundary.bucket.BucketEntryAttributesCache;
 import org.broadinstitute.gpinformatics.mercury.boundary.vessel.LabBatchEjb;
 import org.broadinstitute.gpinformatics.mercury.control.dao.bucket.BucketDao;
 import org.broadinstitute.gpinformatics.mercury.control.dao.bucket.BucketEntryDao;
@@ -40,7 +41,6 @@ import org.broadinstitute.gpinformatics.mercury.control.workflow.WorkflowLoader;
 import org.broadinstitute.gpinformatics.mercury.entity.bucket.Bucket;
 import org.broadinstitute.gpinformatics.mercury.entity.bucket.BucketCount;
 import org.broadinstitute.gpinformatics.mercury.entity.bucket.BucketEntry;
-import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
 import org.broadinstitute.gpinformatics.mercury.entity.vessel.MaterialType;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.LabBatch;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.ProductWorkflowDef;
@@ -110,6 +110,8 @@ public class BucketViewActionBean extends CoreActionBean {
     @Inject
     private BucketEjb bucketEjb;
     @Inject
+    private BucketEntryAttributesCache bucketEntryAttributesCache;
+    @Inject
     private ReworkEjb reworkEjb;
     @Inject
     private UserBean userBean;
@@ -133,6 +135,7 @@ public class BucketViewActionBean extends CoreActionBean {
     private final List<Long> bucketEntryIds = new ArrayList<>();
     private final List<Long> reworkEntryIds = new ArrayList<>();
     private Set<BucketEntry> collectiveEntries = new HashSet<>();
+    private Map<Long, BucketEntryAttributesCache.Attributes> mapEntryIdToAttributes = new HashMap<>();
     private final Map<String, String> mapBucketToJiraProject = new HashMap<>();
     private Map<String, Collection<String>> mapBucketToWorkflows;
     private List<BucketEntry> selectedEntries = new ArrayList<>();
@@ -160,8 +163,7 @@ public class BucketViewActionBean extends CoreActionBean {
     private String searchString;
 
     public String getSlowColumns() {
-        return new JSONArray(Arrays.asList("Material Type", "Workflow", "Receipt Date", "Rework Reason",
-            "Rework Comment", "Rework User", "Rework Date")).toString();
+        return new JSONArray(Arrays.asList("Rework Reason", "Rework Comment", "Rework User", "Rework Date")).toString();
     }
 
     private Map<String, Boolean> headerVisibilityMap = new HashMap<>();
@@ -378,29 +380,19 @@ public class BucketViewActionBean extends CoreActionBean {
         }
         String jiraProjectType = mapBucketToJiraProject.get(selectedBucket);
         projectType = CreateFields.ProjectType.fromKeyPrefix(jiraProjectType);
-        preFetchSampleData(bucketEntries);
+        mapEntryIdToAttributes = bucketEntryAttributesCache.getAttributes(bucketEntries);
         List<MaterialType> selectedMaterialTypes = materialTypeTokenInput.getTokenObjects();
 
         if (CollectionUtils.isNotEmpty(selectedMaterialTypes)) {
-            long begin = System.currentTimeMillis();
             collectiveEntries.addAll(bucketEntries.stream()
-                .filter(o -> selectedMaterialTypes.contains(o.getLabVessel().getLatestMaterialType()))
+                .filter(o -> selectedMaterialTypes.contains(getAttributes(o).getMaterialType()))
                 .collect(Collectors.toList()));
-            log.info(String.format("contains material type took %d", System.currentTimeMillis() - begin));
         } else {
             collectiveEntries.addAll(bucketEntries);
         }
         return new ForwardResolution(VIEW_PAGE);
     }
 
-    private void preFetchSampleData(Set<BucketEntry> collectiveEntries) {
-        Set<LabVessel> labVessels = new HashSet<>();
-        for (BucketEntry entry : collectiveEntries) {
-            labVessels.add(entry.getLabVessel());
-        }
-        LabVessel.loadSampleDataForBuckets(labVessels);
-    }
-
     public String getConfirmationPageTitle() {
         return String.format("Confirm adding %d new and %d rework entries to %s.",
                 bucketEntryIds.size(), reworkEntryIds.size(), selectedBucket);
@@ -724,12 +716,11 @@ public class BucketViewActionBean extends CoreActionBean {
         this.searchString = searchString;
     }
 
-    public List<String> bucketWorkflowNames(BucketEntry bucketEntry) {
-        List<String> workflowNames = new ArrayList<>();
-        for (String workflow : bucketEntry.getWorkflows(WorkflowLoader.getWorkflowConfig())) {
-            workflowNames.add(workflow);
-        }
-        return workflowNames;
+    /**
+     * Returns the material type, workflows and receipt dates of a bucket entry found by the search.
+     */
+    public BucketEntryAttributesCache.Attributes getAttributes(BucketEntry bucketEntry) {
+        return mapEntryIdToAttributes.get(bucketEntry.getBucketEntryId());
     }
 
     public boolean showHeader(String columnName) {
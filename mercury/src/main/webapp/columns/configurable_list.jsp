@@ -280,6 +280,10 @@
                        onclick="if(atLeastOneChecked('selectedIds', this.form)){ this.name='downloadFromIdList'; return true;} else {return false;}"
                        class="btn btn-primary"/>
                 <c:if test="${not empty pagination and pagination.numberPages > 1}">
+                    <select name="downloadFormat" title="Format for Download All Pages">
+                        <option value="XLSX">Excel</option>
+                        <option value="CSV">CSV</option>
+                    </select>
                     <input type="submit" name="downloadAllPages" id="downloadAllPages"
                            value="Download All Pages" class="btn btn-primary"/>
                 </c:if>
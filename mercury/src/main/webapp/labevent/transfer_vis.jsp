@@ -27,6 +27,9 @@
                                         alert(json.error);
                                     } else {
                                         renderJson(json);
+                                        if (json.truncated) {
+                                            d3.select("#progress").html(json.truncated);
+                                        }
                                     }
                                 });
                     }
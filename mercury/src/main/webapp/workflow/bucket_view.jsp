@@ -701,6 +701,7 @@
                 <tbody>
 
                 <c:forEach items="${actionBean.collectiveEntries}" var="entry">
+                    <c:set var="attributes" value="${actionBean.getAttributes(entry)}"/>
                     <tr id="${entry.bucketEntryId}" data-vessel-label="${entry.labVessel.label}">
                         <td class="bucket-control">
                             <stripes:checkbox class="bucket-checkbox" name="selectedEntryIds"
@@ -736,7 +737,7 @@
                         </c:if></td>
                         <td>
                             <c:if test="${actionBean.showHeader('Material Type')}">
-                                ${entry.labVessel.latestMaterialType.displayName}
+                                ${attributes.materialType.displayName}
                             </c:if>
                         </td>
                         <td class="editable">
@@ -762,7 +763,7 @@
                         <td>
                             <c:if test="${actionBean.showHeader('Workflow')}">
                                 <c:set var="workflows"
-                                       value="${mercuryStatic:join(actionBean.bucketWorkflowNames(entry), '<br/>')}"/>
+                                       value="${mercuryStatic:join(attributes.workflowNames, '<br/>')}"/>
                                 <div class="ellipsis" title="${workflows}">${workflows}</div>
                             </c:if>
                         </td>
@@ -777,8 +778,8 @@
                                 </div>
                             </c:if></td>
                         <td>
-                        <c:if test="${actionBean.showHeader('Receipt Date')}"><c:forEach items="${entry.labVessel.mercurySamples}" var="mercurySample" varStatus="stat">
-                                <fmt:formatDate value="${mercurySample.receivedDate}" pattern="MM/dd/yyyy HH:mm"/>
+                        <c:if test="${actionBean.showHeader('Receipt Date')}"><c:forEach items="${attributes.receiptDates}" var="receiptDate" varStatus="stat">
+                                <fmt:formatDate value="${receiptDate}" pattern="MM/dd/yyyy HH:mm"/>
                                 <c:if test="${!stat.last}">&nbsp;</c:if>
                             </c:forEach></c:if>
                         </td>
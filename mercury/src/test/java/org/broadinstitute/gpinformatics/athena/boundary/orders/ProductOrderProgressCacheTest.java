@@ -0,0 +1,137 @@
+package org.broadinstitute.gpinformatics.athena.boundary.orders;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.broadinstitute.gpinformatics.athena.control.dao.orders.ProductOrderDao;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderCompletionStatus;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.anyCollectionOf;
+
+/**
+ * Database free test of the product order progress summary.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class ProductOrderProgressCacheTest {
+
+    private static Pair<String, ProductOrderCompletionStatus> progress(String businessKey, int abandoned,
+            int completed, int total) {
+        return ImmutablePair.of(businessKey, new ProductOrderCompletionStatus(abandoned, completed, total));
+    }
+
+    /**
+     * Answers getProgressById from a map of counts, for the requested IDs only.
+     */
+    private static ProductOrderDao mockDao(final Map<Long, Pair<String, ProductOrderCompletionStatus>> countsById) {
+        ProductOrderDao productOrderDao = Mockito.mock(ProductOrderDao.class);
+        Mockito.when(productOrderDao.getProgressById(anyCollectionOf(Long.class))).thenAnswer(
+                new Answer<Map<Long, Pair<String, ProductOrderCompletionStatus>>>() {
+                    @Override
+                    public Map<Long, Pair<String, ProductOrderCompletionStatus>> answer(
+                            InvocationOnMock invocation) {
+                        @SuppressWarnings("unchecked")
+                        Collection<Long> ids = (Collection<Long>) invocation.getArguments()[0];
+                        Map<Long, Pair<String, ProductOrderCompletionStatus>> result = new HashMap<>();
+                        for (Long id : ids) {
+                            if (countsById.containsKey(id)) {
+                                result.put(id, countsById.get(id));
+                            }
+                        }
+                        return result;
+                    }
+                });
+        return productOrderDao;
+    }
+
+    public void testHitAndInvalidate() {
+        Map<Long, Pair<String, ProductOrderCompletionStatus>> countsById = new HashMap<>();
+        countsById.put(1L, progress("PDO-1", 0, 1, 4));
+        countsById.put(2L, progress("PDO-2", 1, 2, 3));
+        ProductOrderDao productOrderDao = mockDao(countsById);
+        ProductOrderProgressCache cache = new ProductOrderProgressCache(productOrderDao);
+
+        Map<String, ProductOrderCompletionStatus> progress = cache.getProgress(Arrays.asList(1L, 2L));
+        Assert.assertEquals(progress.get("PDO-1").getNumberCompleted(), 1);
+        Assert.assertEquals(progress.get("PDO-2").getNumberAbandoned(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2L);
+
+        // Read from the summary, without a query.
+        progress = cache.getProgress(Arrays.asList(1L, 2L));
+        Assert.assertEquals(progress.get("PDO-1").getTotal(), 4);
+        Assert.assertEquals(cache.getHitCount(), 2L);
+        Mockito.verify(productOrderDao, Mockito.times(1)).getProgressById(anyCollectionOf(Long.class));
+
+        // A changed order is recounted.
+        countsById.put(1L, progress("PDO-1", 0, 2, 4));
+        cache.invalidate(1L);
+        Assert.assertEquals(cache.getInvalidationCount(), 1L);
+        progress = cache.getProgress(Arrays.asList(1L, 2L));
+        Assert.assertEquals(progress.get("PDO-1").getNumberCompleted(), 2);
+        Mockito.verify(productOrderDao).getProgressById(Collections.singletonList(1L));
+        Assert.assertEquals(cache.getSize(), 2L);
+    }
+
+    public void testChangeWhileCounting() {
+        ProductOrderDao productOrderDao = Mockito.mock(ProductOrderDao.class);
+        final ProductOrderProgressCache cache = new ProductOrderProgressCache(productOrderDao);
+        Mockito.when(productOrderDao.getProgressById(anyCollectionOf(Long.class))).thenAnswer(
+                new Answer<Map<Long, Pair<String, ProductOrderCompletionStatus>>>() {
+                    @Override
+                    public Map<Long, Pair<String, ProductOrderCompletionStatus>> answer(
+                            InvocationOnMock invocation) {
+                        // Another request changes the order after it is counted.
+                        cache.invalidate(1L);
+                        return Collections.singletonMap(1L, progress("PDO-1", 0, 0, 1));
+                    }
+                });
+
+        Map<String, ProductOrderCompletionStatus> progress = cache.getProgress(Collections.singleton(1L));
+        Assert.assertEquals(progress.get("PDO-1").getTotal(), 1);
+        // The possibly stale count isn't kept.
+        Assert.assertEquals(cache.getSize(), 0L);
+    }
+
+    public void testMaximumSize() {
+        Map<Long, Pair<String, ProductOrderCompletionStatus>> countsById = new HashMap<>();
+        countsById.put(1L, progress("PDO-1", 0, 1, 4));
+        countsById.put(2L, progress("PDO-2", 1, 2, 3));
+        ProductOrderProgressCache cache = new ProductOrderProgressCache(mockDao(countsById));
+        cache.setMaximumCacheSize(1);
+
+        Assert.assertEquals(cache.getProgress(Arrays.asList(1L, 2L)).size(), 2);
+        Assert.assertEquals(cache.getSize(), 1L);
+    }
+
+    public void testReconcile() {
+        Map<Long, Pair<String, ProductOrderCompletionStatus>> countsById = new HashMap<>();
+        countsById.put(1L, progress("PDO-1", 0, 1, 4));
+        countsById.put(2L, progress("PDO-2", 1, 2, 3));
+        countsById.put(3L, progress("PDO-3", 0, 0, 2));
+        ProductOrderProgressCache cache = new ProductOrderProgressCache(mockDao(countsById));
+        cache.getProgress(Arrays.asList(1L, 2L, 3L));
+
+        // The database has changed without the cache being told, and PDO-3 has been deleted.
+        Map<Long, Pair<String, ProductOrderCompletionStatus>> recounted = new HashMap<>(countsById);
+        recounted.put(1L, progress("PDO-1", 0, 3, 4));
+        recounted.remove(3L);
+        String summary = cache.reconcile(recounted);
+        Assert.assertTrue(summary.startsWith("Reconciled 2 product order progress summaries: 1 differed, 1 removed"),
+                summary);
+
+        Assert.assertEquals(cache.getSize(), 2L);
+        Map<String, ProductOrderCompletionStatus> progress = cache.getProgress(Arrays.asList(1L, 2L));
+        Assert.assertEquals(progress.get("PDO-1").getNumberCompleted(), 3);
+        Assert.assertEquals(cache.getHitCount(), 2L);
+    }
+}
@@ -0,0 +1,207 @@
+package org.broadinstitute.gpinformatics.infrastructure.bsp;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.boundary.zims.BSPLookupException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Database free test of the cache in front of the BSP sample search.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class BSPSampleDataCacheTest {
+
+    private static final BSPSampleSearchColumn[] COLUMNS =
+            {BSPSampleSearchColumn.SAMPLE_ID, BSPSampleSearchColumn.SPECIES};
+
+    /**
+     * Records the samples in each search, and optionally holds the first search until released.
+     */
+    private static class RecordingSearchService extends BSPSampleSearchServiceStub {
+        private final List<List<String>> searches = Collections.synchronizedList(new ArrayList<List<String>>());
+        private final CountDownLatch searching = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        private RecordingSearchService(boolean holdFirstSearch) {
+            release = new CountDownLatch(holdFirstSearch ? 1 : 0);
+        }
+
+        @Override
+        public List<Map<BSPSampleSearchColumn, String>> runSampleSearch(Collection<String> sampleIDs,
+                BSPSampleSearchColumn... resultColumns) {
+            searches.add(new ArrayList<>(sampleIDs));
+            searching.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return super.runSampleSearch(sampleIDs, resultColumns);
+        }
+    }
+
+    public void testHitsAndMisses() {
+        BSPSampleDataCache cache = new BSPSampleDataCache();
+        RecordingSearchService service = new RecordingSearchService(false);
+
+        List<Map<BSPSampleSearchColumn, String>> results = cache.runSampleSearch(service,
+                Arrays.asList(BSPSampleSearchServiceStub.SM_1P3XN, "SM-NOTFOUND", BSPSampleSearchServiceStub.SM_1P3WY),
+                COLUMNS);
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertEquals(results.get(0).get(BSPSampleSearchColumn.SAMPLE_ID), BSPSampleSearchServiceStub.SM_1P3XN);
+        Assert.assertEquals(results.get(1).get(BSPSampleSearchColumn.SAMPLE_ID), BSPSampleSearchServiceStub.SM_1P3WY);
+        // Callers may change their results.
+        results.get(0).put(BSPSampleSearchColumn.SPECIES, "Changed");
+
+        // Only the sample that BSP didn't return is searched for again.
+        results = cache.runSampleSearch(service,
+                Arrays.asList(BSPSampleSearchServiceStub.SM_1P3WY, BSPSampleSearchServiceStub.SM_1P3XN, "SM-NOTFOUND"),
+                COLUMNS);
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertEquals(results.get(1).get(BSPSampleSearchColumn.SPECIES),
+                BSPSampleSearchServiceStub.SM_1P3XN_SPECIES);
+        Assert.assertEquals(service.searches.size(), 2);
+        Assert.assertEquals(service.searches.get(1), Collections.singletonList("SM-NOTFOUND"));
+        Assert.assertEquals(cache.getHitCount(), 2L);
+        Assert.assertEquals(cache.getMissCount(), 4L);
+
+        // A different set of columns is a different entry.
+        cache.runSampleSearch(service, Collections.singletonList(BSPSampleSearchServiceStub.SM_1P3XN),
+                BSPSampleSearchColumn.SAMPLE_ID);
+        Assert.assertEquals(service.searches.size(), 3);
+
+        // Without the sample id, results can't be cached.
+        cache.runSampleSearch(service, Collections.singletonList(BSPSampleSearchServiceStub.SM_1P3XN),
+                BSPSampleSearchColumn.SPECIES);
+        cache.runSampleSearch(service, Collections.singletonList(BSPSampleSearchServiceStub.SM_1P3XN),
+                BSPSampleSearchColumn.SPECIES);
+        Assert.assertEquals(service.searches.size(), 5);
+        Assert.assertEquals(cache.getSearchCount(), 3L);
+
+        cache.invalidateCache();
+        Assert.assertEquals(cache.getSize(), 0L);
+    }
+
+    public void testConcurrentSearchesCoalesce() throws Exception {
+        final BSPSampleDataCache cache = new BSPSampleDataCache();
+        final RecordingSearchService service = new RecordingSearchService(true);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Callable<List<Map<BSPSampleSearchColumn, String>>> search =
+                    new Callable<List<Map<BSPSampleSearchColumn, String>>>() {
+                        @Override
+                        public List<Map<BSPSampleSearchColumn, String>> call() {
+                            return cache.runSampleSearch(service, Arrays.asList(
+                                    BSPSampleSearchServiceStub.SM_1P3XN, BSPSampleSearchServiceStub.SM_1P3WY),
+                                    COLUMNS);
+                        }
+                    };
+            Future<List<Map<BSPSampleSearchColumn, String>>> first = executorService.submit(search);
+            Assert.assertTrue(service.searching.await(10, TimeUnit.SECONDS));
+            Future<List<Map<BSPSampleSearchColumn, String>>> second = executorService.submit(search);
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (cache.getCoalescedCount() < 2L && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            service.release.countDown();
+
+            Assert.assertEquals(first.get(10, TimeUnit.SECONDS).size(), 2);
+            Assert.assertEquals(second.get(10, TimeUnit.SECONDS).size(), 2);
+            Assert.assertEquals(cache.getCoalescedCount(), 2L);
+            Assert.assertEquals(service.searches.size(), 1);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * A search that fails with an Error, rather than an exception, doesn't leave threads waiting for it.
+     */
+    public void testSearchErrorCompletesWaiters() throws Exception {
+        final BSPSampleDataCache cache = new BSPSampleDataCache();
+        final RecordingSearchService service = new RecordingSearchService(true) {
+            @Override
+            public List<Map<BSPSampleSearchColumn, String>> runSampleSearch(Collection<String> sampleIDs,
+                    BSPSampleSearchColumn... resultColumns) {
+                super.runSampleSearch(sampleIDs, resultColumns);
+                throw new AssertionError("BSP search failed");
+            }
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Callable<List<Map<BSPSampleSearchColumn, String>>> search =
+                    new Callable<List<Map<BSPSampleSearchColumn, String>>>() {
+                        @Override
+                        public List<Map<BSPSampleSearchColumn, String>> call() {
+                            return cache.runSampleSearch(service,
+                                    Collections.singletonList(BSPSampleSearchServiceStub.SM_1P3XN), COLUMNS);
+                        }
+                    };
+            Future<List<Map<BSPSampleSearchColumn, String>>> first = executorService.submit(search);
+            Assert.assertTrue(service.searching.await(10, TimeUnit.SECONDS));
+            Future<List<Map<BSPSampleSearchColumn, String>>> second = executorService.submit(search);
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (cache.getCoalescedCount() < 1L && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            service.release.countDown();
+
+            try {
+                first.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected the search to fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof AssertionError, String.valueOf(e.getCause()));
+            }
+            try {
+                second.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected the waiting search to fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof BSPLookupException, String.valueOf(e.getCause()));
+                Assert.assertTrue(e.getCause().getCause() instanceof AssertionError);
+            }
+            Assert.assertEquals(cache.getCoalescedCount(), 1L);
+            Assert.assertEquals(service.searches.size(), 1);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // The failed search is no longer in progress, so the next one searches again.
+        List<Map<BSPSampleSearchColumn, String>> results = cache.runSampleSearch(new RecordingSearchService(false),
+                Collections.singletonList(BSPSampleSearchServiceStub.SM_1P3XN), COLUMNS);
+        Assert.assertEquals(results.size(), 1);
+    }
+
+    public void testBareIds() {
+        BSPSampleDataCache cache = new BSPSampleDataCache();
+        BSPSampleSearchService service = new BSPSampleSearchServiceStub() {
+            @Override
+            public List<Map<BSPSampleSearchColumn, String>> runSampleSearch(Collection<String> sampleIDs,
+                    BSPSampleSearchColumn... resultColumns) {
+                List<String> prefixedIds = new ArrayList<>();
+                for (String sampleID : sampleIDs) {
+                    prefixedIds.add(BSPUtil.isInBspFormat(sampleID) ? sampleID : "SM-" + sampleID);
+                }
+                return super.runSampleSearch(prefixedIds, resultColumns);
+            }
+        };
+        List<Map<BSPSampleSearchColumn, String>> results =
+                cache.runSampleSearch(service, Collections.singletonList("1P3XN"), COLUMNS);
+        Assert.assertEquals(results.size(), 1);
+        Assert.assertEquals(results.get(0).get(BSPSampleSearchColumn.SAMPLE_ID), BSPSampleSearchServiceStub.SM_1P3XN);
+        Assert.assertEquals(cache.getSize(), 1L);
+    }
+}
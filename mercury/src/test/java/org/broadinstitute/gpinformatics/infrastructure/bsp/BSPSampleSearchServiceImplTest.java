@@ -0,0 +1,191 @@
+package org.broadinstitute.gpinformatics.infrastructure.bsp;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.boundary.zims.BSPLookupException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import javax.enterprise.concurrent.ManageableThread;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database free test of splitting BSP sample searches into chunks, with the HTTP post replaced.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class BSPSampleSearchServiceImplTest {
+
+    private ExecutorService executorService;
+
+    /**
+     * Answers each post with the sample ids and their lengths, optionally failing the first post for some samples.
+     */
+    private static class FakePostSearchService extends BSPSampleSearchServiceImpl {
+        private final Set<String> failFirstPostFor = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger postCount = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile boolean alwaysThrow;
+        /** If set, the response code of every post. */
+        private volatile int errorStatus;
+
+        private FakePostSearchService(BSPConfig bspConfig, ExecutorService executorService) {
+            super(bspConfig, executorService);
+        }
+
+        @Override
+        public int postForStatus(@Nonnull String urlString, @Nonnull MultivaluedMap<String, String> params,
+                @Nonnull ExtraTab extraTab, @Nonnull PostCallback callback) {
+            postCount.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(20L);
+                if (alwaysThrow) {
+                    throw new ProcessingException("Connection refused");
+                }
+                if (errorStatus != 0) {
+                    return errorStatus;
+                }
+                for (String sampleId : params.getFirst("sample_ids").split(",")) {
+                    callback.callback(new String[]{sampleId, String.valueOf(sampleId.length())});
+                    if (failFirstPostFor.remove(sampleId)) {
+                        // The rows already fed to the callback must not be kept.
+                        return RESPONSE_NOT_READ;
+                    }
+                }
+                return Response.Status.OK.getStatusCode();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static BSPConfig bspConfig(int chunkSize, int concurrency) {
+        BSPConfig bspConfig = new BSPConfig();
+        bspConfig.setSampleSearchChunkSize(chunkSize);
+        bspConfig.setSampleSearchConcurrency(concurrency);
+        return bspConfig;
+    }
+
+    private static List<String> sampleIds(int count) {
+        List<String> sampleIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sampleIds.add("SM-" + i);
+        }
+        return sampleIds;
+    }
+
+    @BeforeMethod(groups = TestGroups.DATABASE_FREE)
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterMethod(groups = TestGroups.DATABASE_FREE)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    public void testChunksInOrder() {
+        FakePostSearchService service = new FakePostSearchService(bspConfig(3, 2), executorService);
+        List<String> sampleIds = sampleIds(20);
+        service.failFirstPostFor.add("SM-7");
+
+        List<Map<BSPSampleSearchColumn, String>> results = service.runSampleSearch(sampleIds,
+                BSPSampleSearchColumn.SAMPLE_ID, BSPSampleSearchColumn.COLLABORATOR_SAMPLE_ID);
+        Assert.assertEquals(results.size(), sampleIds.size());
+        for (int i = 0; i < sampleIds.size(); i++) {
+            Assert.assertEquals(results.get(i).get(BSPSampleSearchColumn.SAMPLE_ID), sampleIds.get(i));
+            Assert.assertEquals(results.get(i).get(BSPSampleSearchColumn.COLLABORATOR_SAMPLE_ID),
+                    String.valueOf(sampleIds.get(i).length()));
+        }
+        // 7 chunks, and a retry of the chunk with SM-7.
+        Assert.assertEquals(service.postCount.get(), 8);
+        Assert.assertTrue(service.maxInFlight.get() <= 2, "in flight " + service.maxInFlight.get());
+    }
+
+    public void testWithoutExecutor() {
+        FakePostSearchService service = new FakePostSearchService(bspConfig(4, 4), null);
+        List<Map<BSPSampleSearchColumn, String>> results = service.runSampleSearch(sampleIds(10),
+                BSPSampleSearchColumn.SAMPLE_ID);
+        Assert.assertEquals(results.size(), 10);
+        Assert.assertEquals(service.postCount.get(), 3);
+        Assert.assertEquals(service.maxInFlight.get(), 1);
+        Assert.assertEquals(service.runSampleSearch(Collections.<String>emptyList(), BSPSampleSearchColumn.SAMPLE_ID),
+                Collections.emptyList());
+    }
+
+    public void testFailure() {
+        FakePostSearchService service = new FakePostSearchService(bspConfig(2, 2), executorService);
+        service.alwaysThrow = true;
+        try {
+            service.runSampleSearch(Arrays.asList("SM-1", "SM-2", "SM-3"), BSPSampleSearchColumn.SAMPLE_ID);
+            Assert.fail("Expected BSPLookupException");
+        } catch (BSPLookupException e) {
+            Assert.assertTrue(e.getCause() instanceof ProcessingException);
+        }
+    }
+
+    public void testErrorResponses() {
+        FakePostSearchService service = new FakePostSearchService(bspConfig(2, 2), executorService);
+        service.errorStatus = Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+        try {
+            service.runSampleSearch(Arrays.asList("SM-1", "SM-2"), BSPSampleSearchColumn.SAMPLE_ID);
+            Assert.fail("Expected BSPLookupException rather than missing samples");
+        } catch (BSPLookupException e) {
+            Assert.assertEquals(service.postCount.get(), BSPSampleSearchServiceImpl.MAX_ATTEMPTS);
+        }
+    }
+
+    public void testRejectedSearchNotRetried() {
+        FakePostSearchService service = new FakePostSearchService(bspConfig(2, 2), executorService);
+        service.errorStatus = Response.Status.BAD_REQUEST.getStatusCode();
+        try {
+            service.runSampleSearch(Arrays.asList("SM-1", "SM-2"), BSPSampleSearchColumn.SAMPLE_ID);
+            Assert.fail("Expected BSPLookupException");
+        } catch (BSPLookupException e) {
+            Assert.assertEquals(service.postCount.get(), 1);
+        }
+    }
+
+    /**
+     * A search from a managed thread, such as a parallel ETL partition, mustn't wait for tasks on the same pool.
+     */
+    public void testManagedThreadSearchesInCaller() throws Exception {
+        final FakePostSearchService service = new FakePostSearchService(bspConfig(2, 4), executorService);
+        final List<Map<BSPSampleSearchColumn, String>> results = new ArrayList<>();
+        class FakeManagedThread extends Thread implements ManageableThread {
+            @Override
+            public void run() {
+                results.addAll(service.runSampleSearch(sampleIds(10), BSPSampleSearchColumn.SAMPLE_ID));
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return false;
+            }
+        }
+        Thread thread = new FakeManagedThread();
+        thread.start();
+        thread.join(10000L);
+        Assert.assertEquals(results.size(), 10);
+        Assert.assertEquals(service.postCount.get(), 5);
+        Assert.assertEquals(service.maxInFlight.get(), 1);
+    }
+}
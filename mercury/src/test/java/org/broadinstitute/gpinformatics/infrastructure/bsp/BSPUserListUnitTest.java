@@ -1,10 +1,18 @@
 package org.broadinstitute.gpinformatics.infrastructure.bsp;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.broadinstitute.bsp.client.users.BspUser;
+import org.broadinstitute.bsp.client.users.UserManager;
+import org.broadinstitute.gpinformatics.infrastructure.bsp.plating.BSPManagerFactory;
 import org.broadinstitute.gpinformatics.infrastructure.bsp.plating.BSPManagerFactoryProducer;
+import org.mockito.Mockito;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.broadinstitute.gpinformatics.infrastructure.test.TestGroups.DATABASE_FREE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -14,6 +22,11 @@ import static org.hamcrest.Matchers.*;
  */
 @Test(groups = DATABASE_FREE)
 public class BSPUserListUnitTest {
+    private static final Log log = LogFactory.getLog(BSPUserListUnitTest.class);
+
+    private static final String[] FIRST_NAMES = {"John", "Jane", "Mary", "Ravi", "Wei", "Olga", "Ahmed", "Lucia"};
+
+    private static final String[] LAST_NAMES = {"Smith", "Jones", "Nguyen", "Garcia", "Kowalski", "Okafor", "Kim"};
 
     private BSPUserList bspUserList;
 
@@ -33,4 +46,92 @@ public class BSPUserListUnitTest {
         BspUser user = bspUserList.getByBadgeId("unknown");
         assertThat(user, nullValue());
     }
+
+    public void testFindByUsernameIgnoresCase() {
+        assertThat(bspUserList.getByUsername("qadudetest"), sameInstance(bspUserList.getByUsername("QADudeTest")));
+        assertThat(bspUserList.getByUsername(null), nullValue());
+    }
+
+    /**
+     * Checks that the indexed lookups on a 20k user list give the same results as scanning every user, and logs the
+     * cost of each kind of lookup.
+     */
+    public void testLargeUserList() {
+        List<BspUser> users = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            BspUser user = new BspUser();
+            user.setUserId((long) i);
+            user.setFirstName(FIRST_NAMES[i % FIRST_NAMES.length]);
+            user.setLastName(LAST_NAMES[i % LAST_NAMES.length] + (i % 100));
+            user.setUsername((i % 50 == 0 ? "inactive_user_" : "user") + i);
+            user.setEmail("user" + (i % 10007) + "@broadinstitute.org");
+            user.setBadgeNumber("BADGE" + i);
+            users.add(user);
+        }
+        UserManager userManager = Mockito.mock(UserManager.class);
+        Mockito.when(userManager.getUsers()).thenReturn(users);
+        BSPManagerFactory bspManagerFactory = Mockito.mock(BSPManagerFactory.class);
+        Mockito.when(bspManagerFactory.createUserManager()).thenReturn(userManager);
+        BSPUserList largeUserList = new BSPUserList(bspManagerFactory);
+        largeUserList.refreshCache();
+        List<BspUser> sortedUsers = new ArrayList<>(largeUserList.getUsers().values());
+
+        String[] queries = {"smith", "jo", "JANE KIM4", "user1234", "ui", "kowalski7 mary", "nobody", "a  b"};
+        for (String query : queries) {
+            assertThat(query, largeUserList.find(query), equalTo(scanFind(sortedUsers, query)));
+        }
+        assertThat(largeUserList.getByUsername("USER12345").getUserId(), equalTo(12345L));
+        assertThat(largeUserList.getByBadgeId("badge777").getUserId(), equalTo(777L));
+        // user0 and user10007 share an email, and user0 is inactive.
+        assertThat(largeUserList.getByEmail("user0@broadinstitute.org").getUserId(), equalTo(10007L));
+
+        int lookupCount = 100000;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookupCount; i++) {
+            largeUserList.getByUsername("user" + (i % 20000));
+        }
+        log.info("getByUsername " + (System.nanoTime() - start) / lookupCount + " ns per lookup");
+
+        start = System.nanoTime();
+        for (int i = 0; i < lookupCount; i++) {
+            largeUserList.getByBadgeId("BADGE" + (i % 20000));
+        }
+        log.info("getByBadgeId " + (System.nanoTime() - start) / lookupCount + " ns per lookup");
+
+        int findCount = 1000;
+        start = System.nanoTime();
+        for (int i = 0; i < findCount; i++) {
+            largeUserList.find("user" + (i % 20000));
+        }
+        log.info("find " + (System.nanoTime() - start) / findCount + " ns per query");
+
+        start = System.nanoTime();
+        for (int i = 0; i < findCount; i++) {
+            scanFind(sortedUsers, "user" + (i % 20000));
+        }
+        log.info("find by scanning " + (System.nanoTime() - start) / findCount + " ns per query");
+    }
+
+    /**
+     * The matching rule of {@link BSPUserList#find(String)}, applied to every user.
+     */
+    private static List<BspUser> scanFind(List<BspUser> users, String query) {
+        String[] lowerQueryItems = query.toLowerCase().split("\\s");
+        List<BspUser> results = new ArrayList<>();
+        for (BspUser user : users) {
+            boolean eachItemMatchesSomething = true;
+            for (String lowerQuery : lowerQueryItems) {
+                if (!(user.getFirstName().toLowerCase().contains(lowerQuery) ||
+                      user.getLastName().toLowerCase().contains(lowerQuery) ||
+                      user.getUsername().toLowerCase().contains(lowerQuery) ||
+                      user.getEmail().toLowerCase().contains(lowerQuery))) {
+                    eachItemMatchesSomething = false;
+                }
+            }
+            if (eachItemMatchesSomething) {
+                results.add(user);
+            }
+        }
+        return results;
+    }
 }
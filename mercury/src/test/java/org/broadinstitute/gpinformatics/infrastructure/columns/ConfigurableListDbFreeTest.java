@@ -1,6 +1,10 @@
 package org.broadinstitute.gpinformatics.infrastructure.columns;
 
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.broadinstitute.gpinformatics.infrastructure.search.ConfigurableSearchDefinition;
+import org.broadinstitute.gpinformatics.infrastructure.search.SearchContext;
 import org.broadinstitute.gpinformatics.infrastructure.search.SearchDefinitionFactory;
 import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
 import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
@@ -13,6 +17,9 @@ import org.broadinstitute.gpinformatics.mercury.entity.vessel.StaticPlate;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -136,6 +143,78 @@ public class ConfigurableListDbFreeTest {
 
     }
 
+    /**
+     * Streams 100k rows, a page at a time, and checks that no page's rows are kept in memory after it is flushed.
+     */
+    @Test(groups= TestGroups.DATABASE_FREE)
+    public void testStreamingCsvExport() throws Exception {
+        int pageSize = 1000;
+        int pageCount = 100;
+        ConfigurableList configurableList = createVesselList();
+        CountingOutputStream out = new CountingOutputStream();
+        try (StreamingResultWriter writer = new StreamingResultWriter(StreamingResultWriter.Format.CSV)) {
+            for (int page = 0; page < pageCount; page++) {
+                List<LabVessel> entityList = new ArrayList<>();
+                for (int i = 0; i < pageSize; i++) {
+                    entityList.add(new BarcodedTube("tube" + (page * pageSize + i)));
+                }
+                configurableList.addRows(entityList, new SearchContext());
+                configurableList.flushRows(writer);
+                Assert.assertTrue(configurableList.getResultList(false).getResultRows().isEmpty());
+                Assert.assertEquals(writer.getRowCount(), (page + 1) * pageSize);
+            }
+
+            writer.finish(configurableList, out);
+            Assert.assertEquals(writer.getRowCount(), pageSize * pageCount);
+        }
+        // Header, then a line per row.
+        Assert.assertEquals(out.lineCount, pageSize * pageCount + 1);
+    }
+
+    @Test(groups= TestGroups.DATABASE_FREE)
+    public void testStreamingXlsxExport() throws Exception {
+        ConfigurableList configurableList = createVesselList();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StreamingResultWriter writer = new StreamingResultWriter(StreamingResultWriter.Format.XLSX)) {
+            for (int page = 0; page < 3; page++) {
+                configurableList.addRows(Collections.singletonList(new BarcodedTube("tube" + page)),
+                        new SearchContext());
+                configurableList.flushRows(writer);
+            }
+            writer.finish(configurableList, out);
+        }
+
+        Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(out.toByteArray()));
+        Sheet sheet = workbook.getSheetAt(0);
+        Assert.assertEquals(sheet.getRow(0).getCell(0).getStringCellValue(), "Barcode");
+        Assert.assertEquals(sheet.getRow(0).getCell(1).getStringCellValue(), "Vessel Type");
+        Assert.assertEquals(sheet.getRow(3).getCell(0).getStringCellValue(), "tube2");
+        Assert.assertEquals(sheet.getLastRowNum(), 3);
+    }
+
+    private static ConfigurableList createVesselList() {
+        ConfigurableSearchDefinition configurableSearchDefinition =
+                SearchDefinitionFactory.getForEntity(ColumnEntity.LAB_VESSEL.getEntityName());
+        List<ColumnTabulation> columnTabulations = new ArrayList<>();
+        columnTabulations.add(configurableSearchDefinition.getSearchTerm("Barcode"));
+        columnTabulations.add(configurableSearchDefinition.getSearchTerm("Vessel Type"));
+        return new ConfigurableList(columnTabulations, Collections.EMPTY_MAP, 0, "ASC", ColumnEntity.LAB_VESSEL);
+    }
+
+    /**
+     * Discards output, counting lines.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private int lineCount;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lineCount++;
+            }
+        }
+    }
+
     private void injectFakeID ( Class clazz, Object target, String field, Long idVal ) {
         try {
             Field idf = clazz.getDeclaredField(field);
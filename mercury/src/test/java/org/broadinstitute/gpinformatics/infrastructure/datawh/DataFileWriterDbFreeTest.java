@@ -0,0 +1,164 @@
+package org.broadinstitute.gpinformatics.infrastructure.datawh;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.BarcodedTube;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselPosition;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+import static org.broadinstitute.gpinformatics.infrastructure.datawh.GenericEntityEtl.format;
+import static org.broadinstitute.gpinformatics.infrastructure.datawh.GenericEntityEtl.genericRecord;
+
+/**
+ * dbfree unit test of the sqlLoader record writer, with a benchmark of writing lab event fact records.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class DataFileWriterDbFreeTest {
+    private static final int BENCHMARK_RECORDS = 200000;
+
+    private final String etlDateStr = ExtractTransform.formatTimestamp(new Date());
+    private final Date eventDate = new Date(1355000000000L);
+    private File file;
+
+    @BeforeMethod(groups = TestGroups.DATABASE_FREE)
+    public void beforeMethod() throws Exception {
+        file = File.createTempFile("DataFileWriterDbFreeTest", ".dat");
+        Assert.assertTrue(file.delete());
+    }
+
+    @AfterMethod(groups = TestGroups.DATABASE_FREE)
+    public void afterMethod() {
+        file.delete();
+    }
+
+    private List<String> readLines() throws IOException {
+        return Files.readAllLines(file.toPath(), Charset.defaultCharset());
+    }
+
+    public void testFieldsMatchGenericRecord() throws Exception {
+        String quoted = "a \"quoted\", multi\nline value";
+        try (DataFileWriter writer = new DataFileWriter(file.getPath())) {
+            writer.startRecord(etlDateStr, false).field(123L).field((Long) null).field(quoted).field((String) null)
+                    .field(eventDate).field((Date) null).field(true).field(-45L).field(1.5).endRecord();
+            writer.startRecord(etlDateStr, true).field(123L).endRecord();
+            writer.writeRecord(genericRecord(etlDateStr, false, format("whole"), "E"));
+        }
+
+        List<String> lines = readLines();
+        Assert.assertEquals(lines.size(), 3);
+        Assert.assertEquals(lines.get(0), "1," + genericRecord(etlDateStr, false, format(123L), format((Long) null),
+                format(quoted), format((String) null), format(eventDate), format((Date) null), format(true),
+                format(-45L), format(1.5)));
+        Assert.assertEquals(lines.get(1), "2," + genericRecord(etlDateStr, true, 123L));
+        Assert.assertEquals(lines.get(2), "3," + etlDateStr + ",F,whole,E");
+    }
+
+    public void testAppendContinuesLineNumbers() throws Exception {
+        GenericEntityEtl.DataFile dataFile = new GenericEntityEtl.DataFile(file.getPath());
+        dataFile.write("a");
+        dataFile.write(null);
+        dataFile.write("b");
+        dataFile.close();
+        Assert.assertEquals(dataFile.getRecordCount(), 2);
+
+        // Counted from the file written above.
+        dataFile = new GenericEntityEtl.DataFile(file.getPath());
+        Assert.assertEquals(dataFile.getRecordCount(), 2);
+        dataFile.write("c");
+        dataFile.close();
+        Assert.assertEquals(dataFile.getRecordCount(), 3);
+
+        // Counted from the bytes of a file changed by another writer.
+        try (BufferedWriter otherWriter = new BufferedWriter(new FileWriter(file, true))) {
+            otherWriter.write("4,d");
+            otherWriter.newLine();
+        }
+        try (DataFileWriter writer = new DataFileWriter(file.getPath())) {
+            Assert.assertEquals(writer.getLineCount(), 4L);
+            writer.writeRecord("e");
+        }
+        List<String> lines = readLines();
+        Assert.assertEquals(lines.size(), 5);
+        Assert.assertEquals(lines.get(2), "3,c");
+        Assert.assertEquals(lines.get(4), "5,e");
+    }
+
+    public void testLongRecords() throws Exception {
+        StringBuilder longValue = new StringBuilder();
+        while (longValue.length() < DataFileWriter.BUFFER_SIZE * 2) {
+            longValue.append("0123456789");
+        }
+        try (DataFileWriter writer = new DataFileWriter(file.getPath())) {
+            writer.writeRecord(longValue.toString());
+            writer.startRecord(etlDateStr, false).field(longValue.toString()).endRecord();
+        }
+        List<String> lines = readLines();
+        Assert.assertEquals(lines.get(0), "1," + longValue);
+        Assert.assertEquals(lines.get(1), "2," + etlDateStr + ",F," + longValue);
+    }
+
+    private LabEventEtl.EventFactDto makeEventFact(String sampleId) {
+        LabEvent labEvent = new LabEvent(LabEventType.PICO_PLATING_BUCKET, eventDate, "FlowcellLoader, deck 2", 1L,
+                101L, "prog, v1");
+        LabEventEtl.EventFactDto fact = new LabEventEtl.EventFactDto(labEvent, new BarcodedTube("0123456789"),
+                VesselPosition.A01, "Illumina_P5-M_P7-M", "LCSET-1234", eventDate, "Whole Genome", sampleId,
+                sampleId, null, null, "operator", true);
+        fact.setIsEtlLibrary();
+        return fact;
+    }
+
+    /**
+     * The field writer must write the same lab event fact records as the String records.
+     */
+    public void testEventFactMatchesRecord() throws Exception {
+        LabEventEtl.EventFactDto fact = makeEventFact("SM-1234");
+        try (DataFileWriter writer = new DataFileWriter(file.getPath())) {
+            LabEventEtl.writeEventFact(writer, etlDateStr, false, fact);
+        }
+        List<String> lines = readLines();
+        Assert.assertEquals(lines.size(), 1);
+        Assert.assertEquals(lines.get(0), "1," + LabEventEtl.eventFactRecord(etlDateStr, false, fact));
+    }
+
+    /**
+     * Compares writing lab event facts as Strings, as they were written before, with writing them field by field,
+     * as LabEventEtl does.
+     */
+    public void testBenchmark() throws Exception {
+        LabEventEtl.EventFactDto fact = makeEventFact("SM-1234");
+
+        long start = System.nanoTime();
+        GenericEntityEtl.DataFile dataFile = new GenericEntityEtl.DataFile(file.getPath());
+        for (long i = 0; i < BENCHMARK_RECORDS; i++) {
+            dataFile.write(LabEventEtl.eventFactRecord(etlDateStr, false, fact));
+        }
+        dataFile.close();
+        long stringNanos = System.nanoTime() - start;
+        Assert.assertTrue(file.delete());
+
+        start = System.nanoTime();
+        try (DataFileWriter writer = new DataFileWriter(file.getPath())) {
+            for (long i = 0; i < BENCHMARK_RECORDS; i++) {
+                LabEventEtl.writeEventFact(writer, etlDateStr, false, fact);
+            }
+            Assert.assertEquals(writer.getLineCount(), (long) BENCHMARK_RECORDS);
+        }
+        long fieldNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("%d lab event records: String records %.0f/sec, field writer %.0f/sec",
+                BENCHMARK_RECORDS, BENCHMARK_RECORDS * 1.0e9 / stringNanos, BENCHMARK_RECORDS * 1.0e9 / fieldNanos));
+    }
+}
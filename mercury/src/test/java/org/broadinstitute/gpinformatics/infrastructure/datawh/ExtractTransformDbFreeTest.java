@@ -4,10 +4,13 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrderSample;
 import org.broadinstitute.gpinformatics.athena.entity.products.Product;
+import org.broadinstitute.gpinformatics.infrastructure.common.RequestContextUtility;
 import org.broadinstitute.gpinformatics.infrastructure.common.SessionContextUtility;
 import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
 import org.broadinstitute.gpinformatics.mercury.control.dao.envers.AuditReaderDao;
+import org.broadinstitute.gpinformatics.mercury.control.dao.envers.AuditedRevDto;
 import org.broadinstitute.gpinformatics.mercury.entity.workflow.LabBatch;
+import org.easymock.Capture;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeClass;
@@ -17,19 +20,27 @@ import org.testng.annotations.Test;
 import javax.ws.rs.core.Response;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.easymock.EasyMock.anyLong;
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isNull;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
@@ -49,6 +60,18 @@ public class ExtractTransformDbFreeTest {
     private String badDataDir = datafileDir + nowMsec;
 
     private ExtractTransform extractTransform;
+    private final SessionContextUtility sessionContextUtility = new SessionContextUtility(null, null) {
+        @Override
+        public void executeInContext(Function function) {
+            function.apply();
+        }
+    };
+    private final RequestContextUtility requestContextUtility = new RequestContextUtility(null) {
+        @Override
+        public void executeInContext(SessionContextUtility.Function function) {
+            function.apply();
+        }
+    };
     private final AuditReaderDao auditReaderDao = createMock(AuditReaderDao.class);
     private final LabEventEtl labEventEtl = createMock(LabEventEtl.class);
     private final LabVesselEtl labVesselEtl = createMock(LabVesselEtl.class);
@@ -107,14 +130,7 @@ public class ExtractTransformDbFreeTest {
             }
         }
 
-        extractTransform = new ExtractTransform(auditReaderDao,
-                new SessionContextUtility(null, null) {
-                    @Override
-                    public void executeInContext(Function function) {
-                        function.apply();
-                    }
-                },
-                etlInstances);
+        extractTransform = new ExtractTransform(auditReaderDao, sessionContextUtility, etlInstances);
     }
 
     @BeforeMethod
@@ -236,7 +252,8 @@ public class ExtractTransformDbFreeTest {
     public void testOnDemandIncr1() {
         long startEtl = 1364411920L;
 
-        expect(auditReaderDao.fetchAuditIds(eq(startEtl - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong())).andReturn(new TreeMap<Long, Date>());
+        expect(auditReaderDao.fetchAuditIds(eq(startEtl - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong(),
+                eq(AuditReaderDao.IS_ANY_USER), (String) isNull())).andReturn(Collections.<AuditedRevDto>emptyList());
         auditReaderDao.clear();
         expectLastCall();
         replay(mocks);
@@ -255,7 +272,8 @@ public class ExtractTransformDbFreeTest {
         long endEtl = 1364411930L;
         String endEtlStr = ExtractTransform.formatTimestamp(new Date(endEtl * 1000L));
 
-        expect(auditReaderDao.fetchAuditIds(startEtl - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND, endEtl)).andReturn(new TreeMap<Long, Date>());
+        expect(auditReaderDao.fetchAuditIds(eq(startEtl - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), eq(endEtl),
+                eq(AuditReaderDao.IS_ANY_USER), (String) isNull())).andReturn(Collections.<AuditedRevDto>emptyList());
         auditReaderDao.clear();
         expectLastCall();
         replay(mocks);
@@ -341,7 +359,8 @@ public class ExtractTransformDbFreeTest {
     public void testOnDemandIncrementalNoChanges() {
         final long startEtlSec = 1360000000L;
         SortedMap<Long, Date> revs = new TreeMap<>();
-        expect(auditReaderDao.fetchAuditIds(eq(startEtlSec - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong())).andReturn(revs);
+        expect(auditReaderDao.fetchAuditIds(eq(startEtlSec - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong(),
+                eq(AuditReaderDao.IS_ANY_USER), (String) isNull())).andReturn(auditedRevs(revs));
         auditReaderDao.clear();
         expectLastCall();
 
@@ -356,28 +375,28 @@ public class ExtractTransformDbFreeTest {
         final long startEtlSec = 1360000000L;
         SortedMap<Long, Date> revs = new TreeMap<>();
         revs.put(1L, new Date(startEtlSec));
-        expect(auditReaderDao.fetchAuditIds(eq(startEtlSec - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong())).andReturn(revs);
-        Set<Long> revIds = revs.keySet();
-        expect(productEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(1);
-        expect(priceItemEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(researchProjectEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(projectPersonEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(researchProjectIrbEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(researchProjectFundingEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(researchProjectCohortEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(productOrderSampleEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(productOrderEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(productOrderAddOnEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(labVesselEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(workflowConfigEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(labEventEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(riskItemEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(ledgerEntryCrossEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(ledgerEntryEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(sequencingRunEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(sequencingSampleFactEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(billingSessionEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
-        expect(labMetricEtl.doIncrementalEtl(eq(revIds), (String) anyObject())).andReturn(0);
+        expect(auditReaderDao.fetchAuditIds(eq(startEtlSec - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong(),
+                eq(AuditReaderDao.IS_ANY_USER), (String) isNull())).andReturn(auditedRevs(revs));
+        expect(productEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(1);
+        expect(priceItemEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(researchProjectEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(projectPersonEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(researchProjectIrbEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(researchProjectFundingEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(researchProjectCohortEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(productOrderSampleEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(productOrderEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(productOrderAddOnEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(labVesselEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(workflowConfigEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(labEventEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(riskItemEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(ledgerEntryCrossEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(ledgerEntryEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(sequencingRunEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(sequencingSampleFactEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(billingSessionEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
+        expect(labMetricEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(0);
         auditReaderDao.clear();
         expectLastCall();
 
@@ -462,4 +481,118 @@ public class ExtractTransformDbFreeTest {
         assertEquals(revAndDate.right.longValue(), startTimeSec + ExtractTransform.ETL_BATCH_SIZE);
         assertNotEquals(revAndDate.left, revs);
     }
+
+    public void testPartitionByDataFile() {
+        FixUpEtl fixUpEtl = createMock(FixUpEtl.class);
+        expect(fixUpEtl.getDataFileBaseNames()).andReturn(Arrays.asList("event_fact", "library_ancestry",
+                "sequencing_sample_fact", "array_process"));
+        expect(labEventEtl.getDataFileBaseNames()).andReturn(Arrays.asList("event_fact", "library_ancestry"));
+        expect(sequencingSampleFactEtl.getDataFileBaseNames()).andReturn(
+                Collections.singletonList("sequencing_sample_fact"));
+        expect(productEtl.getDataFileBaseNames()).andReturn(Collections.singletonList("product"));
+        expect(ledgerEntryEtl.getDataFileBaseNames()).andReturn(Collections.singletonList("ledger_entry"));
+        replay(mocks);
+        replay(fixUpEtl);
+
+        List<List<GenericEntityEtl<?, ?>>> partitions = ExtractTransform.partitionByDataFile(
+                Arrays.<GenericEntityEtl>asList(labEventEtl, productEtl, sequencingSampleFactEtl, fixUpEtl,
+                        ledgerEntryEtl));
+        assertEquals(partitions.size(), 3);
+        for (List<GenericEntityEtl<?, ?>> partition : partitions) {
+            if (partition.contains(fixUpEtl)) {
+                assertEquals(partition.size(), 3);
+                Assert.assertTrue(partition.contains(labEventEtl));
+                Assert.assertTrue(partition.contains(sequencingSampleFactEtl));
+            } else {
+                assertEquals(partition.size(), 1);
+            }
+        }
+        verify(mocks);
+        verify(fixUpEtl);
+    }
+
+    public void testParallelIncremental() throws Exception {
+        final long startEtlSec = 1360000000L;
+        SortedMap<Long, Date> revs = new TreeMap<>();
+        revs.put(1L, new Date(startEtlSec));
+        expect(auditReaderDao.fetchAuditIds(eq(startEtlSec - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong(),
+                eq(AuditReaderDao.IS_ANY_USER), (String) isNull()))
+                .andReturn(auditedRevs(revs, Product.class.getName()));
+        expect(labEventEtl.getDataFileBaseNames()).andReturn(Arrays.asList("event_fact", "library_ancestry"));
+        expect(productEtl.getDataFileBaseNames()).andReturn(Collections.singletonList("product"));
+        expect(ledgerEntryEtl.getDataFileBaseNames()).andReturn(Collections.singletonList("ledger_entry"));
+        expect(labEventEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(3);
+        Capture<EtlRevisionRouter> revisionRouter = new Capture<>();
+        expect(productEtl.doIncrementalEtl(capture(revisionRouter), (String) anyObject())).andReturn(2);
+        expect(ledgerEntryEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(1);
+        auditReaderDao.clear();
+        expectLastCall().anyTimes();
+        replay(mocks);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        ExtractTransform parallelExtractTransform = new ExtractTransform(auditReaderDao, sessionContextUtility,
+                requestContextUtility, executorService,
+                Arrays.<GenericEntityEtl>asList(labEventEtl, productEtl, ledgerEntryEtl));
+        ExtractTransform.setParallelEtlThreads(2);
+        try {
+            ExtractTransform.writeLastEtlRun(startEtlSec);
+            Assert.assertEquals(parallelExtractTransform.incrementalEtl("0", "0"), 6);
+            Assert.assertTrue(ExtractTransform.readLastEtlRun() > startEtlSec);
+            assertEquals(ExtractTransform.getLastRunStats().size(), 3);
+            // The revision is only routed to etl classes of the entity it changed.
+            assertEquals(revisionRouter.getValue().getRevIds(), revs.keySet());
+            assertEquals(revisionRouter.getValue().getRevIds(Product.class), revs.keySet());
+            assertEquals(revisionRouter.getValue().getRevIds(LabBatch.class), Collections.emptySet());
+        } finally {
+            ExtractTransform.setParallelEtlThreads(0);
+            executorService.shutdown();
+        }
+        verify(mocks);
+    }
+
+    public void testParallelIncrementalFailure() throws Exception {
+        final long startEtlSec = 1360000000L;
+        SortedMap<Long, Date> revs = new TreeMap<>();
+        revs.put(1L, new Date(startEtlSec));
+        expect(auditReaderDao.fetchAuditIds(eq(startEtlSec - ExtractTransform.TRANSACTION_COMPLETION_GUARDBAND), anyLong(),
+                eq(AuditReaderDao.IS_ANY_USER), (String) isNull())).andReturn(auditedRevs(revs));
+        expect(productEtl.getDataFileBaseNames()).andReturn(Collections.singletonList("product"));
+        expect(ledgerEntryEtl.getDataFileBaseNames()).andReturn(Collections.singletonList("ledger_entry"));
+        expect(productEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject())).andReturn(2).times(0, 1);
+        expect(ledgerEntryEtl.doIncrementalEtl((EtlRevisionRouter) anyObject(), (String) anyObject()))
+                .andThrow(new RuntimeException("BSP is down"));
+        auditReaderDao.clear();
+        expectLastCall().anyTimes();
+        replay(mocks);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        ExtractTransform parallelExtractTransform = new ExtractTransform(auditReaderDao, sessionContextUtility,
+                requestContextUtility, executorService, Arrays.<GenericEntityEtl>asList(productEtl, ledgerEntryEtl));
+        ExtractTransform.setParallelEtlThreads(2);
+        try {
+            ExtractTransform.writeLastEtlRun(startEtlSec);
+            Assert.assertEquals(parallelExtractTransform.incrementalEtl("0", "0"), -1);
+            // A failed partition must not advance the etl or release the data files to the cron job.
+            Assert.assertEquals(ExtractTransform.readLastEtlRun(), startEtlSec);
+            File[] files = EtlTestUtilities.getDirFiles(datafileDir, startEtlSec, System.currentTimeMillis());
+            for (File dataFile : files) {
+                Assert.assertFalse(dataFile.getName().endsWith(ExtractTransform.READY_FILE_SUFFIX));
+            }
+        } finally {
+            ExtractTransform.setParallelEtlThreads(0);
+            executorService.shutdown();
+        }
+        verify(mocks);
+    }
+
+    /**
+     * Returns the revisions as the audit reader does, each changing the given entities.
+     */
+    private static List<AuditedRevDto> auditedRevs(SortedMap<Long, Date> revs, String... entityNames) {
+        List<AuditedRevDto> auditedRevs = new ArrayList<>();
+        for (Map.Entry<Long, Date> entry : revs.entrySet()) {
+            auditedRevs.add(new AuditedRevDto(entry.getKey(), entry.getValue(), null, Arrays.asList(entityNames)));
+        }
+        return auditedRevs;
+    }
 }
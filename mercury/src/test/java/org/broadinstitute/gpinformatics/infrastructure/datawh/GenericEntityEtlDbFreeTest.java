@@ -1,11 +1,16 @@
 package org.broadinstitute.gpinformatics.infrastructure.datawh;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
 import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
 import org.broadinstitute.gpinformatics.mercury.control.dao.envers.AuditReaderDao;
 import org.broadinstitute.gpinformatics.mercury.control.dao.envers.EnversAudit;
 import org.broadinstitute.gpinformatics.mercury.control.dao.vessel.LabVesselDao;
 import org.broadinstitute.gpinformatics.mercury.entity.envers.RevInfo;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.BarcodedTube;
 import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel_;
 import org.hibernate.envers.RevisionType;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -13,13 +18,18 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.persistence.metamodel.SingularAttribute;
 import java.io.File;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.easymock.EasyMock.anyObject;
@@ -37,6 +47,7 @@ import static org.testng.Assert.assertEquals;
 
 @Test(groups = TestGroups.DATABASE_FREE)
 public class GenericEntityEtlDbFreeTest {
+    private static final Log logger = LogFactory.getLog(GenericEntityEtlDbFreeTest.class);
     private String etlDateStr = ExtractTransform.formatTimestamp(new Date());
     private final long entityId = 1122334455L;
     private final String label = "012345678";
@@ -92,7 +103,10 @@ public class GenericEntityEtlDbFreeTest {
         enversAudits.add(new EnversAudit(obj, revInfo[0], RevisionType.ADD));
 
         expect(auditReader.fetchEnversAudits(revIds, tst.entityClass)).andReturn(enversAudits);
+        expect(dao.findListByList(eq(LabVessel.class), eq(LabVessel_.labVesselId), (Collection<Long>) anyObject()))
+                .andReturn(Collections.singletonList(obj));
         expect(dao.findById(LabVessel.class, entityId)).andReturn(obj);
+        dao.clear();
 
         expect(obj.getLabVesselId()).andReturn(entityId).times(2);
         expect(obj.getLabel()).andReturn(label);
@@ -118,6 +132,35 @@ public class GenericEntityEtlDbFreeTest {
         verify(mocks);
     }
 
+    public void testRoutedEtl() throws Exception {
+        Map<Long, Collection<String>> entityNamesByRevId = new HashMap<>();
+        entityNamesByRevId.put(1L, Collections.singletonList(ProductOrder.class.getName()));
+        entityNamesByRevId.put(2L, Arrays.asList(ProductOrder.class.getName(), BarcodedTube.class.getName()));
+
+        // Only the revision that changed a lab vessel is queried.
+        EtlRevisionRouter revisionRouter = new EtlRevisionRouter(entityNamesByRevId);
+        expect(auditReader.fetchEnversAudits(Collections.singleton(2L), LabVessel.class))
+                .andReturn(Collections.<EnversAudit>emptyList());
+        auditReader.clear();
+        replay(mocks);
+
+        tst.setAuditReaderDao(auditReader);
+        assertEquals(tst.doIncrementalEtl(revisionRouter, etlDateStr), 0);
+        assertEquals(revisionRouter.getAuditQueryStats(tst).getRoutedRevCount(), 1);
+        verify(mocks);
+
+        // Without any revisions for lab vessels, there's no query.
+        entityNamesByRevId.remove(2L);
+        revisionRouter = new EtlRevisionRouter(entityNamesByRevId);
+        reset(mocks);
+        auditReader.clear();
+        replay(mocks);
+
+        assertEquals(tst.doIncrementalEtl(revisionRouter, etlDateStr), 0);
+        assertEquals(revisionRouter.getAuditQueryStats(tst).getRoutedRevCount(), 0);
+        verify(mocks);
+    }
+
     public void testDeletionEtl() throws Exception {
         Set<Long> revIds = new HashSet<>();
         revIds.add(entityId);
@@ -157,7 +200,10 @@ public class GenericEntityEtlDbFreeTest {
         adds.add(entityId);
         mods.add(entityId);
 
+        expect(dao.findListByList(eq(LabVessel.class), eq(LabVessel_.labVesselId), (Collection<Long>) anyObject()))
+                .andReturn(Collections.singletonList(obj));
         expect(dao.findById(LabVessel.class, entityId)).andReturn(obj).times(2);
+        dao.clear();
         expect(obj.getLabVesselId()).andReturn(entityId).times(2);
         expect(obj.getLabel()).andReturn(label).times(2);
         expect(obj.getType()).andReturn(type).times(2);
@@ -181,4 +227,90 @@ public class GenericEntityEtlDbFreeTest {
         verify(mocks);
     }
 
+    /**
+     * Compares the number of dao queries made when writing a run's worth of modified vessels with and without
+     * prefetching the chunk of vessels.
+     */
+    public void testPrefetchQueryCount() throws Exception {
+        int numberOfIds = 2500;
+        Collection<Long> mods = new ArrayList<>();
+        for (long id = 1; id <= numberOfIds; ++id) {
+            mods.add(id);
+        }
+
+        QueryCountingDao prefetchDao = new QueryCountingDao();
+        LabVesselEtl prefetchEtl = new LabVesselEtl(prefetchDao);
+        long startMsec = System.currentTimeMillis();
+        int prefetchRecordCount = prefetchEtl.writeEtlDataFile(Collections.<Long>emptyList(), mods,
+                Collections.<Long>emptyList(), Collections.<LabVesselEtl.RevInfoPair<LabVessel>>emptyList(),
+                etlDateStr);
+        long prefetchMsec = System.currentTimeMillis() - startMsec;
+        EtlTestUtilities.deleteEtlFiles(datafileDir);
+
+        QueryCountingDao perIdDao = new QueryCountingDao();
+        LabVesselEtl perIdEtl = new LabVesselEtl(perIdDao) {
+            @Override
+            protected boolean prefetchDataSourceEntities(Collection<Long> entityIds) {
+                return false;
+            }
+        };
+        startMsec = System.currentTimeMillis();
+        int perIdRecordCount = perIdEtl.writeEtlDataFile(Collections.<Long>emptyList(), mods,
+                Collections.<Long>emptyList(), Collections.<LabVesselEtl.RevInfoPair<LabVessel>>emptyList(),
+                etlDateStr);
+        long perIdMsec = System.currentTimeMillis() - startMsec;
+
+        logger.info("Writing " + numberOfIds + " vessels made " + prefetchDao.queryCount + " queries in "
+                    + prefetchMsec + " mSec with prefetch, " + perIdDao.queryCount + " queries in " + perIdMsec
+                    + " mSec without.");
+
+        assertEquals(prefetchRecordCount, numberOfIds);
+        assertEquals(perIdRecordCount, numberOfIds);
+        // One query per chunk of ids.
+        assertEquals(prefetchDao.queryCount, 3);
+        assertEquals(prefetchDao.clearCount, 3);
+        // One query per id.
+        assertEquals(perIdDao.queryCount, numberOfIds);
+        assertEquals(perIdDao.clearCount, 0);
+    }
+
+    /**
+     * Stands in for a dao and its persistence context, counting the number of queries that would be made.
+     */
+    private static class QueryCountingDao extends LabVesselDao {
+        private final Map<Long, LabVessel> persistenceContext = new HashMap<>();
+        private int queryCount = 0;
+        private int clearCount = 0;
+
+        @Override
+        public <VALUE_TYPE, METADATA_TYPE, ENTITY_TYPE extends METADATA_TYPE> List<ENTITY_TYPE> findListByList(
+                Class<ENTITY_TYPE> entity, SingularAttribute<METADATA_TYPE, VALUE_TYPE> singularAttribute,
+                Collection<VALUE_TYPE> values) {
+            ++queryCount;
+            List<ENTITY_TYPE> entities = new ArrayList<>();
+            for (VALUE_TYPE value : values) {
+                LabVessel labVessel = new BarcodedTube("tube" + value);
+                persistenceContext.put((Long) value, labVessel);
+                entities.add(entity.cast(labVessel));
+            }
+            return entities;
+        }
+
+        @Override
+        public <ENTITY_TYPE> ENTITY_TYPE findById(Class<ENTITY_TYPE> entity, Long id) {
+            LabVessel labVessel = persistenceContext.get(id);
+            if (labVessel == null) {
+                ++queryCount;
+                labVessel = new BarcodedTube("tube" + id);
+                persistenceContext.put(id, labVessel);
+            }
+            return entity.cast(labVessel);
+        }
+
+        @Override
+        public void clear() {
+            ++clearCount;
+            persistenceContext.clear();
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package org.broadinstitute.gpinformatics.infrastructure.jira;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.broadinstitute.gpinformatics.infrastructure.jira.customfields.CustomFieldDefinition;
+import org.broadinstitute.gpinformatics.infrastructure.jira.issue.CreateFields;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database free test of the JIRA field definition cache, with JIRA replaced by a local HTTP stub that counts the
+ * field definition requests.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class JiraFieldDefinitionCacheTest {
+
+    private static final String FIELDS_JSON =
+            "[{\"id\":\"customfield_1\",\"name\":\"Protocol\"},{\"id\":\"summary\",\"name\":\"Summary\"}]";
+
+    private static final String CREATEMETA_JSON = "{\"projects\":[{\"issuetypes\":[{\"fields\":{" +
+            "\"customfield_1\":{\"name\":\"Protocol\",\"required\":true}," +
+            "\"summary\":{\"name\":\"Summary\",\"required\":true}}}]}]}";
+
+    private static final CreateFields.Project LCSET = new CreateFields.Project(CreateFields.ProjectType.LCSET_PROJECT);
+
+    private HttpServer server;
+    private final AtomicInteger fieldRequests = new AtomicInteger();
+    private final AtomicInteger createmetaRequests = new AtomicInteger();
+    private volatile boolean failing;
+
+    private JiraConfig jiraConfig;
+
+    @BeforeMethod(groups = TestGroups.DATABASE_FREE)
+    public void setUp() throws IOException {
+        fieldRequests.set(0);
+        createmetaRequests.set(0);
+        failing = false;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/api/2/field", new StubHandler(fieldRequests, FIELDS_JSON));
+        server.createContext("/rest/api/2/issue/createmeta", new StubHandler(createmetaRequests, CREATEMETA_JSON));
+        server.start();
+
+        jiraConfig = new JiraConfig();
+        jiraConfig.setUrlBase("http://localhost:" + server.getAddress().getPort());
+        jiraConfig.setLogin("login");
+        jiraConfig.setPassword("password");
+    }
+
+    @AfterMethod(groups = TestGroups.DATABASE_FREE)
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Counts requests and answers them with a fixed response, or an error if the stub is failing.
+     */
+    private class StubHandler implements HttpHandler {
+        private final AtomicInteger requestCount;
+        private final byte[] response;
+
+        private StubHandler(AtomicInteger requestCount, String response) {
+            this.requestCount = requestCount;
+            this.response = response.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requestCount.incrementAndGet();
+            if (failing) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(response);
+            }
+        }
+    }
+
+    public void testWithoutCache() throws IOException {
+        JiraService jiraService = new JiraServiceImpl(jiraConfig);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(jiraService.getCustomFields().size(), 2);
+        }
+        Assert.assertEquals(fieldRequests.get(), 3);
+    }
+
+    public void testOneRequestPerTimeToLive() throws Exception {
+        JiraFieldDefinitionCache cache = new JiraFieldDefinitionCache(500L, null);
+        JiraService jiraService = new JiraServiceImpl(jiraConfig, cache);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(jiraService.getCustomFields().size(), 2);
+            Map<String, CustomFieldDefinition> protocol = jiraService.getCustomFields("Protocol");
+            Assert.assertEquals(protocol.size(), 1);
+            Assert.assertEquals(protocol.get("Protocol").getJiraCustomFieldId(), "customfield_1");
+            Assert.assertEquals(jiraService.getRequiredFields(LCSET, CreateFields.IssueType.EXOME_EXPRESS).size(), 2);
+        }
+        Assert.assertEquals(fieldRequests.get(), 1);
+        Assert.assertEquals(createmetaRequests.get(), 1);
+
+        // Each project and issue type has its own entry.
+        jiraService.getRequiredFields(LCSET, CreateFields.IssueType.WHOLE_EXOME_HYBSEL);
+        Assert.assertEquals(createmetaRequests.get(), 2);
+
+        // Callers may change their copy.
+        jiraService.getCustomFields().clear();
+        Assert.assertEquals(jiraService.getCustomFields().size(), 2);
+
+        Thread.sleep(600L);
+        for (int i = 0; i < 10; i++) {
+            jiraService.getCustomFields();
+        }
+        Assert.assertEquals(fieldRequests.get(), 2);
+        Assert.assertEquals(cache.getFetchCount(), 4L);
+    }
+
+    public void testStaleCopyKeptWhenRefreshFails() throws Exception {
+        JiraFieldDefinitionCache cache = new JiraFieldDefinitionCache(0L, null);
+        JiraService jiraService = new JiraServiceImpl(jiraConfig, cache);
+        Assert.assertEquals(jiraService.getCustomFields().size(), 2);
+
+        failing = true;
+        Thread.sleep(5L);
+        Assert.assertEquals(jiraService.getCustomFields().size(), 2);
+        Assert.assertEquals(fieldRequests.get(), 2);
+        Assert.assertEquals(cache.getFailedRefreshCount(), 1L);
+
+        // A forced refresh also keeps the stale copy.
+        cache.refreshCache();
+        Assert.assertEquals(cache.getFailedRefreshCount(), 2L);
+        Assert.assertEquals(jiraService.getCustomFields().size(), 2);
+        Assert.assertEquals(cache.getFailedRefreshCount(), 3L);
+
+        failing = false;
+        cache.refreshCache();
+        Assert.assertEquals(fieldRequests.get(), 5);
+        Assert.assertEquals(cache.getFailedRefreshCount(), 3L);
+        Assert.assertTrue(cache.getStatistics().startsWith("1 field sets"), cache.getStatistics());
+    }
+
+    public void testFirstFetchFailure() {
+        failing = true;
+        JiraService jiraService = new JiraServiceImpl(jiraConfig, new JiraFieldDefinitionCache(60000L, null));
+        try {
+            jiraService.getCustomFields();
+            Assert.fail("Expected the failure of the first fetch to be thrown");
+        } catch (Exception e) {
+            Assert.assertEquals(fieldRequests.get(), 1);
+        }
+    }
+}
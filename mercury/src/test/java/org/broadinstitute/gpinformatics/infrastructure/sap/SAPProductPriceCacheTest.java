@@ -0,0 +1,102 @@
+package org.broadinstitute.gpinformatics.infrastructure.sap;
+
+import org.broadinstitute.gpinformatics.athena.boundary.products.InvalidProductException;
+import org.broadinstitute.gpinformatics.athena.entity.products.Product;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.sap.entity.material.SAPMaterial;
+import org.broadinstitute.sap.services.SAPIntegrationException;
+import org.broadinstitute.sap.services.SapIntegrationClientImpl;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Database free test of the lookups in the SAP product price cache.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class SAPProductPriceCacheTest {
+
+    private static final SapIntegrationClientImpl.SAPCompanyConfiguration BROAD =
+            SapIntegrationClientImpl.SAPCompanyConfiguration.BROAD;
+    private static final SapIntegrationClientImpl.SAPCompanyConfiguration EXTERNAL =
+            SapIntegrationClientImpl.SAPCompanyConfiguration.BROAD_EXTERNAL_SERVICES;
+
+    private static SAPMaterial material(String partNumber, SapIntegrationClientImpl.SAPCompanyConfiguration company,
+            String basePrice) {
+        return new SAPMaterial(partNumber, company, company.getDefaultWbs(), "test description", basePrice,
+                SAPMaterial.DEFAULT_UNIT_OF_MEASURE_EA, BigDecimal.ONE, new Date(), new Date(), Collections.emptyMap(),
+                Collections.emptyMap(), SAPMaterial.MaterialStatus.ENABLED, company.getSalesOrganization());
+    }
+
+    private static Product product(String partNumber) {
+        Product product = new Product();
+        product.setPartNumber(partNumber);
+        return product;
+    }
+
+    public void testFind() {
+        SAPMaterial broadMaterial = material("P-TEST-1", BROAD, "100");
+        SAPMaterial externalMaterial = material("P-TEST-1", EXTERNAL, "200");
+        SAPProductPriceCache cache = new SAPProductPriceCache(
+                new HashSet<>(Arrays.asList(broadMaterial, externalMaterial, material("P-TEST-2", BROAD, "300"))));
+
+        Assert.assertSame(cache.findByPartNumber("p-test-1", BROAD.getSalesOrganization()), broadMaterial);
+        Assert.assertSame(cache.findByPartNumber("P-TEST-1", EXTERNAL.getSalesOrganization()), externalMaterial);
+        Assert.assertNull(cache.findByPartNumber("P-TEST-2", EXTERNAL.getSalesOrganization()));
+        Assert.assertNull(cache.findByPartNumber("P-TEST-3", BROAD.getSalesOrganization()));
+        Assert.assertNull(cache.findByPartNumber(null, BROAD.getSalesOrganization()));
+        Assert.assertTrue(cache.productExists("p-test-2"));
+        Assert.assertFalse(cache.productExists("P-TEST-3"));
+
+        Map<String, SAPMaterial> found = cache.findByProducts(
+                Arrays.asList(product("P-TEST-1"), product("p-test-2"), product("P-TEST-3")),
+                BROAD.getSalesOrganization());
+        Assert.assertEquals(found.size(), 2);
+        Assert.assertSame(found.get("P-TEST-1"), broadMaterial);
+        Assert.assertEquals(found.get("p-test-2").getBasePrice(), "300");
+        Assert.assertEquals(cache.getSize(), 3);
+    }
+
+    public void testDetermineIfProductsExist() throws Exception {
+        SAPProductPriceCache cache = new SAPProductPriceCache(
+                new HashSet<>(Collections.singletonList(material("P-TEST-1", BROAD, "100"))));
+        cache.determineIfProductsExist(Collections.singletonList(product("P-TEST-1")),
+                BROAD.getSalesOrganization());
+        try {
+            cache.determineIfProductsExist(Arrays.asList(product("P-TEST-1"), product("P-TEST-2")),
+                    BROAD.getSalesOrganization());
+            Assert.fail("Expected P-TEST-2 to be missing");
+        } catch (InvalidProductException e) {
+            Assert.assertTrue(e.getMessage().contains("P-TEST-2"), e.getMessage());
+            Assert.assertFalse(e.getMessage().contains("P-TEST-1"), e.getMessage());
+        }
+    }
+
+    public void testRefresh() throws Exception {
+        SapIntegrationService sapService = Mockito.mock(SapIntegrationService.class);
+        Set<SAPMaterial> materials = new HashSet<>(Collections.singletonList(material("P-TEST-1", BROAD, "100")));
+        Mockito.when(sapService.findProductsInSap()).thenReturn(materials);
+        SAPProductPriceCache cache = new SAPProductPriceCache(sapService);
+        Assert.assertNull(cache.getRefreshedDate());
+        Assert.assertTrue(cache.getStatistics().contains("never"), cache.getStatistics());
+
+        // Loaded by the first lookup.
+        Assert.assertNotNull(cache.findByPartNumber("P-TEST-1", BROAD.getSalesOrganization()));
+        Assert.assertNotNull(cache.getRefreshedDate());
+        Mockito.verify(sapService, Mockito.times(1)).findProductsInSap();
+
+        // A failed refresh keeps the previous materials.
+        Mockito.when(sapService.findProductsInSap()).thenThrow(new SAPIntegrationException("SAP is down"));
+        cache.refreshCache();
+        Assert.assertNotNull(cache.findByPartNumber("P-TEST-1", BROAD.getSalesOrganization()));
+        Assert.assertEquals(cache.getSize(), 1);
+    }
+}
@@ -0,0 +1,151 @@
+package org.broadinstitute.gpinformatics.infrastructure.search;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.SectionTransfer;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.VesselToVesselTransfer;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.BarcodedTube;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.RackOfTubes;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.SBSSection;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.StaticPlate;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.TransferTraverserCriteria;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.TubeFormation;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselContainer;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselPosition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Database free test that the multi-source traversal finds the same vessels, in the same order and with the same
+ * starting vessel tags, as traversing from each starting vessel separately.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class LabVesselTraversalEvaluatorTest {
+
+    private long disambiguator = 1L;
+
+    private BarcodedTube tube1;
+    private BarcodedTube tube2;
+    private BarcodedTube tube3;
+    private BarcodedTube tube4;
+    private BarcodedTube tube5;
+    private BarcodedTube tube6;
+    private StaticPlate plate1;
+    private StaticPlate plate2;
+
+    /**
+     * Three racked tubes transferred to a plate, then to a second plate, and two of them to a pool tube.
+     */
+    private void buildTransfers() {
+        tube1 = new BarcodedTube("TRAV1");
+        tube2 = new BarcodedTube("TRAV2");
+        tube3 = new BarcodedTube("TRAV3");
+        tube4 = new BarcodedTube("TRAV4");
+        tube5 = new BarcodedTube("TRAV5");
+        tube6 = new BarcodedTube("TRAV6");
+        Map<VesselPosition, BarcodedTube> mapPositionToTube = new HashMap<>();
+        mapPositionToTube.put(VesselPosition.A01, tube1);
+        mapPositionToTube.put(VesselPosition.A02, tube2);
+        mapPositionToTube.put(VesselPosition.A03, tube3);
+        TubeFormation tubeFormation = new TubeFormation(mapPositionToTube, RackOfTubes.RackType.Matrix96);
+
+        plate1 = new StaticPlate("TRAVPLATE1", StaticPlate.PlateType.Eppendorf96);
+        plate2 = new StaticPlate("TRAVPLATE2", StaticPlate.PlateType.Eppendorf96);
+        sectionTransfer(tubeFormation.getContainerRole(), plate1.getContainerRole());
+        sectionTransfer(plate1.getContainerRole(), plate2.getContainerRole());
+
+        vesselTransfer(tube2, tube5);
+        vesselTransfer(tube4, tube5);
+        vesselTransfer(tube5, tube6);
+    }
+
+    private LabEvent newEvent() {
+        return new LabEvent(LabEventType.A_BASE, new Date(), "LabVesselTraversalEvaluatorTest", disambiguator++, 1L,
+                "LabVesselTraversalEvaluatorTest");
+    }
+
+    private void sectionTransfer(VesselContainer<?> source, VesselContainer<?> target) {
+        LabEvent labEvent = newEvent();
+        labEvent.getSectionTransfers().add(new SectionTransfer(source, SBSSection.ALL96, null, target,
+                SBSSection.ALL96, null, labEvent));
+    }
+
+    private void vesselTransfer(LabVessel source, LabVessel target) {
+        LabEvent labEvent = newEvent();
+        labEvent.getVesselToVesselTransfers().add(new VesselToVesselTransfer(source, target, labEvent));
+    }
+
+    public void testDescendants() {
+        buildTransfers();
+        assertSameAsSeparateTraversals(new LabVesselTraversalEvaluator.DescendantTraversalEvaluator(),
+                Arrays.<LabVessel>asList(tube1, tube2, tube3, tube4, plate1));
+    }
+
+    public void testAncestors() {
+        buildTransfers();
+        assertSameAsSeparateTraversals(new LabVesselTraversalEvaluator.AncestorTraversalEvaluator(),
+                Arrays.<LabVessel>asList(plate2, tube6, tube5, tube1));
+    }
+
+    private static void assertSameAsSeparateTraversals(LabVesselTraversalEvaluator evaluator,
+            List<LabVessel> startingVessels) {
+        SearchInstance searchInstance = new SearchInstance();
+        PaginationUtil.Pagination pagination = new PaginationUtil.Pagination(100);
+        searchInstance.getEvalContext().setPagination(pagination);
+        Set<Object> results = evaluator.evaluate(startingVessels, searchInstance);
+
+        Map<Object, Object> expectedExtraInfo = new HashMap<>();
+        Set<Object> expectedResults = separateTraversals(startingVessels, evaluator.getTraversalDirection(),
+                expectedExtraInfo);
+        Assert.assertEquals(new ArrayList<>(results), new ArrayList<>(expectedResults));
+        Assert.assertEquals(pagination.getIdExtraInfo(), expectedExtraInfo);
+        Assert.assertTrue(results.size() > startingVessels.size());
+    }
+
+    /**
+     * Traverses from each starting vessel separately, as the evaluator did before the multi-source traversal.
+     */
+    private static Set<Object> separateTraversals(List<LabVessel> startingVessels,
+            TransferTraverserCriteria.TraversalDirection direction, Map<Object, Object> extraInfo) {
+        Set<Object> resultLabVessels = new LinkedHashSet<Object>(startingVessels);
+        for (LabVessel startingVessel : startingVessels) {
+            Collection<LabVessel> traversedVessels;
+            if (direction == TransferTraverserCriteria.TraversalDirection.Ancestors) {
+                if (startingVessel.getContainerRole() != null) {
+                    TransferTraverserCriteria.LabVesselAncestorCriteria criteria =
+                            new TransferTraverserCriteria.LabVesselAncestorCriteria();
+                    startingVessel.getContainerRole().applyCriteriaToAllPositions(criteria, direction);
+                    traversedVessels = criteria.getLabVesselAncestors();
+                } else {
+                    traversedVessels = startingVessel.getAncestorVessels();
+                }
+            } else {
+                if (startingVessel.getContainerRole() != null) {
+                    TransferTraverserCriteria.LabVesselDescendantCriteria criteria =
+                            new TransferTraverserCriteria.LabVesselDescendantCriteria();
+                    startingVessel.getContainerRole().applyCriteriaToAllPositions(criteria, direction);
+                    traversedVessels = criteria.getLabVesselDescendants();
+                } else {
+                    traversedVessels = startingVessel.getDescendantVessels();
+                }
+            }
+            for (LabVessel labVessel : traversedVessels) {
+                extraInfo.put(labVessel.getLabel(), startingVessel.getLabel());
+                resultLabVessels.add(labVessel);
+            }
+        }
+        return resultLabVessels;
+    }
+}
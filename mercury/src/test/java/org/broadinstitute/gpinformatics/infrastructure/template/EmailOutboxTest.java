@@ -0,0 +1,290 @@
+package org.broadinstitute.gpinformatics.infrastructure.template;
+
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.gpinformatics.infrastructure.deployment.AppConfig;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.mail.Session;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database free test of the email outbox, with the mail server replaced by a local SMTP stub that records the emails
+ * it receives.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class EmailOutboxTest {
+
+    private static final String TO = "lims@example.com";
+
+    private static final Collection<String> NO_CC = Collections.emptyList();
+
+    private ServerSocket serverSocket;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    /** Number of emails the stub rejects before it accepts one. */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private File directory;
+    private AppConfig appConfig;
+    private Session mailSession;
+
+    @BeforeMethod(groups = TestGroups.DATABASE_FREE)
+    public void setUp() throws IOException {
+        received.clear();
+        failures.set(0);
+        serverSocket = new ServerSocket(0);
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try (Socket socket = serverSocket.accept()) {
+                        converse(socket);
+                    } catch (IOException ignored) {
+                        // Closed, or the client went away
+                    }
+                }
+            }
+        }, "EmailOutboxTest SMTP stub");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        directory = Files.createTempDirectory("email-outbox").toFile();
+        appConfig = new AppConfig();
+        appConfig.setEmailOutboxDirectory(directory.getPath());
+        appConfig.setEmailCoalesceWindowMillis(0L);
+        appConfig.setEmailRetryBackoffMillis(0L);
+        appConfig.setEmailMaxAttempts(3);
+
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", "localhost");
+        properties.setProperty("mail.smtp.port", String.valueOf(serverSocket.getLocalPort()));
+        mailSession = Session.getInstance(properties);
+    }
+
+    @AfterMethod(groups = TestGroups.DATABASE_FREE)
+    public void tearDown() throws IOException {
+        serverSocket.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Enough of SMTP for JavaMail to send an email.
+     */
+    private void converse(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.US_ASCII));
+        Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+        reply(writer, "220 stub");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase();
+            switch (command) {
+            case "DATA":
+                reply(writer, "354 go ahead");
+                StringBuilder data = new StringBuilder();
+                while ((line = reader.readLine()) != null && !line.equals(".")) {
+                    data.append(line).append('\n');
+                }
+                if (failures.getAndDecrement() > 0) {
+                    reply(writer, "451 try again later");
+                } else {
+                    received.add(data.toString());
+                    reply(writer, "250 accepted");
+                }
+                break;
+            case "QUIT":
+                reply(writer, "221 bye");
+                return;
+            default:
+                reply(writer, "250 ok");
+            }
+        }
+    }
+
+    private static void reply(Writer writer, String reply) throws IOException {
+        writer.write(reply + "\r\n");
+        writer.flush();
+    }
+
+    private static void waitFor(EmailOutbox emailOutbox, long sentCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (emailOutbox.getSentCount() < sentCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+    }
+
+    private String[] filesInOutbox() {
+        String[] names = directory.list();
+        Assert.assertNotNull(names);
+        return names;
+    }
+
+    public void testSentInBackground() throws Exception {
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, Executors.defaultThreadFactory());
+        emailOutbox.start();
+        try {
+            EmailSender emailSender = new EmailSender(mailSession, emailOutbox);
+            Assert.assertEquals(emailSender.sendHtmlEmail(appConfig, TO, NO_CC, "[Mercury] Failed to process message",
+                    "<b>bad deck</b>", true, true), Boolean.TRUE);
+            waitFor(emailOutbox, 1L);
+        } finally {
+            emailOutbox.stopWorker();
+        }
+        Assert.assertEquals(emailOutbox.getSentCount(), 1L);
+        Assert.assertEquals(received.size(), 1);
+        Assert.assertTrue(received.get(0).contains("Subject: [Mercury] Failed to process message"));
+        Assert.assertTrue(received.get(0).contains("<b>bad deck</b>"));
+        Assert.assertEquals(filesInOutbox().length, 0);
+    }
+
+    /**
+     * A worker that stops while the outbox is running, here because it is interrupted, is replaced.
+     */
+    public void testWorkerRestarted() throws Exception {
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                threads.add(thread);
+                return thread;
+            }
+        });
+        emailOutbox.start();
+        try {
+            Assert.assertEquals(threads.size(), 1);
+            threads.get(0).interrupt();
+            threads.get(0).join(10000L);
+            Assert.assertEquals(threads.size(), 2);
+
+            emailOutbox.queue(TO, NO_CC, "subject", "body");
+            waitFor(emailOutbox, 1L);
+            Assert.assertEquals(received.size(), 1);
+        } finally {
+            emailOutbox.stopWorker();
+        }
+    }
+
+    public void testCoalescing() {
+        appConfig.setEmailCoalesceWindowMillis(60000L);
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, null);
+        emailOutbox.setMaximumCacheSize(10);
+        emailOutbox.start();
+        for (int i = 0; i < 100; i++) {
+            emailOutbox.queue(TO, NO_CC, "[Mercury] Failed to process message", "error " + i);
+        }
+        emailOutbox.queue(TO, NO_CC, "[Mercury] Vessels have ambiguous LCSET", "After event");
+        emailOutbox.queue(TO, Collections.singletonList("cc@example.com"), "[Mercury] Vessels have ambiguous LCSET",
+                "After event");
+
+        // Nothing is sent before the end of the window
+        emailOutbox.sendDueMessages();
+        Assert.assertEquals(received.size(), 0);
+        Assert.assertEquals(emailOutbox.getPendingCount(), 3);
+        Assert.assertEquals(filesInOutbox().length, 3);
+
+        emailOutbox.invalidateCache();
+        Assert.assertEquals(emailOutbox.getQueuedCount(), 102L);
+        Assert.assertEquals(emailOutbox.getCoalescedCount(), 99L);
+        Assert.assertEquals(emailOutbox.getSentCount(), 3L);
+        Assert.assertEquals(received.size(), 3);
+        String digest = null;
+        for (String email : received) {
+            if (email.contains("Failed to process message")) {
+                digest = email;
+            }
+        }
+        Assert.assertNotNull(digest);
+        Assert.assertTrue(digest.contains("(100 messages)"), digest);
+        Assert.assertTrue(digest.contains("error 9"), digest);
+        Assert.assertFalse(digest.contains("error 10"), digest);
+        Assert.assertTrue(digest.contains("90 more messages not shown"), digest);
+        Assert.assertEquals(filesInOutbox().length, 0);
+    }
+
+    public void testRetry() {
+        failures.set(2);
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, null);
+        emailOutbox.start();
+        emailOutbox.queue(TO, NO_CC, "subject", "body");
+        emailOutbox.sendDueMessages();
+        Assert.assertEquals(emailOutbox.getRetryCount(), 2L);
+        Assert.assertEquals(emailOutbox.getSentCount(), 1L);
+        Assert.assertEquals(emailOutbox.getFailedCount(), 0L);
+        Assert.assertEquals(received.size(), 1);
+    }
+
+    public void testBackoffAndFailure() {
+        failures.set(10);
+        appConfig.setEmailRetryBackoffMillis(60000L);
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, null);
+        emailOutbox.start();
+        emailOutbox.queue(TO, NO_CC, "subject", "body");
+
+        // The retry waits for the backoff
+        emailOutbox.sendDueMessages();
+        Assert.assertEquals(emailOutbox.getRetryCount(), 1L);
+        Assert.assertEquals(emailOutbox.getPendingCount(), 1);
+
+        emailOutbox.invalidateCache();
+        emailOutbox.invalidateCache();
+        Assert.assertEquals(emailOutbox.getRetryCount(), 2L);
+        Assert.assertEquals(emailOutbox.getFailedCount(), 1L);
+        Assert.assertEquals(emailOutbox.getPendingCount(), 0);
+        Assert.assertEquals(received.size(), 0);
+        String[] names = filesInOutbox();
+        Assert.assertEquals(names.length, 1);
+        Assert.assertTrue(names[0].endsWith(".failed"), names[0]);
+    }
+
+    public void testQueuedEmailsSurviveRestart() {
+        appConfig.setEmailCoalesceWindowMillis(60000L);
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, null);
+        emailOutbox.start();
+        emailOutbox.queue(TO, NO_CC, "subject", "first");
+        emailOutbox.queue(TO, NO_CC, "subject", "second");
+        emailOutbox.queue(TO, NO_CC, "other subject", "third");
+        emailOutbox.stopWorker();
+
+        EmailOutbox restarted = new EmailOutbox(appConfig, mailSession, null);
+        restarted.start();
+        Assert.assertEquals(restarted.getPendingCount(), 2);
+        restarted.invalidateCache();
+        Assert.assertEquals(restarted.getSentCount(), 2L);
+        Assert.assertEquals(received.size(), 2);
+        Assert.assertEquals(filesInOutbox().length, 0);
+    }
+
+    public void testFailuresThrownWhenNotIgnored() {
+        EmailOutbox emailOutbox = new EmailOutbox(appConfig, mailSession, null);
+        emailOutbox.start();
+        EmailSender emailSender = new EmailSender(mailSession, emailOutbox);
+        failures.set(1);
+        try {
+            emailSender.sendHtmlEmail(appConfig, TO, NO_CC, "subject", "body", true, false);
+            Assert.fail("Expected the failure to be thrown by the caller");
+        } catch (RuntimeException e) {
+            Assert.assertEquals(emailOutbox.getQueuedCount(), 0L);
+        }
+    }
+}
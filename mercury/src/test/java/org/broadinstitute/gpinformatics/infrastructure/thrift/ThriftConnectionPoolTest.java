@@ -0,0 +1,225 @@
+package org.broadinstitute.gpinformatics.infrastructure.thrift;
+
+import edu.mit.broad.prodinfo.thrift.lims.LIMQueries;
+import org.apache.thrift.TException;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.transport.TServerSocket;
+import org.broadinstitute.gpinformatics.infrastructure.deployment.Deployment;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database free test of the thrift connection pool, against an in-process LIMQueries server that answers
+ * fetchQpcrForTube with the length of the barcode.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class ThriftConnectionPoolTest {
+
+    private TServerSocket serverTransport;
+    private TServer server;
+    private ThriftConnectionPool pool;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long callMillis;
+    private volatile CountDownLatch release;
+
+    @BeforeMethod(groups = TestGroups.DATABASE_FREE)
+    public void setUp() throws Exception {
+        inFlight.set(0);
+        maxInFlight.set(0);
+        callMillis = 0L;
+        release = new CountDownLatch(0);
+
+        LIMQueries.Iface handler = (LIMQueries.Iface) Proxy.newProxyInstance(LIMQueries.Iface.class.getClassLoader(),
+                new Class<?>[]{LIMQueries.Iface.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getName().equals("fetchQpcrForTube")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(callMillis);
+                            release.await(10, TimeUnit.SECONDS);
+                            return (double) ((String) args[0]).length();
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                });
+        serverTransport = new TServerSocket(0);
+        server = new TThreadPoolServer(new TThreadPoolServer.Args(serverTransport)
+                .processor(new LIMQueries.Processor<>(handler)).minWorkerThreads(8));
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.serve();
+            }
+        }, "ThriftConnectionPoolTest server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        pool = new ThriftConnectionPool(thriftConfig(serverTransport.getServerSocket().getLocalPort()));
+    }
+
+    @AfterMethod(groups = TestGroups.DATABASE_FREE)
+    public void tearDown() {
+        pool.closeConnections();
+        server.stop();
+        serverTransport.close();
+    }
+
+    private static ThriftConfig thriftConfig(int port) {
+        ThriftConfig thriftConfig = ThriftConfig.produce(Deployment.DEV);
+        thriftConfig.setHost("localhost");
+        thriftConfig.setPort(port);
+        thriftConfig.setPoolMaxSize(2);
+        thriftConfig.setPoolBorrowTimeoutMillis(10000);
+        thriftConfig.setCallTimeoutMillis(10000);
+        return thriftConfig;
+    }
+
+    private static double fetchQpcr(ThriftConnection connection, final String barcode) {
+        return connection.call(new ThriftConnection.Call<Double>() {
+            @Override
+            public Double call(LIMQueries.Client client) {
+                try {
+                    return client.fetchQpcrForTube(barcode);
+                } catch (TException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    public void testReuse() {
+        ThriftConnection connection = new ThriftConnection(pool);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(fetchQpcr(connection, "0123456789"), 10.0);
+        }
+        Assert.assertEquals(pool.getCreatedCount(), 1L);
+        Assert.assertEquals(pool.getBorrowCount(), 5L);
+        Assert.assertEquals(pool.getActiveCount(), 0);
+        Assert.assertEquals(pool.getIdleCount(), 1);
+    }
+
+    public void testConcurrentCallsAreBounded() throws Exception {
+        callMillis = 50L;
+        final ThriftConnection connection = new ThriftConnection(pool);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Double>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                final String barcode = "barcode" + i;
+                futures.add(executorService.submit(new Callable<Double>() {
+                    @Override
+                    public Double call() {
+                        return fetchQpcr(connection, barcode);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Assert.assertEquals(futures.get(i).get(10, TimeUnit.SECONDS),
+                        (double) ("barcode" + i).length());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertTrue(maxInFlight.get() <= 2, "in flight " + maxInFlight.get());
+        Assert.assertTrue(pool.getCreatedCount() <= 2L, "created " + pool.getCreatedCount());
+        Assert.assertTrue(pool.getMaxBorrowWaitMillis() > 0L);
+        Assert.assertEquals(pool.getActiveCount(), 0);
+    }
+
+    public void testBorrowTimeout() throws Exception {
+        ThriftConfig thriftConfig = thriftConfig(serverTransport.getServerSocket().getLocalPort());
+        thriftConfig.setPoolBorrowTimeoutMillis(100);
+        final ThriftConnectionPool shortWaitPool = new ThriftConnectionPool(thriftConfig);
+        shortWaitPool.setMaximumCacheSize(1);
+        release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Double> held = executorService.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return fetchQpcr(new ThriftConnection(shortWaitPool), "held");
+                }
+            });
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (shortWaitPool.getActiveCount() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+
+            try {
+                fetchQpcr(new ThriftConnection(shortWaitPool), "waiting");
+                Assert.fail("Expected a timeout");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Timed out"), e.getMessage());
+            }
+            release.countDown();
+            Assert.assertEquals(held.get(10, TimeUnit.SECONDS), 4.0);
+            Assert.assertEquals(shortWaitPool.getActiveCount(), 0);
+            Assert.assertTrue(shortWaitPool.getBorrowWaitMillis() >= 100L);
+        } finally {
+            release.countDown();
+            executorService.shutdownNow();
+            shortWaitPool.closeConnections();
+        }
+    }
+
+    public void testIdleEviction() throws Exception {
+        ThriftConfig thriftConfig = thriftConfig(serverTransport.getServerSocket().getLocalPort());
+        thriftConfig.setPoolIdleTimeoutSeconds(0);
+        ThriftConnectionPool evictingPool = new ThriftConnectionPool(thriftConfig);
+        try {
+            ThriftConnection connection = new ThriftConnection(evictingPool);
+            fetchQpcr(connection, "tube");
+            Thread.sleep(5L);
+            fetchQpcr(connection, "tube");
+            Assert.assertEquals(evictingPool.getCreatedCount(), 2L);
+            Assert.assertEquals(evictingPool.getEvictedCount(), 1L);
+
+            Thread.sleep(5L);
+            evictingPool.evictIdleConnections();
+            Assert.assertEquals(evictingPool.getIdleCount(), 0);
+            Assert.assertEquals(evictingPool.getEvictedCount(), 2L);
+        } finally {
+            evictingPool.closeConnections();
+        }
+    }
+
+    public void testConnectionFailure() throws Exception {
+        int closedPort;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            closedPort = serverSocket.getLocalPort();
+        }
+        ThriftConnectionPool failingPool = new ThriftConnectionPool(thriftConfig(closedPort));
+        try {
+            fetchQpcr(new ThriftConnection(failingPool), "tube");
+            Assert.fail("Expected a connection failure");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Could not open thrift connection"), e.getMessage());
+        }
+        Assert.assertEquals(failingPool.getConnectionFailureCount(), 1L);
+        Assert.assertEquals(failingPool.getActiveCount(), 0);
+    }
+}
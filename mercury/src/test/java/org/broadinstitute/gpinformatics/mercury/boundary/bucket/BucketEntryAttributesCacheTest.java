@@ -0,0 +1,137 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.bucket;
+
+import org.broadinstitute.gpinformatics.athena.entity.orders.ProductOrder;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.bucket.BucketEntry;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.MaterialType;
+import org.broadinstitute.gpinformatics.mercury.entity.workflow.WorkflowConfig;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Database free test of the projection of bucket entry attributes.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class BucketEntryAttributesCacheTest {
+
+    /**
+     * Counts the vessels whose sample data is fetched, rather than calling BSP.
+     */
+    private static class TestCache extends BucketEntryAttributesCache {
+        private int vesselsLoaded;
+
+        @Override
+        void loadSampleData(Collection<LabVessel> labVessels) {
+            vesselsLoaded += labVessels.size();
+        }
+
+        @Override
+        WorkflowConfig getWorkflowConfig() {
+            return null;
+        }
+    }
+
+    private static BucketEntry mockEntry(long bucketEntryId, LabVessel labVessel, String... workflows) {
+        BucketEntry bucketEntry = Mockito.mock(BucketEntry.class);
+        Mockito.when(bucketEntry.getBucketEntryId()).thenReturn(bucketEntryId);
+        Mockito.when(bucketEntry.getLabVessel()).thenReturn(labVessel);
+        Mockito.when(bucketEntry.getWorkflows(Mockito.any(WorkflowConfig.class))).thenReturn(Arrays.asList(workflows));
+        return bucketEntry;
+    }
+
+    private static LabVessel mockVessel(long labVesselId, MaterialType materialType, Date receiptDate) {
+        LabVessel labVessel = Mockito.mock(LabVessel.class);
+        Mockito.when(labVessel.getLabVesselId()).thenReturn(labVesselId);
+        Mockito.when(labVessel.getLatestMaterialType()).thenReturn(materialType);
+        MercurySample mercurySample = Mockito.mock(MercurySample.class);
+        Mockito.when(mercurySample.getReceivedDate()).thenReturn(receiptDate);
+        Mockito.when(labVessel.getMercurySamples()).thenReturn(Collections.singleton(mercurySample));
+        return labVessel;
+    }
+
+    public void testCalculateOnce() {
+        Date receiptDate = new Date();
+        LabVessel labVessel1 = mockVessel(10L, MaterialType.DNA_GENOMIC, receiptDate);
+        LabVessel labVessel2 = mockVessel(20L, MaterialType.FRESH_BLOOD, null);
+        BucketEntry bucketEntry1 = mockEntry(1L, labVessel1, "Whole Genome", "Exome");
+        BucketEntry bucketEntry2 = mockEntry(2L, labVessel2, "Exome");
+        TestCache cache = new TestCache();
+
+        Map<Long, BucketEntryAttributesCache.Attributes> attributesById =
+                cache.getAttributes(Arrays.asList(bucketEntry1, bucketEntry2));
+        BucketEntryAttributesCache.Attributes attributes1 = attributesById.get(1L);
+        Assert.assertEquals(attributes1.getMaterialType(), MaterialType.DNA_GENOMIC);
+        Assert.assertEquals(attributes1.getWorkflowNames(), Arrays.asList("Exome", "Whole Genome"));
+        Assert.assertEquals(attributes1.getReceiptDates(), Collections.singletonList(receiptDate));
+        Assert.assertEquals(attributesById.get(2L).getMaterialType(), MaterialType.FRESH_BLOOD);
+        Assert.assertEquals(cache.vesselsLoaded, 2);
+
+        // Cached, so neither BSP nor the vessel is consulted again.
+        attributesById = cache.getAttributes(Arrays.asList(bucketEntry1, bucketEntry2));
+        Assert.assertEquals(attributesById.size(), 2);
+        Assert.assertEquals(cache.vesselsLoaded, 2);
+        Mockito.verify(labVessel1, Mockito.times(1)).getLatestMaterialType();
+    }
+
+    public void testInvalidate() {
+        LabVessel labVessel1 = mockVessel(10L, MaterialType.DNA_GENOMIC, null);
+        LabVessel labVessel2 = mockVessel(20L, MaterialType.FRESH_BLOOD, null);
+        BucketEntry bucketEntry1 = mockEntry(1L, labVessel1, "Exome");
+        BucketEntry bucketEntry2 = mockEntry(2L, labVessel2, "Exome");
+        TestCache cache = new TestCache();
+        cache.getAttributes(Arrays.asList(bucketEntry1, bucketEntry2));
+        Assert.assertEquals(cache.getSize(), 2L);
+
+        // An extraction on the first vessel changes its material type.
+        Mockito.when(labVessel1.getLatestMaterialType()).thenReturn(MaterialType.DNA_DNA_GENOMIC);
+        cache.invalidateVessel(10L);
+        Assert.assertEquals(cache.getSize(), 1L);
+        Map<Long, BucketEntryAttributesCache.Attributes> attributesById =
+                cache.getAttributes(Arrays.asList(bucketEntry1, bucketEntry2));
+        Assert.assertEquals(attributesById.get(1L).getMaterialType(), MaterialType.DNA_DNA_GENOMIC);
+        Assert.assertEquals(cache.vesselsLoaded, 3);
+
+        cache.invalidateEntry(2L);
+        Assert.assertEquals(cache.getSize(), 1L);
+    }
+
+    public void testChangeWhileCalculating() {
+        final TestCache cache = new TestCache();
+        LabVessel labVessel = mockVessel(10L, MaterialType.DNA_GENOMIC, null);
+        BucketEntry bucketEntry = mockEntry(1L, labVessel, "Exome");
+        // An event is recorded on the vessel after its material type is read.
+        Mockito.when(bucketEntry.getWorkflows(Mockito.any(WorkflowConfig.class))).thenAnswer(invocation -> {
+            cache.invalidateVessel(10L);
+            return Collections.singletonList("Exome");
+        });
+
+        Assert.assertEquals(cache.getAttributes(Collections.singletonList(bucketEntry)).size(), 1);
+        Assert.assertEquals(cache.getSize(), 0L);
+    }
+
+    public void testInvalidateProductOrder() {
+        ProductOrder productOrder = Mockito.mock(ProductOrder.class);
+        Mockito.when(productOrder.getProductOrderId()).thenReturn(100L);
+        BucketEntry bucketEntry1 = mockEntry(1L, mockVessel(10L, MaterialType.DNA_GENOMIC, null), "Exome");
+        Mockito.when(bucketEntry1.getProductOrder()).thenReturn(productOrder);
+        BucketEntry bucketEntry2 = mockEntry(2L, mockVessel(20L, MaterialType.DNA_GENOMIC, null), "Exome");
+        TestCache cache = new TestCache();
+        cache.getAttributes(Arrays.asList(bucketEntry1, bucketEntry2));
+        Assert.assertEquals(cache.getSize(), 2L);
+
+        // Changing the order's product changes the entry's workflows.
+        cache.invalidateProductOrder(100L);
+        Assert.assertEquals(cache.getSize(), 1L);
+        cache.invalidateProductOrder(100L);
+        Assert.assertEquals(cache.getSize(), 1L);
+    }
+}
@@ -0,0 +1,167 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.labevent;
+
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.gpinformatics.infrastructure.deckmsgs.DeckMessagesConfig;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.infrastructure.test.dbfree.BettaLimsMessageTestFactory;
+import org.broadinstitute.gpinformatics.infrastructure.ws.WsMessageStore;
+import org.broadinstitute.gpinformatics.infrastructure.ws.WsMessageStoreImpl;
+import org.broadinstitute.gpinformatics.infrastructure.ws.WsMessageStoreStub;
+import org.broadinstitute.gpinformatics.mercury.bettalims.generated.BettaLIMSMessage;
+import org.broadinstitute.gpinformatics.mercury.bettalims.generated.PlateTransferEventType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Database free test of the per vessel ordering and capacity of the asynchronous BettaLIMS message queue.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class BettaLimsMessageQueueTest {
+
+    public void testPerVesselOrdering() throws Exception {
+        final List<String> startOrder = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch allFinished = new CountDownLatch(4);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            BettaLimsMessageQueue queue = new BettaLimsMessageQueue(executorService, 4, 10, new WsMessageStoreStub(),
+                    new BettaLimsMessageQueue.MessageProcessor() {
+                        @Override
+                        public void process(BettaLimsMessageQueue.QueuedMessage queuedMessage) throws Exception {
+                            startOrder.add(queuedMessage.getMessage());
+                            if (queuedMessage.getMessage().equals("rackA") ||
+                                queuedMessage.getMessage().equals("rackB")) {
+                                bothStarted.countDown();
+                                release.await();
+                            }
+                            allFinished.countDown();
+                        }
+                    });
+
+            queue.offer("rackA", null, Arrays.asList("A", "tube1"), new Date(), null);
+            queue.offer("rackB", null, Collections.singletonList("B"), new Date(), null);
+            // Waits for rackA, and blocks rackC2 even though rackC2 shares nothing with a running message.
+            queue.offer("rackAC", null, Arrays.asList("tube1", "C"), new Date(), null);
+            queue.offer("rackC2", null, Collections.singletonList("C"), new Date(), null);
+
+            // Disjoint racks run concurrently.
+            Assert.assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(queue.getRunningCount(), 2);
+            Assert.assertEquals(queue.getPendingCount(), 2);
+
+            release.countDown();
+            Assert.assertTrue(allFinished.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(startOrder.indexOf("rackA") < startOrder.indexOf("rackAC"));
+            Assert.assertTrue(startOrder.indexOf("rackAC") < startOrder.indexOf("rackC2"));
+            Assert.assertEquals(queue.getAcceptedCount(), 4L);
+            Assert.assertEquals(queue.getRejectedCount(), 0L);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    public void testCapacity() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            BettaLimsMessageQueue queue = new BettaLimsMessageQueue(executorService, 1, 2, new WsMessageStoreStub(),
+                    new BettaLimsMessageQueue.MessageProcessor() {
+                        @Override
+                        public void process(BettaLimsMessageQueue.QueuedMessage queuedMessage) throws Exception {
+                            release.await();
+                            if (queuedMessage.getMessage().equals("bad")) {
+                                throw new RuntimeException("Failed to find event type");
+                            }
+                        }
+                    });
+            Assert.assertTrue(queue.offer("bad", null, Collections.singletonList("A"), new Date(), null));
+            Assert.assertTrue(queue.offer("good", null, Collections.singletonList("B"), new Date(), null));
+            Assert.assertFalse(queue.offer("refused", null, Collections.singletonList("C"), new Date(), null));
+            Assert.assertEquals(queue.getRejectedCount(), 1L);
+            Assert.assertEquals(queue.getMaxQueuedCount(), 2);
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (queue.getCompletedCount() + queue.getFailedCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            Assert.assertEquals(queue.getFailedCount(), 1L);
+            Assert.assertEquals(queue.getCompletedCount(), 1L);
+            Assert.assertEquals(queue.getRunningCount(), 0);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Messages acknowledged before a crash are processed at startup, in the order they were received, even if they were
+     * received in the same millisecond.
+     */
+    public void testReplayPending() throws Exception {
+        File directory = Files.createTempDirectory("bettalims-pending").toFile();
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            DeckMessagesConfig deckMessagesConfig = new DeckMessagesConfig();
+            deckMessagesConfig.setMessageStoreDirRoot(directory.getPath());
+            WsMessageStore wsMessageStore = new WsMessageStoreImpl(deckMessagesConfig);
+
+            BettaLimsMessageTestFactory bettaLimsMessageTestFactory = new BettaLimsMessageTestFactory(true);
+            List<String> messages = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                PlateTransferEventType plateTransferEventType = bettaLimsMessageTestFactory.buildRackToPlate(
+                        "ShearingTransfer", "rack", Arrays.asList("tube" + i + "a", "tube" + i + "b"), "plate" + i);
+                String message = BettaLimsMessageTestFactory.marshal(bettaLimsMessageTestFactory.addMessage(
+                        new ArrayList<BettaLIMSMessage>(), plateTransferEventType));
+                messages.add(message);
+                // The first two are received in the same millisecond.
+                wsMessageStore.recordPending(WsMessageStore.BETTALIMS_RESOURCE_TYPE, message,
+                        new Date(1000L * (i / 2)));
+            }
+            wsMessageStore.recordPending(WsMessageStore.BETTALIMS_RESOURCE_TYPE, "<bettaLIMSMessage><plateEvent>",
+                    new Date(5000L));
+            Assert.assertEquals(wsMessageStore.findPending(WsMessageStore.BETTALIMS_RESOURCE_TYPE).size(), 4);
+
+            final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch allFinished = new CountDownLatch(3);
+            BettaLimsMessageQueue queue = new BettaLimsMessageQueue(executorService, 1, 1, wsMessageStore,
+                    new BettaLimsMessageQueue.MessageProcessor() {
+                        @Override
+                        public void process(BettaLimsMessageQueue.QueuedMessage queuedMessage) throws Exception {
+                            processed.add(queuedMessage.getMessage());
+                            allFinished.countDown();
+                        }
+                    });
+            queue.replayPending();
+            Assert.assertTrue(allFinished.await(10, TimeUnit.SECONDS));
+
+            // In the order received, and beyond the capacity of 1.
+            Assert.assertEquals(processed, messages);
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (queue.getCompletedCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            Assert.assertEquals(queue.getCompletedCount(), 3L);
+            Assert.assertTrue(wsMessageStore.findPending(WsMessageStore.BETTALIMS_RESOURCE_TYPE).isEmpty());
+            // The damaged message is recorded as an error, rather than processed.
+            File resourceDirectory = new File(directory, WsMessageStore.BETTALIMS_RESOURCE_TYPE);
+            Assert.assertEquals(FileUtils.listFiles(new File(resourceDirectory, WsMessageStoreImpl.IGNORE_DIR), null,
+                    false).size(), 1);
+        } finally {
+            executorService.shutdown();
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.labevent;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.infrastructure.test.dbfree.BettaLimsMessageTestFactory;
+import org.broadinstitute.gpinformatics.mercury.bettalims.generated.BettaLIMSMessage;
+import org.broadinstitute.gpinformatics.mercury.bettalims.generated.PlateTransferEventType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Database free test of unmarshalling BettaLIMS messages with pooled unmarshallers.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class BettaLimsMessageUnmarshallerTest {
+
+    public void testConcurrentUnmarshal() throws Exception {
+        BettaLimsMessageTestFactory bettaLimsMessageTestFactory = new BettaLimsMessageTestFactory(true);
+        final List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            PlateTransferEventType plateTransferEventType = bettaLimsMessageTestFactory.buildRackToPlate(
+                    "ShearingTransfer", "rack" + i, Arrays.asList("tube" + i + "a", "tube" + i + "b"), "plate" + i);
+            messages.add(BettaLimsMessageTestFactory.marshal(bettaLimsMessageTestFactory.addMessage(
+                    new ArrayList<BettaLIMSMessage>(), plateTransferEventType)));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(messages.size());
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++) {
+                final int index = i;
+                futures.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int j = 0; j < 50; j++) {
+                            BettaLIMSMessage bettaLIMSMessage =
+                                    BettaLimsMessageUnmarshaller.unmarshal(messages.get(index));
+                            PlateTransferEventType plateTransferEventType =
+                                    bettaLIMSMessage.getPlateTransferEvent().get(0);
+                            if (!plateTransferEventType.getPlate().getBarcode().equals("plate" + index)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = Exception.class)
+    public void testMalformedMessage() throws Exception {
+        BettaLimsMessageUnmarshaller.unmarshal("<bettaLIMSMessage><plateEvent>");
+    }
+}
@@ -0,0 +1,82 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.lims;
+
+import org.broadinstitute.gpinformatics.infrastructure.common.Strings;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Database free test of reading and caching DMAP chip types.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class DmapChipTypeCacheTest {
+
+    private static final int BODY_SIZE = 1024 * 1024;
+
+    public void testReadHeaderOnly() throws IOException {
+        byte[] dmap = makeDmap("Multi-EthnicGlobal-8_A1");
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(dmap);
+        List<String> strings = Strings.process(inputStream, DmapChipTypeCache.CHIP_TYPE_INDEX + 1);
+        Assert.assertEquals(strings, Arrays.asList("DMAP", "1234", "Illumina", "v1.0", "Multi-EthnicGlobal-8_A1"));
+
+        // Stops well before the end of the stream.
+        Assert.assertTrue(inputStream.available() > BODY_SIZE - 64 * 1024);
+    }
+
+    public void testCache() throws IOException {
+        File dmapFile = File.createTempFile("DmapChipTypeCacheTest", "_R01C01_01.dmap.gz");
+        try {
+            writeGzip(dmapFile, makeDmap("GSA-24v1-0_A1"));
+            DmapChipTypeCache dmapChipTypeCache = new DmapChipTypeCache();
+            Assert.assertEquals(dmapChipTypeCache.getChipType(dmapFile), "GSA-24v1-0_A1");
+            Assert.assertEquals(dmapChipTypeCache.getChipType(dmapFile), "GSA-24v1-0_A1");
+            Assert.assertEquals(dmapChipTypeCache.getSize(), 1L);
+
+            // A rewritten file is read again.
+            writeGzip(dmapFile, makeDmap("InfiniumMethylationEPIC_A1"));
+            dmapFile.setLastModified(dmapFile.lastModified() - 60000L);
+            Assert.assertEquals(dmapChipTypeCache.getChipType(dmapFile), "InfiniumMethylationEPIC_A1");
+
+            // A file without a chip type isn't cached.
+            writeGzip(dmapFile, "DMAP".getBytes(StandardCharsets.US_ASCII));
+            Assert.assertNull(dmapChipTypeCache.getChipType(dmapFile));
+            Assert.assertEquals(dmapChipTypeCache.getSize(), 0L);
+        } finally {
+            Assert.assertTrue(dmapFile.delete());
+        }
+    }
+
+    /**
+     * Makes a file with the strings of a DMAP header, separated by binary bytes, followed by a large body.
+     */
+    private static byte[] makeDmap(String chipType) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (String string : new String[]{"DMAP", "1234", "x", "Illumina", "v1.0", chipType, "R01C01"}) {
+            outputStream.write(string.getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(new byte[]{0, 1, 2});
+        }
+        byte[] body = new byte[BODY_SIZE];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i % 7 == 0 ? 0 : 'A' + i % 26);
+        }
+        outputStream.write(body);
+        return outputStream.toByteArray();
+    }
+
+    private static void writeGzip(File file, byte[] bytes) throws IOException {
+        try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(file))) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -75,7 +75,7 @@ public class LimsQueriesTest {
         doSectionTransfer(makeTubeFormation(new BarcodedTube("tube")), plate3);
         doSectionTransfer(new StaticPlate("plate1", Eppendorf96), plate3);
         doSectionTransfer(new StaticPlate("plate2", Eppendorf96), plate3);
-        limsQueries = new LimsQueries(staticPlateDao, labVesselDao, barcodedTubeDao, null);
+        limsQueries = new LimsQueries(staticPlateDao, labVesselDao, barcodedTubeDao, null, null, null);
     }
 
     @Test(groups = DATABASE_FREE)
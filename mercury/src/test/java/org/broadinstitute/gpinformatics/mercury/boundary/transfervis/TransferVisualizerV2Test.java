@@ -0,0 +1,155 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.transfervis;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.VesselToVesselTransfer;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.BarcodedTube;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.TransferTraverserCriteria;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Database free test of the limits, truncation and de-duplication of the transfer visualizer, over a chain of tube
+ * to tube transfers.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class TransferVisualizerV2Test {
+
+    private static final int TUBE_COUNT = 10;
+
+    private static final long NO_TIME_LIMIT = 600000L;
+
+    /**
+     * Builds tube0 -> tube1 -> ... -> tube9.
+     */
+    private static List<LabVessel> buildChain() {
+        List<LabVessel> tubes = new ArrayList<>();
+        Date date = new Date();
+        for (int i = 0; i < TUBE_COUNT; i++) {
+            tubes.add(new BarcodedTube("tube" + i));
+            if (i > 0) {
+                LabEvent labEvent = new LabEvent(LabEventType.A_BASE, date, "TransferVisualizerV2Test", (long) i, 1L,
+                        "TransferVisualizerV2Test");
+                labEvent.getVesselToVesselTransfers().add(
+                        new VesselToVesselTransfer(tubes.get(i - 1), tubes.get(i), labEvent));
+            }
+        }
+        return tubes;
+    }
+
+    private static JSONObject render(List<LabVessel> startingVessels, TransferVisualizerV2.Budget budget)
+            throws Exception {
+        StringWriter writer = new StringWriter();
+        new TransferVisualizerV2().jsonForVessels(startingVessels,
+                Collections.singletonList(TransferTraverserCriteria.TraversalDirection.Descendants), writer,
+                Collections.<TransferVisualizerV2.AlternativeIds>emptyList(), budget);
+        JSONObject json = new JSONObject(writer.toString());
+        Assert.assertTrue(json.isNull("error"), writer.toString());
+        return json;
+    }
+
+    private static List<String> getNodeIds(JSONObject json) throws Exception {
+        List<String> ids = new ArrayList<>();
+        JSONArray nodes = json.getJSONArray("nodes");
+        for (int i = 0; i < nodes.length(); i++) {
+            ids.add(nodes.getJSONObject(i).getString("id"));
+        }
+        return ids;
+    }
+
+    /**
+     * Asserts that every link joins two rendered nodes, and returns the links as "source->target".
+     */
+    private static Set<String> getLinks(JSONObject json, List<String> nodeIds) throws Exception {
+        Set<String> links = new HashSet<>();
+        JSONArray linksJson = json.getJSONArray("links");
+        for (int i = 0; i < linksJson.length(); i++) {
+            JSONObject link = linksJson.getJSONObject(i);
+            Assert.assertTrue(nodeIds.contains(link.getString("source")), link.toString());
+            Assert.assertTrue(nodeIds.contains(link.getString("target")), link.toString());
+            links.add(link.getString("source") + "->" + link.getString("target"));
+        }
+        return links;
+    }
+
+    public void testWithinBudget() throws Exception {
+        JSONObject json = render(buildChain().subList(0, 1), new TransferVisualizerV2.Budget(1000, 100,
+                NO_TIME_LIMIT));
+        Assert.assertTrue(json.isNull("truncated"));
+        List<String> nodeIds = getNodeIds(json);
+        Assert.assertEquals(nodeIds.size(), TUBE_COUNT);
+        Assert.assertEquals(getLinks(json, nodeIds).size(), TUBE_COUNT - 1);
+    }
+
+    public void testNodeLimit() throws Exception {
+        JSONObject json = render(buildChain().subList(0, 1), new TransferVisualizerV2.Budget(3, 100,
+                NO_TIME_LIMIT));
+        Assert.assertEquals(json.getString("truncated"), "Graph truncated after 3 vessels");
+        List<String> nodeIds = getNodeIds(json);
+        Assert.assertEquals(nodeIds, Arrays.asList("tube0", "tube1", "tube2"));
+        Assert.assertEquals(getLinks(json, nodeIds), new HashSet<>(Arrays.asList("tube0->tube1", "tube1->tube2")));
+    }
+
+    /**
+     * An event that transfers to two tubes renders an edge to each, so when the limit stops the second tube being
+     * rendered, its edge must be dropped.
+     */
+    public void testLinkToUnrenderedVesselDropped() throws Exception {
+        LabVessel source = new BarcodedTube("source");
+        LabVessel target1 = new BarcodedTube("target1");
+        LabVessel target2 = new BarcodedTube("target2");
+        LabEvent labEvent = new LabEvent(LabEventType.A_BASE, new Date(), "TransferVisualizerV2Test", 1L, 1L,
+                "TransferVisualizerV2Test");
+        labEvent.getVesselToVesselTransfers().add(new VesselToVesselTransfer(source, target1, labEvent));
+        labEvent.getVesselToVesselTransfers().add(new VesselToVesselTransfer(source, target2, labEvent));
+
+        JSONObject json = render(Collections.singletonList(source), new TransferVisualizerV2.Budget(2, 100,
+                NO_TIME_LIMIT));
+        Assert.assertEquals(json.getString("truncated"), "Graph truncated after 2 vessels");
+        List<String> nodeIds = getNodeIds(json);
+        Assert.assertEquals(nodeIds.size(), 2);
+        Assert.assertEquals(nodeIds.get(0), "source");
+        Assert.assertEquals(getLinks(json, nodeIds),
+                Collections.singleton("source->" + nodeIds.get(1)));
+    }
+
+    public void testHopLimit() throws Exception {
+        JSONObject json = render(buildChain().subList(0, 1), new TransferVisualizerV2.Budget(1000, 2,
+                NO_TIME_LIMIT));
+        Assert.assertEquals(json.getString("truncated"), "Graph truncated after 2 transfers from the starting vessels");
+        List<String> nodeIds = getNodeIds(json);
+        Assert.assertEquals(nodeIds, Arrays.asList("tube0", "tube1", "tube2"));
+        Assert.assertEquals(getLinks(json, nodeIds), new HashSet<>(Arrays.asList("tube0->tube1", "tube1->tube2")));
+    }
+
+    /**
+     * Starting vessels in the same graph render each vessel, link and highlight once.
+     */
+    public void testSharedGraphRenderedOnce() throws Exception {
+        List<LabVessel> tubes = buildChain();
+        JSONObject json = render(Arrays.asList(tubes.get(0), tubes.get(2), tubes.get(5)),
+                new TransferVisualizerV2.Budget(1000, 100, NO_TIME_LIMIT));
+        List<String> nodeIds = getNodeIds(json);
+        Assert.assertEquals(nodeIds.size(), TUBE_COUNT);
+        Assert.assertEquals(new HashSet<>(nodeIds).size(), TUBE_COUNT);
+        Assert.assertEquals(json.getJSONArray("links").length(), TUBE_COUNT - 1);
+        JSONArray highlights = json.getJSONArray("highlights");
+        Set<String> highlightedBarcodes = new HashSet<>();
+        for (int i = 0; i < highlights.length(); i++) {
+            Assert.assertTrue(highlightedBarcodes.add(highlights.getJSONObject(i).getString("barcode")));
+        }
+    }
+}
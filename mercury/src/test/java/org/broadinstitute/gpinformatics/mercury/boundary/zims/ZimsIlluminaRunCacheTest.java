@@ -0,0 +1,56 @@
+package org.broadinstitute.gpinformatics.mercury.boundary.zims;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.zims.ZimsIlluminaRun;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Database free test of the cache of pipeline API run beans.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class ZimsIlluminaRunCacheTest {
+
+    private static ZimsIlluminaRun mockRun(String runName, String flowcellLabel, String error) {
+        ZimsIlluminaRun zimsIlluminaRun = Mockito.mock(ZimsIlluminaRun.class);
+        Mockito.when(zimsIlluminaRun.getName()).thenReturn(runName);
+        Mockito.when(zimsIlluminaRun.getFlowcellBarcode()).thenReturn(flowcellLabel);
+        Mockito.when(zimsIlluminaRun.getError()).thenReturn(error);
+        return zimsIlluminaRun;
+    }
+
+    public void testInvalidateFlowcell() {
+        ZimsIlluminaRunCache cache = new ZimsIlluminaRunCache();
+        ZimsIlluminaRun run1 = mockRun("Run1", "H7HBEADXX", null);
+        ZimsIlluminaRun run2 = mockRun("Run2", "H7HBEADXX", null);
+        ZimsIlluminaRun run3 = mockRun("Run3", "HCLFGBBXX", null);
+        cache.putRun(run1, cache.getChangeCount());
+        cache.putRun(run2, cache.getChangeCount());
+        cache.putRun(run3, cache.getChangeCount());
+        Assert.assertSame(cache.getRun("Run1"), run1);
+        Assert.assertEquals(cache.getSize(), 3L);
+
+        // An event on the first flowcell removes both of its runs.
+        cache.invalidateFlowcell("H7HBEADXX");
+        Assert.assertNull(cache.getRun("Run1"));
+        Assert.assertNull(cache.getRun("Run2"));
+        Assert.assertSame(cache.getRun("Run3"), run3);
+
+        cache.invalidateRun("Run3");
+        Assert.assertEquals(cache.getSize(), 0L);
+    }
+
+    public void testNotCached() {
+        ZimsIlluminaRunCache cache = new ZimsIlluminaRunCache();
+        cache.putRun(mockRun("Run1", "H7HBEADXX", "Failed to find run"), cache.getChangeCount());
+        Assert.assertNull(cache.getRun("Run1"));
+
+        // The flowcell receives an event while the bean is being built.
+        long changeCount = cache.getChangeCount();
+        cache.invalidateFlowcell("H7HBEADXX");
+        cache.putRun(mockRun("Run1", "H7HBEADXX", null), changeCount);
+        Assert.assertNull(cache.getRun("Run1"));
+        Assert.assertNull(cache.getRun(null));
+    }
+}
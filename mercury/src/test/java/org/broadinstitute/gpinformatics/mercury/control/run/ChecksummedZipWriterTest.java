@@ -0,0 +1,153 @@
+package org.broadinstitute.gpinformatics.mercury.control.run;
+
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.gpinformatics.infrastructure.deployment.InfiniumStarterConfig;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Database free test of zipping and verifying Infinium chip directories, on generated idat trees.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class ChecksummedZipWriterTest {
+
+    private static final int IDAT_SIZE = 3 * ChecksummedZipWriter.BUFFER_SIZE + 17;
+
+    public void testZipAndVerify() throws IOException {
+        File root = Files.createTempDirectory("checksummedZip").toFile();
+        try {
+            File chipDir = new File(root, "chip");
+            makeChip(chipDir, "chip", 2, new Random(1L));
+            File zipFile = new File(root, "chip.zip");
+
+            ChecksummedZipWriter.Manifest manifest = ChecksummedZipWriter.zipDir(chipDir, zipFile, false);
+            // 2 positions * 2 colors, plus a decode data file.
+            Assert.assertEquals(manifest.getEntries().size(), 5);
+            Assert.assertEquals(manifest.getTotalBytes(), 4L * IDAT_SIZE + 100L);
+            ChecksummedZipWriter.verify(zipFile, manifest);
+
+            File manifestFile = new File(root, "chip.zip.crc");
+            manifest.write(manifestFile);
+            Assert.assertEquals(FileUtils.readLines(manifestFile).size(), 5);
+
+            // Corrupt the compressed data of the first entry.
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(zipFile, "rw")) {
+                randomAccessFile.seek(1000L);
+                int b = randomAccessFile.read();
+                randomAccessFile.seek(1000L);
+                randomAccessFile.write(b ^ 0xFF);
+            }
+            try {
+                ChecksummedZipWriter.verify(zipFile, manifest);
+                Assert.fail("Expected corrupt zip to fail verification");
+            } catch (IOException e) {
+                // expected
+            }
+
+            try {
+                ChecksummedZipWriter.zipDir(chipDir, zipFile, false);
+                Assert.fail("Expected existing zip to be refused");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    /**
+     * Archives several chips concurrently, as InfiniumArchiver.archive does, and reports throughput.
+     */
+    public void testArchiveChipsConcurrently() throws Exception {
+        File root = Files.createTempDirectory("infiniumArchive").toFile();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            File data = new File(root, "data");
+            File decodeData = new File(root, "decodeData");
+            File archive = new File(root, "archive");
+            Assert.assertTrue(data.mkdir() && decodeData.mkdir() && archive.mkdir());
+            Assert.assertTrue(new File(data, "Archived").mkdir());
+            final InfiniumStarterConfig infiniumStarterConfig = Mockito.mock(InfiniumStarterConfig.class);
+            Mockito.when(infiniumStarterConfig.getDataPath()).thenReturn(data.getAbsolutePath());
+            Mockito.when(infiniumStarterConfig.getDecodeDataPath()).thenReturn(decodeData.getAbsolutePath());
+            Mockito.when(infiniumStarterConfig.getArchivePath()).thenReturn(archive.getAbsolutePath());
+
+            int chipCount = 8;
+            List<String> barcodes = new ArrayList<>();
+            Random random = new Random(2L);
+            for (int i = 0; i < chipCount; i++) {
+                String barcode = "20300000" + i;
+                barcodes.add(barcode);
+                makeChip(new File(data, barcode), barcode, 2, random);
+            }
+
+            final AtomicLong bytesArchived = new AtomicLong();
+            long start = System.nanoTime();
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (final String barcode : barcodes) {
+                futures.add(executorService.submit(
+                        () -> InfiniumArchiver.archiveChip(barcode, infiniumStarterConfig, bytesArchived)));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+            double seconds = (System.nanoTime() - start) / 1.0E9;
+
+            for (String barcode : barcodes) {
+                Assert.assertTrue(new File(archive, barcode + ".zip").exists());
+                Assert.assertTrue(new File(archive, barcode + ".zip.crc").exists());
+                Assert.assertFalse(new File(data, barcode).exists());
+            }
+            Assert.assertEquals(bytesArchived.get(), chipCount * (4L * IDAT_SIZE + 100L));
+            System.out.println(String.format("Archived %d chips in %.2f s: %.1f MB/s, %.0f chips/hour", chipCount,
+                    seconds, bytesArchived.get() / 1048576.0 / seconds, chipCount * 3600.0 / seconds));
+        } finally {
+            executorService.shutdownNow();
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    /**
+     * Makes a chip directory with Red and Grn idats for each position, and a sub-directory of decode data.
+     */
+    private static void makeChip(File chipDir, String barcode, int positionCount, Random random) throws IOException {
+        Assert.assertTrue(chipDir.mkdirs());
+        byte[] bytes = new byte[IDAT_SIZE];
+        for (int position = 1; position <= positionCount; position++) {
+            for (String color : new String[]{"Red", "Grn"}) {
+                // Partly random, so the data doesn't compress to nothing.
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = (byte) (i % 4 == 0 ? random.nextInt() : i);
+                }
+                writeFile(new File(chipDir, String.format("%s_R%02dC01_%s.idat", barcode, position, color)), bytes);
+            }
+        }
+        File decodeDir = new File(chipDir, "Decode_Data");
+        Assert.assertTrue(decodeDir.mkdir());
+        byte[] dmap = new byte[100];
+        random.nextBytes(dmap);
+        writeFile(new File(decodeDir, barcode + "_R01C01_1.dmap.gz"), dmap);
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(bytes);
+        }
+    }
+}
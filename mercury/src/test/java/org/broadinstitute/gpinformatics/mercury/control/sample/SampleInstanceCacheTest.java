@@ -0,0 +1,158 @@
+package org.broadinstitute.gpinformatics.mercury.control.sample;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.VesselToVesselTransfer;
+import org.broadinstitute.gpinformatics.mercury.entity.sample.MercurySample;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.BarcodedTube;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.LabVessel;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.PlateWell;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.StaticPlate;
+import org.broadinstitute.gpinformatics.mercury.entity.vessel.VesselPosition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Database free test of the application wide sample instance cache.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class SampleInstanceCacheTest {
+
+    private long nextLabVesselId = 1L;
+
+    public void testHitMissAndInvalidation() {
+        BarcodedTube tube1 = makeTube("tube1", "SM-1");
+        BarcodedTube tube2 = makeTube("tube2", null);
+        BarcodedTube unrelatedTube = makeTube("tube4", "SM-4");
+        transfer(tube1, tube2);
+
+        SampleInstanceCache sampleInstanceCache = new SampleInstanceCache();
+        List<SampleInstanceSnapshot> snapshots = sampleInstanceCache.getSampleInstances(tube2);
+        Assert.assertEquals(snapshots.size(), 1);
+        Assert.assertEquals(snapshots.get(0).getRootOrEarliestSampleName(), "SM-1");
+        Assert.assertEquals(snapshots.get(0).getMercurySampleNames(), Collections.singletonList("SM-1"));
+        Assert.assertSame(sampleInstanceCache.getSampleInstances(tube2), snapshots);
+        sampleInstanceCache.getSampleInstances(unrelatedTube);
+        Assert.assertEquals(sampleInstanceCache.getMissCount(), 2L);
+        Assert.assertEquals(sampleInstanceCache.getHitCount(), 1L);
+        Assert.assertEquals(sampleInstanceCache.getSize(), 2L);
+
+        // A transfer into the ancestor tube1 changes the descendant tube2.
+        BarcodedTube tube3 = makeTube("tube3", "SM-3");
+        invalidate(sampleInstanceCache, transfer(tube3, tube1));
+        Assert.assertEquals(sampleInstanceCache.getInvalidationCount(), 1L);
+        Assert.assertEquals(sampleInstanceCache.getSize(), 1L);
+
+        // Simulates a new persistence context.
+        tube1.clearCaches();
+        tube2.clearCaches();
+        Assert.assertEquals(sampleInstanceCache.getSampleInstances(tube2).size(), 2);
+        Assert.assertEquals(sampleInstanceCache.getMissCount(), 3L);
+
+        sampleInstanceCache.invalidateCache();
+        Assert.assertEquals(sampleInstanceCache.getSize(), 0L);
+    }
+
+    public void testEventOnDescendantOnly() {
+        BarcodedTube tube1 = makeTube("tube1", "SM-1");
+        BarcodedTube tube2 = makeTube("tube2", null);
+        transfer(tube1, tube2);
+        SampleInstanceCache sampleInstanceCache = new SampleInstanceCache();
+        sampleInstanceCache.getSampleInstances(tube1);
+        sampleInstanceCache.getSampleInstances(tube2);
+
+        // A transfer out of tube2 changes neither tube.
+        invalidate(sampleInstanceCache, transfer(tube2, makeTube("tube3", null)));
+        Assert.assertEquals(sampleInstanceCache.getSize(), 2L);
+
+        // A transfer into tube2 changes only tube2.
+        invalidate(sampleInstanceCache, transfer(makeTube("tube4", "SM-4"), tube2));
+        Assert.assertEquals(sampleInstanceCache.getSize(), 1L);
+        Assert.assertEquals(sampleInstanceCache.getInvalidationCount(), 1L);
+    }
+
+    public void testPositionAndUnsavedVessel() {
+        StaticPlate plate = new StaticPlate("plate", StaticPlate.PlateType.Eppendorf96);
+        setLabVesselId(plate);
+        PlateWell well = new PlateWell(plate, VesselPosition.A01);
+        setLabVesselId(well);
+        well.addSample(new MercurySample("SM-1", MercurySample.MetadataSource.MERCURY));
+        plate.getContainerRole().addContainedVessel(well, VesselPosition.A01);
+
+        SampleInstanceCache sampleInstanceCache = new SampleInstanceCache();
+        List<SampleInstanceSnapshot> snapshots =
+                sampleInstanceCache.getSampleInstances(plate.getContainerRole(), VesselPosition.A01);
+        Assert.assertEquals(snapshots.size(), 1);
+        Assert.assertEquals(snapshots.get(0).getNearestSampleName(), "SM-1");
+        Assert.assertSame(sampleInstanceCache.getSampleInstances(plate.getContainerRole(), VesselPosition.A01),
+                snapshots);
+        Assert.assertTrue(sampleInstanceCache.getSampleInstances(plate.getContainerRole(), VesselPosition.A02)
+                .isEmpty());
+        Assert.assertEquals(sampleInstanceCache.getSize(), 2L);
+
+        // A change to the well's samples changes its position, but not the others.
+        sampleInstanceCache.invalidateVessel(well.getLabVesselId());
+        Assert.assertEquals(sampleInstanceCache.getSize(), 1L);
+
+        // Vessels that haven't been persisted are computed every time.
+        BarcodedTube unsavedTube = new BarcodedTube("unsaved");
+        unsavedTube.addSample(new MercurySample("SM-2", MercurySample.MetadataSource.MERCURY));
+        Assert.assertEquals(sampleInstanceCache.getSampleInstances(unsavedTube).size(), 1);
+        Assert.assertEquals(sampleInstanceCache.getSize(), 1L);
+    }
+
+    public void testMaximumSize() {
+        SampleInstanceCache sampleInstanceCache = new SampleInstanceCache();
+        sampleInstanceCache.setMaximumCacheSize(2);
+        for (int i = 0; i < 5; i++) {
+            sampleInstanceCache.getSampleInstances(makeTube("tube" + i, "SM-" + i));
+        }
+        // The cache may evict before it reaches the maximum.
+        Assert.assertTrue(sampleInstanceCache.getSize() <= 2L);
+        Assert.assertEquals(sampleInstanceCache.getEvictionCount(), 5L - sampleInstanceCache.getSize());
+    }
+
+    private BarcodedTube makeTube(String barcode, String sampleKey) {
+        BarcodedTube tube = new BarcodedTube(barcode);
+        setLabVesselId(tube);
+        if (sampleKey != null) {
+            tube.addSample(new MercurySample(sampleKey, MercurySample.MetadataSource.MERCURY));
+        }
+        return tube;
+    }
+
+    /**
+     * Simulates persisting a vessel.
+     */
+    private void setLabVesselId(LabVessel labVessel) {
+        try {
+            Field field = LabVessel.class.getDeclaredField("labVesselId");
+            field.setAccessible(true);
+            field.set(labVessel, nextLabVesselId++);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Does what SampleInstanceListener does when the event is persisted.
+     */
+    private static void invalidate(SampleInstanceCache sampleInstanceCache, LabEvent labEvent) {
+        for (LabVessel labVessel : labEvent.getLoadedTargetLabVessels()) {
+            sampleInstanceCache.invalidateVessel(labVessel.getLabVesselId());
+        }
+    }
+
+    private static LabEvent transfer(BarcodedTube source, BarcodedTube target) {
+        LabEvent labEvent = new LabEvent(LabEventType.A_BASE, new Date(), "SampleInstanceCacheTest", 1L, 1L,
+                "SampleInstanceCacheTest");
+        labEvent.getVesselToVesselTransfers().add(new VesselToVesselTransfer(source, target, labEvent));
+        return labEvent;
+    }
+}
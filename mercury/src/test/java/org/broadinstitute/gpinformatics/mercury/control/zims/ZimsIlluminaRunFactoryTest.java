@@ -204,6 +204,8 @@ public class ZimsIlluminaRunFactoryTest {
         testProductOrder.setJiraTicketKey("TestPDO-1");
         testProductOrder.setDefaultAggregationParticle(Product.AggregationParticle.PDO_ALIQUOT);
         Mockito.when(productOrderDao.findByBusinessKey(PRODUCT_ORDER_KEY)).thenReturn(testProductOrder);
+        Mockito.when(productOrderDao.findListByBusinessKeys(Mockito.eq(Collections.singleton(PRODUCT_ORDER_KEY)),
+                Mockito.<ProductOrderDao.FetchSpec>anyVararg())).thenReturn(Collections.singletonList(testProductOrder));
 
         reagents = makeTestReagents(testSampleIds.size(), false);
 
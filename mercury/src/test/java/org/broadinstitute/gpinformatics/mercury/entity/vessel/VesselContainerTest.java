@@ -0,0 +1,177 @@
+package org.broadinstitute.gpinformatics.mercury.entity.vessel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.CherryPickTransfer;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEvent;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.SectionTransfer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Database free tests of the position lookups used when traversing transfers between containers.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class VesselContainerTest {
+    private static final Log log = LogFactory.getLog(VesselContainerTest.class);
+
+    private long disambiguator = 1L;
+
+    public void testWellIndex() {
+        List<VesselPosition> wells = SBSSection.ALL384.getWells();
+        for (int i = 0; i < wells.size(); i++) {
+            Assert.assertEquals(SBSSection.ALL384.getWellIndex(wells.get(i)), wells.indexOf(wells.get(i)));
+        }
+        Assert.assertEquals(SBSSection.ALL96.getWellIndex(VesselPosition.P24), -1);
+        Assert.assertEquals(SBSSection.ALL96.getWellIndex(null), -1);
+    }
+
+    public void testCherryPickAncestorsAndDescendants() {
+        StaticPlate sourcePlate = new StaticPlate("source", StaticPlate.PlateType.Eppendorf384);
+        StaticPlate targetPlate = new StaticPlate("target", StaticPlate.PlateType.Eppendorf384);
+        reversingCherryPick(sourcePlate, targetPlate);
+
+        List<VesselPosition> wells = SBSSection.ALL384.getWells();
+        VesselPosition first = wells.get(0);
+        VesselPosition last = wells.get(wells.size() - 1);
+
+        List<LabVessel.VesselEvent> ancestors = targetPlate.getContainerRole().getAncestors(last);
+        Assert.assertEquals(ancestors.size(), 1);
+        Assert.assertEquals(ancestors.get(0).getSourcePosition(), first);
+
+        List<LabVessel.VesselEvent> descendants = sourcePlate.getContainerRole().getDescendants(last);
+        Assert.assertEquals(descendants.size(), 1);
+        Assert.assertEquals(descendants.get(0).getTargetPosition(), first);
+
+        // A transfer added after the index was built must be found.
+        StaticPlate otherPlate = new StaticPlate("other", StaticPlate.PlateType.Eppendorf384);
+        LabEvent labEvent = makeEvent(LabEventType.A_BASE);
+        labEvent.getCherryPickTransfers().add(new CherryPickTransfer(otherPlate.getContainerRole(), first, null,
+                targetPlate.getContainerRole(), last, null, labEvent));
+        Assert.assertEquals(targetPlate.getContainerRole().getAncestors(last).size(), 2);
+    }
+
+    public void testIndexRebuiltWhenTransferReplaced() {
+        StaticPlate sourcePlate = new StaticPlate("source", StaticPlate.PlateType.Eppendorf384);
+        StaticPlate targetPlate = new StaticPlate("target", StaticPlate.PlateType.Eppendorf384);
+        reversingCherryPick(sourcePlate, targetPlate);
+        List<VesselPosition> wells = SBSSection.ALL384.getWells();
+        VesselPosition first = wells.get(0);
+        VesselPosition last = wells.get(wells.size() - 1);
+        Assert.assertEquals(targetPlate.getContainerRole().getAncestors(last).size(), 1);
+
+        // Replacing a transfer leaves the set the same size, as a fixup that moves a transfer does.
+        CherryPickTransfer removed = null;
+        for (CherryPickTransfer cherryPickTransfer : targetPlate.getContainerRole().getCherryPickTransfersTo()) {
+            if (cherryPickTransfer.getTargetPosition() == last) {
+                removed = cherryPickTransfer;
+            }
+        }
+        Assert.assertNotNull(removed);
+        int transferCount = targetPlate.getContainerRole().getCherryPickTransfersTo().size();
+        targetPlate.getContainerRole().getCherryPickTransfersTo().remove(removed);
+        StaticPlate otherPlate = new StaticPlate("other", StaticPlate.PlateType.Eppendorf384);
+        LabEvent labEvent = makeEvent(LabEventType.A_BASE);
+        labEvent.getCherryPickTransfers().add(new CherryPickTransfer(otherPlate.getContainerRole(), first, null,
+                targetPlate.getContainerRole(), wells.get(1), null, labEvent));
+        Assert.assertEquals(targetPlate.getContainerRole().getCherryPickTransfersTo().size(), transferCount);
+
+        Assert.assertTrue(targetPlate.getContainerRole().getAncestors(last).isEmpty());
+        Assert.assertEquals(targetPlate.getContainerRole().getAncestors(wells.get(1)).size(), 2);
+    }
+
+    public void testSectionTransferAncestors() {
+        StaticPlate sourcePlate = new StaticPlate("source", StaticPlate.PlateType.Eppendorf384);
+        StaticPlate targetPlate = new StaticPlate("target", StaticPlate.PlateType.Eppendorf96);
+        LabEvent labEvent = makeEvent(LabEventType.A_BASE);
+        labEvent.getSectionTransfers().add(new SectionTransfer(sourcePlate.getContainerRole(),
+                SBSSection.P384_96TIP_1INTERVAL_B2, null, targetPlate.getContainerRole(), SBSSection.ALL96, null,
+                labEvent));
+
+        for (int i = 0; i < SBSSection.ALL96.getWells().size(); i++) {
+            List<LabVessel.VesselEvent> ancestors =
+                    targetPlate.getContainerRole().getAncestors(SBSSection.ALL96.getWells().get(i));
+            Assert.assertEquals(ancestors.size(), 1);
+            Assert.assertEquals(ancestors.get(0).getSourcePosition(),
+                    SBSSection.P384_96TIP_1INTERVAL_B2.getWells().get(i));
+        }
+        Assert.assertTrue(sourcePlate.getContainerRole().getDescendants(VesselPosition.A01).isEmpty());
+    }
+
+    /**
+     * Times an ancestor traversal of every position through a chain of 384 well plates, alternating full plate
+     * cherry picks and section transfers.  Each hop used to scan every cherry pick on the plate.
+     */
+    public void testTraverseCherryPickChain() {
+        int chainLength = 20;
+        List<StaticPlate> plates = new ArrayList<>();
+        plates.add(new StaticPlate("plate0", StaticPlate.PlateType.Eppendorf384));
+        for (int i = 1; i <= chainLength; i++) {
+            StaticPlate plate = new StaticPlate("plate" + i, StaticPlate.PlateType.Eppendorf384);
+            StaticPlate previousPlate = plates.get(plates.size() - 1);
+            if (i % 2 == 1) {
+                reversingCherryPick(previousPlate, plate);
+            } else {
+                LabEvent labEvent = makeEvent(LabEventType.A_BASE);
+                labEvent.getSectionTransfers().add(new SectionTransfer(previousPlate.getContainerRole(),
+                        SBSSection.ALL384, null, plate.getContainerRole(), SBSSection.ALL384, null, labEvent));
+            }
+            plates.add(plate);
+        }
+
+        HopCountingCriteria criteria = new HopCountingCriteria();
+        VesselContainer<?> lastContainer = plates.get(chainLength).getContainerRole();
+        long start = System.currentTimeMillis();
+        for (VesselPosition position : SBSSection.ALL384.getWells()) {
+            lastContainer.evaluateCriteria(position, criteria, TransferTraverserCriteria.TraversalDirection.Ancestors,
+                    0);
+        }
+        log.info("Ancestor traversal of " + criteria.hops + " hops took " + (System.currentTimeMillis() - start) +
+                 " ms");
+
+        Assert.assertEquals(criteria.hops, SBSSection.ALL384.getWells().size() * chainLength);
+        Assert.assertEquals(criteria.maxHopCount, chainLength);
+    }
+
+    /**
+     * Cherry picks every well of the source to the well at the opposite end of the target.
+     */
+    private void reversingCherryPick(StaticPlate sourcePlate, StaticPlate targetPlate) {
+        List<VesselPosition> wells = SBSSection.ALL384.getWells();
+        LabEvent labEvent = makeEvent(LabEventType.POOLING_TRANSFER);
+        for (int i = 0; i < wells.size(); i++) {
+            labEvent.getCherryPickTransfers().add(new CherryPickTransfer(sourcePlate.getContainerRole(),
+                    wells.get(i), null, targetPlate.getContainerRole(), wells.get(wells.size() - 1 - i), null,
+                    labEvent));
+        }
+    }
+
+    private LabEvent makeEvent(LabEventType labEventType) {
+        return new LabEvent(labEventType, new Date(), "VesselContainerTest", disambiguator++, 1L,
+                "vesselContainerTest");
+    }
+
+    private static class HopCountingCriteria extends TransferTraverserCriteria {
+        private int hops;
+        private int maxHopCount;
+
+        @Override
+        public TraversalControl evaluateVesselPreOrder(Context context) {
+            if (context.getHopCount() > 0) {
+                hops++;
+                maxHopCount = Math.max(maxHopCount, context.getHopCount());
+            }
+            return TraversalControl.ContinueTraversing;
+        }
+
+        @Override
+        public void evaluateVesselPostOrder(Context context) {
+        }
+    }
+}
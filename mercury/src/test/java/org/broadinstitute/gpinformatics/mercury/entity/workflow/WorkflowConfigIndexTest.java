@@ -0,0 +1,244 @@
+package org.broadinstitute.gpinformatics.mercury.entity.workflow;
+
+import org.broadinstitute.gpinformatics.infrastructure.test.TestGroups;
+import org.broadinstitute.gpinformatics.mercury.control.workflow.WorkflowLoader;
+import org.broadinstitute.gpinformatics.mercury.entity.labevent.LabEventType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Database free test that the compiled indexes of WorkflowConfig give the same answers as scanning the definitions,
+ * with a benchmark of the lookups done for each lab event.
+ */
+@Test(groups = TestGroups.DATABASE_FREE)
+public class WorkflowConfigIndexTest {
+
+    private static final int ITERATIONS = 20;
+
+    /** A process step, and the event types recorded for it. */
+    private static class StepKey {
+        private final String workflowName;
+        private final String processName;
+        private final String stepName;
+        private final List<String> eventTypeNames = new ArrayList<>();
+
+        private StepKey(String workflowName, String processName, String stepName) {
+            this.workflowName = workflowName;
+            this.processName = processName;
+            this.stepName = stepName;
+        }
+    }
+
+    private static List<StepKey> findSteps(WorkflowConfig workflowConfig) {
+        List<StepKey> stepKeys = new ArrayList<>();
+        for (ProductWorkflowDef productWorkflowDef : workflowConfig.getProductWorkflowDefs()) {
+            for (WorkflowProcessDef workflowProcessDef :
+                    productWorkflowDef.getEffectiveVersion().getWorkflowProcessDefs()) {
+                WorkflowProcessDefVersion processDefVersion = workflowProcessDef.getEffectiveVersion();
+                if (processDefVersion == null) {
+                    continue;
+                }
+                for (WorkflowStepDef workflowStepDef : processDefVersion.getWorkflowStepDefs()) {
+                    StepKey stepKey = new StepKey(productWorkflowDef.getName(), workflowProcessDef.getName(),
+                            workflowStepDef.getName());
+                    for (LabEventType labEventType : workflowStepDef.getLabEventTypes()) {
+                        stepKey.eventTypeNames.add(labEventType.getName());
+                    }
+                    stepKeys.add(stepKey);
+                }
+            }
+        }
+        return stepKeys;
+    }
+
+    /**
+     * The lookups before the index: scans of the lists of workflows, versions and steps.
+     */
+    private static ProductWorkflowDef scanWorkflowByName(WorkflowConfig workflowConfig, String workflowName) {
+        for (ProductWorkflowDef productWorkflowDef : workflowConfig.getProductWorkflowDefs()) {
+            if (productWorkflowDef.getName().equals(workflowName)) {
+                return productWorkflowDef;
+            }
+        }
+        return null;
+    }
+
+    private static ProductWorkflowDefVersion scanEffectiveVersion(ProductWorkflowDef productWorkflowDef, Date date) {
+        for (ProductWorkflowDefVersion version : productWorkflowDef.getWorkflowVersionsDescEffDate()) {
+            if (!version.getEffectiveDate().after(date)) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    private static WorkflowStepDef scanStep(ProductWorkflowDefVersion productWorkflowDefVersion, String processName,
+            String stepName, Date date) {
+        for (WorkflowProcessDef workflowProcessDef : productWorkflowDefVersion.getWorkflowProcessDefs()) {
+            if (workflowProcessDef.getName().equals(processName)) {
+                for (WorkflowProcessDefVersion version : workflowProcessDef.getProcessVersionsDescEffDate()) {
+                    if (!version.getEffectiveDate().after(date)) {
+                        for (WorkflowStepDef workflowStepDef : version.getWorkflowStepDefs()) {
+                            if (workflowStepDef.getName().equals(stepName)) {
+                                return workflowStepDef;
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static WorkflowStepDef scanStepByEventType(ProductWorkflowDefVersion productWorkflowDefVersion,
+            String eventTypeName, Date date) {
+        for (WorkflowProcessDef workflowProcessDef : productWorkflowDefVersion.getWorkflowProcessDefs()) {
+            WorkflowProcessDefVersion version = workflowProcessDef.getEffectiveVersion(date);
+            if (version != null) {
+                for (WorkflowStepDef workflowStepDef : version.getWorkflowStepDefs()) {
+                    for (LabEventType labEventType : workflowStepDef.getLabEventTypes()) {
+                        if (labEventType.getName().equals(eventTypeName)) {
+                            return workflowStepDef;
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public void testIndexMatchesScan() {
+        WorkflowConfig workflowConfig = WorkflowLoader.loadFromFile();
+        Date now = new Date();
+        List<StepKey> stepKeys = findSteps(workflowConfig);
+        Assert.assertFalse(stepKeys.isEmpty());
+
+        for (StepKey stepKey : stepKeys) {
+            ProductWorkflowDef productWorkflowDef = workflowConfig.getWorkflowByName(stepKey.workflowName);
+            Assert.assertSame(productWorkflowDef, scanWorkflowByName(workflowConfig, stepKey.workflowName));
+            for (Date date : productWorkflowDef.getEffectiveDates()) {
+                Assert.assertSame(productWorkflowDef.getEffectiveVersion(date),
+                        scanEffectiveVersion(productWorkflowDef, date));
+            }
+            ProductWorkflowDefVersion version = productWorkflowDef.getEffectiveVersion(now);
+            // Processes are shared by name across workflows, so the steps are compared by name.
+            WorkflowStepDef indexedStep = workflowConfig.getStep(stepKey.processName, stepKey.stepName, now);
+            WorkflowStepDef scannedStep = scanStep(version, stepKey.processName, stepKey.stepName, now);
+            Assert.assertNotNull(indexedStep);
+            Assert.assertEquals(indexedStep.getName(), scannedStep.getName());
+            for (String eventTypeName : stepKey.eventTypeNames) {
+                for (ProductWorkflowDefVersion.LabEventNode labEventNode :
+                        version.findStepsByEventType(eventTypeName)) {
+                    Assert.assertEquals(labEventNode.getLabEventType().getName(), eventTypeName);
+                }
+                if (version.findStepsByEventType(eventTypeName).size() == 1) {
+                    Assert.assertSame(version.findStepByEventType(eventTypeName).getStepDef(),
+                            scanStepByEventType(version, eventTypeName, now));
+                }
+            }
+        }
+
+        Assert.assertNull(workflowConfig.getStep("No Such Process", "No Such Step", now));
+        try {
+            workflowConfig.getWorkflowByName("No Such Workflow");
+            Assert.fail("Expected exception for unknown workflow");
+        } catch (WorkflowException e) {
+            // expected
+        }
+    }
+
+    /**
+     * When processes share a name, a step missing from the first (or a process with no effective version) falls
+     * through to the later ones, as the scan of all processes did.
+     */
+    public void testStepInLaterProcessWithSameName() {
+        Date now = new Date();
+        WorkflowProcessDef futureProcess = new WorkflowProcessDef("Shared");
+        WorkflowProcessDefVersion futureVersion = new WorkflowProcessDefVersion("1", new Date(now.getTime() + 100000L));
+        futureVersion.addStep(new WorkflowStepDef("Step A"));
+        futureProcess.addWorkflowProcessDefVersion(futureVersion);
+
+        WorkflowProcessDef firstProcess = new WorkflowProcessDef("Shared");
+        WorkflowProcessDefVersion firstVersion = new WorkflowProcessDefVersion("1", new Date(0L));
+        WorkflowStepDef firstStepA = new WorkflowStepDef("Step A");
+        firstVersion.addStep(firstStepA);
+        firstProcess.addWorkflowProcessDefVersion(firstVersion);
+
+        WorkflowProcessDef secondProcess = new WorkflowProcessDef("Shared");
+        WorkflowProcessDefVersion secondVersion = new WorkflowProcessDefVersion("1", new Date(0L));
+        secondVersion.addStep(new WorkflowStepDef("Step A"));
+        WorkflowStepDef secondStepB = new WorkflowStepDef("Step B");
+        secondVersion.addStep(secondStepB);
+        secondProcess.addWorkflowProcessDefVersion(secondVersion);
+
+        WorkflowConfig workflowConfig = new WorkflowConfig(
+                new ArrayList<>(Arrays.asList(futureProcess, firstProcess, secondProcess)),
+                new ArrayList<>(Collections.<ProductWorkflowDef>emptyList()));
+        Assert.assertSame(workflowConfig.getStep("Shared", "Step A", now), firstStepA);
+        Assert.assertSame(workflowConfig.getStep("Shared", "Step B", now), secondStepB);
+        Assert.assertNull(workflowConfig.getStep("Shared", "Step C", now));
+    }
+
+    /**
+     * Times the lookups done for each lab event (workflow by name, version by date, step by process and step name,
+     * and step by event type), by scanning and through the index.
+     */
+    public void testBenchmark() {
+        WorkflowConfig workflowConfig = WorkflowLoader.loadFromFile();
+        Date now = new Date();
+        List<StepKey> stepKeys = findSteps(workflowConfig);
+        Set<String> eventTypeNames = new LinkedHashSet<>();
+        for (StepKey stepKey : stepKeys) {
+            eventTypeNames.addAll(stepKey.eventTypeNames);
+        }
+
+        int found = 0;
+        long scanStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (StepKey stepKey : stepKeys) {
+                ProductWorkflowDefVersion version = scanEffectiveVersion(
+                        scanWorkflowByName(workflowConfig, stepKey.workflowName), now);
+                if (scanStep(version, stepKey.processName, stepKey.stepName, now) != null) {
+                    found++;
+                }
+                for (String eventTypeName : stepKey.eventTypeNames) {
+                    if (scanStepByEventType(version, eventTypeName, now) != null) {
+                        found++;
+                    }
+                }
+            }
+        }
+        long scanNanos = System.nanoTime() - scanStart;
+
+        int indexFound = 0;
+        long indexStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (StepKey stepKey : stepKeys) {
+                ProductWorkflowDefVersion version = workflowConfig.getWorkflowVersionByName(stepKey.workflowName, now);
+                if (workflowConfig.getStep(stepKey.processName, stepKey.stepName, now) != null) {
+                    indexFound++;
+                }
+                for (String eventTypeName : stepKey.eventTypeNames) {
+                    if (!version.findStepsByEventType(eventTypeName).isEmpty()) {
+                        indexFound++;
+                    }
+                }
+            }
+        }
+        long indexNanos = System.nanoTime() - indexStart;
+
+        Assert.assertEquals(indexFound, found);
+        int lookups = ITERATIONS * stepKeys.size();
+        System.out.println(String.format("%d step lookups, %d event types: scan %.2f us/step, index %.2f us/step",
+                lookups, eventTypeNames.size(), scanNanos / 1000.0 / lookups, indexNanos / 1000.0 / lookups));
+    }
+}
@@ -47,6 +47,8 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -185,5 +187,13 @@ public class MetricsViewActionBeanTest {
         for (MetricsViewActionBean.WellData wellData: callRateDataset.getWellData()) {
             assertEquals(wellData.getValue(), "98.77");
         }
+
+        // The plate map is cached until its pipeline data changes.
+        actionBean.setInfiniumPlateMapCache(new InfiniumPlateMapCache());
+        MetricsViewActionBean.PlateMap builtPlateMap = actionBean.buildInfiniumMetricsTable(hybChip);
+        assertTrue(actionBean.getValidationErrors().isEmpty(), actionBean.getValidationErrors().toString());
+        assertSame(actionBean.buildInfiniumMetricsTable(hybChip), builtPlateMap);
+        when(arraysQc.getModifiedAt()).thenReturn(new Date(now.getTime() + 1000L));
+        assertNotSame(actionBean.buildInfiniumMetricsTable(hybChip), builtPlateMap);
     }
 }
\ No newline at end of file
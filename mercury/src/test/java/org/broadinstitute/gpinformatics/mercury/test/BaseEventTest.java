@@ -1181,6 +1181,8 @@ public class BaseEventTest {
         ProductOrderDao productOrderDao = Mockito.mock(ProductOrderDao.class);
         FlowcellDesignationEjb flowcellDesignationEjb = Mockito.mock(FlowcellDesignationEjb.class);
         Mockito.when(productOrderDao.findByBusinessKey(Mockito.anyString())).thenReturn(productOrder);
+        Mockito.when(productOrderDao.findListByBusinessKeys(Mockito.anyCollectionOf(String.class),
+                Mockito.<ProductOrderDao.FetchSpec>anyVararg())).thenReturn(Collections.singletonList(productOrder));
         Mockito.when(flowcellDesignationEjb.getFlowcellDesignations(Mockito.any(LabBatch.class))).
                 thenReturn(flowcellDesignations);
         AttributeArchetypeDao attributeArchetypeDao = Mockito.mock(AttributeArchetypeDao.class);
@@ -553,6 +553,17 @@ public class ExomeExpressEndToEndTest {
                     return ProductOrderTestFactory.createDummyProductOrder((String) arguments[0]);
                 }
             });
+            Mockito.when(productOrderDao.findListByBusinessKeys(Mockito.anyCollectionOf(String.class),
+                    Mockito.<ProductOrderDao.FetchSpec>anyVararg())).then(new Answer<Object>() {
+                @Override
+                public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                    List<ProductOrder> productOrders = new ArrayList<>();
+                    for (Object productOrderKey : (Collection<?>) invocationOnMock.getArguments()[0]) {
+                        productOrders.add(ProductOrderTestFactory.createDummyProductOrder((String) productOrderKey));
+                    }
+                    return productOrders;
+                }
+            });
 
             AttributeArchetypeDao attributeArchetypeDao = Mockito.mock(AttributeArchetypeDao.class);
             Mockito.when(attributeArchetypeDao.findWorkflowMetadata(Mockito.anyString())).then(new Answer<Object>() {
@@ -70,7 +70,7 @@ public class CrspPicoEntityBuilder {
         labEventHandler.processEvent(initialTareEntity);
         TubeFormation initialRack = (TubeFormation) initialTareEntity.getInPlaceLabVessel();
 
-        LimsQueries limsQueries = new LimsQueries(null, null, null, null);
+        LimsQueries limsQueries = new LimsQueries(null, null, null, null, null, null);
         mapBarcodeToVessel.putAll(mapBarcodeToTube);
         Map<String, ConcentrationAndVolumeAndWeightType> mapBarcodeToConcVolDto =
                 limsQueries.fetchConcentrationAndVolumeAndWeightForTubeBarcodes(mapBarcodeToVessel,